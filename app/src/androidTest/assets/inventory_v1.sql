@@ -0,0 +1,6 @@
+-- Inventory database as created by version 1 of the app, used by InventoryDbHelperTest
+CREATE TABLE inventory (_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, price INTEGER, quantity INTEGER NOT NULL, supplierName INTEGER, supplierPhone TEXT);
+INSERT INTO inventory (name, price, quantity, supplierName, supplierPhone) VALUES ('3D Puzzle Art', 400, 3, 0, '360-220-8090');
+INSERT INTO inventory (name, price, quantity, supplierName, supplierPhone) VALUES ('Calculus', 12995, 0, 1, '360-220-8091');
+INSERT INTO inventory (name, price, quantity, supplierName, supplierPhone) VALUES ('World Atlas', 2450, 12, 2, '360-220-8092');
+PRAGMA user_version = 1;
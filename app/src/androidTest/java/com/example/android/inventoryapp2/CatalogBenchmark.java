@@ -0,0 +1,189 @@
+package com.example.android.inventoryapp2;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.Product;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks of the catalog screen. Results are written to Logcat under the {@link #LOG_TAG}
+ * tag. These run against the app's own database, and delete all products before and after.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 16)
+public class CatalogBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = CatalogBenchmark.class.getSimpleName();
+
+    /** Number of products in the catalog */
+    private static final int CATALOG_SIZE = 10000;
+
+    /** Number of sales in the burst */
+    private static final int SALES = 100;
+
+    /** Number of products on screen that the sales are spread over */
+    private static final int SOLD_PRODUCTS = 5;
+
+    /** Time to wait for the catalog to catch up with the database */
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public ActivityTestRule<CatalogActivity> mActivityRule =
+            new ActivityTestRule<>(CatalogActivity.class, false, false);
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        mResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+        ContentValues[] rows = new ContentValues[CATALOG_SIZE];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_NAME, "Book " + i);
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_PRICE, 1000 + i);
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, SALES);
+            rows[i].put(InventoryEntry.COLUMN_SUPPLIER_NAME, i % 3);
+            rows[i].put(InventoryEntry.COLUMN_SUPPLIER_PHONE, "360-220-8090");
+        }
+        mResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+    }
+
+    @After
+    public void tearDown() {
+        mResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void saleBurst_framesAndBinds() throws Exception {
+        final CatalogActivity activity = mActivityRule.launchActivity(new Intent());
+        final InventoryAdapter adapter = activity.mAdapter;
+
+        // Wait for the first page, then sell from the products at the top of the screen
+        final long[] soldIds = new long[SOLD_PRODUCTS];
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                if (adapter.getItemCount() < SOLD_PRODUCTS) {
+                    return false;
+                }
+                for (int i = 0; i < SOLD_PRODUCTS; i++) {
+                    soldIds[i] = adapter.getProduct(i).id;
+                }
+                return true;
+            }
+        });
+
+        // Record the time of every frame drawn during the burst
+        final List<Long> frameTimes = new ArrayList<>();
+        final boolean[] recording = { true };
+        final int[] bindsBefore = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                bindsBefore[0] = adapter.getBindCount();
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (recording[0]) {
+                            frameTimes.add(frameTimeNanos);
+                            Choreographer.getInstance().postFrameCallback(this);
+                        }
+                    }
+                });
+            }
+        });
+
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < SALES; i++) {
+            mResolver.update(InventoryEntry.buildSellUri(soldIds[i % SOLD_PRODUCTS]), null, null, null);
+        }
+
+        // Wait until the catalog shows every sale
+        final int expectedQuantity = SALES - SALES / SOLD_PRODUCTS;
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                for (int i = 0; i < SOLD_PRODUCTS; i++) {
+                    Product product = adapter.getProduct(i);
+                    if (product.id != soldIds[i] || product.quantity != expectedQuantity) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        final int[] binds = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                recording[0] = false;
+                binds[0] = adapter.getBindCount() - bindsBefore[0];
+            }
+        });
+
+        long[] intervals = new long[Math.max(0, frameTimes.size() - 1)];
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i] = frameTimes.get(i + 1) - frameTimes.get(i);
+        }
+        Arrays.sort(intervals);
+        String frames = intervals.length == 0 ? "no frames"
+                : intervals.length + " frames, p50 " + intervals[intervals.length / 2] / 1000 + " us, p99 "
+                + intervals[intervals.length * 99 / 100] / 1000 + " us, max "
+                + intervals[intervals.length - 1] / 1000 + " us";
+        Log.i(LOG_TAG, SALES + " sales on " + CATALOG_SIZE + " products shown after " + elapsed
+                + " ms, " + binds[0] + " rows bound, " + frames);
+
+        // Every load re-binds only the rows it changed, so there is at most one bind per sale
+        assertTrue("rows bound: " + binds[0], binds[0] <= SALES);
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * Wait until the condition, checked on the main thread, is met.
+     */
+    private static void waitFor(final Condition condition) throws InterruptedException {
+        final boolean[] met = new boolean[1];
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MILLIS;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    met[0] = condition.isMet();
+                }
+            });
+            if (met[0]) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("timed out");
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.inventoryapp2;
+
+import android.content.Context;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.util.DiffUtil;
+import android.widget.FrameLayout;
+
+import com.example.android.inventoryapp2.data.InventoryContract;
+import com.example.android.inventoryapp2.data.Product;
+import com.example.android.inventoryapp2.data.SupplierCache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link InventoryAdapter}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryAdapterTest {
+
+    /** Products bound by the tests */
+    private static final int PRODUCTS = 40;
+
+    /** Times every product is bound after warming up */
+    private static final int ROUNDS = 50;
+
+    private static List<Product> newProducts(int quantityOffset) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            // Every supplier, so rows show their different names and phones
+            products.add(new Product(i + 1, "Product with a rather long name number " + i,
+                    i * 123457, i * 7 + quantityOffset, i % 3,
+                    InventoryContract.InventoryEntry.LOW_STOCK_THRESHOLD));
+        }
+        return products;
+    }
+
+    /**
+     * Once the buffers of a row have grown to fit, binding products must not allocate anything.
+     */
+    @Test
+    public void bind_doesNotAllocateAfterWarmUp() {
+        // Read off the main thread, as the loader does, so the rows show the suppliers
+        SupplierCache.getInstance(InstrumentationRegistry.getTargetContext()).getSuppliers();
+        final int[] allocations = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                InventoryAdapter adapter = new InventoryAdapter(context);
+                adapter.swapProducts(new InventoryLoader.Result(newProducts(0), false, null, null, null, 0));
+                InventoryAdapter.ViewHolder holder =
+                        adapter.onCreateViewHolder(new FrameLayout(context), 0);
+
+                // Warm up: grow the row buffers
+                bindAll(adapter, holder);
+
+                Debug.startAllocCounting();
+                try {
+                    Debug.resetThreadAllocCount();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        bindAll(adapter, holder);
+                    }
+                    allocations[0] = Debug.getThreadAllocCount();
+                } finally {
+                    Debug.stopAllocCounting();
+                }
+            }
+        });
+        assertEquals("allocations while binding", 0, allocations[0]);
+    }
+
+    /**
+     * A change of quantity only is a change of the row with the quantity payload, and any
+     * other change is a plain change of the row.
+     */
+    @Test
+    public void diff_quantityChangeCarriesPayload() {
+        List<Product> oldProducts = newProducts(0);
+        List<Product> newProducts = new ArrayList<>(oldProducts);
+        newProducts.set(3, oldProducts.get(3).withQuantity(99));
+        Product renamed = oldProducts.get(5);
+        newProducts.set(5, new Product(renamed.id, "Renamed", renamed.price, renamed.quantity,
+                renamed.supplier, renamed.reorderThreshold));
+
+        InventoryAdapter.ProductDiff diff = new InventoryAdapter.ProductDiff(oldProducts, newProducts);
+        for (int i = 0; i < PRODUCTS; i++) {
+            assertTrue(diff.areItemsTheSame(i, i));
+            assertEquals(i != 3 && i != 5, diff.areContentsTheSame(i, i));
+        }
+        assertSame(InventoryAdapter.PAYLOAD_QUANTITY, diff.getChangePayload(3, 3));
+        assertNull(diff.getChangePayload(5, 5));
+        assertNotNull(DiffUtil.calculateDiff(diff, false));
+    }
+
+    private static void bindAll(InventoryAdapter adapter, InventoryAdapter.ViewHolder holder) {
+        for (int position = 0; position < adapter.getItemCount(); position++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.android.inventoryapp2;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Loader;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.Product;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks of {@link InventoryLoader}. Results are written to Logcat under the
+ * {@link #LOG_TAG} tag. These run against the app's own database, and delete all products
+ * before and after.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryLoaderBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = InventoryLoaderBenchmark.class.getSimpleName();
+
+    /** Number of products in the catalog */
+    private static final int CATALOG_SIZE = 2000;
+
+    /** Number of products loaded per page */
+    private static final int PAGE_SIZE = 50;
+
+    /** Number of pages the user scrolled through before the checkout burst */
+    private static final int PAGES = 10;
+
+    /** Number of sales in a checkout burst */
+    private static final int SALES = 200;
+
+    /** Number of different products sold during a checkout burst */
+    private static final int SOLD_PRODUCTS = 20;
+
+    /** Time to wait for the loader to catch up with the database */
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    private ContentResolver mResolver;
+
+    private InventoryLoader mLoader;
+
+    /** The last result delivered by {@link #mLoader}, only accessed on the main thread */
+    private InventoryLoader.Result mResult;
+
+    @Before
+    public void setUp() {
+        mResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        mResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+        ContentValues[] rows = new ContentValues[CATALOG_SIZE];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_NAME, "Book " + i);
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_PRICE, 1000 + i);
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, 2 * SALES);
+            rows[i].put(InventoryEntry.COLUMN_SUPPLIER_NAME, i % 3);
+            rows[i].put(InventoryEntry.COLUMN_SUPPLIER_PHONE, "360-220-8090");
+        }
+        mResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+    }
+
+    @After
+    public void tearDown() {
+        if (mLoader != null) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    mLoader.stopLoading();
+                    mLoader.reset();
+                }
+            });
+        }
+        mResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void checkoutBurst_rowNotificationsVersusTableNotifications() throws Exception {
+        startLoader();
+
+        // Checkout burst with the notifications of the provider, one per sold product
+        int rowQueries = runCheckoutBurst(false, 2 * SALES - SALES / SOLD_PRODUCTS);
+
+        // The same burst, but notifying the whole table after each sale like before
+        int tableQueries = runCheckoutBurst(true, 2 * SALES - 2 * (SALES / SOLD_PRODUCTS));
+
+        Log.i(LOG_TAG, SALES + " sales with " + PAGES * PAGE_SIZE + " products loaded: "
+                + rowQueries + " queries with row notifications, "
+                + tableQueries + " queries with table notifications");
+        assertTrue("row notifications should query less", rowQueries < tableQueries);
+    }
+
+    /**
+     * Start the loader and scroll through {@link #PAGES} pages.
+     */
+    private void startLoader() throws InterruptedException {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                mLoader = new InventoryLoader(context, PAGE_SIZE);
+                mLoader.registerListener(0, new Loader.OnLoadCompleteListener<InventoryLoader.Result>() {
+                    @Override
+                    public void onLoadComplete(Loader<InventoryLoader.Result> loader,
+                                               InventoryLoader.Result data) {
+                        mResult = data;
+                    }
+                });
+                mLoader.startLoading();
+            }
+        });
+        for (int page = 1; page <= PAGES; page++) {
+            final int size = page * PAGE_SIZE;
+            waitFor(new Condition() {
+                @Override
+                public boolean isMet() {
+                    if (mResult == null || mResult.products.size() < size) {
+                        return false;
+                    }
+                    if (size < PAGES * PAGE_SIZE) {
+                        mLoader.loadMore();
+                    }
+                    return true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Sell {@link #SALES} units spread over the first {@link #SOLD_PRODUCTS} products, then wait
+     * until the loader shows the expected quantity for all of them.
+     *
+     * @return the number of queries made by the loader in the meantime
+     */
+    private int runCheckoutBurst(boolean notifyTable, final int expectedQuantity)
+            throws InterruptedException {
+        final long[] ids = new long[SOLD_PRODUCTS];
+        final int[] queriesBefore = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = mResult.products.get(i).id;
+                }
+                queriesBefore[0] = mLoader.getQueryCount();
+            }
+        });
+
+        for (int i = 0; i < SALES; i++) {
+            mResolver.update(InventoryEntry.buildSellUri(ids[i % SOLD_PRODUCTS]), null, null, null);
+            if (notifyTable) {
+                mResolver.notifyChange(InventoryEntry.CONTENT_URI, null);
+            }
+        }
+
+        waitFor(new Condition() {
+            @Override
+            public boolean isMet() {
+                for (int i = 0; i < ids.length; i++) {
+                    Product product = mResult.products.get(i);
+                    if (product.id != ids[i] || product.quantity != expectedQuantity) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+        // Let the loader finish any reload still running
+        Thread.sleep(500);
+
+        final int[] queries = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                queries[0] = mLoader.getQueryCount() - queriesBefore[0];
+            }
+        });
+        return queries[0];
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * Wait until the condition, checked on the main thread, is met.
+     */
+    private static void waitFor(final Condition condition) throws InterruptedException {
+        final boolean[] met = new boolean[1];
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MILLIS;
+        while (SystemClock.elapsedRealtime() < deadline) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    met[0] = condition.isMet();
+                }
+            });
+            if (met[0]) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("timed out");
+    }
+}
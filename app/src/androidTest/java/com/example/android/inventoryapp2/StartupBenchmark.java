@@ -0,0 +1,203 @@
+package com.example.android.inventoryapp2;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Loader;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.Product;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks of the time from the creation of the catalog to its first rows, at several sizes
+ * of the catalog. Results are written to Logcat under the {@link #LOG_TAG} tag. These run
+ * against the app's own database, and delete all products before and after.
+ *
+ * Each way inflates the layout of the catalog on the main thread, and gets the rows of the
+ * first screen: by reading the whole table after inflating it, as the catalog did before it
+ * was paged, by loading the first page after inflating it, and by prefetching the first page
+ * while inflating it, as the catalog does now. The database is already open, the cold start
+ * times including its opening are logged by StartupTrace.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = StartupBenchmark.class.getSimpleName();
+
+    /** Numbers of products in the catalog */
+    private static final int[] CATALOG_SIZES = { 100, 1000, 10000, 50000 };
+
+    /** Number of products loaded per page, as the catalog does */
+    private static final int PAGE_SIZE = 50;
+
+    /** Number of times each way runs, the median is logged */
+    private static final int RUNS = 5;
+
+    /** Time to wait for the first rows */
+    private static final long TIMEOUT_MILLIS = 30000;
+
+    private ContentResolver mResolver;
+
+    /** Time the first result of the loader was delivered, only accessed on the main thread */
+    private long mDeliveredMillis;
+
+    @Before
+    public void setUp() {
+        mResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        mResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        mResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void timeToFirstRow_wholeTableVersusFirstPageVersusPrefetch() throws Exception {
+        int size = 0;
+        for (int catalogSize : CATALOG_SIZES) {
+            insertProducts(size, catalogSize);
+            size = catalogSize;
+
+            long[] wholeTable = new long[RUNS];
+            long[] firstPage = new long[RUNS];
+            long[] prefetched = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                wholeTable[run] = readWholeTable();
+                firstPage[run] = loadFirstPage(false);
+                prefetched[run] = loadFirstPage(true);
+            }
+            long wholeTableMillis = median(wholeTable);
+            long firstPageMillis = median(firstPage);
+            Log.i(LOG_TAG, size + " products, first rows after " + wholeTableMillis
+                    + " ms reading the whole table, " + firstPageMillis + " ms loading the first page, "
+                    + median(prefetched) + " ms prefetching it while inflating");
+            if (size >= 10000) {
+                assertTrue("the first page should come before the whole table", firstPageMillis < wholeTableMillis);
+            }
+        }
+    }
+
+    /**
+     * Insert products until there are the given number, from the given number.
+     */
+    private void insertProducts(int from, int to) {
+        ContentValues[] rows = new ContentValues[to - from];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_NAME, "Book " + (from + i));
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_PRICE, 1000 + i);
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, i % 50);
+            rows[i].put(InventoryEntry.COLUMN_SUPPLIER_NAME, i % 3);
+            rows[i].put(InventoryEntry.COLUMN_SUPPLIER_PHONE, "360-220-8090");
+        }
+        mResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+    }
+
+    /**
+     * Inflate the layout of the catalog, then read all the products. Returns the time taken.
+     */
+    private long readWholeTable() {
+        final long[] start = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                start[0] = SystemClock.uptimeMillis();
+                inflateCatalog();
+            }
+        });
+        Cursor cursor = mResolver.query(InventoryEntry.CONTENT_URI, Product.PROJECTION, null, null, null);
+        assertNotNull(cursor);
+        try {
+            Product.Columns columns = new Product.Columns(cursor);
+            while (cursor.moveToNext()) {
+                columns.read(cursor);
+            }
+        } finally {
+            cursor.close();
+        }
+        return SystemClock.uptimeMillis() - start[0];
+    }
+
+    /**
+     * Inflate the layout of the catalog, and load its first page with a new loader, prefetching
+     * it while inflating or starting the loader after. Returns the time until the first page
+     * was delivered.
+     */
+    private long loadFirstPage(final boolean prefetch) throws InterruptedException {
+        final InventoryLoader[] loader = new InventoryLoader[1];
+        final long[] start = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mDeliveredMillis = 0;
+                start[0] = SystemClock.uptimeMillis();
+                loader[0] = new InventoryLoader(InstrumentationRegistry.getTargetContext(), PAGE_SIZE);
+                if (prefetch) {
+                    loader[0].prefetch();
+                }
+                inflateCatalog();
+                loader[0].registerListener(0, new Loader.OnLoadCompleteListener<InventoryLoader.Result>() {
+                    @Override
+                    public void onLoadComplete(Loader<InventoryLoader.Result> l, InventoryLoader.Result data) {
+                        if (mDeliveredMillis == 0) {
+                            mDeliveredMillis = SystemClock.uptimeMillis();
+                        }
+                    }
+                });
+                loader[0].startLoading();
+            }
+        });
+
+        final long[] delivered = new long[1];
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        while (delivered[0] == 0) {
+            if (SystemClock.uptimeMillis() > deadline) {
+                fail("timed out");
+            }
+            Thread.sleep(1);
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    delivered[0] = mDeliveredMillis;
+                    if (delivered[0] != 0) {
+                        loader[0].stopLoading();
+                        loader[0].reset();
+                    }
+                }
+            });
+        }
+        return delivered[0] - start[0];
+    }
+
+    /**
+     * Inflate the layout of the catalog with the theme of the app.
+     */
+    private static void inflateCatalog() {
+        Context context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(), R.style.AppTheme);
+        LayoutInflater.from(context).inflate(R.layout.activity_catalog, null);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.countProducts;
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.newProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link CatalogImporter}, run against an isolated copy of the database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogImporterTest {
+
+    /** Name of the preferences holding the checkpoints of the tests */
+    private static final String TEST_PREFERENCES = "catalog_import_test";
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    private SharedPreferences mCheckpoints;
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mCheckpoints = context.getSharedPreferences(TEST_PREFERENCES, Context.MODE_PRIVATE);
+        mCheckpoints.edit().clear().commit();
+        mFile = new File(context.getCacheDir(), "catalog_import_test.csv");
+    }
+
+    @After
+    public void tearDown() {
+        mCheckpoints.edit().clear().commit();
+        mFile.delete();
+    }
+
+    private Uri writeCatalog(String csv) throws IOException {
+        FileOutputStream out = new FileOutputStream(mFile);
+        try {
+            out.write(csv.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return Uri.fromFile(mFile);
+    }
+
+    @Test
+    public void importCsv_upsertsValidRowsAndRejectsInvalidOnes() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 5));
+        Uri source = writeCatalog("phone,name,price,quantity,supplier\n"
+                + "111,atlas,12.50,40,Pearson\n"
+                + "222,Poetry,3,7,American Book Co.\n"
+                + "\n"
+                + "333,Bad price,-1,5,Pearson\n"
+                + "444,Bad supplier,1,1,Unknown\n");
+
+        CatalogImporter importer = new CatalogImporter(resolver, mCheckpoints);
+        CatalogImporter.Progress progress = importer.importCsv(source, null);
+
+        assertEquals(2, progress.rowsImported);
+        assertEquals(2, progress.rowsRejected);
+        assertTrue(progress.firstError.startsWith("Line 5"));
+        assertFalse(progress.cancelled);
+        assertEquals(mFile.length(), progress.bytesRead);
+        assertEquals(2, countProducts(resolver));
+
+        // The existing product was updated in place, ignoring the case of its name
+        Cursor cursor = resolver.query(InventoryEntry.CONTENT_URI,
+                new String[] { InventoryEntry.COLUMN_PRODUCT_PRICE, InventoryEntry.COLUMN_PRODUCT_QUANTITY },
+                InventoryEntry.COLUMN_PRODUCT_NAME + "=?", new String[] { "Atlas" }, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1250, cursor.getInt(0));
+            assertEquals(40, cursor.getInt(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void importCsv_resumesFromCheckpointAfterCancel() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        StringBuilder csv = new StringBuilder("name,supplier,phone,quantity\n");
+        for (int i = 0; i < 5; i++) {
+            csv.append("Book ").append(i).append(",0,360-220-8090,").append(i).append('\n');
+        }
+        Uri source = writeCatalog(csv.toString());
+
+        // Cancel after the first batch of two
+        final CatalogImporter importer = new CatalogImporter(resolver, mCheckpoints);
+        importer.setBatchSize(2);
+        CatalogImporter.Progress progress = importer.importCsv(source, new CatalogImporter.Listener() {
+            @Override
+            public void onProgress(CatalogImporter.Progress progress) {
+                importer.cancel();
+            }
+        });
+        assertTrue(progress.cancelled);
+        assertEquals(2, progress.rowsImported);
+        assertEquals(2, countProducts(resolver));
+
+        // Importing again picks up after the first batch
+        progress = importer.importCsv(source, null);
+        assertFalse(progress.cancelled);
+        assertEquals(3, progress.resumedAfterLine);
+        assertEquals(5, progress.rowsImported);
+        assertEquals(5, countProducts(resolver));
+
+        // The checkpoint is gone once the import completes, importing again updates in place
+        progress = importer.importCsv(source, null);
+        assertEquals(0, progress.resumedAfterLine);
+        assertEquals(5, countProducts(resolver));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.countProducts;
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.newProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link CatalogWiper}, run against an isolated copy of the database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogWiperTest {
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    private static void insertProducts(ContentResolver resolver, int count) {
+        ContentValues[] products = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            products[i] = newProduct("Book " + i, i);
+        }
+        assertEquals(count, resolver.bulkInsert(InventoryEntry.CONTENT_URI, products));
+    }
+
+    @Test
+    public void wipe_deletesEveryProductInChunks() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        insertProducts(resolver, 25);
+
+        CatalogWiper wiper = new CatalogWiper(resolver);
+        wiper.setChunkSize(10);
+        final List<Long> deleted = new ArrayList<>();
+        CatalogWiper.Progress progress = wiper.wipe(new CatalogWiper.Listener() {
+            @Override
+            public void onProgress(CatalogWiper.Progress progress) {
+                deleted.add(progress.productsDeleted);
+            }
+        });
+
+        assertFalse(progress.cancelled);
+        assertEquals(25, progress.totalProducts);
+        assertEquals(25, progress.productsDeleted);
+        assertEquals(3, progress.chunks);
+        assertTrue(progress.longestChunkNanos > 0);
+        assertEquals(Long.valueOf(10), deleted.get(0));
+        assertEquals(Long.valueOf(20), deleted.get(1));
+        assertEquals(0, countProducts(resolver));
+
+        // Nothing is left to reclaim
+        assertEquals(0, resolver.update(InventoryEntry.RECLAIM_URI, new ContentValues(), null, null));
+    }
+
+    @Test
+    public void wipe_stopsAfterTheChunkItIsCancelledIn() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        insertProducts(resolver, 25);
+
+        final CatalogWiper wiper = new CatalogWiper(resolver);
+        wiper.setChunkSize(10);
+        CatalogWiper.Progress progress = wiper.wipe(new CatalogWiper.Listener() {
+            @Override
+            public void onProgress(CatalogWiper.Progress progress) {
+                wiper.cancel();
+            }
+        });
+        assertTrue(progress.cancelled);
+        assertEquals(10, progress.productsDeleted);
+        assertEquals(15, countProducts(resolver));
+
+        // Wiping again deletes the rest
+        progress = wiper.wipe(null);
+        assertFalse(progress.cancelled);
+        assertEquals(15, progress.totalProducts);
+        assertEquals(15, progress.productsDeleted);
+        assertEquals(0, countProducts(resolver));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.newProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link DatabaseMaintainer}, run against an isolated copy of the database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMaintainerTest {
+
+    /** Name of the preferences holding the report of the tests */
+    private static final String TEST_PREFERENCES = "maintenance_test";
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    private SharedPreferences mPreferences;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mPreferences = context.getSharedPreferences(TEST_PREFERENCES, Context.MODE_PRIVATE);
+        mPreferences.edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        mPreferences.edit().clear().commit();
+    }
+
+    /**
+     * Insert products with long names, so they take many pages, then delete the second half
+     * of them, leaving their pages free.
+     */
+    private static void insertAndDeleteProducts(ContentResolver resolver) {
+        ContentValues[] products = new ContentValues[2000];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = newProduct("Book with a long name to fill the pages of the table " + i, i % 20);
+        }
+        assertEquals(products.length, resolver.bulkInsert(InventoryEntry.CONTENT_URI, products));
+        resolver.delete(InventoryEntry.CONTENT_URI, InventoryEntry._ID + " > ?",
+                new String[] { String.valueOf(products.length / 2) });
+    }
+
+    @Test
+    public void run_analyzesReclaimsAndChecks() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        insertAndDeleteProducts(resolver);
+
+        DatabaseMaintainer maintainer = new DatabaseMaintainer(resolver, mPreferences);
+        maintainer.setStepBudgetMillis(1);
+        DatabaseMaintainer.Report report = maintainer.run();
+
+        assertFalse(report.cancelled);
+        assertTrue(report.tablesAnalyzed >= 1);
+        assertTrue(report.freePagesBefore > 0);
+        // Merging the search index can free more pages
+        assertTrue(report.pagesReclaimed >= report.freePagesBefore);
+        assertEquals(0, report.freePagesAfter);
+        assertTrue(report.pagesAfter < report.pagesBefore);
+        // The reclamation was split into steps
+        assertTrue(report.steps > 1);
+        assertTrue(report.longestStepNanos > 0);
+        assertNotNull(report.integrityProblems);
+        assertTrue(report.integrityProblems.isEmpty());
+        for (int i = 0; i < DatabaseMaintainer.SAMPLE_NAMES.length; i++) {
+            assertTrue(report.latencyMicrosBefore[i] > 0);
+            assertTrue(report.latencyMicrosAfter[i] > 0);
+        }
+        assertEquals(report.toString(), maintainer.getLastReport());
+        assertTrue(maintainer.getLastRunMillis() > 0);
+    }
+
+    @Test
+    public void run_hasNothingLeftToDoTheSecondTime() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        insertAndDeleteProducts(resolver);
+        DatabaseMaintainer maintainer = new DatabaseMaintainer(resolver, mPreferences);
+        maintainer.run();
+
+        DatabaseMaintainer.Report report = maintainer.run();
+        assertEquals(0, report.tablesAnalyzed);
+        assertEquals(0, report.searchIndexRowsMerged);
+        assertEquals(0, report.pagesReclaimed);
+        assertEquals(0, report.steps);
+        assertEquals(report.pagesBefore, report.pagesAfter);
+        assertTrue(report.integrityProblems.isEmpty());
+    }
+}
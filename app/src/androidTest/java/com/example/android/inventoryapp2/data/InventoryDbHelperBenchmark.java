@@ -0,0 +1,132 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks for the connection settings of {@link InventoryDbHelper}. Results are written to
+ * Logcat under the {@link #LOG_TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryDbHelperBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = InventoryDbHelperBenchmark.class.getSimpleName();
+
+    /** Name of the database file used by the benchmarks */
+    private static final String TEST_DATABASE = "inventory_benchmark.db";
+
+    /** Number of products in the catalog */
+    private static final int CATALOG_SIZE = 10000;
+
+    /** Number of sales made while the catalog is being reloaded */
+    private static final int SALES = 500;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void salesDuringCatalogReloads_rollbackJournalVersusDefault() throws Exception {
+        runContention("rollback journal", InventoryDbHelper.Profile.ROLLBACK_JOURNAL);
+        mContext.deleteDatabase(TEST_DATABASE);
+        runContention("default profile", InventoryDbHelper.Profile.DEFAULT);
+    }
+
+    /**
+     * Make {@link #SALES} sales on one thread while another thread keeps reloading the whole
+     * catalog, and log the sale latencies and the number of reloads that completed.
+     */
+    private void runContention(String name, InventoryDbHelper.Profile profile) throws Exception {
+        InventoryDbHelper dbHelper = new InventoryDbHelper(mContext, TEST_DATABASE, profile);
+        final SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try {
+            fillCatalog(db);
+
+            // Reload the catalog until the sales are done
+            final AtomicBoolean selling = new AtomicBoolean(true);
+            final AtomicInteger reloads = new AtomicInteger();
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (selling.get()) {
+                        Cursor cursor = db.query(InventoryEntry.TABLE_NAME, null, null, null, null, null, null);
+                        cursor.getCount();
+                        cursor.close();
+                        reloads.incrementAndGet();
+                    }
+                }
+            });
+            reader.start();
+
+            // Sell one unit of a different product each time, like the list's Sale button
+            SQLiteStatement sell = db.compileStatement("UPDATE " + InventoryEntry.TABLE_NAME
+                    + " SET " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " = " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " - 1"
+                    + " WHERE " + InventoryEntry._ID + " = ? AND " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " >= 1");
+            long[] latencies = new long[SALES];
+            for (int i = 0; i < SALES; i++) {
+                long start = System.nanoTime();
+                sell.bindLong(1, 1 + (i * 7919L) % CATALOG_SIZE);
+                sell.executeUpdateDelete();
+                latencies[i] = System.nanoTime() - start;
+            }
+            sell.close();
+            selling.set(false);
+            reader.join();
+
+            Arrays.sort(latencies);
+            Log.i(LOG_TAG, name + ": sale p50 " + latencies[SALES / 2] / 1000 + " us, p99 "
+                    + latencies[SALES * 99 / 100] / 1000 + " us, max " + latencies[SALES - 1] / 1000
+                    + " us; " + reloads.get() + " catalog reloads");
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    /**
+     * Insert {@link #CATALOG_SIZE} products in one transaction.
+     */
+    private static void fillCatalog(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < CATALOG_SIZE; i++) {
+                values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "Book " + i);
+                values.put(InventoryEntry.COLUMN_PRODUCT_PRICE, 400);
+                values.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, 100);
+                values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.SUPPLIER_PEARSON);
+                values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE, "360-220-8090");
+                db.insert(InventoryEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
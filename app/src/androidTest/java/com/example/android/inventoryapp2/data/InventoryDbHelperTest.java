@@ -0,0 +1,464 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.LowStockEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the schema migrations of {@link InventoryDbHelper}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryDbHelperTest {
+
+    /** Name of the database file used by the tests */
+    private static final String TEST_DATABASE = "inventory_migration_test.db";
+
+    /** Asset holding the SQL of a version 1 database */
+    private static final String V1_FIXTURE = "inventory_v1.sql";
+
+    private Context mContext;
+
+    private InventoryDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    @After
+    public void tearDown() {
+        if (mDbHelper != null) {
+            mDbHelper.close();
+        }
+        mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    /**
+     * Create the test database from the given SQL asset, one statement per line.
+     */
+    private void createFromFixture(String asset) throws IOException {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(mContext.getDatabasePath(TEST_DATABASE), null);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                InstrumentationRegistry.getContext().getAssets().open(asset), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("--")) {
+                    db.execSQL(line);
+                }
+            }
+        } finally {
+            reader.close();
+            db.close();
+        }
+    }
+
+    /**
+     * Insert enough products to fill many pages, in one transaction.
+     */
+    private static void fillProducts(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                db.execSQL("INSERT INTO inventory (name, price, quantity, supplierName) VALUES (?, ?, ?, ?)",
+                        new Object[] { "Product with a long name to fill the pages of the table " + i, 100 + i % 7,
+                                i % 20, i % 3 });
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Insert enough products to fill many pages, then delete them all, leaving their pages free.
+     */
+    private static void fillAndDeleteProducts(SQLiteDatabase db) {
+        fillProducts(db);
+        db.execSQL("DELETE FROM inventory");
+    }
+
+    /**
+     * Returns the statistics of the indexes of the inventory table, by index name.
+     */
+    private static Map<String, String> inventoryStatistics(SQLiteDatabase db) {
+        Map<String, String> statistics = new HashMap<>();
+        Cursor cursor = db.rawQuery("SELECT idx, stat FROM sqlite_stat1 WHERE tbl = ?",
+                new String[] { InventoryEntry.TABLE_NAME });
+        try {
+            while (cursor.moveToNext()) {
+                statistics.put(cursor.getString(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the names of the indexes on the inventory table.
+     */
+    private static List<String> indexNames(SQLiteDatabase db) {
+        List<String> names = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?"
+                + " AND sql IS NOT NULL ORDER BY name", new String[] { InventoryEntry.TABLE_NAME });
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    /**
+     * Assert that SQLite plans to run the given query using the given index, without sorting.
+     */
+    static void assertUsesIndex(SQLiteDatabase db, String indexName, String sql, String... args) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            int detailColumnIndex = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailColumnIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        assertTrue(sql + " should use " + indexName + " but the plan is:\n" + plan,
+                plan.toString().contains("INDEX " + indexName));
+        assertFalse(sql + " should not sort but the plan is:\n" + plan,
+                plan.toString().contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void upgradeFromVersion1_keepsProductsAndAddsIndexes() throws Exception {
+        createFromFixture(V1_FIXTURE);
+
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        assertEquals(InventoryDbHelper.DATABASE_VERSION, db.getVersion());
+        Cursor cursor = db.query(InventoryEntry.TABLE_NAME, null, null, null, null, null, InventoryEntry._ID);
+        try {
+            assertEquals(3, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("3D Puzzle Art",
+                    cursor.getString(cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME)));
+        } finally {
+            cursor.close();
+        }
+        assertTrue(indexNames(db).contains(InventoryDbHelper.INDEX_PRODUCT_NAME));
+        assertTrue(indexNames(db).contains(InventoryDbHelper.INDEX_SUPPLIER_NAME));
+        assertTrue(indexNames(db).contains(InventoryDbHelper.INDEX_PRODUCT_QUANTITY));
+        assertTrue(indexNames(db).contains(InventoryDbHelper.INDEX_PRODUCT_PRICE));
+
+        // Existing products are added to the search table
+        Cursor search = db.rawQuery("SELECT docid FROM " + InventoryDbHelper.TABLE_SEARCH
+                + " WHERE " + InventoryDbHelper.TABLE_SEARCH + " MATCH ?", new String[] { "pears*" });
+        try {
+            assertEquals(1, search.getCount());
+        } finally {
+            search.close();
+        }
+
+        // And summed up in the summary table
+        assertEquals(0, InventoryDbHelper.repairSummary(db));
+
+        // Their suppliers are moved to the suppliers table, with the phone of their products
+        assertEquals(3, DatabaseUtils.queryNumEntries(db, SupplierEntry.TABLE_NAME));
+        Cursor products = db.query(InventoryDbHelper.VIEW_PRODUCTS,
+                new String[] { InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.COLUMN_SUPPLIER_PHONE },
+                null, null, null, null, InventoryEntry._ID);
+        try {
+            assertTrue(products.moveToPosition(1));
+            assertEquals(InventoryEntry.SUPPLIER_BROOK_TAYLOR, products.getInt(0));
+            assertEquals("360-220-8091", products.getString(1));
+        } finally {
+            products.close();
+        }
+
+        // And the ones below the default threshold are entered as low on stock, in ID order
+        assertEquals(Arrays.asList(1L, 2L), lowStockProducts(db));
+    }
+
+    @Test
+    public void upgradeFromVersion4_keepsLastIdOfDeletedProducts() throws Exception {
+        // Every product deleted before version 5 leaves the table empty, with its last ID
+        createFromFixture(V1_FIXTURE);
+        SQLiteDatabase old = SQLiteDatabase.openDatabase(mContext.getDatabasePath(TEST_DATABASE).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        try {
+            old.execSQL("DELETE FROM inventory");
+        } finally {
+            old.close();
+        }
+
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        assertEquals(3, DatabaseUtils.longForQuery(db,
+                "SELECT seq FROM sqlite_sequence WHERE name = ?", new String[] { InventoryEntry.TABLE_NAME }));
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT count(*) FROM sqlite_sequence WHERE name = ?", new String[] { InventoryEntry.TABLE_NAME }));
+
+        // So the next product doesn't take the ID of a deleted one
+        db.execSQL("INSERT INTO inventory (name, price, quantity, supplierName) VALUES ('Atlas', 100, 1, 0)");
+        assertEquals(4, DatabaseUtils.longForQuery(db, "SELECT max(_id) FROM inventory", null));
+    }
+
+    /**
+     * Returns the IDs of the products in the low stock table, in the order they were entered.
+     */
+    private static List<Long> lowStockProducts(SQLiteDatabase db) {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = db.query(LowStockEntry.TABLE_NAME, new String[] { LowStockEntry.COLUMN_PRODUCT },
+                null, null, null, null, LowStockEntry._ID);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    @Test
+    public void lowStock_followsProductsAcrossTheirThreshold() throws Exception {
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO inventory (name, price, quantity, supplierName)"
+                + " VALUES ('Atlas', 250, 4, 0), ('Poetry', 100, 30, 0), ('Java', 1000, 6, 2)");
+        assertEquals(Arrays.asList(1L), lowStockProducts(db));
+
+        // Selling a product already low doesn't enter it again
+        db.execSQL("UPDATE inventory SET quantity = quantity - 1 WHERE name = 'Atlas'");
+        // Selling one below its threshold enters it
+        db.execSQL("UPDATE inventory SET quantity = 4 WHERE name = 'Java'");
+        // So does raising its threshold above the stock
+        db.execSQL("UPDATE inventory SET reorderThreshold = 40 WHERE name = 'Poetry'");
+        assertEquals(Arrays.asList(1L, 3L, 2L), lowStockProducts(db));
+
+        // Restocking or deleting a product removes it, and it gets a new entry if it goes low again
+        db.execSQL("UPDATE inventory SET quantity = 50 WHERE name = 'Atlas'");
+        db.execSQL("DELETE FROM inventory WHERE name = 'Java'");
+        db.execSQL("UPDATE inventory SET quantity = 0 WHERE name = 'Atlas'");
+        assertEquals(Arrays.asList(2L, 1L), lowStockProducts(db));
+        Cursor cursor = db.rawQuery("SELECT max(" + LowStockEntry._ID + ") FROM " + LowStockEntry.TABLE_NAME, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(4, cursor.getLong(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void summary_followsWritesAndRepairsItself() throws Exception {
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO inventory (name, price, quantity, supplierName)"
+                + " VALUES ('Atlas', 250, 4, 0), ('Poetry', 100, 3, 0), ('Java', 1000, 1, 2)");
+        db.execSQL("UPDATE inventory SET quantity = quantity - 1 WHERE name = 'Atlas'");
+        db.execSQL("UPDATE inventory SET supplierName = 1 WHERE name = 'Poetry'");
+        db.execSQL("DELETE FROM inventory WHERE name = 'Java'");
+
+        Cursor cursor = db.rawQuery("SELECT supplierName, products, units, value FROM "
+                + InventoryContract.SummaryEntry.TABLE_NAME + " WHERE products > 0 ORDER BY supplierName", null);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(InventoryEntry.SUPPLIER_PEARSON, cursor.getInt(0));
+            assertEquals(1, cursor.getInt(1));
+            assertEquals(3, cursor.getInt(2));
+            assertEquals(750, cursor.getLong(3));
+            assertTrue(cursor.moveToNext());
+            assertEquals(InventoryEntry.SUPPLIER_BROOK_TAYLOR, cursor.getInt(0));
+            assertEquals(300, cursor.getLong(3));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(0, InventoryDbHelper.repairSummary(db));
+
+        // A summary changed behind the triggers' back is found and rebuilt
+        db.execSQL("UPDATE " + InventoryContract.SummaryEntry.TABLE_NAME + " SET value = 0");
+        assertEquals(2, InventoryDbHelper.repairSummary(db));
+        assertEquals(0, InventoryDbHelper.repairSummary(db));
+    }
+
+    @Test
+    public void reclaimFreePages_givesBackThePagesOfDeletedProducts() throws Exception {
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        assertEquals(2, DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+        fillAndDeleteProducts(db);
+
+        long free = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        assertTrue("Deleting the products should free pages", free > 10);
+        assertEquals(10, InventoryDbHelper.reclaimFreePages(db, 10));
+        assertEquals(free - 10, InventoryDbHelper.reclaimFreePages(db, 0));
+        assertEquals(0, DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null));
+        assertEquals(0, InventoryDbHelper.reclaimFreePages(db, 0));
+    }
+
+    @Test
+    public void enableIncrementalVacuum_convertsDatabaseWithoutAutoVacuum() throws Exception {
+        // Without the locale table the platform creates, so the file is still empty when
+        // auto-vacuum is turned off
+        SQLiteDatabase empty = SQLiteDatabase.openDatabase(mContext.getDatabasePath(TEST_DATABASE).getPath(),
+                null, SQLiteDatabase.CREATE_IF_NECESSARY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+        try {
+            empty.execSQL("PRAGMA auto_vacuum = NONE");
+            empty.execSQL("CREATE TABLE placeholder (x)");
+        } finally {
+            empty.close();
+        }
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        assertEquals(0, DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+        fillAndDeleteProducts(db);
+
+        // The steps of the reclamation never rewrite the file
+        long free = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        assertEquals(0, InventoryDbHelper.reclaimFreePages(db, 10));
+        assertEquals(0, DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+
+        assertEquals(free, InventoryDbHelper.enableIncrementalVacuum(db));
+        assertEquals(2, DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+        assertEquals(0, DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null));
+        assertEquals(0, InventoryDbHelper.enableIncrementalVacuum(db));
+    }
+
+    @Test
+    public void refreshStatistics_computesWhatAnalyzeDoes() throws Exception {
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        fillProducts(db);
+
+        assertTrue(InventoryDbHelper.refreshStatistics(db) >= 1);
+        Map<String, String> refreshed = inventoryStatistics(db);
+        assertEquals(indexNames(db).size(), refreshed.size());
+        // Nothing changed since
+        assertEquals(0, InventoryDbHelper.refreshStatistics(db));
+
+        db.execSQL("ANALYZE " + InventoryEntry.TABLE_NAME);
+        assertEquals(inventoryStatistics(db), refreshed);
+
+        // The inventory needs new statistics once its size has more than halved
+        db.execSQL("DELETE FROM inventory WHERE _id % 3 > 0");
+        assertEquals(1, InventoryDbHelper.refreshStatistics(db));
+        assertTrue(inventoryStatistics(db).get(InventoryDbHelper.INDEX_PRODUCT_NAME).startsWith(
+                DatabaseUtils.queryNumEntries(db, InventoryEntry.TABLE_NAME) + " "));
+    }
+
+    @Test
+    public void mergeSearchIndex_leavesOneSegment() throws Exception {
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        // Each transaction adds a segment to the search index
+        for (int i = 0; i < 20; i++) {
+            db.execSQL("INSERT INTO inventory (name, price, quantity, supplierName) VALUES (?, 100, 10, 0)",
+                    new Object[] { "Book " + i });
+        }
+        String segments = "SELECT count(*) FROM " + InventoryDbHelper.TABLE_SEARCH + "_segdir";
+        assertTrue(DatabaseUtils.longForQuery(db, segments, null) > 1);
+
+        assertTrue(InventoryDbHelper.mergeSearchIndex(db, -1) > 0);
+        assertEquals(1, DatabaseUtils.longForQuery(db, segments, null));
+    }
+
+    @Test
+    public void upgradeFromVersion1_matchesFreshInstall() throws Exception {
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        List<String> fresh = indexNames(mDbHelper.getReadableDatabase());
+        mDbHelper.close();
+        mContext.deleteDatabase(TEST_DATABASE);
+
+        createFromFixture(V1_FIXTURE);
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        assertEquals(fresh, indexNames(mDbHelper.getReadableDatabase()));
+    }
+
+    @Test
+    public void commonQueries_useIndexes() throws Exception {
+        createFromFixture(V1_FIXTURE);
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        // Look up a product by name, ignoring case
+        assertUsesIndex(db, InventoryDbHelper.INDEX_PRODUCT_NAME,
+                "SELECT * FROM inventory WHERE name = ? COLLATE NOCASE", "calculus");
+        // Filter by supplier
+        assertUsesIndex(db, InventoryDbHelper.INDEX_SUPPLIER_NAME,
+                "SELECT * FROM inventory WHERE supplierName = ?", "1");
+        // Find products that are low on stock
+        assertUsesIndex(db, InventoryDbHelper.INDEX_PRODUCT_QUANTITY,
+                "SELECT * FROM inventory WHERE quantity < ?", "5");
+    }
+
+    @Test
+    public void catalogModes_readIndexesInOrder() throws Exception {
+        createFromFixture(V1_FIXTURE);
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        // Every sort, with and without each filter, for the first page and the next ones
+        String[] sorts = { InventoryContract.SORT_NAME, InventoryContract.SORT_PRICE, InventoryContract.SORT_QUANTITY };
+        String[] stocks = { null, InventoryContract.STOCK_IN, InventoryContract.STOCK_LOW };
+        for (String sort : sorts) {
+            for (String stock : stocks) {
+                for (int supplier = 0; supplier < 2; supplier++) {
+                    for (int after = 0; after < 2; after++) {
+                        String sql = SQLiteQueryBuilder.buildQueryString(false, InventoryDbHelper.VIEW_PRODUCTS,
+                                Product.PROJECTION, InventoryProvider.catalogSelection(sort, supplier == 1,
+                                        stock, after == 1), null, null, InventoryProvider.catalogOrder(sort), "50");
+                        List<String> args = new ArrayList<>();
+                        if (supplier == 1) {
+                            args.add("1");
+                        }
+                        if (after == 1) {
+                            args.addAll(Arrays.asList("Calculus", "Calculus", "2"));
+                        }
+                        String index;
+                        if (InventoryContract.SORT_NAME.equals(sort)) {
+                            index = supplier == 1 ? InventoryDbHelper.INDEX_SUPPLIER_NAME
+                                    : InventoryDbHelper.INDEX_PRODUCT_NAME;
+                        } else if (InventoryContract.SORT_PRICE.equals(sort)) {
+                            index = InventoryDbHelper.INDEX_PRODUCT_PRICE;
+                        } else {
+                            index = InventoryDbHelper.INDEX_PRODUCT_QUANTITY;
+                        }
+                        assertUsesIndex(db, index, sql, args.toArray(new String[args.size()]));
+                    }
+                }
+            }
+        }
+    }
+}
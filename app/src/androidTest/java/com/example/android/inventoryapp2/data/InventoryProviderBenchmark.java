@@ -0,0 +1,233 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Throughput benchmarks for {@link InventoryProvider}. Results are written to Logcat under the
+ * {@link #LOG_TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = InventoryProviderBenchmark.class.getSimpleName();
+
+    /** Number of rows in a typical supplier shipment */
+    private static final int SHIPMENT_ROWS = 5000;
+
+    /** Number of threads selling at the same time */
+    private static final int SELLING_THREADS = 8;
+
+    /** Number of sales made by each selling thread */
+    private static final int SALES_PER_THREAD = 250;
+
+    /** Catalog sizes the first page is measured at */
+    private static final int[] CATALOG_SIZES = { 10000, 100000, 1000000 };
+
+    /** Number of products in a page of the catalog */
+    private static final int PAGE_SIZE = 50;
+
+    /** Number of products searched by the search benchmark */
+    private static final int SEARCH_CATALOG_SIZE = 100000;
+
+    /** Words product names are made of in the search benchmark */
+    private static final String[] WORDS = { "art", "atlas", "biology", "calculus", "chemistry",
+            "dictionary", "economics", "french", "geometry", "history", "italian", "java",
+            "kitchen", "literature", "music", "novel", "physics", "poetry", "puzzle", "spanish" };
+
+    /** Search texts typed by the search benchmark, one prefix per keystroke */
+    private static final String[] SEARCHES = { "p", "pu", "puz", "puzz", "puzzle a", "puzzle ar",
+            "c", "ch", "che", "chem", "chemistry n", "chemistry no", "w", "wo", "wor", "worl" };
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    @Test
+    public void insertShipment_perRowVersusBulk() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ContentValues[] rows = new ContentValues[SHIPMENT_ROWS];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = InventoryProviderTest.newProduct("Book " + i, i);
+        }
+
+        // One insert() call, transaction and notification per row
+        long start = SystemClock.elapsedRealtime();
+        for (ContentValues row : rows) {
+            resolver.insert(InventoryEntry.CONTENT_URI, row);
+        }
+        long perRowMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+        resolver.delete(InventoryEntry.CONTENT_URI, null, null);
+
+        // One transaction and notification for the whole shipment
+        start = SystemClock.elapsedRealtime();
+        resolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+        long bulkMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        Log.i(LOG_TAG, "insert: " + (SHIPMENT_ROWS * 1000L / perRowMillis) + " rows/s, "
+                + "bulkInsert: " + (SHIPMENT_ROWS * 1000L / bulkMillis) + " rows/s");
+        assertEquals(SHIPMENT_ROWS, InventoryProviderTest.countProducts(resolver));
+        assertTrue("bulkInsert should beat per-row inserts", bulkMillis < perRowMillis);
+    }
+
+    @Test
+    public void sell_readModifyWriteVersusAtomic() throws Exception {
+        final ContentResolver resolver = mProviderRule.getResolver();
+        final int stock = SELLING_THREADS * SALES_PER_THREAD;
+
+        // The old sale button: read the quantity, decrement it in Java and write it back
+        final Uri oldUri = resolver.insert(InventoryEntry.CONTENT_URI,
+                InventoryProviderTest.newProduct("Read-modify-write", stock));
+        long oldMillis = runSales(new Runnable() {
+            @Override
+            public void run() {
+                int quantity = InventoryProviderTest.queryQuantity(resolver, oldUri);
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, quantity - 1);
+                resolver.update(oldUri, values, null, null);
+            }
+        });
+        int lostSales = InventoryProviderTest.queryQuantity(resolver, oldUri);
+
+        // The sell URI: a single guarded decrement in the database
+        Uri newUri = resolver.insert(InventoryEntry.CONTENT_URI,
+                InventoryProviderTest.newProduct("Atomic", stock));
+        final Uri sellUri = InventoryEntry.buildSellUri(ContentUris.parseId(newUri));
+        long sellMillis = runSales(new Runnable() {
+            @Override
+            public void run() {
+                resolver.update(sellUri, null, null, null);
+            }
+        });
+
+        Log.i(LOG_TAG, "read-modify-write: " + (stock * 1000L / oldMillis) + " sales/s, "
+                + lostSales + " lost; sell URI: " + (stock * 1000L / sellMillis) + " sales/s");
+        assertEquals(0, InventoryProviderTest.queryQuantity(resolver, newUri));
+    }
+
+    /**
+     * Run the given sale {@link #SALES_PER_THREAD} times on each of {@link #SELLING_THREADS}
+     * threads and return the elapsed time in milliseconds.
+     */
+    private static long runSales(final Runnable sale) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(SELLING_THREADS);
+        for (int t = 0; t < SELLING_THREADS; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < SALES_PER_THREAD; i++) {
+                            sale.run();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        long startMillis = SystemClock.elapsedRealtime();
+        start.countDown();
+        done.await();
+        return Math.max(1, SystemClock.elapsedRealtime() - startMillis);
+    }
+
+    @Test
+    public void firstRow_fullTableVersusFirstPage() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        int rowCount = 0;
+        for (int size : CATALOG_SIZES) {
+            // Grow the catalog to the next size
+            ContentValues[] rows = new ContentValues[size - rowCount];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = InventoryProviderTest.newProduct("Book " + (rowCount + i), i % 50);
+            }
+            resolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+            rowCount = size;
+
+            long[] full = measureFirstRow(resolver, InventoryEntry.CONTENT_URI);
+            long[] paged = measureFirstRow(resolver, InventoryEntry.buildPageUri(-1, PAGE_SIZE));
+            Log.i(LOG_TAG, size + " rows: full table " + full[0] + " ms to first row, "
+                    + full[1] / 1024 + " KiB heap; first page " + paged[0] + " ms to first row, "
+                    + paged[1] / 1024 + " KiB heap");
+            assertTrue("first page should not be slower than the full table", paged[0] <= full[0]);
+        }
+    }
+
+    /**
+     * Query the given URI the way the catalog's loader does and return the time until the
+     * first row is available in milliseconds, and the heap used by the cursor in bytes.
+     */
+    private static long[] measureFirstRow(ContentResolver resolver, Uri uri) {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+
+        long start = SystemClock.elapsedRealtime();
+        Cursor cursor = resolver.query(uri, null, null, null, null);
+        try {
+            // Like CursorLoader, count the rows, which fills the cursor window
+            cursor.getCount();
+            cursor.moveToFirst();
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+            return new long[] { elapsed, Math.max(0, heapAfter - heapBefore) };
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void search_latency() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ContentValues[] rows = new ContentValues[SEARCH_CATALOG_SIZE];
+        for (int i = 0; i < rows.length; i++) {
+            String name = WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length]
+                    + " " + i;
+            rows[i] = InventoryProviderTest.newProduct(name, i % 50);
+        }
+        resolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+
+        // Type every search several times, reading the first screen of results like the list
+        int rounds = 10;
+        long[] latencies = new long[SEARCHES.length * rounds];
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < SEARCHES.length; i++) {
+                long start = System.nanoTime();
+                Cursor cursor = resolver.query(InventoryEntry.buildSearchUri(SEARCHES[i]),
+                        null, null, null, null);
+                cursor.getCount();
+                cursor.close();
+                latencies[round * SEARCHES.length + i] = System.nanoTime() - start;
+            }
+        }
+
+        Arrays.sort(latencies);
+        Log.i(LOG_TAG, "search on " + SEARCH_CATALOG_SIZE + " rows: p50 "
+                + latencies[latencies.length / 2] / 1000000 + " ms, p99 "
+                + latencies[latencies.length * 99 / 100] / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,785 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp2.data.InventoryContract.DiagnosticsEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.LowStockEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SalesEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SummaryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SupplierEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.VersionEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link InventoryProvider}, run against an isolated copy of the database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderTest {
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    /**
+     * Create the content values for a valid product with the given name and quantity.
+     */
+    static ContentValues newProduct(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_PRODUCT_NAME, name);
+        values.put(InventoryEntry.COLUMN_PRODUCT_PRICE, 400);
+        values.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.SUPPLIER_PEARSON);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE, "360-220-8090");
+        return values;
+    }
+
+    /**
+     * Return the number of rows in the inventory table.
+     */
+    static int countProducts(ContentResolver resolver) {
+        Cursor cursor = resolver.query(InventoryEntry.CONTENT_URI,
+                new String[] { InventoryEntry._ID }, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void bulkInsert_insertsEveryRow() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ContentValues[] rows = new ContentValues[100];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = newProduct("Book " + i, i);
+        }
+
+        assertEquals(rows.length, resolver.bulkInsert(InventoryEntry.CONTENT_URI, rows));
+        assertEquals(rows.length, countProducts(resolver));
+    }
+
+    @Test
+    public void bulkInsert_invalidRowRejectsWholeBatch() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ContentValues invalid = newProduct("Broken", 1);
+        invalid.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, -1);
+        ContentValues[] rows = { newProduct("Good", 1), invalid };
+
+        try {
+            resolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+            fail("Expected the invalid quantity to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // The batch is validated before anything is written
+        }
+        assertEquals(0, countProducts(resolver));
+    }
+
+    @Test
+    public void applyBatch_commitsAllOperations() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            operations.add(ContentProviderOperation.newInsert(InventoryEntry.CONTENT_URI)
+                    .withValues(newProduct("Book " + i, i))
+                    .build());
+        }
+
+        assertEquals(10, resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations).length);
+        assertEquals(10, countProducts(resolver));
+    }
+
+    /**
+     * Return the quantity of the product at the given URI.
+     */
+    static int queryQuantity(ContentResolver resolver, Uri productUri) {
+        Cursor cursor = resolver.query(productUri,
+                new String[] { InventoryEntry.COLUMN_PRODUCT_QUANTITY }, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void sell_returnsNewQuantityAndStopsAtZero() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Book", 2));
+        Uri sellUri = InventoryEntry.buildSellUri(ContentUris.parseId(productUri));
+
+        assertEquals(1, resolver.update(sellUri, null, null, null));
+        assertEquals(0, resolver.update(sellUri, null, null, null));
+        assertEquals(InventoryEntry.SELL_INSUFFICIENT_STOCK, resolver.update(sellUri, null, null, null));
+        assertEquals(0, queryQuantity(resolver, productUri));
+    }
+
+    @Test
+    public void sell_concurrentSalesNeverLoseUpdates() throws Exception {
+        final int threads = 8;
+        final int salesPerThread = 200;
+        final int stock = threads * salesPerThread / 2;
+
+        final ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Bestseller", stock));
+        final Uri sellUri = InventoryEntry.buildSellUri(ContentUris.parseId(productUri));
+
+        // Hammer the same product from every thread, twice as many sales as there is stock
+        final AtomicInteger sold = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < salesPerThread; i++) {
+                            if (resolver.update(sellUri, null, null, null)
+                                    != InventoryEntry.SELL_INSUFFICIENT_STOCK) {
+                                sold.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        // Every unit was sold exactly once
+        assertEquals(stock, sold.get());
+        assertEquals(0, queryQuantity(resolver, productUri));
+    }
+
+    @Test
+    public void sell_recordsEverySaleInTheLedger() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Book", 3));
+        long id = ContentUris.parseId(productUri);
+        Uri sellUri = InventoryEntry.buildSellUri(id);
+
+        // Two sales in one batch, the second beyond the stock, then a sale with its own time
+        ContentValues two = new ContentValues();
+        two.put(InventoryEntry.SELL_AMOUNT, 2);
+        two.put(InventoryEntry.SELL_TIME, 1000L);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newUpdate(sellUri).withValues(two).build());
+        operations.add(ContentProviderOperation.newUpdate(sellUri).withValues(two).build());
+        resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+        long before = System.currentTimeMillis();
+        assertEquals(0, resolver.update(sellUri, null, null, null));
+
+        // The product is gone, its sales stay
+        resolver.delete(productUri, null, null);
+        Cursor cursor = resolver.query(SalesEntry.CONTENT_URI, SalesEntry.COLUMNS, null, null, null);
+        try {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(id, cursor.getLong(cursor.getColumnIndex(SalesEntry.COLUMN_PRODUCT)));
+            assertEquals(2, cursor.getInt(cursor.getColumnIndex(SalesEntry.COLUMN_UNITS)));
+            assertEquals(400, cursor.getLong(cursor.getColumnIndex(SalesEntry.COLUMN_PRICE)));
+            assertEquals(1000L, cursor.getLong(cursor.getColumnIndex(SalesEntry.COLUMN_SOLD_AT)));
+            cursor.moveToNext();
+            assertEquals(1, cursor.getInt(cursor.getColumnIndex(SalesEntry.COLUMN_UNITS)));
+            assertTrue(cursor.getLong(cursor.getColumnIndex(SalesEntry.COLUMN_SOLD_AT)) >= before);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void pagedQuery_returnsKeysetPagesInIdOrder() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ContentValues[] rows = new ContentValues[25];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = newProduct("Book " + i, i);
+        }
+        resolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+
+        // Walk the table ten rows at a time, each page starting after the last ID of the previous
+        long afterId = -1;
+        int total = 0;
+        int pages = 0;
+        while (true) {
+            Cursor page = resolver.query(InventoryEntry.buildPageUri(afterId, 10),
+                    new String[] { InventoryEntry._ID }, null, null, null);
+            try {
+                if (!page.moveToFirst()) {
+                    break;
+                }
+                pages++;
+                do {
+                    long id = page.getLong(0);
+                    assertTrue("IDs must increase across pages", id > afterId);
+                    afterId = id;
+                    total++;
+                } while (page.moveToNext());
+            } finally {
+                page.close();
+            }
+        }
+
+        assertEquals(3, pages);
+        assertEquals(rows.length, total);
+    }
+
+    @Test
+    public void sortedQuery_pagesThroughFilteredProductsInOrder() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ContentValues[] rows = new ContentValues[40];
+        for (int i = 0; i < rows.length; i++) {
+            // Names, prices and quantities repeat, so pages have to break ties by ID
+            rows[i] = newProduct((i % 2 == 0 ? "book " : "Book ") + i % 7, i % 9);
+            rows[i].put(InventoryEntry.COLUMN_PRODUCT_PRICE, 100 * (i % 5));
+            rows[i].put(InventoryEntry.COLUMN_SUPPLIER_NAME, i % 3);
+        }
+        resolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+        List<Product> all = new ArrayList<>();
+        readProducts(resolver, InventoryEntry.CONTENT_URI, all);
+
+        String[] sorts = { InventoryContract.SORT_NAME, InventoryContract.SORT_PRICE, InventoryContract.SORT_QUANTITY };
+        String[] stocks = { null, InventoryContract.STOCK_IN, InventoryContract.STOCK_LOW };
+        for (String sort : sorts) {
+            for (String stock : stocks) {
+                for (int supplier = CatalogMode.ALL_SUPPLIERS; supplier <= 1; supplier++) {
+                    CatalogMode mode = new CatalogMode(sort, supplier, stock);
+                    List<Product> expected = new ArrayList<>();
+                    for (Product product : all) {
+                        if (mode.matches(product)) {
+                            expected.add(product);
+                        }
+                    }
+                    Collections.sort(expected, mode);
+
+                    // Walk the mode four products at a time
+                    List<Product> paged = new ArrayList<>();
+                    while (readProducts(resolver, mode.buildPageUri(
+                            paged.isEmpty() ? null : paged.get(paged.size() - 1), 4), paged) == 4) {
+                        assertTrue("too many pages in " + sort + " " + stock, paged.size() <= rows.length);
+                    }
+                    assertEquals(sort + " " + supplier + " " + stock, ids(expected), ids(paged));
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the products returned by the given URI to the list. Returns the number added.
+     */
+    private static int readProducts(ContentResolver resolver, Uri uri, List<Product> products) {
+        Cursor cursor = resolver.query(uri, Product.PROJECTION, null, null, null);
+        try {
+            Product.Columns columns = new Product.Columns(cursor);
+            while (cursor.moveToNext()) {
+                products.add(columns.read(cursor));
+            }
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<Long> ids(List<Product> products) {
+        List<Long> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Return the names of the products found when searching for the given text, best match first.
+     */
+    static List<String> search(ContentResolver resolver, String text) {
+        List<String> names = new ArrayList<>();
+        Cursor cursor = resolver.query(InventoryEntry.buildSearchUri(text),
+                new String[] { InventoryEntry.COLUMN_PRODUCT_NAME }, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    @Test
+    public void search_matchesWordPrefixesOfNameAndSupplier() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("3D Puzzle Art", 3));
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Art of Puzzles", 3));
+        ContentValues atlas = newProduct("World Atlas", 3);
+        atlas.put(InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.SUPPLIER_AMERICAN_BOOK);
+        resolver.insert(InventoryEntry.CONTENT_URI, atlas);
+
+        // Names starting with the first word rank first
+        assertEquals(Arrays.asList("Art of Puzzles", "3D Puzzle Art"), search(resolver, "art puz"));
+        // Supplier names are searched too, ignoring case
+        assertEquals(Arrays.asList("World Atlas"), search(resolver, "AMERICAN bo"));
+        // Punctuation is not part of the query syntax
+        assertEquals(Arrays.asList("World Atlas"), search(resolver, "\"wor*-"));
+        assertTrue(search(resolver, "  ").isEmpty());
+    }
+
+    @Test
+    public void search_ranksByNumberOfMatchedTerms() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Zoology of the Art", 3));
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Abc Art", 3));
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Pop Art and Street Art", 3));
+
+        // Two matches first, then one match each by name, wherever the match is in the name
+        assertEquals(Arrays.asList("Pop Art and Street Art", "Abc Art", "Zoology of the Art"),
+                search(resolver, "art"));
+    }
+
+    @Test
+    public void search_followsUpdatesAndDeletes() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Calculus", 3));
+
+        ContentValues rename = new ContentValues();
+        rename.put(InventoryEntry.COLUMN_PRODUCT_NAME, "Linear Algebra");
+        resolver.update(productUri, rename, null, null);
+        assertTrue(search(resolver, "calc").isEmpty());
+        assertEquals(Arrays.asList("Linear Algebra"), search(resolver, "alg"));
+
+        resolver.delete(productUri, null, null);
+        assertTrue(search(resolver, "alg").isEmpty());
+    }
+
+    @Test
+    public void queryById_followsWritesThroughTheCache() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 5));
+        Uri otherUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Poetry", 5));
+        assertEquals(5, queryQuantity(resolver, productUri));
+
+        // Sale and update of a single product
+        resolver.update(InventoryEntry.buildSellUri(ContentUris.parseId(productUri)), null, null, null);
+        assertEquals(4, queryQuantity(resolver, productUri));
+        ContentValues restock = new ContentValues();
+        restock.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, 9);
+        resolver.update(productUri, restock, null, null);
+        assertEquals(9, queryQuantity(resolver, productUri));
+
+        // Update of several products by selection
+        ContentValues clear = new ContentValues();
+        clear.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, 0);
+        resolver.update(InventoryEntry.CONTENT_URI, clear, null, null);
+        assertEquals(0, queryQuantity(resolver, productUri));
+        assertEquals(0, queryQuantity(resolver, otherUri));
+
+        // A batch that is rolled back leaves nothing behind
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newUpdate(productUri).withValues(restock).build());
+        operations.add(ContentProviderOperation.newInsert(InventoryEntry.CONTENT_URI)
+                .withValues(new ContentValues()).build());
+        try {
+            resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+            fail("The invalid insert should fail the batch");
+        } catch (IllegalArgumentException expected) {
+            // The product requires a name
+        }
+        assertEquals(0, queryQuantity(resolver, productUri));
+
+        // Deleted products are gone
+        resolver.delete(productUri, null, null);
+        Cursor cursor = resolver.query(productUri, null, null, null, null);
+        try {
+            assertEquals(0, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void updateById_writesEveryColumnTheEditorSaves() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 5));
+
+        // The values of the editor, with and without a reorder threshold
+        ContentValues values = newProduct("World Atlas", 7);
+        values.put(InventoryEntry.COLUMN_PRODUCT_PRICE, 1250);
+        values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, 2);
+        values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE, "360-220-0000");
+        assertEquals(1, resolver.update(productUri, values, null, null));
+        values.remove(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+        values.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, 1);
+        assertEquals(1, resolver.update(productUri, values, null, null));
+
+        Cursor cursor = resolver.query(productUri, new String[] { InventoryEntry.COLUMN_PRODUCT_NAME,
+                InventoryEntry.COLUMN_PRODUCT_PRICE, InventoryEntry.COLUMN_PRODUCT_QUANTITY,
+                InventoryEntry.COLUMN_REORDER_THRESHOLD, InventoryEntry.COLUMN_SUPPLIER_PHONE },
+                null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("World Atlas", cursor.getString(0));
+            assertEquals(1250, cursor.getInt(1));
+            assertEquals(1, cursor.getInt(2));
+            assertEquals(2, cursor.getInt(3));
+            assertEquals("360-220-0000", cursor.getString(4));
+        } finally {
+            cursor.close();
+        }
+
+        // A product that doesn't exist is neither updated nor deleted
+        Uri missingUri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, 999);
+        assertEquals(0, resolver.update(missingUri, values, null, null));
+        assertEquals(0, resolver.delete(missingUri, null, null));
+        assertEquals(1, resolver.delete(productUri, null, null));
+        assertEquals(0, countProducts(resolver));
+    }
+
+    @Test
+    public void diagnostics_recordOperationsOnlyWhileEnabled() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 5));
+        assertEquals(-1, queryDiagnostic(resolver, "insert inventory"));
+
+        ContentValues enable = new ContentValues();
+        enable.put(DiagnosticsEntry.COLUMN_ENABLED, true);
+        assertEquals(1, resolver.update(DiagnosticsEntry.CONTENT_URI, enable, null, null));
+        assertEquals(1, queryDiagnostic(resolver, DiagnosticsEntry.NAME_ENABLED));
+
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Poetry", 5));
+        resolver.update(InventoryEntry.buildSellUri(ContentUris.parseId(productUri)), null, null, null);
+        countProducts(resolver);
+        countProducts(resolver);
+        assertEquals(1, queryDiagnostic(resolver, "insert inventory"));
+        assertEquals(1, queryDiagnostic(resolver, "update inventory/#/sell"));
+        assertEquals(2, queryDiagnostic(resolver, "query inventory"));
+        assertTrue(queryDiagnostic(resolver, DiagnosticsEntry.NAME_NOTIFICATIONS) >= 2);
+        assertTrue(queryDiagnostic(resolver, DiagnosticsEntry.NAME_WINDOW_FILLS) >= 2);
+
+        // Deleting the diagnostics resets them
+        resolver.delete(DiagnosticsEntry.CONTENT_URI, null, null);
+        assertEquals(-1, queryDiagnostic(resolver, "insert inventory"));
+        assertEquals(0, queryDiagnostic(resolver, DiagnosticsEntry.NAME_NOTIFICATIONS));
+
+        ContentValues disable = new ContentValues();
+        disable.put(DiagnosticsEntry.COLUMN_ENABLED, false);
+        resolver.update(DiagnosticsEntry.CONTENT_URI, disable, null, null);
+        countProducts(resolver);
+        assertEquals(-1, queryDiagnostic(resolver, "query inventory"));
+    }
+
+    @Test
+    public void export_streamsEveryProductAsCsvAndJson() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        // More products than fit in one page of the export
+        ContentValues[] rows = new ContentValues[2500];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = newProduct("Book " + i, i);
+        }
+        rows[0].put(InventoryEntry.COLUMN_PRODUCT_NAME, "Atlas, \"2nd\" edition");
+        resolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+
+        List<String> csv = readLines(resolver.openInputStream(InventoryEntry.EXPORT_URI));
+        assertEquals(rows.length + 1, csv.size());
+        assertEquals("id,name,price,quantity,supplier,phone", csv.get(0));
+        assertTrue(csv.get(1).endsWith(",\"Atlas, \"\"2nd\"\" edition\",4.00,0,Pearson,360-220-8090"));
+        assertTrue(csv.get(rows.length).contains(",Book 2499,4.00,2499,"));
+
+        AssetFileDescriptor json = resolver.openTypedAssetFileDescriptor(InventoryEntry.EXPORT_URI,
+                InventoryEntry.MIME_TYPE_JSON, null);
+        List<String> objects = readLines(json.createInputStream());
+        assertEquals(rows.length + 2, objects.size());
+        assertEquals("[", objects.get(0));
+        assertTrue(objects.get(1).contains("\"name\":\"Atlas, \\\"2nd\\\" edition\",\"price\":4.00,"));
+        assertEquals("]", objects.get(rows.length + 1));
+
+        assertArrayEquals(new String[] { InventoryEntry.MIME_TYPE_JSON },
+                resolver.getStreamTypes(InventoryEntry.EXPORT_URI, "application/*"));
+
+        // The export is named after the type it is read as, other columns are left out
+        Cursor cursor = resolver.query(InventoryEntry.EXPORT_URI, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("inventory.csv", cursor.getString(cursor.getColumnIndexOrThrow(OpenableColumns.DISPLAY_NAME)));
+        } finally {
+            cursor.close();
+        }
+        Uri jsonUri = InventoryEntry.buildExportUri(InventoryEntry.MIME_TYPE_JSON);
+        assertEquals(InventoryEntry.MIME_TYPE_JSON, resolver.getType(jsonUri));
+        cursor = resolver.query(jsonUri, new String[] { OpenableColumns.DISPLAY_NAME, "_data" }, null, null, null);
+        try {
+            assertArrayEquals(new String[] { OpenableColumns.DISPLAY_NAME }, cursor.getColumnNames());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("inventory.json", cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        assertEquals("[", readLines(resolver.openInputStream(jsonUri)).get(0));
+
+        // A renamed supplier is exported under its new name
+        ContentValues rename = new ContentValues();
+        rename.put(SupplierEntry.COLUMN_NAME, "Pearson, Education");
+        resolver.update(ContentUris.withAppendedId(SupplierEntry.CONTENT_URI, InventoryEntry.SUPPLIER_PEARSON),
+                rename, null, null);
+        csv = readLines(resolver.openInputStream(InventoryEntry.EXPORT_URI));
+        assertTrue(csv.get(1).endsWith(",4.00,0,\"Pearson, Education\",360-220-8090"));
+    }
+
+    @Test
+    public void summary_sumsStockOfEachSupplier() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ContentValues other = newProduct("Java", 2);
+        other.put(InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.SUPPLIER_AMERICAN_BOOK);
+        Uri atlasUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 5));
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Poetry", 1));
+        Uri javaUri = resolver.insert(InventoryEntry.CONTENT_URI, other);
+        resolver.update(InventoryEntry.buildSellUri(ContentUris.parseId(atlasUri)), null, null, null);
+        resolver.delete(javaUri, null, null);
+
+        Cursor cursor = resolver.query(SummaryEntry.CONTENT_URI, SummaryEntry.COLUMNS, null, null, null);
+        try {
+            // American Book has no products left
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(InventoryEntry.SUPPLIER_PEARSON, cursor.getInt(0));
+            assertEquals(2, cursor.getInt(1));
+            assertEquals(5, cursor.getInt(2));
+            assertEquals(5 * 400, cursor.getLong(3));
+        } finally {
+            cursor.close();
+        }
+
+        // Nothing to repair
+        assertEquals(0, resolver.update(SummaryEntry.CONTENT_URI, new ContentValues(), null, null));
+    }
+
+    @Test
+    public void version_changesWithEveryWriteOfTheProducts() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        long initial = readVersion(resolver);
+        Uri uri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 5));
+        long inserted = readVersion(resolver);
+        assertNotEquals(initial, inserted);
+
+        resolver.update(InventoryEntry.buildSellUri(ContentUris.parseId(uri)), null, null, null);
+        long sold = readVersion(resolver);
+        assertNotEquals(inserted, sold);
+
+        // Reading the products leaves it as it is
+        countProducts(resolver);
+        assertEquals(sold, readVersion(resolver));
+
+        resolver.delete(uri, null, null);
+        assertNotEquals(sold, readVersion(resolver));
+    }
+
+    private static long readVersion(ContentResolver resolver) {
+        Cursor cursor = resolver.query(VersionEntry.CONTENT_URI,
+                new String[] { VersionEntry.COLUMN_VERSION }, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void lowStock_listsProductsBelowTheirOwnThreshold() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ContentValues custom = newProduct("Java", 8);
+        custom.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, 10);
+        long atlas = ContentUris.parseId(resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 5)));
+        long java = ContentUris.parseId(resolver.insert(InventoryEntry.CONTENT_URI, custom));
+        resolver.update(InventoryEntry.buildSellUri(atlas), null, null, null);
+
+        // Java went low on insert, under its own threshold, then Atlas with its sale
+        Cursor cursor = resolver.query(LowStockEntry.CONTENT_URI, LowStockEntry.COLUMNS, null, null, null);
+        long javaEntry;
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            javaEntry = cursor.getLong(0);
+            assertEquals(java, cursor.getLong(1));
+            assertEquals(10, cursor.getInt(cursor.getColumnIndex(InventoryEntry.COLUMN_REORDER_THRESHOLD)));
+            assertTrue(cursor.moveToNext());
+            assertEquals(atlas, cursor.getLong(1));
+            assertEquals(4, cursor.getInt(cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_QUANTITY)));
+        } finally {
+            cursor.close();
+        }
+
+        // Only Atlas went low after Java
+        cursor = resolver.query(LowStockEntry.buildAfterUri(javaEntry), LowStockEntry.COLUMNS, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(atlas, cursor.getLong(1));
+        } finally {
+            cursor.close();
+        }
+
+        // Lowering the threshold of Java takes it off the list
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, 2);
+        resolver.update(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, java), values, null, null);
+        cursor = resolver.query(LowStockEntry.CONTENT_URI, LowStockEntry.COLUMNS, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+
+        // The catalog filter agrees with the list, and with CatalogMode
+        CatalogMode lowStock = CatalogMode.DEFAULT.withStock(InventoryContract.STOCK_LOW);
+        cursor = resolver.query(lowStock.buildPageUri(null, 50), Product.PROJECTION, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            Product product = new Product.Columns(cursor).read(cursor);
+            assertEquals(atlas, product.id);
+            assertTrue(lowStock.matches(product));
+        } finally {
+            cursor.close();
+        }
+        cursor = resolver.query(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, java), Product.PROJECTION,
+                null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertFalse(lowStock.matches(new Product.Columns(cursor).read(cursor)));
+        } finally {
+            cursor.close();
+        }
+
+        values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, -1);
+        try {
+            resolver.update(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, java), values, null, null);
+            fail("Expected the negative threshold to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // Thresholds are validated like quantities
+        }
+    }
+
+    @Test
+    public void suppliers_phoneIsSharedByProductsOfSupplier() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri atlasUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 5));
+        ContentValues poetry = newProduct("Poetry", 1);
+        poetry.put(InventoryEntry.COLUMN_SUPPLIER_PHONE, "555-0100");
+        resolver.insert(InventoryEntry.CONTENT_URI, poetry);
+
+        // The phone of the last product written is the phone of every product of the supplier
+        String[] phone = { InventoryEntry.COLUMN_SUPPLIER_PHONE };
+        Cursor cursor = resolver.query(atlasUri, phone, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("555-0100", cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        // Also without a projection, as from the view of the products
+        cursor = resolver.query(atlasUri, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Atlas", cursor.getString(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRODUCT_NAME)));
+            assertEquals("555-0100",
+                    cursor.getString(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_SUPPLIER_PHONE)));
+        } finally {
+            cursor.close();
+        }
+        Uri pearsonUri = ContentUris.withAppendedId(SupplierEntry.CONTENT_URI, InventoryEntry.SUPPLIER_PEARSON);
+        cursor = resolver.query(pearsonUri, SupplierEntry.COLUMNS, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Pearson", cursor.getString(1));
+            assertEquals("555-0100", cursor.getString(2));
+        } finally {
+            cursor.close();
+        }
+
+        // Products need a supplier that exists
+        ContentValues unknown = newProduct("Lost", 1);
+        unknown.put(InventoryEntry.COLUMN_SUPPLIER_NAME, 99);
+        try {
+            resolver.insert(InventoryEntry.CONTENT_URI, unknown);
+            fail("Inserted a product of an unknown supplier");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // A new supplier can be used right away, and only deleted without products
+        ContentValues supplier = new ContentValues();
+        supplier.put(SupplierEntry.COLUMN_NAME, "Penguin");
+        Uri penguinUri = resolver.insert(SupplierEntry.CONTENT_URI, supplier);
+        assertNotNull(penguinUri);
+        assertNull(resolver.insert(SupplierEntry.CONTENT_URI, supplier));
+        unknown.put(InventoryEntry.COLUMN_SUPPLIER_NAME, ContentUris.parseId(penguinUri));
+        Uri lostUri = resolver.insert(InventoryEntry.CONTENT_URI, unknown);
+        assertEquals(0, resolver.delete(penguinUri, null, null));
+        resolver.delete(lostUri, null, null);
+        assertEquals(1, resolver.delete(penguinUri, null, null));
+    }
+
+    /**
+     * Return the lines of the UTF-8 text in the stream, and close it.
+     */
+    private static List<String> readLines(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Return the count of the diagnostics row with the given name, or -1 if there is none.
+     */
+    private static long queryDiagnostic(ContentResolver resolver, String name) {
+        Cursor cursor = resolver.query(DiagnosticsEntry.CONTENT_URI,
+                new String[] { DiagnosticsEntry.COLUMN_NAME, DiagnosticsEntry.COLUMN_COUNT },
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                if (name.equals(cursor.getString(0))) {
+                    return cursor.getLong(1);
+                }
+            }
+            return -1;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.os.SystemClock;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.newProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Throughput benchmark of sales made through an {@link InventoryWriter}, group committed, against
+ * the same sales committed one by one. Every sale is recorded in the ledger either way. Results
+ * are written to Logcat under the {@link #LOG_TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryWriterBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = InventoryWriterBenchmark.class.getSimpleName();
+
+    /** Number of products sold from */
+    private static final int SOLD_PRODUCTS = 20;
+
+    /** Number of sales made by each run, spread over the sold products */
+    private static final int SALES = 5000;
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    @Test
+    public void sales_perSaleCommitVersusGroupCommit() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        long[] ids = new long[SOLD_PRODUCTS];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ContentUris.parseId(resolver.insert(InventoryEntry.CONTENT_URI,
+                    newProduct("Bestseller " + i, 2 * SALES)));
+        }
+
+        // One sale at a time, each committed on its own, like the Sale button used to
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < SALES; i++) {
+            resolver.update(InventoryEntry.buildSellUri(ids[i % SOLD_PRODUCTS]), null, null, null);
+        }
+        long perSaleMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        // The same sales made as fast as they come, group committed, until the last one is
+        // delivered
+        InventoryWriter writer = new InventoryWriter(resolver, Executors.newSingleThreadExecutor());
+        final CountDownLatch done = new CountDownLatch(SALES);
+        InventoryWriter.Callback<Integer> callback = new InventoryWriter.Callback<Integer>() {
+            @Override
+            public void onWriteComplete(Integer quantity) {
+                done.countDown();
+            }
+        };
+        start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < SALES; i++) {
+            writer.sell(ids[i % SOLD_PRODUCTS], callback);
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long groupMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        Log.i(LOG_TAG, "per sale: " + SALES * 1000L / perSaleMillis + " sales/s, " + SALES + " commits");
+        Log.i(LOG_TAG, "group: " + SALES * 1000L / groupMillis + " sales/s, "
+                + writer.getStatementCount() + " commits");
+        assertTrue("sales made together should be committed together",
+                writer.getStatementCount() < SALES);
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.StrictMode;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.newProduct;
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.queryQuantity;
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link InventoryWriter}, run against an isolated copy of the database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryWriterTest {
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    /**
+     * Executor holding the writes until {@link #runAll()} is called, so that writes can be
+     * queued up before any of them starts.
+     */
+    private static class ManualExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        synchronized void runAll() {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            tasks.clear();
+        }
+    }
+
+    /**
+     * Collects the results delivered to callbacks, in the order they were delivered.
+     */
+    private static class Results<T> implements InventoryWriter.Callback<T> {
+
+        final List<T> results = Collections.synchronizedList(new ArrayList<T>());
+        final CountDownLatch done;
+
+        Results(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onWriteComplete(T result) {
+            results.add(result);
+            done.countDown();
+        }
+
+        List<T> await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            return results;
+        }
+    }
+
+    /**
+     * Run on the main thread with StrictMode crashing the app on any disk access there.
+     */
+    private static void runOnMainThreadStrictly(final Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.ThreadPolicy policy = StrictMode.getThreadPolicy();
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .penaltyDeath()
+                        .build());
+                try {
+                    runnable.run();
+                } finally {
+                    StrictMode.setThreadPolicy(policy);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void writes_neverTouchTheDiskOnTheMainThread() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        final InventoryWriter writer = new InventoryWriter(resolver, Executors.newSingleThreadExecutor());
+        final Results<Uri> inserted = new Results<>(1);
+        final Results<Integer> sold = new Results<>(3);
+
+        // Queue the writes from the main thread. The provider runs in the same process, so a
+        // write made on the main thread would be caught by StrictMode.
+        runOnMainThreadStrictly(new Runnable() {
+            @Override
+            public void run() {
+                writer.insert(newProduct("Book", 5), inserted);
+            }
+        });
+        final Uri productUri = inserted.await().get(0);
+        assertNotNull(productUri);
+
+        runOnMainThreadStrictly(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 3; i++) {
+                    writer.sell(ContentUris.parseId(productUri), sold);
+                }
+            }
+        });
+        assertEquals(Arrays.asList(4, 3, 2), sold.await());
+        assertEquals(2, queryQuantity(resolver, productUri));
+    }
+
+    @Test
+    public void sell_groupCommitsHeldSales() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri first = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("First", 10));
+        Uri second = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Second", 10));
+        ManualExecutor executor = new ManualExecutor();
+        InventoryWriter writer = new InventoryWriter(resolver, executor, InventoryWriter.MAX_BATCH_SALES,
+                TimeUnit.MINUTES.toMillis(1));
+
+        // Five sales of the first product, one of the second, then an update of the first
+        // splitting the sales of the first before and after it
+        Results<Integer> firstSales = new Results<>(7);
+        Results<Integer> secondSales = new Results<>(1);
+        Results<Integer> updated = new Results<>(1);
+        for (int i = 0; i < 5; i++) {
+            writer.sell(ContentUris.parseId(first), firstSales);
+        }
+        writer.sell(ContentUris.parseId(second), secondSales);
+        assertEquals(0, executor.tasks.size());
+        writer.update(first, newProduct("First", 20), updated);
+        writer.sell(ContentUris.parseId(first), firstSales);
+        writer.sell(ContentUris.parseId(first), firstSales);
+        assertEquals(2, executor.tasks.size());
+        writer.flush();
+        assertEquals(3, executor.tasks.size());
+        executor.runAll();
+
+        assertEquals(Arrays.asList(9, 8, 7, 6, 5, 19, 18), firstSales.await());
+        assertEquals(Arrays.asList(9), secondSales.await());
+        assertEquals(Arrays.asList(1), updated.await());
+        assertEquals(3, writer.getStatementCount());
+        assertEquals(18, queryQuantity(resolver, first));
+    }
+
+    @Test
+    public void sell_writesFullBatchWithoutWaiting() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Book", 10));
+        ManualExecutor executor = new ManualExecutor();
+        InventoryWriter writer = new InventoryWriter(resolver, executor, 3, TimeUnit.MINUTES.toMillis(1));
+
+        Results<Integer> sold = new Results<>(4);
+        for (int i = 0; i < 4; i++) {
+            writer.sell(ContentUris.parseId(productUri), sold);
+        }
+        assertEquals(1, executor.tasks.size());
+        writer.flush();
+        executor.runAll();
+
+        assertEquals(Arrays.asList(9, 8, 7, 6), sold.await());
+        assertEquals(2, writer.getStatementCount());
+        assertEquals(6, queryQuantity(resolver, productUri));
+    }
+
+    @Test
+    public void sell_writesHeldSalesAfterTheDelay() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Book", 10));
+        InventoryWriter writer = new InventoryWriter(resolver, Executors.newSingleThreadExecutor());
+
+        // Never flushed, the sales are written once the first has waited long enough
+        Results<Integer> sold = new Results<>(2);
+        writer.sell(ContentUris.parseId(productUri), sold);
+        writer.sell(ContentUris.parseId(productUri), sold);
+
+        assertEquals(Arrays.asList(9, 8), sold.await());
+        assertEquals(1, writer.getStatementCount());
+    }
+
+    @Test
+    public void sell_batchedSalesBeyondTheStockSellWhatIsLeft() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Book", 2));
+        ManualExecutor executor = new ManualExecutor();
+        InventoryWriter writer = new InventoryWriter(resolver, executor);
+
+        Results<Integer> sold = new Results<>(4);
+        for (int i = 0; i < 4; i++) {
+            writer.sell(ContentUris.parseId(productUri), sold);
+        }
+        writer.flush();
+        executor.runAll();
+
+        assertEquals(Arrays.asList(1, 0, InventoryEntry.SELL_INSUFFICIENT_STOCK,
+                InventoryEntry.SELL_INSUFFICIENT_STOCK), sold.await());
+        assertEquals(0, queryQuantity(resolver, productUri));
+    }
+
+    @Test
+    public void awaitWrites_returnsOnceHeldSalesAreWritten() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri productUri = resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Book", 10));
+        // Held far longer than the test waits
+        InventoryWriter writer = new InventoryWriter(resolver, Executors.newSingleThreadExecutor(),
+                InventoryWriter.MAX_BATCH_SALES, TimeUnit.HOURS.toMillis(1));
+
+        writer.sell(ContentUris.parseId(productUri), null);
+        writer.sell(ContentUris.parseId(productUri), null);
+        assertTrue(writer.hasPendingWrites());
+
+        writer.awaitWrites();
+        assertFalse(writer.hasPendingWrites());
+        assertEquals(8, queryQuantity(resolver, productUri));
+    }
+
+    @Test
+    public void invalidWrites_reportFailure() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        ManualExecutor executor = new ManualExecutor();
+        InventoryWriter writer = new InventoryWriter(resolver, executor);
+
+        // A product needs a name
+        Results<Uri> inserted = new Results<>(1);
+        writer.insert(new ContentValues(), inserted);
+        Results<Integer> deleted = new Results<>(1);
+        writer.delete(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, 12345), deleted);
+        executor.runAll();
+
+        assertNull(inserted.await().get(0));
+        assertEquals(Integer.valueOf(0), deleted.await().get(0));
+    }
+}
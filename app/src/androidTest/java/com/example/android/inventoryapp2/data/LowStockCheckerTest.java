@@ -0,0 +1,89 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static com.example.android.inventoryapp2.data.InventoryProviderTest.newProduct;
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link LowStockChecker}, run against an isolated copy of the database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LowStockCheckerTest {
+
+    /** Name of the preferences holding the last entry reported by the tests */
+    private static final String TEST_PREFERENCES = "low_stock_test";
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    private SharedPreferences mPreferences;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        mPreferences = context.getSharedPreferences(TEST_PREFERENCES, Context.MODE_PRIVATE);
+        mPreferences.edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() {
+        mPreferences.edit().clear().commit();
+    }
+
+    private static void setQuantity(ContentResolver resolver, long id, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, quantity);
+        resolver.update(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id), values, null, null);
+    }
+
+    @Test
+    public void check_onlyReturnsProductsThatWentLowSinceTheLastAcknowledgedCheck() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        LowStockChecker checker = new LowStockChecker(resolver, mPreferences);
+        assertNull(checker.check());
+
+        resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Atlas", 2));
+        long poetry = ContentUris.parseId(resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Poetry", 20)));
+        long java = ContentUris.parseId(resolver.insert(InventoryEntry.CONTENT_URI, newProduct("Java", 20)));
+        setQuantity(resolver, java, 1);
+
+        LowStockChecker.Result result = checker.check();
+        assertEquals(Arrays.asList("Atlas", "Java"), result.names);
+        assertEquals(Arrays.asList(2, 1), result.quantities);
+        assertEquals(2, result.lowProducts);
+
+        // Until acknowledged, the same products are returned
+        assertEquals(result.names, checker.check().names);
+        checker.acknowledge(result);
+        assertNull(checker.check());
+
+        // Selling more of a product already low is not news, going low again after a restock is
+        setQuantity(resolver, java, 0);
+        setQuantity(resolver, poetry, 3);
+        setQuantity(resolver, poetry, 30);
+        assertNull(checker.check());
+        setQuantity(resolver, poetry, 4);
+        result = checker.check();
+        assertEquals(Arrays.asList("Poetry"), result.names);
+        assertEquals(3, result.lowProducts);
+    }
+}
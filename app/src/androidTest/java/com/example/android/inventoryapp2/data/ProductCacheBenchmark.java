@@ -0,0 +1,155 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of single product lookups through a {@link ProductCache} of different sizes, the
+ * way {@link InventoryProvider} looks products up by ID. Results are written to Logcat under the
+ * {@link #LOG_TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductCacheBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = ProductCacheBenchmark.class.getSimpleName();
+
+    /** Name of the database file used by the benchmark */
+    private static final String TEST_DATABASE = "inventory_cache_benchmark.db";
+
+    /** Number of products in the catalog */
+    private static final int CATALOG_SIZE = 10000;
+
+    /** Number of fast-moving products, which get most of the lookups */
+    private static final int HOT_SET_SIZE = 300;
+
+    /** Share of the lookups going to the hot set, in percent */
+    private static final int HOT_SET_PERCENT = 90;
+
+    /** Number of lookups per cache size */
+    private static final int LOOKUPS = 20000;
+
+    /** Cache sizes measured, 0 meaning no cache */
+    private static final int[] CACHE_SIZES = { 0, 100, 300, 500, 2000 };
+
+    private Context mContext;
+
+    private InventoryDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DATABASE);
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+        mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void lookups_atDifferentCacheSizes() throws Exception {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        fillCatalog(db);
+
+        // The same skewed sequence of IDs for every cache size
+        Random random = new Random(42);
+        long[] ids = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            ids[i] = 1 + (random.nextInt(100) < HOT_SET_PERCENT
+                    ? random.nextInt(HOT_SET_SIZE) : random.nextInt(CATALOG_SIZE));
+        }
+
+        long noCacheMedian = 0;
+        long largestCacheMedian = 0;
+        for (int size : CACHE_SIZES) {
+            ProductCache cache = size > 0 ? new ProductCache(size) : null;
+            long[] latencies = new long[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                long start = System.nanoTime();
+                Product product = lookUp(db, cache, ids[i]);
+                latencies[i] = System.nanoTime() - start;
+                assertEquals(ids[i], product.id);
+            }
+            Arrays.sort(latencies);
+            long median = latencies[LOOKUPS / 2];
+            if (cache == null) {
+                noCacheMedian = median;
+                Log.i(LOG_TAG, "no cache: p50 " + median / 1000 + " us, p99 "
+                        + latencies[LOOKUPS * 99 / 100] / 1000 + " us");
+            } else {
+                largestCacheMedian = median;
+                Log.i(LOG_TAG, "cache of " + size + ": p50 " + median / 1000 + " us, p99 "
+                        + latencies[LOOKUPS * 99 / 100] / 1000 + " us, "
+                        + cache.getHitCount() * 100 / LOOKUPS + "% hits, "
+                        + cache.getEvictionCount() + " evictions");
+            }
+        }
+        assertTrue("a cache holding the hot set should beat the database",
+                largestCacheMedian < noCacheMedian);
+    }
+
+    /**
+     * Look the product up like {@link InventoryProvider} does: from the cache if it is there,
+     * otherwise from the database, caching it.
+     */
+    private static Product lookUp(SQLiteDatabase db, ProductCache cache, long id) {
+        Product product = cache != null ? cache.get(id) : null;
+        if (product != null) {
+            return product;
+        }
+        long generation = cache != null ? cache.getGeneration() : 0;
+        Cursor cursor = db.query(InventoryEntry.TABLE_NAME, Product.PROJECTION,
+                InventoryEntry._ID + "=?", new String[] { String.valueOf(id) }, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            product = new Product.Columns(cursor).read(cursor);
+        } finally {
+            cursor.close();
+        }
+        if (cache != null) {
+            cache.putIfUnchanged(product, generation);
+        }
+        return product;
+    }
+
+    /**
+     * Insert {@link #CATALOG_SIZE} products in one transaction.
+     */
+    private static void fillCatalog(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < CATALOG_SIZE; i++) {
+                values.put(InventoryEntry.COLUMN_PRODUCT_NAME, "Book " + i);
+                values.put(InventoryEntry.COLUMN_PRODUCT_PRICE, 400);
+                values.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, 100);
+                values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.SUPPLIER_PEARSON);
+                values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE, "360-220-8090");
+                db.insert(InventoryEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
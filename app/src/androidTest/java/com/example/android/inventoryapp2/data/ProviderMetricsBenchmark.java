@@ -0,0 +1,101 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.rule.provider.ProviderTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.DiagnosticsEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * Benchmark of the overhead of {@link ProviderMetrics} on the cheapest operation of the
+ * provider, a query of a cached product, with metrics disabled and enabled. Results are written
+ * to Logcat under the {@link #LOG_TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProviderMetricsBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = ProviderMetricsBenchmark.class.getSimpleName();
+
+    /** Number of products queried in turn */
+    private static final int PRODUCTS = 100;
+
+    /** Number of queries per run */
+    private static final int QUERIES = 5000;
+
+    /** Number of runs, alternating disabled and enabled metrics */
+    private static final int RUNS = 6;
+
+    @Rule
+    public ProviderTestRule mProviderRule =
+            new ProviderTestRule.Builder(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY).build();
+
+    @Test
+    public void queryById_disabledVersusEnabled() throws Exception {
+        ContentResolver resolver = mProviderRule.getResolver();
+        Uri[] uris = new Uri[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            uris[i] = resolver.insert(InventoryEntry.CONTENT_URI,
+                    InventoryProviderTest.newProduct("Book " + i, 10));
+        }
+
+        // Warm up the cache and the code paths, then alternate so drift affects both alike
+        queryAll(resolver, uris);
+        long[] disabled = new long[RUNS / 2];
+        long[] enabled = new long[RUNS / 2];
+        for (int run = 0; run < RUNS; run++) {
+            boolean enable = run % 2 == 1;
+            setEnabled(resolver, enable);
+            long nanos = queryAll(resolver, uris);
+            if (enable) {
+                enabled[run / 2] = nanos;
+            } else {
+                disabled[run / 2] = nanos;
+            }
+        }
+        setEnabled(resolver, false);
+
+        Arrays.sort(disabled);
+        Arrays.sort(enabled);
+        long disabledNanos = disabled[disabled.length / 2] / QUERIES;
+        long enabledNanos = enabled[enabled.length / 2] / QUERIES;
+        Log.i(LOG_TAG, "query by ID: " + disabledNanos + " ns/op disabled, " + enabledNanos
+                + " ns/op enabled, overhead " + (enabledNanos - disabledNanos) + " ns/op");
+    }
+
+    /**
+     * Query the products in turn {@link #QUERIES} times, returning the time taken.
+     */
+    private static long queryAll(ContentResolver resolver, Uri[] uris) {
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            Cursor cursor = resolver.query(uris[i % uris.length], null, null, null, null);
+            try {
+                if (!cursor.moveToFirst() || cursor.getLong(0) != ContentUris.parseId(uris[i % uris.length])) {
+                    throw new AssertionError("Missing product " + uris[i % uris.length]);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void setEnabled(ContentResolver resolver, boolean enabled) {
+        ContentValues values = new ContentValues();
+        values.put(DiagnosticsEntry.COLUMN_ENABLED, enabled);
+        resolver.update(DiagnosticsEntry.CONTENT_URI, values, null, null);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of the single product writes of {@link InventoryProvider}, run through
+ * {@link SQLiteDatabase#insert}, {@link SQLiteDatabase#update} and {@link SQLiteDatabase#delete}
+ * with a selection on the ID, against pooled statements from a {@link StatementPool} bound
+ * straight from the content values. Results are written to Logcat under the {@link #LOG_TAG} tag.
+ *
+ * The writes of a round share one transaction, so that the time of the commits doesn't hide the
+ * time spent on the statements.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StatementPoolBenchmark {
+
+    /** Tag for the benchmark results */
+    private static final String LOG_TAG = StatementPoolBenchmark.class.getSimpleName();
+
+    /** Name of the database file used by the benchmark */
+    private static final String TEST_DATABASE = "inventory_statement_benchmark.db";
+
+    /** Number of writes of each kind per round, without and with the pool */
+    private static final int ROUND_WRITES = 2000;
+
+    /** Number of rounds, the first one only warms up */
+    private static final int ROUNDS = 5;
+
+    private static final String SQL_INSERT = "INSERT INTO " + InventoryEntry.TABLE_NAME + " ("
+            + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_PRODUCT_PRICE + ", "
+            + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ") VALUES (?, ?, ?, ?)";
+
+    private static final String SQL_UPDATE = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_PRODUCT_NAME + " = ?, " + InventoryEntry.COLUMN_PRODUCT_PRICE + " = ?, "
+            + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " = ?, " + InventoryEntry.COLUMN_SUPPLIER_NAME + " = ? WHERE "
+            + InventoryEntry._ID + " = ?";
+
+    private static final String SQL_DELETE = "DELETE FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+            + InventoryEntry._ID + " = ?";
+
+    /** Kinds of writes measured */
+    private static final String[] WRITES = { "insert", "updateById", "deleteById" };
+
+    private Context mContext;
+
+    private InventoryDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DATABASE);
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+        mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void writes_databaseCallsVersusPooledStatements() throws Exception {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        StatementPool pool = new StatementPool();
+        ContentValues[] products = new ContentValues[ROUND_WRITES];
+        for (int i = 0; i < ROUND_WRITES; i++) {
+            products[i] = new ContentValues();
+            products[i].put(InventoryEntry.COLUMN_PRODUCT_NAME, "Book " + i);
+            products[i].put(InventoryEntry.COLUMN_PRODUCT_PRICE, 400 + i % 100);
+            products[i].put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, i % 50);
+            products[i].put(InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.SUPPLIER_PEARSON);
+        }
+
+        // Nanoseconds, allocations and allocated bytes of each write, without and with the pool
+        long[][] database = new long[WRITES.length][3];
+        long[][] pooled = new long[WRITES.length][3];
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean measured = round > 0;
+            for (int write = 0; write < WRITES.length; write++) {
+                measure(db, null, write, products, measured ? database[write] : new long[3]);
+                measure(db, pool, write, products, measured ? pooled[write] : new long[3]);
+            }
+        }
+
+        int operations = ROUND_WRITES * (ROUNDS - 1);
+        for (int write = 0; write < WRITES.length; write++) {
+            Log.i(LOG_TAG, WRITES[write] + ": database " + describe(database[write], operations)
+                    + "; pooled " + describe(pooled[write], operations));
+            assertTrue("pooled " + WRITES[write] + " should allocate less",
+                    pooled[write][1] < database[write][1]);
+        }
+    }
+
+    /**
+     * Run the given kind of write once for every product in one transaction, through the pool if
+     * there is one, and add its time and allocations to the given totals. Updates and deletes go
+     * to the products with the lowest IDs: the products inserted in the same round are deleted
+     * again, so every round starts from an empty catalog.
+     */
+    private static void measure(SQLiteDatabase db, StatementPool pool, int write, ContentValues[] products,
+                                long[] totals) {
+        long firstId = DatabaseUtils.longForQuery(db, "SELECT ifnull(min(" + InventoryEntry._ID + "), 0) FROM "
+                + InventoryEntry.TABLE_NAME, null);
+
+        db.beginTransaction();
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
+            long start = System.nanoTime();
+            for (int i = 0; i < products.length; i++) {
+                ContentValues values = products[i];
+                long id = firstId + i;
+                if (pool == null) {
+                    writeThroughDatabase(db, write, values, id);
+                } else {
+                    writeThroughPool(db, pool, write, values, id);
+                }
+            }
+            totals[0] += System.nanoTime() - start;
+            totals[1] += Debug.getThreadAllocCount();
+            totals[2] += Debug.getThreadAllocSize();
+        } finally {
+            Debug.stopAllocCounting();
+            db.setTransactionSuccessful();
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * The writes of the provider before the statement pool.
+     */
+    private static void writeThroughDatabase(SQLiteDatabase db, int write, ContentValues values, long id) {
+        switch (write) {
+            case 0:
+                assertTrue(db.insert(InventoryEntry.TABLE_NAME, null, values) != -1);
+                break;
+            case 1:
+                assertEquals(1, db.update(InventoryEntry.TABLE_NAME, values, InventoryEntry._ID + "=?",
+                        new String[] { String.valueOf(id) }));
+                break;
+            default:
+                assertEquals(1, db.delete(InventoryEntry.TABLE_NAME, InventoryEntry._ID + "=?",
+                        new String[] { String.valueOf(id) }));
+        }
+    }
+
+    /**
+     * The same writes with pooled statements, as the provider makes them now.
+     */
+    private static void writeThroughPool(SQLiteDatabase db, StatementPool pool, int write, ContentValues values,
+                                         long id) {
+        String sql = write == 0 ? SQL_INSERT : write == 1 ? SQL_UPDATE : SQL_DELETE;
+        SQLiteStatement statement = pool.acquire(db, sql);
+        try {
+            if (write == 2) {
+                statement.bindLong(1, id);
+                assertEquals(1, statement.executeUpdateDelete());
+                return;
+            }
+            statement.bindString(1, values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME));
+            statement.bindLong(2, values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_PRICE));
+            statement.bindLong(3, values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY));
+            statement.bindLong(4, values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME));
+            if (write == 0) {
+                assertTrue(statement.executeInsert() != -1);
+            } else {
+                statement.bindLong(5, id);
+                assertEquals(1, statement.executeUpdateDelete());
+            }
+        } finally {
+            pool.release(db, sql, statement);
+        }
+    }
+
+    private static String describe(long[] totals, int operations) {
+        return (operations * 1000000000L / Math.max(1, totals[0])) + " ops/s, "
+                + totals[1] / operations + " allocations and " + totals[2] / operations + " bytes per op";
+    }
+}
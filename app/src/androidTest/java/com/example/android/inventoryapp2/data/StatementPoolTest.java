@@ -0,0 +1,91 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link StatementPool}, run against a database of their own.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StatementPoolTest {
+
+    /** Name of the database file used by the tests */
+    private static final String TEST_DATABASE = "inventory_statement_pool_test.db";
+
+    private static final String SQL_COUNT = "SELECT count(*) FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry._ID + " > ?";
+
+    private Context mContext;
+
+    private InventoryDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(TEST_DATABASE);
+        mDbHelper = new InventoryDbHelper(mContext, TEST_DATABASE);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+        mContext.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void acquire_reusesReleasedStatementsWithoutTheirArguments() {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO " + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME
+                + ") VALUES ('Atlas', 3, " + InventoryEntry.SUPPLIER_PEARSON + ")");
+        StatementPool pool = new StatementPool();
+
+        SQLiteStatement first = pool.acquire(db, SQL_COUNT);
+        SQLiteStatement second = pool.acquire(db, SQL_COUNT);
+        assertNotSame(first, second);
+        assertEquals(2, pool.getCompileCount());
+
+        second.bindLong(1, 0);
+        assertEquals(1, second.simpleQueryForLong());
+        pool.release(db, SQL_COUNT, first);
+        pool.release(db, SQL_COUNT, second);
+
+        // The statement released last is taken first, with its argument cleared: NULL is bound
+        // to the "?", which no ID is greater than
+        SQLiteStatement reused = pool.acquire(db, SQL_COUNT);
+        assertSame(second, reused);
+        assertEquals(0, reused.simpleQueryForLong());
+        assertSame(first, pool.acquire(db, SQL_COUNT));
+        assertEquals(2, pool.getReuseCount());
+        assertEquals(2, pool.getCompileCount());
+    }
+
+    @Test
+    public void acquire_dropsStatementsOfAnotherDatabase() {
+        StatementPool pool = new StatementPool();
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        SQLiteStatement statement = pool.acquire(db, SQL_COUNT);
+        pool.release(db, SQL_COUNT, statement);
+
+        mDbHelper.close();
+        SQLiteDatabase reopened = mDbHelper.getWritableDatabase();
+        SQLiteStatement compiled = pool.acquire(reopened, SQL_COUNT);
+        assertNotSame(statement, compiled);
+        compiled.bindLong(1, 0);
+        assertEquals(0, compiled.simpleQueryForLong());
+        pool.release(reopened, SQL_COUNT, compiled);
+        assertEquals(0, pool.getReuseCount());
+    }
+}
@@ -1,41 +1,149 @@
 package com.example.android.inventoryapp2;
 
 import android.app.LoaderManager;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.CursorLoader;
 import android.content.Intent;
 import android.content.Loader;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.net.Uri;
+import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 import android.support.design.widget.FloatingActionButton;
 import android.os.Bundle;
-import android.util.Log;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.text.TextUtils;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.SubMenu;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
+import android.widget.TextView;
+import com.example.android.inventoryapp2.data.CatalogMode;
+import com.example.android.inventoryapp2.data.InventoryContract;
 import com.example.android.inventoryapp2.data.InventoryDbHelper;
 import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SummaryEntry;
+import com.example.android.inventoryapp2.data.InventoryWriter;
+import com.example.android.inventoryapp2.data.StartupTrace;
+import com.example.android.inventoryapp2.data.SupplierCache;
 
 /**
  * Displays list of products that were entered and stored in the app.
  */
 public class CatalogActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+        LoaderManager.LoaderCallbacks<InventoryLoader.Result> {
 
     /** Identifier for the inventory data loader */
     private static final int INVENTORY_LOADER = 0;
 
-    /** Adapter for the ListView */
-    InventoryCursorAdapter mCursorAdapter;
+    /** Number of products loaded per page */
+    private static final int PAGE_SIZE = 50;
+
+    /** Number of rows left below the visible ones when the next page starts loading */
+    private static final int PREFETCH_DISTANCE = 10;
+
+    /** Identifier for the search results loader */
+    private static final int SEARCH_LOADER = 1;
+
+    /** Loader argument holding the text to search for */
+    private static final String ARG_SEARCH = "search";
+
+    /** Time the search text must stay unchanged before it is searched for */
+    private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+
+    /** Identifier for the summary loader */
+    private static final int SUMMARY_LOADER = 2;
+
+    /** Request code of the chooser of the catalog file to import */
+    private static final int REQUEST_IMPORT_CATALOG = 1;
+
+    /** Keys of the sort and filters of the catalog in the saved instance state */
+    private static final String STATE_SORT = "sort";
+    private static final String STATE_SUPPLIER = "supplier";
+    private static final String STATE_STOCK = "stock";
+
+    /**
+     * ID of the menu item filtering by the supplier with ID 0. The items of the other suppliers
+     * follow, by ID.
+     */
+    private static final int MENU_ID_SUPPLIER = 1000;
+
+    /** Handler used to delay searches until the user stops typing */
+    private final Handler mHandler = new Handler();
+
+    /** Search text waiting for {@link #mSearchRunnable} to run */
+    private String mPendingSearch;
+
+    /** Runs the search for {@link #mPendingSearch} */
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startSearch(mPendingSearch);
+        }
+    };
+
+    /** Adapter for the RecyclerView */
+    InventoryAdapter mAdapter;
+
+    /** Shown when there are no products */
+    private View mEmptyView;
+
+    /** Header showing the value of the stock and the units of each supplier */
+    private TextView mSummaryTextView;
+
+    /** Loads the summary of the stock, reloaded whenever a product changes */
+    private final LoaderManager.LoaderCallbacks<Cursor> mSummaryCallbacks =
+            new LoaderManager.LoaderCallbacks<Cursor>() {
+                @Override
+                public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+                    return new CursorLoader(CatalogActivity.this, SummaryEntry.CONTENT_URI,
+                            SummaryEntry.COLUMNS, null, null, null);
+                }
+
+                @Override
+                public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+                    showSummary(cursor);
+                }
+
+                @Override
+                public void onLoaderReset(Loader<Cursor> loader) {
+                    showSummary(null);
+                }
+            };
+
+    /** The last catalog products loaded, or null if they are still loading */
+    private InventoryLoader.Result mCatalog;
+
+    /** Whether search results are shown instead of the catalog */
+    private boolean mSearching;
+
+    /** How the catalog is sorted and filtered */
+    private CatalogMode mMode = CatalogMode.DEFAULT;
+
+    /** Lays out the rows of the list */
+    private LinearLayoutManager mLayoutManager;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.mark(StartupTrace.ACTIVITY_CREATED);
+
+        // Kick off the loader, which is retained across configuration changes along with the
+        // mode of the catalog. When the activity is created again after its process died, the
+        // loader is created with the mode the activity had. Unless it already loaded products,
+        // it reads the first page, opening the database if needed, while the layout is inflated.
+        if (savedInstanceState != null) {
+            mMode = new CatalogMode(savedInstanceState.getString(STATE_SORT),
+                    savedInstanceState.getInt(STATE_SUPPLIER), savedInstanceState.getString(STATE_STOCK));
+        }
+        InventoryLoader loader = (InventoryLoader) getLoaderManager().initLoader(INVENTORY_LOADER, null, this);
+        mMode = loader.getMode();
+        loader.prefetch();
+
         setContentView(R.layout.activity_catalog);
 
         // Setup FAB to open EditorActivity
@@ -48,43 +156,183 @@ public class CatalogActivity extends AppCompatActivity implements
             }
         });
 
-        // Find the ListView which will be populated with the inventory data
-        ListView inventoryListView = (ListView) findViewById(R.id.list);
+        // Find the RecyclerView which will be populated with the inventory data
+        RecyclerView inventoryRecyclerView = (RecyclerView) findViewById(R.id.list);
+        mLayoutManager = new LinearLayoutManager(this);
+        inventoryRecyclerView.setLayoutManager(mLayoutManager);
+        inventoryRecyclerView.addItemDecoration(
+                new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+
+        // Find the empty view, so that it only shows when the list has 0 items.
+        mEmptyView = findViewById(R.id.empty_view);
 
-        // Find and set empty view on the ListView, so that it only shows when the list has 0 items.
-        View emptyView = findViewById(R.id.empty_view);
-        inventoryListView.setEmptyView(emptyView);
+        mSummaryTextView = (TextView) findViewById(R.id.summary_text);
 
-        // Setup an Adapter to create a list item for each row of inventory data in the Cursor.
-        // There is no inventory data yet (until the loader finishes) so pass in null for the Cursor.
-        mCursorAdapter = new InventoryCursorAdapter(this, null);
-        inventoryListView.setAdapter(mCursorAdapter);
+        // Setup an Adapter to create a list item for each product. There are no products yet
+        // (until the loader finishes). Clicks on the items are handled by the adapter.
+        mAdapter = new InventoryAdapter(this);
+        inventoryRecyclerView.setAdapter(mAdapter);
 
-        // Setup the item click listener
-        inventoryListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Load the next page before the user scrolls to the end of the loaded ones
+        inventoryRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
-                // Create new intent to go to {@link EditorActivity}
-                Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (!mSearching && mLayoutManager.findLastVisibleItemPosition() + PREFETCH_DISTANCE
+                        >= mAdapter.getItemCount()) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        if (!StartupTrace.isMarked(StartupTrace.CATALOG_DRAWN)) {
+            traceFirstFrames(inventoryRecyclerView);
+        }
 
-                // Form the content URI that represents the specific product that was clicked on,
-                // by appending the "id" (passed as input to this method) onto the
-                // {@link InventoryEntry#CONTENT_URI}.
-                // For example, the URI would be "content://com.example.android.inventory/inventory/2"
-                // if the inventory with ID 2 was clicked on.
-                Uri currentInventoryUri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id);
+        getLoaderManager().initLoader(SUMMARY_LOADER, null, mSummaryCallbacks);
 
-                // Set the URI on the data field of the intent
-                intent.setData(currentInventoryUri);
+        // The search box starts out empty, so drop the results of a previous search
+        getLoaderManager().destroyLoader(SEARCH_LOADER);
 
-                // Launch the {@link EditorActivity} to display the data for the current product.
-                startActivity(intent);
+        // Watch for products going low on stock while the app is closed
+        LowStockService.schedule(this);
+
+        // Keep the database fast while the device is idle and charging
+        MaintenanceService.schedule(this);
+    }
+
+    /**
+     * Mark the first frame of the list for the {@link StartupTrace}, and the first one showing
+     * the products of the catalog.
+     */
+    private void traceFirstFrames(final RecyclerView list) {
+        list.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                StartupTrace.mark(StartupTrace.FIRST_FRAME);
+                if (mCatalog != null) {
+                    StartupTrace.mark(StartupTrace.CATALOG_DRAWN);
+                    list.getViewTreeObserver().removeOnPreDrawListener(this);
+                }
+                return true;
             }
         });
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_SORT, mMode.sort);
+        outState.putInt(STATE_SUPPLIER, mMode.supplier);
+        outState.putString(STATE_STOCK, mMode.stock);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // The app can be killed once it is in the background, write the sales held right away
+        // and keep it running until they are
+        PendingWritesService.flush(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mHandler.removeCallbacks(mSearchRunnable);
+    }
+
+    /**
+     * Called whenever the search text changes. Wait until the user stops typing before
+     * searching, so there is one query per pause rather than one per keystroke.
+     */
+    private void onSearchTextChanged(String text) {
+        mHandler.removeCallbacks(mSearchRunnable);
+        if (TextUtils.isEmpty(text) || text.trim().isEmpty()) {
+            // Back to the catalog
+            mSearching = false;
+            getLoaderManager().destroyLoader(SEARCH_LOADER);
+            showProducts(mCatalog);
+        } else {
+            mPendingSearch = text;
+            mHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MILLIS);
+        }
+    }
+
+    /**
+     * Search for the given text. Restarting the loader cancels the query of the previous
+     * search if it is still running.
+     */
+    private void startSearch(String text) {
+        mSearching = true;
+        Bundle args = new Bundle();
+        args.putString(ARG_SEARCH, text);
+        getLoaderManager().restartLoader(SEARCH_LOADER, args, this);
+    }
+
+    /**
+     * Start loading the page after the last loaded one, unless it is already loading or the
+     * last page wasn't full, which means there is nothing left to load.
+     */
+    private void loadNextPage() {
+        Loader<InventoryLoader.Result> loader = getLoaderManager().getLoader(INVENTORY_LOADER);
+        if (loader != null) {
+            ((InventoryLoader) loader).loadMore();
+        }
+    }
+
+    /**
+     * Sort and filter the catalog by the given mode. The same loader loads the products in the
+     * new mode, and the products shown stay until they are loaded.
+     */
+    private void setMode(CatalogMode mode) {
+        mMode = mode;
+        Loader<InventoryLoader.Result> loader = getLoaderManager().getLoader(INVENTORY_LOADER);
+        if (loader != null) {
+            ((InventoryLoader) loader).setMode(mode);
+        }
+    }
 
-        // Kick off the loader
-        getLoaderManager().initLoader(INVENTORY_LOADER, null, this);
+    /**
+     * Show the given products, or none if they are null.
+     */
+    private void showProducts(InventoryLoader.Result result) {
+        mAdapter.swapProducts(result);
+        mEmptyView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
 
+    /**
+     * Show the summary of the stock in the header, or hide the header if there are no products.
+     * The summary is read from the table the provider keeps up to date, one row per supplier,
+     * so this never sums up the whole inventory.
+     */
+    private void showSummary(Cursor cursor) {
+        if (cursor == null || cursor.getCount() == 0) {
+            mSummaryTextView.setVisibility(View.GONE);
+            return;
+        }
+        long value = 0;
+        StringBuilder units = new StringBuilder();
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            value += cursor.getLong(cursor.getColumnIndex(SummaryEntry.COLUMN_VALUE));
+            if (units.length() > 0) {
+                units.append(", ");
+            }
+            units.append(getString(R.string.summary_supplier_units,
+                    supplierName(cursor.getInt(cursor.getColumnIndex(SummaryEntry.COLUMN_SUPPLIER_NAME))),
+                    cursor.getLong(cursor.getColumnIndex(SummaryEntry.COLUMN_UNITS))));
+        }
+        char[] price = new char[PriceFormatter.MAX_LENGTH];
+        int length = PriceFormatter.getInstance().format(value, price);
+        mSummaryTextView.setText(getString(R.string.summary_text, new String(price, 0, length), units));
+        mSummaryTextView.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Returns the name of the given supplier, or its ID if it is gone.
+     */
+    private String supplierName(int supplier) {
+        SupplierCache.Supplier found = SupplierCache.getInstance(this).get(supplier);
+        return found != null ? found.name : String.valueOf(supplier);
     }
 
     /**
@@ -101,20 +349,53 @@ public class CatalogActivity extends AppCompatActivity implements
         values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.SUPPLIER_PEARSON);
         values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE, getString(R.string.sample_supplier_phone));
 
-        // Insert a new row for 3D Puzzle Art into the provider using the ContentResolver.
-        // Use the {@link InvetoryEntry#CONTENT_URI} to indicate that we want to insert
-        // into the inventory database table.
-        // Receive the new content URI that will allow us to access Toto's data in the future.
-        Uri newUri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
+        // Insert a new row for 3D Puzzle Art into the inventory database table, off the
+        // main thread.
+        InventoryWriter.getInstance(this).insert(values, null);
 
     }
 
     /**
-     * Helper method to delete all products in the database.
+     * Helper method to delete all products in the database, in the background a chunk at a
+     * time so that sales can go on meanwhile. The catalog empties as products are deleted.
      */
     private void deleteAllProducts() {
-        int rowsDeleted = getContentResolver().delete(InventoryEntry.CONTENT_URI, null, null);
-        Log.v("CatalogActivity", rowsDeleted + " rows deleted from inventory database");
+        startService(DeleteAllService.newIntent(this));
+    }
+
+    /**
+     * Let the user pick the supplier catalog file to import.
+     */
+    private void chooseCatalogFile() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.setType("text/*");
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        startActivityForResult(Intent.createChooser(intent, getString(R.string.import_chooser_title)),
+                REQUEST_IMPORT_CATALOG);
+    }
+
+    /**
+     * Let the user share a CSV snapshot of the stock with another app, which reads it straight
+     * from the provider as it is exported.
+     */
+    private void shareStockExport() {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(InventoryEntry.MIME_TYPE_CSV);
+        intent.putExtra(Intent.EXTRA_STREAM, InventoryEntry.EXPORT_URI);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(intent, getString(R.string.export_chooser_title)));
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        // Import the chosen file in the background, the catalog reloads as products change
+        if (requestCode == REQUEST_IMPORT_CATALOG) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                startService(ImportService.newIntent(this, data.getData()));
+            }
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
     }
 
     @Override
@@ -122,13 +403,102 @@ public class CatalogActivity extends AppCompatActivity implements
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        // Search as the user types in the search box
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // Search right away, there is no more typing to wait for
+                mHandler.removeCallbacks(mSearchRunnable);
+                if (!query.trim().isEmpty()) {
+                    startSearch(query);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                onSearchTextChanged(newText);
+                return true;
+            }
+        });
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        // Check the sort and filters of the catalog
+        switch (mMode.sort) {
+            case InventoryContract.SORT_PRICE:
+                menu.findItem(R.id.sort_price).setChecked(true);
+                break;
+            case InventoryContract.SORT_QUANTITY:
+                menu.findItem(R.id.sort_quantity).setChecked(true);
+                break;
+            default:
+                menu.findItem(R.id.sort_name).setChecked(true);
+        }
+        if (InventoryContract.STOCK_IN.equals(mMode.stock)) {
+            menu.findItem(R.id.filter_in_stock).setChecked(true);
+        } else if (InventoryContract.STOCK_LOW.equals(mMode.stock)) {
+            menu.findItem(R.id.filter_low_stock).setChecked(true);
+        } else {
+            menu.findItem(R.id.filter_all_stock).setChecked(true);
+        }
+
+        // List the suppliers to filter by, which may have changed since the menu was last shown
+        SubMenu filters = menu.findItem(R.id.action_filter).getSubMenu();
+        for (int i = filters.size() - 1; i >= 0; i--) {
+            MenuItem item = filters.getItem(i);
+            if (item.getGroupId() == R.id.group_supplier && item.getItemId() != R.id.filter_all_suppliers) {
+                filters.removeItem(item.getItemId());
+            }
+        }
+        for (SupplierCache.Supplier supplier : SupplierCache.getInstance(this).getSuppliers()) {
+            filters.add(R.id.group_supplier, MENU_ID_SUPPLIER + supplier.id, Menu.NONE, supplier.name);
+        }
+        filters.setGroupCheckable(R.id.group_supplier, true, true);
+        MenuItem supplierItem = filters.findItem(mMode.supplier == CatalogMode.ALL_SUPPLIERS
+                ? R.id.filter_all_suppliers : MENU_ID_SUPPLIER + mMode.supplier);
+        if (supplierItem != null) {
+            supplierItem.setChecked(true);
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
+        // Respond to a click on a supplier to filter by
+        if (item.getGroupId() == R.id.group_supplier) {
+            setMode(mMode.withSupplier(item.getItemId() == R.id.filter_all_suppliers
+                    ? CatalogMode.ALL_SUPPLIERS : item.getItemId() - MENU_ID_SUPPLIER));
+            return true;
+        }
+
         // User clicked on a menu option in the app bar overflow menu
         switch (item.getItemId()) {
+            // Respond to a click on a sort key
+            case R.id.sort_name:
+                setMode(mMode.withSort(InventoryContract.SORT_NAME));
+                return true;
+            case R.id.sort_price:
+                setMode(mMode.withSort(InventoryContract.SORT_PRICE));
+                return true;
+            case R.id.sort_quantity:
+                setMode(mMode.withSort(InventoryContract.SORT_QUANTITY));
+                return true;
+            // Respond to a click on a stock filter
+            case R.id.filter_all_stock:
+                setMode(mMode.withStock(null));
+                return true;
+            case R.id.filter_in_stock:
+                setMode(mMode.withStock(InventoryContract.STOCK_IN));
+                return true;
+            case R.id.filter_low_stock:
+                setMode(mMode.withStock(InventoryContract.STOCK_LOW));
+                return true;
             // Respond to a click on the "Insert dummy data" menu option
             case R.id.action_insert_dummy_data:
                 insertData();
@@ -137,39 +507,66 @@ public class CatalogActivity extends AppCompatActivity implements
             case R.id.action_delete_all_entries:
                 deleteAllProducts();
                 return true;
+            // Respond to a click on the "Import catalog" menu option
+            case R.id.action_import_catalog:
+                chooseCatalogFile();
+                return true;
+            // Respond to a click on the "Export stock" menu option
+            case R.id.action_export_stock:
+                shareStockExport();
+                return true;
+            // Respond to a click on the "Diagnostics" menu option
+            case R.id.action_diagnostics:
+                startActivity(new Intent(CatalogActivity.this, DiagnosticsActivity.class));
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // Define a projection that specifies the columns from the table we care about.
-        String[] project = {
-                InventoryEntry._ID,
-                InventoryEntry.COLUMN_PRODUCT_NAME,
-                InventoryEntry.COLUMN_PRODUCT_PRICE,
-                InventoryEntry.COLUMN_PRODUCT_QUANTITY,
-                InventoryEntry.COLUMN_SUPPLIER_NAME,
-                InventoryEntry.COLUMN_SUPPLIER_PHONE};
-
-        // This loader will execute the ContentProvider's query method on a background thread
-        return new CursorLoader(this,
-                InventoryEntry.CONTENT_URI,    // The content URI of the inventory table
-                project,                       // The columns to return for each row
-                null,                  // Selection criteria
-                null,              // Selection criteria
-                null);                // The sort order for the returned rows
+    public Loader<InventoryLoader.Result> onCreateLoader(int i, Bundle bundle) {
+        // The search loader returns the best matches for the search text
+        if (i == SEARCH_LOADER) {
+            return new InventoryLoader(this, bundle.getString(ARG_SEARCH));
+        }
+
+        // This loader will query the ContentProvider one page at a time on a background thread
+        return new InventoryLoader(this, PAGE_SIZE, mMode);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Update {@link InventoryCursorAdapter} with this new cursor containing updated inventory data
-        mCursorAdapter.swapCursor(data);
+    public void onLoadFinished(Loader<InventoryLoader.Result> loader, InventoryLoader.Result data) {
+        // Show the search results in place of the catalog
+        if (loader.getId() == SEARCH_LOADER) {
+            if (mSearching) {
+                showProducts(data);
+            }
+            return;
+        }
+        // Update the {@link InventoryAdapter} with the new catalog products. The first products
+        // of a new mode are shown from the top.
+        boolean modeChanged = mCatalog != null && !mCatalog.mode.equals(data.mode);
+        mCatalog = data;
+        if (!mSearching) {
+            showProducts(data);
+            if (modeChanged) {
+                mLayoutManager.scrollToPosition(0);
+            }
+        }
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<InventoryLoader.Result> loader) {
         // Callback called when the data needs to be deleted
-        mCursorAdapter.swapCursor(null);
+        if (loader.getId() == SEARCH_LOADER) {
+            if (mSearching) {
+                showProducts(null);
+            }
+            return;
+        }
+        mCatalog = null;
+        if (!mSearching) {
+            showProducts(null);
+        }
     }
 }
@@ -0,0 +1,139 @@
+package com.example.android.inventoryapp2;
+
+import android.app.IntentService;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.database.SQLException;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.CatalogWiper;
+
+/**
+ * Deletes every product in the background with {@link CatalogWiper}, showing its progress in a
+ * notification that can cancel it.
+ */
+public class DeleteAllService extends IntentService {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = DeleteAllService.class.getSimpleName();
+
+    /** Action of the intent cancelling the running wipe */
+    private static final String ACTION_CANCEL = "com.example.android.inventoryapp2.action.CANCEL_DELETE_ALL";
+
+    /** Channel of the notifications on Android O and later */
+    private static final String CHANNEL_ID = "delete_all";
+
+    /** Identifier of the notification */
+    private static final int NOTIFICATION_ID = 3;
+
+    /** Shortest time between two updates of the progress notification */
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    /** The running wipe, or null */
+    private volatile CatalogWiper mWiper;
+
+    /**
+     * Returns the intent that deletes every product.
+     */
+    public static Intent newIntent(Context context) {
+        return new Intent(context, DeleteAllService.class);
+    }
+
+    public DeleteAllService() {
+        super(LOG_TAG);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Intents are queued behind the running wipe, so cancel it before it gets there. The
+        // intent is still queued, so the service stops once the wipe has ended.
+        if (intent != null && ACTION_CANCEL.equals(intent.getAction())) {
+            CatalogWiper wiper = mWiper;
+            if (wiper != null) {
+                wiper.cancel();
+            }
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent != null && ACTION_CANCEL.equals(intent.getAction())) {
+            // Already cancelled in onStartCommand
+            return;
+        }
+
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.delete_all_channel_name), NotificationManager.IMPORTANCE_LOW));
+        }
+
+        Intent cancel = new Intent(this, DeleteAllService.class).setAction(ACTION_CANCEL);
+        final NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_menu_delete)
+                .setContentTitle(getString(R.string.delete_all_progress_title))
+                .setContentIntent(PendingIntent.getActivity(this, 0,
+                        new Intent(this, CatalogActivity.class), 0))
+                .addAction(0, getString(R.string.delete_all_cancel),
+                        PendingIntent.getService(this, 0, cancel, 0))
+                .setOnlyAlertOnce(true)
+                .setOngoing(true)
+                .setProgress(0, 0, true);
+        // Keep deleting if the user leaves the app
+        startForeground(NOTIFICATION_ID, builder.build());
+
+        String text;
+        CatalogWiper wiper = new CatalogWiper(this);
+        mWiper = wiper;
+        try {
+            CatalogWiper.Progress result = wiper.wipe(new CatalogWiper.Listener() {
+                private long mLastUpdate;
+
+                @Override
+                public void onProgress(CatalogWiper.Progress progress) {
+                    long now = SystemClock.elapsedRealtime();
+                    if (now - mLastUpdate < PROGRESS_INTERVAL_MILLIS) {
+                        return;
+                    }
+                    mLastUpdate = now;
+                    // Products added since the start are deleted too, and can take it past the total
+                    int permille = progress.totalProducts > 0
+                            ? (int) Math.min(1000, progress.productsDeleted * 1000 / progress.totalProducts) : 0;
+                    builder.setProgress(1000, permille, progress.totalProducts <= 0)
+                            .setContentText(getString(R.string.delete_all_progress_text,
+                                    progress.productsDeleted, progress.totalProducts));
+                    startForeground(NOTIFICATION_ID, builder.build());
+                }
+            });
+            text = getString(result.cancelled ? R.string.delete_all_cancelled_text : R.string.delete_all_done_text,
+                    result.productsDeleted);
+            Log.i(LOG_TAG, "Deleted " + result.productsDeleted + " products in " + result.chunks + " chunks, "
+                    + result.elapsedNanos / 1000000 + " ms, longest chunk "
+                    + result.longestChunkNanos / 1000000 + " ms, " + result.pagesReclaimed + " pages reclaimed"
+                    + (result.cancelled ? ", cancelled" : ""));
+        } catch (IllegalArgumentException | SQLException e) {
+            // The products deleted so far stay deleted, deleting again goes on with the others
+            Log.e(LOG_TAG, "Deleting the products failed", e);
+            text = getString(R.string.delete_all_failed_text, e.getMessage());
+        } finally {
+            mWiper = null;
+        }
+
+        stopForeground(true);
+        manager.notify(NOTIFICATION_ID, new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_menu_delete)
+                .setContentTitle(getString(R.string.delete_all_done_title))
+                .setContentText(text)
+                .setContentIntent(PendingIntent.getActivity(this, 0,
+                        new Intent(this, CatalogActivity.class), 0))
+                .setAutoCancel(true)
+                .build());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.android.inventoryapp2;
+
+import android.app.LoaderManager;
+import android.content.ContentValues;
+import android.content.CursorLoader;
+import android.content.Loader;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.widget.CompoundButton;
+import android.widget.Switch;
+import android.widget.TextView;
+
+import com.example.android.inventoryapp2.data.InventoryContract.DiagnosticsEntry;
+import com.example.android.inventoryapp2.data.InventoryWriter;
+
+/**
+ * Shows the metrics recorded by the inventory provider, and lets the user start, stop and
+ * reset recording them.
+ */
+public class DiagnosticsActivity extends AppCompatActivity implements
+        LoaderManager.LoaderCallbacks<Cursor> {
+
+    /** Identifier for the diagnostics loader */
+    private static final int DIAGNOSTICS_LOADER = 0;
+
+    /** Switch to start and stop recording */
+    private Switch mEnabledSwitch;
+
+    /** Table of the metrics */
+    private TextView mDiagnosticsText;
+
+    /** Writes to the provider off the main thread */
+    private InventoryWriter mWriter;
+
+    /** Starts or stops recording when the user flips the switch */
+    private final CompoundButton.OnCheckedChangeListener mEnabledListener =
+            new CompoundButton.OnCheckedChangeListener() {
+                @Override
+                public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                    ContentValues values = new ContentValues();
+                    values.put(DiagnosticsEntry.COLUMN_ENABLED, isChecked);
+                    mWriter.update(DiagnosticsEntry.CONTENT_URI, values, null);
+                }
+            };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        mWriter = InventoryWriter.getInstance(this);
+        mEnabledSwitch = (Switch) findViewById(R.id.diagnostics_enabled);
+        mDiagnosticsText = (TextView) findViewById(R.id.diagnostics_text);
+        mEnabledSwitch.setOnCheckedChangeListener(mEnabledListener);
+
+        findViewById(R.id.diagnostics_refresh).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                getLoaderManager().restartLoader(DIAGNOSTICS_LOADER, null, DiagnosticsActivity.this);
+            }
+        });
+        findViewById(R.id.diagnostics_reset).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mWriter.delete(DiagnosticsEntry.CONTENT_URI, null);
+            }
+        });
+
+        // Starting, stopping and resetting notify the diagnostics URI, which reloads them
+        getLoaderManager().initLoader(DIAGNOSTICS_LOADER, null, this);
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
+        return new CursorLoader(this, DiagnosticsEntry.CONTENT_URI, DiagnosticsEntry.COLUMNS,
+                null, null, null);
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        String header = getString(R.string.diagnostics_header, DiagnosticsEntry.COLUMN_NAME,
+                DiagnosticsEntry.COLUMN_COUNT, DiagnosticsEntry.COLUMN_ROWS,
+                DiagnosticsEntry.COLUMN_MEAN_MICROS, DiagnosticsEntry.COLUMN_P50_MICROS,
+                DiagnosticsEntry.COLUMN_P90_MICROS, DiagnosticsEntry.COLUMN_P99_MICROS);
+        StringBuilder text = new StringBuilder(header);
+
+        boolean enabled = false;
+        int nameColumnIndex = cursor.getColumnIndex(DiagnosticsEntry.COLUMN_NAME);
+        int countColumnIndex = cursor.getColumnIndex(DiagnosticsEntry.COLUMN_COUNT);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            String name = cursor.getString(nameColumnIndex);
+            if (DiagnosticsEntry.NAME_ENABLED.equals(name)) {
+                enabled = cursor.getLong(countColumnIndex) != 0;
+                continue;
+            }
+            // Counters have no latency, their columns are left blank
+            Object[] values = new Object[DiagnosticsEntry.COLUMNS.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = cursor.isNull(i) ? "" : cursor.getString(i);
+            }
+            text.append('\n').append(getString(R.string.diagnostics_header, values));
+        }
+        mDiagnosticsText.setText(text);
+
+        // Show the state of the provider without recording it again
+        mEnabledSwitch.setOnCheckedChangeListener(null);
+        mEnabledSwitch.setChecked(enabled);
+        mEnabledSwitch.setOnCheckedChangeListener(mEnabledListener);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        mDiagnosticsText.setText(null);
+    }
+}
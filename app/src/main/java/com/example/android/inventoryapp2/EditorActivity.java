@@ -3,6 +3,7 @@ package com.example.android.inventoryapp2;
 import android.app.AlertDialog;
 import android.app.LoaderManager;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -27,6 +28,8 @@ import android.widget.Toast;
 
 import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
 import com.example.android.inventoryapp2.data.InventoryDbHelper;
+import com.example.android.inventoryapp2.data.InventoryWriter;
+import com.example.android.inventoryapp2.data.SupplierCache;
 
 import javax.microedition.khronos.egl.EGLDisplay;
 
@@ -57,14 +60,20 @@ public class EditorActivity extends AppCompatActivity implements
     /** EditText field to enter the product quantity */
     private EditText mQuantityEditText;
 
+    /** EditText field to enter the reorder threshold of the product */
+    private EditText mReorderThresholdEditText;
+
     /** EditText field to enter the supplier phone number */
     private EditText mSupplierPhoneEditText;
 
     /** EditText field to enter the supplier */
     private Spinner mSupplierNameSpinner;
 
+    /** Suppliers shown by the spinner */
+    private SupplierCache mSuppliers;
+
     /**
-     * Supplier name. The possible values are:
+     * Supplier name, the ID of a supplier. For example
      * 0 for Pearson, 1 for Brook and Taylor, 2 for American Book Co.
      */
     private int mSupplier = 0;
@@ -116,6 +125,7 @@ public class EditorActivity extends AppCompatActivity implements
         mNameEditText = (EditText) findViewById(R.id.edit_product_name);
         mPriceEditText = (EditText) findViewById(R.id.edit_product_price);
         mQuantityEditText = (EditText) findViewById(R.id.edit_product_quantity);
+        mReorderThresholdEditText = (EditText) findViewById(R.id.edit_reorder_threshold);
         mSupplierPhoneEditText = (EditText) findViewById(R.id.edit_supplier_phone);
         mSupplierNameSpinner = (Spinner) findViewById(R.id.spinner_supplier_name);
 
@@ -125,6 +135,7 @@ public class EditorActivity extends AppCompatActivity implements
         mNameEditText.setOnTouchListener(mTouchListener);
         mPriceEditText.setOnTouchListener(mTouchListener);
         mQuantityEditText.setOnTouchListener(mTouchListener);
+        mReorderThresholdEditText.setOnTouchListener(mTouchListener);
         mSupplierNameSpinner.setOnTouchListener(mTouchListener);
         mSupplierPhoneEditText.setOnTouchListener(mTouchListener);
 
@@ -197,10 +208,11 @@ public class EditorActivity extends AppCompatActivity implements
      * Setup the dropdown spinner that allows the user to select the supplier name.
      */
     private void setupSpinner() {
-        // Create adapter for spinner. The list options are from the String array it will use
+        // Create adapter for spinner. The list options are the suppliers, in ID order, and
         // the spinner will use the default layout
-        ArrayAdapter genderSpinnerAdapter = ArrayAdapter.createFromResource(this,
-                R.array.array_supplier_options, android.R.layout.simple_spinner_item);
+        mSuppliers = SupplierCache.getInstance(this);
+        ArrayAdapter<SupplierCache.Supplier> genderSpinnerAdapter = new ArrayAdapter<>(this,
+                android.R.layout.simple_spinner_item, mSuppliers.getSuppliers());
 
         // Specify dropdown layout style - simple list view with 1 item per line
         genderSpinnerAdapter.setDropDownViewResource(android.R.layout.simple_dropdown_item_1line);
@@ -212,14 +224,12 @@ public class EditorActivity extends AppCompatActivity implements
         mSupplierNameSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                String selection = (String) parent.getItemAtPosition(position);
-                if (!TextUtils.isEmpty(selection)) {
-                    if (selection.equals(getString(R.string.supplier_pearson))) {
-                        mSupplier = InventoryEntry.SUPPLIER_PEARSON; // Supplier Pearson
-                    } else if (selection.equals(getString(R.string.supplier_taylor_brook))) {
-                        mSupplier = InventoryEntry.SUPPLIER_BROOK_TAYLOR; // Supplier Brook & Taylor
-                    } else {
-                        mSupplier = InventoryEntry.SUPPLIER_AMERICAN_BOOK; // Supplier American Book
+                SupplierCache.Supplier selection = (SupplierCache.Supplier) parent.getItemAtPosition(position);
+                if (selection != null) {
+                    mSupplier = selection.id;
+                    // The phone belongs to the supplier, show the one it has
+                    if (selection.phone != null) {
+                        mSupplierPhoneEditText.setText(selection.phone);
                     }
                 }
             }
@@ -240,6 +250,7 @@ public class EditorActivity extends AppCompatActivity implements
         int price = Integer.parseInt(priceString);
         String quantityString = mQuantityEditText.getText().toString().trim();
         int quantity = Integer.parseInt(quantityString);
+        String thresholdString = mReorderThresholdEditText.getText().toString().trim();
         String supplierPhoneString = mSupplierPhoneEditText.getText().toString().trim();
 
         // Create a ContentValues object where column names are the keys,
@@ -249,6 +260,10 @@ public class EditorActivity extends AppCompatActivity implements
         values.put(InventoryEntry.COLUMN_PRODUCT_NAME, nameString);
         values.put(InventoryEntry.COLUMN_PRODUCT_PRICE, price);
         values.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, quantity);
+        // A new product left without a threshold gets the default one, an existing one keeps its own
+        if (!TextUtils.isEmpty(thresholdString)) {
+            values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, Integer.parseInt(thresholdString));
+        }
         values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, mSupplier);
         values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE, supplierPhoneString);
 
@@ -256,46 +271,58 @@ public class EditorActivity extends AppCompatActivity implements
         // and check if all the fields in the editor are blank
         if (mCurrentProductUri == null &&
                 TextUtils.isEmpty(nameString) && TextUtils.isEmpty(priceString) &&
-                TextUtils.isEmpty(quantityString) && TextUtils.isEmpty(supplierPhoneString) &&
+                TextUtils.isEmpty(quantityString) && TextUtils.isEmpty(thresholdString) &&
+                TextUtils.isEmpty(supplierPhoneString) &&
                 mSupplier == InventoryEntry.SUPPLIER_PEARSON) {
             // Since no fields were modified, we can return early without creating a new product.
             // No need to create ContentValues and no need to do any ContentProvider operations.
             return;
         }
 
+        // The product is written off the main thread, and the result shown once it is done,
+        // possibly after the editor has closed. Use the application context for the toasts
+        // so the editor isn't kept around until then.
+        final Context context = getApplicationContext();
+        InventoryWriter writer = InventoryWriter.getInstance(this);
+
         // Determine if this is a new or existing product by checking if mCurrentProductUri is null or not
         if (mCurrentProductUri == null) {
             // This is a NEW product, so insert a new product into the provider,
             // returning the content URI for the new product.
-            Uri newUri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
-
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (newUri == null) {
-                // If the new content URI is null, then there was an error with insertion.
-                Toast.makeText(this, getString(R.string.editor_insert_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the insertion was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_insert_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            writer.insert(values, new InventoryWriter.Callback<Uri>() {
+                @Override
+                public void onWriteComplete(Uri newUri) {
+                    // Show a toast message depending on whether or not the insertion was successful.
+                    if (newUri == null) {
+                        // If the new content URI is null, then there was an error with insertion.
+                        Toast.makeText(context, context.getString(R.string.editor_insert_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the insertion was successful and we can display a toast.
+                        Toast.makeText(context, context.getString(R.string.editor_insert_product_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         } else {
             // Otherwise this is an EXISTING product, so update the product with content URI: mCurrentProductUri
-            // and pass in the new ContentValues. Pass in null for the selection and selection args
-            // because mCurrentProductUri will already identify the correct row in the database that
-            // we want to modify.
-            int rowsAffected = getContentResolver().update(mCurrentProductUri, values, null, null);
-
-            // Show a toast message depending on whether or not the update was successful.
-            if (rowsAffected == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(this, getString(R.string.editor_update_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the update was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_update_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            // and pass in the new ContentValues. mCurrentProductUri will already identify the
+            // correct row in the database that we want to modify.
+            writer.update(mCurrentProductUri, values, new InventoryWriter.Callback<Integer>() {
+                @Override
+                public void onWriteComplete(Integer rowsAffected) {
+                    // Show a toast message depending on whether or not the update was successful.
+                    if (rowsAffected == 0) {
+                        // If no rows were affected, then there was an error with the update.
+                        Toast.makeText(context, context.getString(R.string.editor_update_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the update was successful and we can display a toast.
+                        Toast.makeText(context, context.getString(R.string.editor_update_product_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         }
     }
 
@@ -394,14 +421,15 @@ public class EditorActivity extends AppCompatActivity implements
     @Override
     public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
         // Since the editor shows all product attributes, define a projection that contains
-        // all columns from the product table
+        // all columns from the product table. The phone is the supplier's, shown from the
+        // supplier cache, so the product can come from the provider's cache.
         String[] projection = {
                 InventoryEntry._ID,
                 InventoryEntry.COLUMN_PRODUCT_NAME,
                 InventoryEntry.COLUMN_PRODUCT_PRICE,
                 InventoryEntry.COLUMN_PRODUCT_QUANTITY,
-                InventoryEntry.COLUMN_SUPPLIER_NAME,
-                InventoryEntry.COLUMN_SUPPLIER_PHONE,};
+                InventoryEntry.COLUMN_REORDER_THRESHOLD,
+                InventoryEntry.COLUMN_SUPPLIER_NAME,};
 
         // This loader will execute the ContentProvider's query method on a background thread
         return new CursorLoader(this,     // Parent activity context
@@ -426,36 +454,29 @@ public class EditorActivity extends AppCompatActivity implements
             int nameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_NAME);
             int priceColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_PRICE);
             int quantityColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_PRODUCT_QUANTITY);
+            int thresholdColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_REORDER_THRESHOLD);
             int supplierNameColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_NAME);
-            int supplierPhoneColumnIndex = cursor.getColumnIndex(InventoryEntry.COLUMN_SUPPLIER_PHONE);
 
             // Extract out the value from the Cursor for the given column index
             String name = cursor.getString(nameColumnIndex);
-            String supplierPhone = cursor.getString(supplierPhoneColumnIndex);
             int price = cursor.getInt(priceColumnIndex);
             int quantity = cursor.getInt(quantityColumnIndex);
+            int threshold = cursor.getInt(thresholdColumnIndex);
             int supplierName = cursor.getInt(supplierNameColumnIndex);
+            SupplierCache.Supplier supplier = mSuppliers.get(supplierName);
+            String supplierPhone = supplier != null ? supplier.phone : null;
 
             // Update the views on the screen with the values from the database
             mNameEditText.setText(name);
             mSupplierPhoneEditText.setText(supplierPhone);
             mPriceEditText.setText(Integer.toString(price));
             mQuantityEditText.setText(Integer.toString(quantity));
+            mReorderThresholdEditText.setText(Integer.toString(threshold));
 
-            // Supplier Name is a dropdown spinner, so map the constant value from the database
-            // into one of the dropdown options (0 is Pearson, 1 is BrookTaylor, 2 is American Book).
-            // Then call setSelection() so that option is displayed on screen as the current selection.
-            switch (supplierName) {
-                case InventoryEntry.SUPPLIER_BROOK_TAYLOR:
-                    mSupplierNameSpinner.setSelection(1);
-                    break;
-                case InventoryEntry.SUPPLIER_AMERICAN_BOOK:
-                    mSupplierNameSpinner.setSelection(2);
-                    break;
-                default:
-                    mSupplierNameSpinner.setSelection(0);
-                    break;
-            }
+            // Supplier Name is a dropdown spinner, so map the supplier ID from the database
+            // to the position of that supplier in the dropdown options. Then call
+            // setSelection() so that option is displayed on screen as the current selection.
+            mSupplierNameSpinner.setSelection(Math.max(mSuppliers.indexOf(supplierName), 0));
         }
     }
 
@@ -465,6 +486,7 @@ public class EditorActivity extends AppCompatActivity implements
         mNameEditText.setText("");
         mPriceEditText.setText("");
         mQuantityEditText.setText("");
+        mReorderThresholdEditText.setText("");
         mSupplierNameSpinner.setSelection(0); // Select Pearson supplier gender
         mSupplierPhoneEditText.setText("");
     }
@@ -533,21 +555,24 @@ public class EditorActivity extends AppCompatActivity implements
     private void deleteProduct() {
         // Only perform the delete if this is an existing product.
         if (mCurrentProductUri != null) {
-            // Call the ContentResolver to delete the product at the given content URI.
-            // Pass in null for the selection and selection args because the mCurrentProductUri
-            // content URI already identifies the product that we want.
-            int rowsDeleted = getContentResolver().delete(mCurrentProductUri, null, null);
-
-            // Show a toast message depending on whether or not the delete was successful.
-            if (rowsDeleted == 0) {
-                // If no rows were deleted, then there was an error with the delete.
-                Toast.makeText(this, getString(R.string.editor_delete_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the delete was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_delete_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            // Delete the product at the given content URI off the main thread. The
+            // mCurrentProductUri content URI already identifies the product that we want.
+            final Context context = getApplicationContext();
+            InventoryWriter.getInstance(this).delete(mCurrentProductUri, new InventoryWriter.Callback<Integer>() {
+                @Override
+                public void onWriteComplete(Integer rowsDeleted) {
+                    // Show a toast message depending on whether or not the delete was successful.
+                    if (rowsDeleted == 0) {
+                        // If no rows were deleted, then there was an error with the delete.
+                        Toast.makeText(context, context.getString(R.string.editor_delete_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the delete was successful and we can display a toast.
+                        Toast.makeText(context, context.getString(R.string.editor_delete_product_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         }
 
         // Close the activity
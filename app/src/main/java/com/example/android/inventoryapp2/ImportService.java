@@ -0,0 +1,116 @@
+package com.example.android.inventoryapp2;
+
+import android.app.IntentService;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.CatalogImporter;
+
+import java.io.IOException;
+
+/**
+ * Imports a supplier catalog in the background with {@link CatalogImporter}, showing its
+ * progress in a notification. Imports are queued and run one at a time.
+ */
+public class ImportService extends IntentService {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ImportService.class.getSimpleName();
+
+    /** Channel of the import notifications on Android O and later */
+    private static final String CHANNEL_ID = "import";
+
+    /** Identifier of the import notification */
+    private static final int NOTIFICATION_ID = 1;
+
+    /** Shortest time between two updates of the progress notification */
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    /**
+     * Returns the intent that imports the CSV file at the given URI, granting the service the
+     * permission to read it.
+     */
+    public static Intent newIntent(Context context, Uri source) {
+        Intent intent = new Intent(context, ImportService.class);
+        intent.setData(source);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        return intent;
+    }
+
+    public ImportService() {
+        super(LOG_TAG);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        Uri source = intent.getData();
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.import_channel_name), NotificationManager.IMPORTANCE_LOW));
+        }
+
+        final NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(getString(R.string.import_progress_title))
+                .setContentIntent(PendingIntent.getActivity(this, 0,
+                        new Intent(this, CatalogActivity.class), 0))
+                .setOnlyAlertOnce(true)
+                .setOngoing(true)
+                .setProgress(0, 0, true);
+        // Keep importing if the user leaves the app
+        startForeground(NOTIFICATION_ID, builder.build());
+
+        CatalogImporter.Progress result;
+        String text;
+        try {
+            result = new CatalogImporter(this).importCsv(source, new CatalogImporter.Listener() {
+                private long mLastUpdate;
+
+                @Override
+                public void onProgress(CatalogImporter.Progress progress) {
+                    long now = SystemClock.elapsedRealtime();
+                    if (now - mLastUpdate < PROGRESS_INTERVAL_MILLIS) {
+                        return;
+                    }
+                    mLastUpdate = now;
+                    // Progress is shown in permille of the file when its size is known
+                    int permille = progress.totalBytes > 0
+                            ? (int) (progress.bytesRead * 1000 / progress.totalBytes) : 0;
+                    builder.setProgress(1000, permille, progress.totalBytes <= 0)
+                            .setContentText(getString(R.string.import_progress_text,
+                                    progress.rowsImported, progress.rowsRejected));
+                    startForeground(NOTIFICATION_ID, builder.build());
+                }
+            });
+            text = getString(R.string.import_done_text, result.rowsImported, result.rowsRejected);
+            Log.i(LOG_TAG, "Imported " + source + ": " + result.rowsImported + " rows, "
+                    + result.rowsRejected + " rejected, " + result.getRowsPerSecond() + " rows/s, peak heap "
+                    + result.peakHeapBytes / 1024 + " KiB" + (result.firstError != null
+                    ? ", first error " + result.firstError : ""));
+        } catch (IOException | IllegalArgumentException | SecurityException | SQLException e) {
+            // The checkpoint is kept, importing the same file again resumes it
+            Log.e(LOG_TAG, "Import of " + source + " failed", e);
+            text = getString(R.string.import_failed_text, e.getMessage());
+        }
+
+        stopForeground(true);
+        manager.notify(NOTIFICATION_ID, builder
+                .setSmallIcon(android.R.drawable.stat_sys_download_done)
+                .setContentTitle(getString(R.string.import_done_title))
+                .setContentText(text)
+                .setProgress(0, 0, false)
+                .setOngoing(false)
+                .setAutoCancel(true)
+                .build());
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.android.inventoryapp2;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Intent;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryWriter;
+import com.example.android.inventoryapp2.data.Product;
+import com.example.android.inventoryapp2.data.SupplierCache;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link InventoryAdapter} is an adapter for a {@link RecyclerView} that uses the products
+ * loaded by an {@link InventoryLoader} as its data source. Item IDs are the product IDs, and
+ * a new load only re-binds the rows that changed. The name and phone of the supplier of each
+ * product come from the {@link SupplierCache}, without reading the suppliers on the main thread,
+ * and every row is bound again when they change.
+ */
+public class InventoryAdapter extends RecyclerView.Adapter<InventoryAdapter.ViewHolder>
+        implements SupplierCache.Listener {
+
+    /** Payload of a row change where only the quantity of the product changed */
+    static final Object PAYLOAD_QUANTITY = new Object();
+
+    private final Context mContext;
+
+    /** Makes the sales off the main thread */
+    private final InventoryWriter mWriter;
+
+    /** Names and phones of the suppliers */
+    private final SupplierCache mSuppliers;
+
+    /** The products shown, never modified */
+    private List<Product> mProducts = Collections.emptyList();
+
+    /** Text shared by every row, looked up once */
+    private final char[] mPhonePrefix;
+    private final char[] mInStockSuffix;
+    private final PriceFormatter mPriceFormatter;
+
+    /** Number of rows bound so far */
+    private int mBindCount;
+
+    /**
+     * Constructs a new {@link InventoryAdapter}, without any products until
+     * {@link #swapProducts(InventoryLoader.Result)} is called.
+     *
+     * @param context The context
+     */
+    public InventoryAdapter(Context context) {
+        mContext = context;
+        mWriter = InventoryWriter.getInstance(context);
+        mSuppliers = SupplierCache.getInstance(context);
+        mPhonePrefix = context.getString(R.string.phone_supplier_text).toCharArray();
+        mInStockSuffix = context.getString(R.string.in_stock_text).toCharArray();
+        mPriceFormatter = PriceFormatter.getInstance();
+        setHasStableIds(true);
+    }
+
+    /**
+     * Show the products of a load, or no products if the result is null. When the result was
+     * loaded on top of the products shown now, only the rows that changed are updated.
+     */
+    public void swapProducts(InventoryLoader.Result result) {
+        List<Product> products = result != null ? result.products : Collections.<Product>emptyList();
+        if (products == mProducts) {
+            return;
+        }
+        List<Product> previous = mProducts;
+        mProducts = products;
+        if (result != null && result.diff != null && result.previous == previous) {
+            result.diff.dispatchUpdatesTo(this);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Returns the product shown at the given position.
+     */
+    public Product getProduct(int position) {
+        return mProducts.get(position);
+    }
+
+    /**
+     * Returns the number of rows bound so far.
+     */
+    int getBindCount() {
+        return mBindCount;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        mSuppliers.addListener(this);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        mSuppliers.removeListener(this);
+    }
+
+    /**
+     * Bind every row again, with the new names and phones of the suppliers.
+     */
+    @Override
+    public void onSuppliersChanged() {
+        notifyItemRangeChanged(0, mProducts.size());
+    }
+
+    @Override
+    public int getItemCount() {
+        return mProducts.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mProducts.get(position).id;
+    }
+
+    /**
+     * Makes a new blank list item view. No data is set (or bound) to the views yet.
+     *
+     * @param parent   The parent to which the new view is attached to
+     * @param viewType The type of the view, there is only one
+     * @return the holder of the newly created list item view.
+     */
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        // Inflate a list item view using the layout specified in list_item.xml
+        View view = LayoutInflater.from(mContext).inflate(R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder(view, mInStockSuffix.length);
+        view.setTag(holder);
+        view.setOnClickListener(mItemClickListener);
+        holder.sellButton.setTag(holder);
+        holder.sellButton.setOnClickListener(mSellClickListener);
+        return holder;
+    }
+
+    /**
+     * This method binds the product at the given position to the views of the holder. For
+     * example, the name for the product can be set on the name TextView in the list item layout.
+     *
+     * Binding doesn't allocate once the row buffers of the holder have grown to fit.
+     */
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        mBindCount++;
+        Product product = mProducts.get(position);
+        holder.rowId = product.id;
+
+        holder.nameTextView.setText(product.name);
+
+        // Look the supplier of the product up by its ID, for example 0 = "Pearson"
+        SupplierCache.Supplier supplier = mSuppliers.peek(product.supplier);
+        holder.supplierTextView.setText(supplier != null ? supplier.name : "");
+
+        // "Phone: " followed by the supplier phone
+        String phone = supplier != null ? supplier.phone : null;
+        int phoneLength = phone != null ? phone.length() : 0;
+        int textLength = mPhonePrefix.length + phoneLength;
+        if (holder.phoneChars.length < textLength) {
+            holder.phoneChars = new char[textLength];
+        }
+        System.arraycopy(mPhonePrefix, 0, holder.phoneChars, 0, mPhonePrefix.length);
+        if (phoneLength > 0) {
+            phone.getChars(0, phoneLength, holder.phoneChars, mPhonePrefix.length);
+        }
+        holder.supplierPhoneTextView.setText(holder.phoneChars, 0, textLength);
+
+        // Product price, stored in cents
+        int priceLength = mPriceFormatter.format(product.price, holder.priceChars);
+        holder.priceTextView.setText(holder.priceChars, 0, priceLength);
+
+        bindQuantity(holder, product.quantity);
+    }
+
+    /**
+     * Bind only the quantity if that is all that changed, otherwise the whole row.
+     */
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        for (int i = 0; i < payloads.size(); i++) {
+            if (payloads.get(i) != PAYLOAD_QUANTITY) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+        mBindCount++;
+        bindQuantity(holder, mProducts.get(position).quantity);
+    }
+
+    /**
+     * Show the quantity in stock, for example "3 in stock".
+     */
+    private void bindQuantity(ViewHolder holder, int quantity) {
+        char[] chars = holder.quantityChars;
+        int length = 0;
+        if (quantity < 0) {
+            chars[length++] = '-';
+            quantity = -quantity;
+        }
+        // Write the digits backwards, then reverse them in place
+        int start = length;
+        do {
+            chars[length++] = (char) ('0' + quantity % 10);
+            quantity /= 10;
+        } while (quantity > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char c = chars[i];
+            chars[i] = chars[j];
+            chars[j] = c;
+        }
+        System.arraycopy(mInStockSuffix, 0, chars, length, mInStockSuffix.length);
+        holder.quantityTextView.setText(chars, 0, length + mInStockSuffix.length);
+    }
+
+    /**
+     * Opens the product of the row that was clicked in the {@link EditorActivity}. Rows are
+     * tagged with their {@link ViewHolder}, so a single listener serves every row.
+     */
+    private final View.OnClickListener mItemClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ViewHolder holder = (ViewHolder) view.getTag();
+
+            // Create new intent to go to {@link EditorActivity}
+            Intent intent = new Intent(mContext, EditorActivity.class);
+
+            // Form the content URI that represents the specific product that was clicked on,
+            // by appending its ID onto the {@link InventoryEntry#CONTENT_URI}.
+            // For example, the URI would be "content://com.example.android.inventory/inventory/2"
+            // if the inventory with ID 2 was clicked on.
+            intent.setData(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, holder.rowId));
+
+            // Launch the {@link EditorActivity} to display the data for the current product.
+            mContext.startActivity(intent);
+        }
+    };
+
+    /**
+     * Sells one unit of the product of the row whose sale button was clicked. The button is
+     * tagged with the {@link ViewHolder} of its row, so a single listener serves every row.
+     */
+    private final View.OnClickListener mSellClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            final ViewHolder holder = (ViewHolder) view.getTag();
+            final long id = holder.rowId;
+
+            // Decrement the quantity in the database, off the main thread. The provider checks
+            // the stock itself and returns the new quantity, so there's nothing to read back
+            // from the view.
+            mWriter.sell(id, new InventoryWriter.Callback<Integer>() {
+                @Override
+                public void onWriteComplete(Integer quantity) {
+                    // check if the product was out of stock
+                    if (quantity == InventoryEntry.SELL_INSUFFICIENT_STOCK) {
+                        //#Fix why does this toast crash the app?
+//                    Toast.makeText(context, R.string.toast_zero_greater, Toast.LENGTH_SHORT).show();
+                        Log.i("Inventory Adapter:", "quantity is == 0");
+                    } else if (holder.rowId == id) {
+                        // The row still shows the product sold
+                        bindQuantity(holder, quantity);
+                    }
+                }
+            });
+        }
+    };
+
+    /**
+     * Views of a list item and the buffers its text is written into.
+     */
+    static class ViewHolder extends RecyclerView.ViewHolder {
+
+        /** Longest int written as text, with its sign */
+        private static final int MAX_INT_LENGTH = 11;
+
+        final TextView nameTextView;
+        final TextView supplierTextView;
+        final TextView supplierPhoneTextView;
+        final TextView priceTextView;
+        final TextView quantityTextView;
+        final Button sellButton;
+
+        /** ID of the product bound to the views */
+        long rowId;
+
+        char[] phoneChars = new char[32];
+        final char[] priceChars = new char[PriceFormatter.MAX_LENGTH];
+        final char[] quantityChars;
+
+        ViewHolder(View view, int quantitySuffixLength) {
+            super(view);
+            nameTextView = (TextView) view.findViewById(R.id.name);
+            supplierTextView = (TextView) view.findViewById(R.id.supplier_name);
+            supplierPhoneTextView = (TextView) view.findViewById(R.id.supplier_phone);
+            priceTextView = (TextView) view.findViewById(R.id.produce_price);
+            quantityTextView = (TextView) view.findViewById(R.id.produce_quantity);
+            sellButton = (Button) view.findViewById(R.id.sale_button);
+            quantityChars = new char[MAX_INT_LENGTH + quantitySuffixLength];
+        }
+    }
+
+    /**
+     * Compares two lists of products by ID. When only the quantity of a product changed, the
+     * change carries {@link #PAYLOAD_QUANTITY} so that only the quantity is bound again.
+     */
+    static class ProductDiff extends DiffUtil.Callback {
+
+        private final List<Product> mOldProducts;
+        private final List<Product> mNewProducts;
+
+        ProductDiff(List<Product> oldProducts, List<Product> newProducts) {
+            mOldProducts = oldProducts;
+            mNewProducts = newProducts;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldProducts.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewProducts.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldProducts.get(oldItemPosition).id == mNewProducts.get(newItemPosition).id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldProducts.get(oldItemPosition).equals(mNewProducts.get(newItemPosition));
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            Product oldProduct = mOldProducts.get(oldItemPosition);
+            Product newProduct = mNewProducts.get(newItemPosition);
+            return oldProduct.sameDetailsAs(newProduct) ? PAYLOAD_QUANTITY : null;
+        }
+    }
+}
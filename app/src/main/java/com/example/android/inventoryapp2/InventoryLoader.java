@@ -0,0 +1,599 @@
+package com.example.android.inventoryapp2;
+
+import android.content.AsyncTaskLoader;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.support.v4.os.TraceCompat;
+import android.support.v7.util.DiffUtil;
+
+import com.example.android.inventoryapp2.data.CatalogMode;
+import com.example.android.inventoryapp2.data.CatalogSnapshot;
+import com.example.android.inventoryapp2.data.InventoryContract;
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.Product;
+import com.example.android.inventoryapp2.data.StartupTrace;
+import com.example.android.inventoryapp2.data.SupplierCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the products shown by the catalog, either the first rows of the inventory table in the
+ * order and with the filters of a {@link CatalogMode}, or the results of a search. Besides the
+ * products, each load works out on the background thread how they differ from the previous
+ * load, so the catalog only has to re-bind the rows that changed.
+ *
+ * The catalog is loaded one keyset page at a time, and {@link #loadMore()} grows it by a page.
+ * When the provider notifies changes of single products, only those products are read again
+ * and patched into the previous list. Any other change of the inventory, and any change of
+ * the products matching a search, loads all the products again. So does a change of the mode
+ * with {@link #setMode(CatalogMode)}, starting over from the first page, while the products of
+ * the previous mode stay shown until it is loaded.
+ *
+ * {@link #prefetch()} starts reading the first page before the loader is started, while the
+ * activity inflates its layout, so that the first query and the opening of the database don't
+ * wait for it. If the page is read by the time the loader starts, it is delivered at once and
+ * shown in the first frame, otherwise the first load waits for it rather than reading it again.
+ * Meanwhile the {@link CatalogSnapshot} of the first page, if it is in the same mode, is
+ * delivered instead, and replaced by the live products once they are loaded. If the version of
+ * the products didn't change since the snapshot was written, the snapshot is the first page and
+ * the page isn't read at all.
+ */
+public class InventoryLoader extends AsyncTaskLoader<InventoryLoader.Result> {
+
+    /**
+     * Products loaded by an {@link InventoryLoader}, and how they changed since the previous
+     * load. The list of products is never modified once loaded.
+     */
+    public static final class Result {
+
+        /** The loaded products */
+        public final List<Product> products;
+
+        /** Whether there may be more products past the last one, when loading the catalog */
+        public final boolean mayHaveMore;
+
+        /** How the catalog products were sorted and filtered, or null for search results */
+        public final CatalogMode mode;
+
+        /** Products of the previous load, or null if this is the first one */
+        final List<Product> previous;
+
+        /** Changes from the previous products to these, or null if this is the first load */
+        final DiffUtil.DiffResult diff;
+
+        /**
+         * Number of changes recorded before the load started, all of which it includes, or
+         * {@link #NOT_LOADED} for the products of the snapshot, which may include none
+         */
+        final int changeCount;
+
+        Result(List<Product> products, boolean mayHaveMore, CatalogMode mode, List<Product> previous,
+               DiffUtil.DiffResult diff, int changeCount) {
+            this.products = products;
+            this.mayHaveMore = mayHaveMore;
+            this.mode = mode;
+            this.previous = previous;
+            this.diff = diff;
+            this.changeCount = changeCount;
+        }
+    }
+
+    /** {@link Result#changeCount} of the products of the snapshot, not loaded from the database */
+    private static final int NOT_LOADED = -1;
+
+    /**
+     * Maximum number of changed products patched into the previous products. With more changes
+     * than that, it is cheaper to load all the products again.
+     */
+    private static final int MAX_PATCHED_CHANGES = 100;
+
+    /** Number of products loaded per page of the catalog */
+    private final int mPageSize;
+
+    /** Text to search for, or null to load the catalog */
+    private final String mSearch;
+
+    /** How the catalog is sorted and filtered, or null when searching. Guarded by this */
+    private CatalogMode mMode;
+
+    /** Observes the inventory table while the loader is started */
+    private final ContentObserver mObserver;
+
+    /** Whether {@link #mObserver} is registered */
+    private boolean mObserving;
+
+    /** The last result delivered */
+    private volatile Result mResult;
+
+    /** Number of products of the catalog to load. Guarded by this */
+    private int mLimit;
+
+    /**
+     * Changes recorded since the ones included in the last result delivered, oldest first. Each
+     * is the notified URI, or null for a change that can't be patched. Guarded by this
+     */
+    private final ArrayList<Uri> mChanges = new ArrayList<>();
+
+    /** Number of changes recorded before the first one in {@link #mChanges}. Guarded by this */
+    private int mChangesStart;
+
+    /** Number of queries made by the loader */
+    private final AtomicInteger mQueryCount = new AtomicInteger();
+
+    /** Reads the first page started by {@link #prefetch()} until taken. Guarded by this */
+    private FutureTask<Result> mPrefetch;
+
+    /** The first page kept outside the database, or null when searching */
+    private final CatalogSnapshot mSnapshot;
+
+    /**
+     * The products of the snapshot read by {@link #prefetch()}, shown until the live ones are
+     * loaded, or null if there was none in the mode of the catalog
+     */
+    private Result mSnapshotResult;
+
+    /**
+     * Create a loader of the catalog in the {@link CatalogMode#DEFAULT default mode}, starting
+     * with its first page.
+     */
+    public InventoryLoader(Context context, int pageSize) {
+        this(context, pageSize, CatalogMode.DEFAULT);
+    }
+
+    /**
+     * Create a loader of the catalog sorted and filtered by the given mode, starting with its
+     * first page.
+     */
+    public InventoryLoader(Context context, int pageSize, CatalogMode mode) {
+        this(context, pageSize, mode, null);
+    }
+
+    /**
+     * Create a loader of the products matching the given search text.
+     */
+    public InventoryLoader(Context context, String search) {
+        this(context, 0, null, search);
+    }
+
+    private InventoryLoader(Context context, int pageSize, CatalogMode mode, String search) {
+        super(context);
+        mPageSize = pageSize;
+        mLimit = pageSize;
+        mMode = mode;
+        mSearch = search;
+        mSnapshot = search == null ? CatalogSnapshot.getInstance(context) : null;
+        mObserver = new ContentObserver(new Handler()) {
+            @Override
+            public boolean deliverSelfNotifications() {
+                return true;
+            }
+
+            @Override
+            public void onChange(boolean selfChange) {
+                // Before Jelly Bean the changed URI isn't known
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                recordChange(uri);
+                onContentChanged();
+            }
+        };
+    }
+
+    /**
+     * Record a change notified by the provider, to be applied by the next load.
+     */
+    private synchronized void recordChange(Uri uri) {
+        if (uri != null && uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_CHANGE) == null) {
+            uri = null;
+        }
+        if (mChanges.size() >= MAX_PATCHED_CHANGES) {
+            // Too many to patch. Forget them and load everything again.
+            mChangesStart += mChanges.size();
+            mChanges.clear();
+            uri = null;
+        }
+        mChanges.add(uri);
+    }
+
+    /**
+     * Returns the number of queries made by this loader so far.
+     */
+    int getQueryCount() {
+        return mQueryCount.get();
+    }
+
+    /**
+     * Returns how the catalog is sorted and filtered, or null if this loader searches.
+     */
+    public synchronized CatalogMode getMode() {
+        return mMode;
+    }
+
+    /**
+     * Sort and filter the catalog by the given mode, loading its first page. The products loaded
+     * in the previous mode can't be patched into the new order, so they are all replaced.
+     */
+    public void setMode(CatalogMode mode) {
+        synchronized (this) {
+            if (mSearch != null || mode.equals(mMode)) {
+                return;
+            }
+            mMode = mode;
+            mLimit = mPageSize;
+        }
+        recordChange(null);
+        onContentChanged();
+    }
+
+    /**
+     * Load the next page of the catalog, unless the last page loaded wasn't full, the next page
+     * is already loading, or the mode changed since.
+     */
+    public void loadMore() {
+        Result result = mResult;
+        synchronized (this) {
+            if (mSearch != null || result == null || !result.mayHaveMore
+                    || result.products.size() < mLimit || !mMode.equals(result.mode)) {
+                return;
+            }
+            mLimit += mPageSize;
+        }
+        onContentChanged();
+    }
+
+    /**
+     * Read the snapshot of the first page of the catalog, and start reading the first page in the
+     * background now, before the loader is started, unless it already loaded products. Must be
+     * called on the main thread.
+     */
+    public void prefetch() {
+        final CatalogMode mode;
+        synchronized (this) {
+            if (mSearch != null || mResult != null || mPrefetch != null) {
+                return;
+            }
+            mode = mMode;
+        }
+        // A file of a few kilobytes, mapped rather than read
+        final CatalogSnapshot.Page snapshot = mSnapshot.read();
+        if (snapshot != null && snapshot.mode.equals(mode) && snapshot.pageSize == mPageSize) {
+            mSnapshotResult = new Result(snapshot.products, snapshot.mayHaveMore, snapshot.mode, null, null,
+                    NOT_LOADED);
+            // Bound before the suppliers are read, so the rows show the suppliers of the snapshot
+            SupplierCache.getInstance(getContext()).offer(snapshot.suppliers);
+            StartupTrace.mark(StartupTrace.SNAPSHOT_READ);
+        }
+        // Changes made while the page is read are applied by the next load
+        registerObserver();
+        final boolean current = mSnapshotResult != null;
+        FutureTask<Result> prefetch = new FutureTask<>(new Callable<Result>() {
+            @Override
+            public Result call() {
+                TraceCompat.beginSection("InventoryLoader.prefetch");
+                try {
+                    return current ? loadSnapshot(snapshot) : load();
+                } finally {
+                    TraceCompat.endSection();
+                }
+            }
+        });
+        synchronized (this) {
+            mPrefetch = prefetch;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(prefetch);
+    }
+
+    /**
+     * Returns the products read by {@link #prefetch()}, unless they are in another mode than
+     * the catalog now. Returns null if there are none, or if they aren't read yet and the caller
+     * doesn't wait for them.
+     *
+     * @param wait    whether to wait for the products to be read
+     * @param current whether the products must also include every change recorded so far
+     */
+    private Result takePrefetch(boolean wait, boolean current) {
+        FutureTask<Result> prefetch;
+        synchronized (this) {
+            prefetch = mPrefetch;
+            if (prefetch == null || (!wait && !prefetch.isDone())) {
+                return null;
+            }
+            mPrefetch = null;
+        }
+        Result result;
+        try {
+            result = prefetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // The load reads the page again, and fails the same way if it has to
+            return null;
+        }
+        synchronized (this) {
+            if (!result.mode.equals(mMode)
+                    || (current && result.changeCount != mChangesStart + mChanges.size())) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the products of the snapshot as the first page if the products didn't change since
+     * it was written, otherwise loads the first page.
+     */
+    private Result loadSnapshot(CatalogSnapshot.Page snapshot) {
+        int changeCount;
+        synchronized (this) {
+            changeCount = mChangesStart + mChanges.size();
+        }
+        // Changes written before the version is read change it, and the changes written after
+        // are notified after the count above, so are recorded for the next load
+        mQueryCount.incrementAndGet();
+        if (mSnapshot.readVersion() != snapshot.version) {
+            return load();
+        }
+        SupplierCache.getInstance(getContext()).getSuppliers();
+        StartupTrace.mark(StartupTrace.FIRST_PAGE_READ);
+        return new Result(snapshot.products, snapshot.mayHaveMore, snapshot.mode, null, null, changeCount);
+    }
+
+    @Override
+    public Result loadInBackground() {
+        Result prefetched = takePrefetch(true, true);
+        if (prefetched == null) {
+            return load();
+        }
+        Result previous = mResult;
+        if (previous == null) {
+            return prefetched;
+        }
+        // The snapshot is shown, only re-bind the rows that changed since it was written
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(
+                new InventoryAdapter.ProductDiff(previous.products, prefetched.products), true);
+        return new Result(prefetched.products, prefetched.mayHaveMore, prefetched.mode, previous.products, diff,
+                prefetched.changeCount);
+    }
+
+    /**
+     * Load the products, patching the changes since the last result delivered into its products
+     * when possible.
+     */
+    private Result load() {
+        Result previous = mResult;
+        int limit;
+        CatalogMode mode;
+        int changeCount;
+        List<Uri> changes = null;
+        synchronized (this) {
+            limit = mLimit;
+            mode = mMode;
+            changeCount = mChangesStart + mChanges.size();
+            if (previous != null && previous.changeCount >= mChangesStart) {
+                changes = new ArrayList<>(mChanges.subList(previous.changeCount - mChangesStart, mChanges.size()));
+            }
+        }
+
+        // Read the suppliers the rows show here, rather than on the main thread when the first
+        // row is bound
+        SupplierCache.getInstance(getContext()).getSuppliers();
+
+        ArrayList<Product> products = new ArrayList<>();
+        boolean mayHaveMore = false;
+        if (mSearch != null) {
+            readProducts(InventoryEntry.buildSearchUri(mSearch), null, null, products);
+        } else {
+            // Start from the previous products if the changes since can be patched into them,
+            // then only the pages past their end are missing
+            mayHaveMore = true;
+            if (changes != null && !changes.contains(null)) {
+                products.addAll(previous.products);
+                applyChanges(changes, mode, previous.mayHaveMore, products);
+                mayHaveMore = previous.mayHaveMore;
+            }
+            while (mayHaveMore && products.size() < limit) {
+                Product after = products.isEmpty() ? null : products.get(products.size() - 1);
+                if (readProducts(mode.buildPageUri(after, mPageSize), null, null, products) < mPageSize) {
+                    mayHaveMore = false;
+                }
+            }
+            StartupTrace.mark(StartupTrace.FIRST_PAGE_READ);
+        }
+
+        if (previous == null) {
+            return new Result(products, mayHaveMore, mode, null, null, changeCount);
+        }
+        // Products move around when their sort key changes, and when the mode changes
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(
+                new InventoryAdapter.ProductDiff(previous.products, products), true);
+        return new Result(products, mayHaveMore, mode, previous.products, diff, changeCount);
+    }
+
+    /**
+     * Patch the changed products into the products of the previous load, which are in the order
+     * of the given mode. Deleted products are removed, and the products inserted or updated are
+     * read again in a single query, then moved to their place in the order, or removed if the
+     * mode filters them out now. Products past the end of the list are left to the next page,
+     * unless the list already reached the end of the catalog.
+     */
+    private void applyChanges(List<Uri> changes, CatalogMode mode, boolean mayHaveMore,
+                              List<Product> products) {
+        // Only the last change of each product matters
+        Map<Long, String> lastChanges = new HashMap<>();
+        for (Uri change : changes) {
+            lastChanges.put(ContentUris.parseId(change),
+                    change.getQueryParameter(InventoryContract.QUERY_PARAMETER_CHANGE));
+        }
+
+        StringBuilder selection = new StringBuilder();
+        List<String> selectionArgs = new ArrayList<>();
+        for (Map.Entry<Long, String> change : lastChanges.entrySet()) {
+            if (InventoryContract.CHANGE_DELETE.equals(change.getValue())) {
+                int index = indexOfId(products, change.getKey());
+                if (index >= 0) {
+                    products.remove(index);
+                }
+            } else {
+                selection.append(selectionArgs.isEmpty() ? InventoryEntry._ID + " IN (?" : ", ?");
+                selectionArgs.add(String.valueOf(change.getKey()));
+            }
+        }
+        if (selectionArgs.isEmpty()) {
+            return;
+        }
+        selection.append(')');
+
+        List<Product> changed = new ArrayList<>();
+        readProducts(InventoryEntry.CONTENT_URI, selection.toString(),
+                selectionArgs.toArray(new String[selectionArgs.size()]), changed);
+        Map<Long, Product> changedById = new HashMap<>();
+        for (Product product : changed) {
+            changedById.put(product.id, product);
+        }
+
+        // The next page starts after the last product loaded, so the products that belong
+        // after it are left out, even when it moved itself
+        Product last = products.isEmpty() ? null : products.get(products.size() - 1);
+        for (String id : selectionArgs) {
+            Product product = changedById.get(Long.valueOf(id));
+            int index = indexOfId(products, Long.parseLong(id));
+            if (index >= 0) {
+                products.remove(index);
+            }
+            // Unless deleted since it was notified, or filtered out by the mode
+            if (product != null && mode.matches(product)
+                    && (!mayHaveMore || (last != null && mode.compare(product, last) <= 0))) {
+                products.add(-Collections.binarySearch(products, product, mode) - 1, product);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the product with the given ID in the products, or -1 if there is none.
+     */
+    private static int indexOfId(List<Product> products, long id) {
+        for (int i = 0; i < products.size(); i++) {
+            if (products.get(i).id == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add the products returned by the given URI and selection to the list.
+     *
+     * @return the number of products added
+     */
+    private int readProducts(Uri uri, String selection, String[] selectionArgs, List<Product> products) {
+        mQueryCount.incrementAndGet();
+        Cursor cursor = getContext().getContentResolver().query(uri, Product.PROJECTION,
+                selection, selectionArgs, null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            Product.Columns columns = new Product.Columns(cursor);
+            while (cursor.moveToNext()) {
+                products.add(columns.read(cursor));
+            }
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(Result result) {
+        if (isReset()) {
+            return;
+        }
+        mResult = result;
+        synchronized (this) {
+            // The changes included in the result are no longer needed
+            int included = result.changeCount - mChangesStart;
+            if (included > 0) {
+                mChanges.subList(0, included).clear();
+                mChangesStart = result.changeCount;
+            }
+        }
+        if (mSnapshot != null && result.changeCount != NOT_LOADED) {
+            mSnapshot.setMode(result.mode, mPageSize);
+        }
+        if (isStarted()) {
+            super.deliverResult(result);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        registerObserver();
+        // The changes made while the prefetched page was read load again below
+        Result prefetched = mResult == null ? takePrefetch(false, false) : null;
+        if (prefetched != null) {
+            deliverResult(prefetched);
+        } else if (mResult != null) {
+            deliverResult(mResult);
+        } else if (mSnapshotResult != null && mSnapshotResult.mode.equals(getMode())) {
+            // Show the snapshot until the live products are loaded
+            deliverResult(mSnapshotResult);
+        }
+        mSnapshotResult = null;
+        if (takeContentChanged() || mResult == null || mResult.changeCount == NOT_LOADED) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * Observe the inventory table, unless already observing it.
+     */
+    private void registerObserver() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(
+                    InventoryEntry.CONTENT_URI, true, mObserver);
+            mObserving = true;
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mResult = null;
+        mSnapshotResult = null;
+        synchronized (this) {
+            if (mPrefetch != null) {
+                mPrefetch.cancel(false);
+                mPrefetch = null;
+            }
+            mChangesStart += mChanges.size();
+            mChanges.clear();
+        }
+    }
+}
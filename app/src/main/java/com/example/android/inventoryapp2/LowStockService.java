@@ -0,0 +1,121 @@
+package com.example.android.inventoryapp2;
+
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.database.SQLException;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.app.JobIntentService;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.LowStockChecker;
+
+/**
+ * Checks for products that went low on stock with {@link LowStockChecker}, and raises one alert
+ * listing them. The check runs every half hour or so, when the device is awake anyway, and costs
+ * next to nothing when no product went low.
+ *
+ * The alarm only enqueues the check, which runs as a job on Android O and later, where services
+ * can't be started from the background.
+ */
+public class LowStockService extends JobIntentService {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = LowStockService.class.getSimpleName();
+
+    /** Channel of the low stock alerts on Android O and later */
+    private static final String CHANNEL_ID = "low_stock";
+
+    /** Identifier of the low stock alert, replaced by every new alert */
+    private static final int NOTIFICATION_ID = 2;
+
+    /** Identifier of the jobs of the service */
+    private static final int JOB_ID = 2;
+
+    /** Most products listed in an alert */
+    private static final int MAX_LINES = 5;
+
+    /**
+     * Schedule the checks, unless they already are. The alarm doesn't wake the device, and is
+     * lost when it restarts until the app is opened again.
+     */
+    public static void schedule(Context context) {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        if (PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_HALF_HOUR,
+                AlarmManager.INTERVAL_HALF_HOUR, PendingIntent.getBroadcast(context, 0, intent, 0));
+    }
+
+    /**
+     * Run a check in the background now.
+     */
+    public static void check(Context context) {
+        enqueueWork(context, LowStockService.class, JOB_ID, new Intent());
+    }
+
+    @Override
+    protected void onHandleWork(Intent intent) {
+        LowStockChecker checker = new LowStockChecker(this);
+        LowStockChecker.Result result;
+        try {
+            result = checker.check();
+        } catch (SQLException e) {
+            // Nothing is acknowledged, the next check reports the same products
+            Log.e(LOG_TAG, "Low stock check failed", e);
+            return;
+        }
+        if (result == null) {
+            return;
+        }
+
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.low_stock_channel_name), NotificationManager.IMPORTANCE_DEFAULT));
+        }
+
+        // List the products that went low, the first ones if there are many
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        int lines = Math.min(result.names.size(), MAX_LINES);
+        for (int i = 0; i < lines; i++) {
+            style.addLine(getString(R.string.low_stock_line, result.names.get(i), result.quantities.get(i)));
+        }
+        if (result.names.size() > lines) {
+            style.setSummaryText(getString(R.string.low_stock_more, result.names.size() - lines));
+        }
+        String title = getResources().getQuantityString(R.plurals.low_stock_title,
+                result.lowProducts, result.lowProducts);
+        manager.notify(NOTIFICATION_ID, new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_notify_error)
+                .setContentTitle(title)
+                .setContentText(getString(R.string.low_stock_line, result.names.get(0), result.quantities.get(0)))
+                .setStyle(style)
+                .setNumber(result.names.size())
+                .setContentIntent(PendingIntent.getActivity(this, 0,
+                        new Intent(this, CatalogActivity.class), 0))
+                .setAutoCancel(true)
+                .build());
+        checker.acknowledge(result);
+    }
+
+    /**
+     * Receives the alarm of the checks, and enqueues one.
+     */
+    public static class AlarmReceiver extends BroadcastReceiver {
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            check(context);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.android.inventoryapp2;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.SQLException;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.support.v4.app.JobIntentService;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.DatabaseMaintainer;
+
+/**
+ * Runs the maintenance of the database with {@link DatabaseMaintainer} about once a day, while
+ * the device is idle and charging, so that nobody waits for it and it costs no battery.
+ *
+ * On Lollipop and later the job scheduler starts {@link Job} when the device is idle and
+ * charging, and stops it as soon as it no longer is, which cancels the run after its current
+ * step. Earlier devices have no idle state: a daily alarm enqueues a run if the device is
+ * charging with its screen off at the time.
+ */
+public class MaintenanceService extends JobIntentService {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = MaintenanceService.class.getSimpleName();
+
+    /** Identifier of the work enqueued by the alarm */
+    private static final int JOB_ID = 3;
+
+    /** Identifier of the job scheduled on Lollipop and later */
+    private static final int SCHEDULED_JOB_ID = 4;
+
+    /**
+     * Schedule the maintenance, unless it already is. The schedule is lost when the device
+     * restarts until the app is opened again.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            Job.schedule(context);
+            return;
+        }
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        if (PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_DAY,
+                AlarmManager.INTERVAL_DAY, PendingIntent.getBroadcast(context, 0, intent, 0));
+    }
+
+    @Override
+    protected void onHandleWork(Intent intent) {
+        maintain(new DatabaseMaintainer(this));
+    }
+
+    /**
+     * Run the maintenance, and log its report.
+     */
+    private static void maintain(DatabaseMaintainer maintainer) {
+        try {
+            DatabaseMaintainer.Report report = maintainer.run();
+            Log.i(LOG_TAG, "Maintenance: " + report);
+        } catch (SQLException e) {
+            // Nothing depends on the maintenance, the next run tries again
+            Log.e(LOG_TAG, "Maintenance failed", e);
+        }
+    }
+
+    /**
+     * Job running the maintenance while the device is idle and charging, on Lollipop and later.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public static class Job extends JobService {
+
+        /** The running maintenance, or null */
+        private volatile DatabaseMaintainer mMaintainer;
+
+        /**
+         * Schedule the job once a day, unless it already is.
+         */
+        static void schedule(Context context) {
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+            for (JobInfo job : scheduler.getAllPendingJobs()) {
+                if (job.getId() == SCHEDULED_JOB_ID) {
+                    return;
+                }
+            }
+            scheduler.schedule(new JobInfo.Builder(SCHEDULED_JOB_ID, new ComponentName(context, Job.class))
+                    .setRequiresDeviceIdle(true)
+                    .setRequiresCharging(true)
+                    .setPeriodic(AlarmManager.INTERVAL_DAY)
+                    .build());
+        }
+
+        @Override
+        public boolean onStartJob(final JobParameters params) {
+            final DatabaseMaintainer maintainer = new DatabaseMaintainer(this);
+            mMaintainer = maintainer;
+            // Jobs start on the main thread
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        maintain(maintainer);
+                    } finally {
+                        mMaintainer = null;
+                        jobFinished(params, false);
+                    }
+                }
+            }, LOG_TAG).start();
+            return true;
+        }
+
+        @Override
+        public boolean onStopJob(JobParameters params) {
+            DatabaseMaintainer maintainer = mMaintainer;
+            if (maintainer != null) {
+                maintainer.cancel();
+            }
+            // The next window of the periodic job runs it again
+            return false;
+        }
+    }
+
+    /**
+     * Receives the daily alarm before Lollipop, and enqueues a run if the device is charging
+     * and its screen is off.
+     */
+    public static class AlarmReceiver extends BroadcastReceiver {
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onReceive(Context context, Intent intent) {
+            // The battery state is a sticky broadcast, read without registering a receiver
+            Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            boolean charging = battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+            PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+            if (charging && !powerManager.isScreenOn()) {
+                enqueueWork(context, MaintenanceService.class, JOB_ID, new Intent());
+            }
+        }
+    }
+}
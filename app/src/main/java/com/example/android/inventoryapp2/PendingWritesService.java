@@ -0,0 +1,43 @@
+package com.example.android.inventoryapp2;
+
+import android.content.Context;
+import android.content.Intent;
+import android.support.v4.app.JobIntentService;
+
+import com.example.android.inventoryapp2.data.InventoryWriter;
+
+/**
+ * Keeps the app running until the writes of the {@link InventoryWriter} queued when the app went
+ * to the background have been made. Until then they are only in memory, and a process in the
+ * background with nothing running can be killed at any time.
+ *
+ * The writes are still made by the writer, in the order they were queued: the work only waits
+ * for them, as a job on Android O and later and under a wake lock before.
+ */
+public class PendingWritesService extends JobIntentService {
+
+    /** Identifier of the jobs of the service */
+    private static final int JOB_ID = 5;
+
+    /**
+     * Queue the sales held by the writer, and keep the app running until every write queued so
+     * far has been made, unless there is none. Call it when the app is paused.
+     */
+    public static void flush(Context context) {
+        InventoryWriter writer = InventoryWriter.getInstance(context);
+        writer.flush();
+        if (writer.hasPendingWrites()) {
+            enqueueWork(context, PendingWritesService.class, JOB_ID, new Intent());
+        }
+    }
+
+    @Override
+    protected void onHandleWork(Intent intent) {
+        try {
+            InventoryWriter.getInstance(this).awaitWrites();
+        } catch (InterruptedException e) {
+            // The system stopped the work, the writes go on as long as the app runs
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.android.inventoryapp2;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Formats prices stored in cents as currency of the default locale, writing the characters
+ * into a buffer owned by the caller instead of building a new String for every list row.
+ * The currency prefix, suffix and separators are looked up once per locale.
+ */
+final class PriceFormatter {
+
+    /** Value for converting cents to dollars */
+    private static final int CENT_TO_DOLLAR = 100;
+
+    /** Longest price this formatter writes, with room for grouping separators */
+    static final int MAX_LENGTH = 64;
+
+    /** Shared formatter, rebuilt when the default locale changes */
+    private static PriceFormatter sInstance;
+
+    private final Locale mLocale;
+    private final char[] mPrefix;
+    private final char[] mSuffix;
+    private final char mGroupingSeparator;
+    private final char mDecimalSeparator;
+    private final int mGroupingSize;
+    private final int mFractionDigits;
+
+    private PriceFormatter(Locale locale) {
+        mLocale = locale;
+        NumberFormat nf = NumberFormat.getCurrencyInstance(locale);
+        if (nf instanceof DecimalFormat) {
+            DecimalFormat df = (DecimalFormat) nf;
+            DecimalFormatSymbols symbols = df.getDecimalFormatSymbols();
+            mPrefix = df.getPositivePrefix().toCharArray();
+            mSuffix = df.getPositiveSuffix().toCharArray();
+            mGroupingSeparator = symbols.getGroupingSeparator();
+            mDecimalSeparator = symbols.getMonetaryDecimalSeparator();
+            mGroupingSize = df.isGroupingUsed() ? df.getGroupingSize() : 0;
+        } else {
+            mPrefix = nf.getCurrency().getSymbol(locale).toCharArray();
+            mSuffix = new char[0];
+            mGroupingSeparator = ',';
+            mDecimalSeparator = '.';
+            mGroupingSize = 3;
+        }
+        mFractionDigits = nf.getMaximumFractionDigits();
+    }
+
+    /**
+     * Returns the formatter for the default locale. Only call this from the main thread.
+     */
+    static PriceFormatter getInstance() {
+        Locale locale = Locale.getDefault();
+        if (sInstance == null || !sInstance.mLocale.equals(locale)) {
+            sInstance = new PriceFormatter(locale);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Write the price into the buffer, starting at index 0.
+     *
+     * @param cents  price in cents, never negative
+     * @param buffer buffer of at least {@link #MAX_LENGTH} characters
+     * @return number of characters written
+     */
+    int format(long cents, char[] buffer) {
+        long whole = cents / CENT_TO_DOLLAR;
+        int fraction = (int) (cents % CENT_TO_DOLLAR);
+        if (mFractionDigits == 0) {
+            // Round to whole units like NumberFormat does, half-even
+            if (fraction > CENT_TO_DOLLAR / 2 || (fraction == CENT_TO_DOLLAR / 2 && whole % 2 == 1)) {
+                whole++;
+            }
+        }
+
+        int length = 0;
+        System.arraycopy(mPrefix, 0, buffer, length, mPrefix.length);
+        length += mPrefix.length;
+
+        // Write the digits of the whole part backwards, then reverse them in place
+        int start = length;
+        int digits = 0;
+        do {
+            if (mGroupingSize > 0 && digits > 0 && digits % mGroupingSize == 0) {
+                buffer[length++] = mGroupingSeparator;
+            }
+            buffer[length++] = (char) ('0' + whole % 10);
+            whole /= 10;
+            digits++;
+        } while (whole > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+
+        if (mFractionDigits > 0) {
+            buffer[length++] = mDecimalSeparator;
+            buffer[length++] = (char) ('0' + fraction / 10);
+            buffer[length++] = (char) ('0' + fraction % 10);
+            // Currencies with more than two decimals are padded with zeros
+            for (int i = 2; i < mFractionDigits; i++) {
+                buffer[length++] = '0';
+            }
+        }
+
+        System.arraycopy(mSuffix, 0, buffer, length, mSuffix.length);
+        return length + mSuffix.length;
+    }
+}
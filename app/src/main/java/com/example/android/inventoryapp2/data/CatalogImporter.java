@@ -0,0 +1,432 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SupplierEntry;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports the price and stock files of the suppliers into the inventory. A file is a UTF-8 CSV
+ * with a header naming its columns: {@link #HEADER_NAME}, {@link #HEADER_SUPPLIER} and
+ * {@link #HEADER_PHONE}, and optionally {@link #HEADER_PRICE} and {@link #HEADER_QUANTITY}, in
+ * any order. For instance:
+ *
+ * <pre>
+ * name,price,quantity,supplier,phone
+ * 3D Puzzle Art,12.50,40,Pearson,360-220-8090
+ * </pre>
+ *
+ * The supplier is given by the name or ID of a row of the suppliers table. An empty phone keeps
+ * the phone the supplier has.
+ *
+ * The file is streamed through a fixed buffer, so memory use doesn't grow with its size. Rows are
+ * validated with the rules of {@link InventoryProvider}, invalid rows are counted and skipped,
+ * and the valid ones are upserted by name and supplier through {@link InventoryEntry#UPSERT_URI},
+ * one transaction per batch.
+ *
+ * After each batch commits, the position in the file is saved as a checkpoint. Importing the
+ * same URI again after a failure or cancellation resumes from the last checkpoint. Upserting a
+ * row twice leaves the same product, so rows read after the checkpoint but not committed are
+ * simply imported again.
+ *
+ * Imports read the whole file and write to the database, so they must run off the main thread.
+ */
+public final class CatalogImporter {
+
+    /** Column headers of the CSV files, matched ignoring case */
+    public static final String HEADER_NAME = "name";
+    public static final String HEADER_PRICE = "price";
+    public static final String HEADER_QUANTITY = "quantity";
+    public static final String HEADER_SUPPLIER = "supplier";
+    public static final String HEADER_PHONE = "phone";
+
+    /** Number of rows upserted per transaction by default */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** Size of the buffer the file is read through */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Longest row accepted, in bytes */
+    private static final int MAX_ROW_LENGTH = 1024 * 1024;
+
+    /** Name of the preferences holding the checkpoints, keyed by source URI */
+    private static final String PREFERENCES_NAME = "catalog_import";
+
+    /** Suffixes of the checkpoint keys of a source URI */
+    private static final String KEY_OFFSET = ".offset";
+    private static final String KEY_LINE = ".line";
+    private static final String KEY_SIZE = ".size";
+    private static final String KEY_IMPORTED = ".imported";
+    private static final String KEY_REJECTED = ".rejected";
+
+    /**
+     * Receives the progress of an import, on the importing thread, after each batch.
+     */
+    public interface Listener {
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * Progress of an import, and its result once it has returned.
+     */
+    public static final class Progress {
+
+        /** Lines of the file read so far, including the header */
+        public long linesRead;
+
+        /** Rows upserted, and rows skipped because they were invalid */
+        public long rowsImported;
+        public long rowsRejected;
+
+        /** Bytes of the file read so far, and its size, or -1 if it isn't known */
+        public long bytesRead;
+        public long totalBytes = -1;
+
+        /** Line the import resumed after, or 0 if it started from the beginning */
+        public long resumedAfterLine;
+
+        /** Time spent in this run of the import, and the most heap used during it */
+        public long elapsedNanos;
+        public long peakHeapBytes;
+
+        /** The first invalid row, with its line number, or null if there were none */
+        public String firstError;
+
+        /** Whether the import was cancelled before the end of the file */
+        public boolean cancelled;
+
+        /** Rows imported and rejected by the runs before a resume */
+        long rowsBeforeResume;
+
+        /**
+         * Returns the rows read per second in this run of the import.
+         */
+        public long getRowsPerSecond() {
+            long rows = rowsImported + rowsRejected - rowsBeforeResume;
+            return elapsedNanos == 0 ? 0 : rows * 1000000000L / elapsedNanos;
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final SharedPreferences mCheckpoints;
+    private int mBatchSize = DEFAULT_BATCH_SIZE;
+    private volatile boolean mCancelled;
+
+    public CatalogImporter(Context context) {
+        this(context.getContentResolver(),
+                context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+    }
+
+    /**
+     * Create an importer writing through the given resolver and keeping its checkpoints in the
+     * given preferences. Used by tests.
+     */
+    CatalogImporter(ContentResolver resolver, SharedPreferences checkpoints) {
+        mResolver = resolver;
+        mCheckpoints = checkpoints;
+    }
+
+    /**
+     * Set the number of rows upserted per transaction. Larger batches import faster but hold
+     * the database longer, and more rows are imported again after a failure.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * Stop the running import after its current batch. Its checkpoint is kept.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Forget the checkpoint of the given source, so its next import starts from the beginning.
+     */
+    public void clearCheckpoint(Uri source) {
+        String key = source.toString();
+        mCheckpoints.edit()
+                .remove(key + KEY_OFFSET)
+                .remove(key + KEY_LINE)
+                .remove(key + KEY_SIZE)
+                .remove(key + KEY_IMPORTED)
+                .remove(key + KEY_REJECTED)
+                .apply();
+    }
+
+    /**
+     * Import the CSV file at the given URI, resuming from its checkpoint if it has one.
+     *
+     * @param listener receives the progress after each batch, may be null
+     * @return the final progress, counting the rows of the runs before a resume too
+     * @throws IOException if the file can't be read or has no header with the required columns
+     */
+    public Progress importCsv(Uri source, Listener listener) throws IOException {
+        mCancelled = false;
+        long start = System.nanoTime();
+        Runtime runtime = Runtime.getRuntime();
+        Progress progress = new Progress();
+        String key = source.toString();
+
+        InputStream in = mResolver.openInputStream(source);
+        if (in == null) {
+            throw new FileNotFoundException("Cannot open " + source);
+        }
+        ReadableByteChannel channel = in instanceof FileInputStream
+                ? ((FileInputStream) in).getChannel() : Channels.newChannel(in);
+        try {
+            progress.totalBytes = size(channel);
+            CsvReader reader = new CsvReader(channel, BUFFER_SIZE, MAX_ROW_LENGTH);
+            if (!reader.readRecord()) {
+                clearCheckpoint(source);
+                return progress;
+            }
+            int[] columns = readHeader(reader);
+            Map<String, Integer> suppliers = readSuppliers();
+
+            // Resume after the last batch committed, unless the file changed size since
+            long offset = mCheckpoints.getLong(key + KEY_OFFSET, 0);
+            if (offset > reader.getOffset()
+                    && mCheckpoints.getLong(key + KEY_SIZE, -1) == progress.totalBytes) {
+                progress.resumedAfterLine = mCheckpoints.getLong(key + KEY_LINE, 0);
+                progress.rowsImported = mCheckpoints.getLong(key + KEY_IMPORTED, 0);
+                progress.rowsRejected = mCheckpoints.getLong(key + KEY_REJECTED, 0);
+                progress.rowsBeforeResume = progress.rowsImported + progress.rowsRejected;
+                reader.skipTo(offset, progress.resumedAfterLine);
+            }
+
+            ContentValues[] batch = new ContentValues[mBatchSize];
+            int batchCount = 0;
+            while (!mCancelled && reader.readRecord()) {
+                // Skip blank lines
+                if (reader.getFieldCount() == 1 && reader.getField(0).trim().isEmpty()) {
+                    continue;
+                }
+                ContentValues values = readRow(reader, columns, suppliers, progress);
+                if (values == null) {
+                    progress.rowsRejected++;
+                    continue;
+                }
+                batch[batchCount++] = values;
+                if (batchCount == mBatchSize) {
+                    commit(batch, batchCount, progress);
+                    batchCount = 0;
+                    saveCheckpoint(key, reader, progress);
+                    report(progress, reader, start, runtime, listener);
+                }
+            }
+            if (batchCount > 0) {
+                commit(batch, batchCount, progress);
+            }
+            progress.cancelled = mCancelled;
+            if (mCancelled) {
+                saveCheckpoint(key, reader, progress);
+            } else {
+                clearCheckpoint(source);
+            }
+            report(progress, reader, start, runtime, listener);
+            return progress;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the size of the file read by the channel, or -1 if it isn't a file.
+     */
+    private static long size(ReadableByteChannel channel) {
+        if (!(channel instanceof FileChannel)) {
+            return -1;
+        }
+        try {
+            return ((FileChannel) channel).size();
+        } catch (IOException e) {
+            // A pipe, its size isn't known
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the index of each column in the header record, in the order of
+     * {@link #HEADER_NAME}, {@link #HEADER_PRICE}, {@link #HEADER_QUANTITY},
+     * {@link #HEADER_SUPPLIER} and {@link #HEADER_PHONE}, -1 for a missing optional column.
+     */
+    private static int[] readHeader(CsvReader reader) throws IOException {
+        String[] headers = { HEADER_NAME, HEADER_PRICE, HEADER_QUANTITY, HEADER_SUPPLIER, HEADER_PHONE };
+        int[] columns = new int[headers.length];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < reader.getFieldCount(); i++) {
+            String field = reader.getField(i).trim().toLowerCase(Locale.US);
+            for (int h = 0; h < headers.length; h++) {
+                if (headers[h].equals(field)) {
+                    columns[h] = i;
+                }
+            }
+        }
+        for (int h : new int[] { 0, 3, 4 }) {
+            if (columns[h] < 0) {
+                throw new IOException("The catalog has no " + headers[h] + " column");
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Returns the IDs of the suppliers, keyed by their name in lower case and by their ID, read
+     * once per import rather than per row.
+     */
+    private Map<String, Integer> readSuppliers() {
+        Map<String, Integer> suppliers = new HashMap<>();
+        Cursor cursor = mResolver.query(SupplierEntry.CONTENT_URI,
+                new String[] { SupplierEntry._ID, SupplierEntry.COLUMN_NAME }, null, null, null);
+        if (cursor == null) {
+            return suppliers;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                suppliers.put(cursor.getString(1).toLowerCase(Locale.US), id);
+                suppliers.put(String.valueOf(id), id);
+            }
+        } finally {
+            cursor.close();
+        }
+        return suppliers;
+    }
+
+    /**
+     * Returns the product of the current row, or null if it is invalid, in which case the first
+     * error is kept in the progress.
+     */
+    private static ContentValues readRow(CsvReader reader, int[] columns, Map<String, Integer> suppliers,
+                                         Progress progress) {
+        ContentValues values = new ContentValues();
+        try {
+            values.put(InventoryEntry.COLUMN_PRODUCT_NAME, field(reader, columns[0]));
+            String price = field(reader, columns[1]);
+            if (price != null) {
+                values.put(InventoryEntry.COLUMN_PRODUCT_PRICE, parseCents(price));
+            }
+            String quantity = field(reader, columns[2]);
+            if (quantity != null) {
+                values.put(InventoryEntry.COLUMN_PRODUCT_QUANTITY, Integer.parseInt(quantity));
+            }
+            String supplier = field(reader, columns[3]);
+            if (supplier != null) {
+                // By name, ignoring case, or by ID
+                Integer id = suppliers.get(supplier.toLowerCase(Locale.US));
+                if (id == null) {
+                    throw new IllegalArgumentException("Product requires valid supplier name");
+                }
+                values.put(InventoryEntry.COLUMN_SUPPLIER_NAME, id);
+            }
+            String phone = field(reader, columns[4]);
+            if (phone != null) {
+                values.put(InventoryEntry.COLUMN_SUPPLIER_PHONE, phone);
+            }
+            InventoryProvider.validateProduct(values);
+            return values;
+        } catch (IllegalArgumentException e) {
+            // Also thrown for numbers that don't parse
+            if (progress.firstError == null) {
+                progress.firstError = "Line " + reader.getLineNumber() + ": " + e.getMessage();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the trimmed value of a column of the current row, or null if the column is
+     * missing or empty.
+     */
+    private static String field(CsvReader reader, int column) {
+        if (column < 0 || column >= reader.getFieldCount()) {
+            return null;
+        }
+        String value = reader.getField(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Returns a price in dollars, such as "12.5", in cents.
+     */
+    static int parseCents(String price) {
+        long cents = 0;
+        int fractionDigits = -1;
+        boolean digits = false;
+        for (int i = 0; i < price.length(); i++) {
+            char c = price.charAt(i);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || fractionDigits == 2 || cents > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Invalid price " + price);
+            }
+            cents = cents * 10 + (c - '0');
+            digits = true;
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+        for (int i = Math.max(fractionDigits, 0); i < 2; i++) {
+            cents *= 10;
+        }
+        if (!digits || cents > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Invalid price " + price);
+        }
+        return (int) cents;
+    }
+
+    /**
+     * Upsert the first count products of the batch in one transaction.
+     */
+    private void commit(ContentValues[] batch, int count, Progress progress) {
+        ContentValues[] values = count == batch.length ? batch : Arrays.copyOf(batch, count);
+        progress.rowsImported += mResolver.bulkInsert(InventoryEntry.UPSERT_URI, values);
+        Arrays.fill(batch, null);
+    }
+
+    private void saveCheckpoint(String key, CsvReader reader, Progress progress) {
+        mCheckpoints.edit()
+                .putLong(key + KEY_OFFSET, reader.getOffset())
+                .putLong(key + KEY_LINE, reader.getLineNumber())
+                .putLong(key + KEY_SIZE, progress.totalBytes)
+                .putLong(key + KEY_IMPORTED, progress.rowsImported)
+                .putLong(key + KEY_REJECTED, progress.rowsRejected)
+                .apply();
+    }
+
+    private static void report(Progress progress, CsvReader reader, long start, Runtime runtime,
+                               Listener listener) {
+        progress.linesRead = reader.getLineNumber();
+        progress.bytesRead = reader.getOffset();
+        progress.elapsedNanos = System.nanoTime() - start;
+        progress.peakHeapBytes = Math.max(progress.peakHeapBytes,
+                runtime.totalMemory() - runtime.freeMemory());
+        if (listener != null) {
+            listener.onProgress(progress);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.android.inventoryapp2.data;
+
+import android.net.Uri;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import java.util.Comparator;
+
+/**
+ * How the catalog is sorted and filtered: the sort key, and optionally the supplier and the
+ * stock of the products shown. Immutable.
+ *
+ * Pages of the catalog are read from the provider in the order of the sort key, then ID, and
+ * {@link #compare(Product, Product)} orders products the same way, so that changed products can
+ * be patched into the pages already loaded.
+ */
+public final class CatalogMode implements Comparator<Product> {
+
+    /** Value of {@link #supplier} showing the products of every supplier */
+    public static final int ALL_SUPPLIERS = -1;
+
+    /** The catalog by name, of every supplier, whatever the stock */
+    public static final CatalogMode DEFAULT =
+            new CatalogMode(InventoryContract.SORT_NAME, ALL_SUPPLIERS, null);
+
+    /** One of the SORT constants of {@link InventoryContract} */
+    public final String sort;
+
+    /** ID of the supplier of the products shown, or {@link #ALL_SUPPLIERS} */
+    public final int supplier;
+
+    /** One of the STOCK constants of {@link InventoryContract}, or null for any stock */
+    public final String stock;
+
+    public CatalogMode(String sort, int supplier, String stock) {
+        if (!InventoryContract.SORT_NAME.equals(sort) && !InventoryContract.SORT_PRICE.equals(sort)
+                && !InventoryContract.SORT_QUANTITY.equals(sort)) {
+            throw new IllegalArgumentException("Unknown sort " + sort);
+        }
+        if (stock != null && !InventoryContract.STOCK_IN.equals(stock)
+                && !InventoryContract.STOCK_LOW.equals(stock)) {
+            throw new IllegalArgumentException("Unknown stock " + stock);
+        }
+        this.sort = sort;
+        this.supplier = supplier < 0 ? ALL_SUPPLIERS : supplier;
+        this.stock = stock;
+    }
+
+    /**
+     * Returns a copy of this mode sorted by the given key.
+     */
+    public CatalogMode withSort(String newSort) {
+        return new CatalogMode(newSort, supplier, stock);
+    }
+
+    /**
+     * Returns a copy of this mode showing the products of the given supplier, or of every
+     * supplier for {@link #ALL_SUPPLIERS}.
+     */
+    public CatalogMode withSupplier(int newSupplier) {
+        return new CatalogMode(sort, newSupplier, stock);
+    }
+
+    /**
+     * Returns a copy of this mode showing the products with the given stock, or any stock for
+     * null.
+     */
+    public CatalogMode withStock(String newStock) {
+        return new CatalogMode(sort, supplier, newStock);
+    }
+
+    /**
+     * Returns the URI used to load a page of at most pageSize products in this mode, starting
+     * after the given product. Pass null to load the first page.
+     */
+    public Uri buildPageUri(Product after, int pageSize) {
+        Uri.Builder builder = InventoryEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(pageSize))
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_SORT, sort);
+        if (supplier != ALL_SUPPLIERS) {
+            builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_SUPPLIER, String.valueOf(supplier));
+        }
+        if (stock != null) {
+            builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_STOCK, stock);
+        }
+        if (after != null) {
+            builder.appendQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_ID, String.valueOf(after.id))
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_KEY, sortKey(after));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the sort key of the product, as given to {@link InventoryContract#QUERY_PARAMETER_AFTER_KEY}.
+     */
+    private String sortKey(Product product) {
+        switch (sort) {
+            case InventoryContract.SORT_NAME:
+                return product.name;
+            case InventoryContract.SORT_PRICE:
+                return String.valueOf(product.price);
+            default:
+                return String.valueOf(product.quantity);
+        }
+    }
+
+    /**
+     * Returns whether the product is shown in this mode.
+     */
+    public boolean matches(Product product) {
+        if (supplier != ALL_SUPPLIERS && product.supplier != supplier) {
+            return false;
+        }
+        if (InventoryContract.STOCK_IN.equals(stock)) {
+            return product.quantity > 0;
+        }
+        if (InventoryContract.STOCK_LOW.equals(stock)) {
+            return product.isLowOnStock();
+        }
+        return true;
+    }
+
+    /**
+     * Compares products in the order the provider returns them in this mode: by sort key, then
+     * by ID.
+     */
+    @Override
+    public int compare(Product a, Product b) {
+        int result;
+        switch (sort) {
+            case InventoryContract.SORT_NAME:
+                result = compareNoCase(a.name, b.name);
+                break;
+            case InventoryContract.SORT_PRICE:
+                result = a.price < b.price ? -1 : (a.price == b.price ? 0 : 1);
+                break;
+            default:
+                result = a.quantity < b.quantity ? -1 : (a.quantity == b.quantity ? 0 : 1);
+        }
+        if (result != 0) {
+            return result;
+        }
+        return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+    }
+
+    /**
+     * Compares names like SQLite's NOCASE collation: code point by code point, which is the
+     * order of their UTF-8 bytes, with only the ASCII letters folded to lower case.
+     */
+    static int compareNoCase(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+            if (ca != cb) {
+                ca = ca >= 'A' && ca <= 'Z' ? ca + ('a' - 'A') : ca;
+                cb = cb >= 'A' && cb <= 'Z' ? cb + ('a' - 'A') : cb;
+                if (ca != cb) {
+                    return ca < cb ? -1 : 1;
+                }
+            }
+        }
+        if (i < a.length()) {
+            return 1;
+        }
+        return j < b.length() ? -1 : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CatalogMode)) {
+            return false;
+        }
+        CatalogMode other = (CatalogMode) o;
+        return supplier == other.supplier && sort.equals(other.sort)
+                && (stock == null ? other.stock == null : stock.equals(other.stock));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * sort.hashCode() + supplier) + (stock != null ? stock.hashCode() : 0);
+    }
+}
@@ -0,0 +1,491 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SupplierEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.VersionEntry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A copy of the first page of the catalog in a file next to the database, which the catalog
+ * shows on a cold start before the database is even open.
+ *
+ * The file holds the columns the rows show: fixed-width columns of IDs, prices, quantities and
+ * suppliers, the suppliers of the products, and the names and phones in a heap of UTF-8 strings
+ * the rows point into. The suppliers let the rows show them before the {@link SupplierCache}
+ * has read them. It is read through a
+ * {@link java.nio.MappedByteBuffer}, with no parsing beyond decoding the names, and replaced as
+ * a whole by renaming a new file over it, so a reader never sees half of it.
+ *
+ * The snapshot keeps the {@link VersionEntry version} of the products it was read at. It is the
+ * first page of the catalog as long as the version is the same, which is much cheaper to check
+ * than reading the page. It is written again in the background a moment after the provider
+ * notifies a change, and when the catalog moves to another mode, reading the version before the
+ * page so that it never claims a version newer than its products.
+ */
+public final class CatalogSnapshot {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = CatalogSnapshot.class.getSimpleName();
+
+    /** Name of the snapshot file, in the directory of the database */
+    static final String FILE_NAME = "catalog.snapshot";
+
+    /** Returned by {@link #readVersion()} when the version can't be read */
+    public static final long NO_VERSION = Long.MIN_VALUE;
+
+    /** Time the snapshot waits after a change before it is written, so a burst writes it once */
+    private static final long WRITE_DELAY_MILLIS = 1000;
+
+    /** First bytes of a snapshot file, "ICS1" */
+    private static final int MAGIC = 0x49435331;
+
+    /** Version of the layout of the file, changed with it */
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * Size of the header: magic, format, database version, product version, page size, whether
+     * there may be more products, supplier, offset and length of the sort and of the stock in
+     * the heap, number of products, number of suppliers and length of the heap.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 4 + 1 + 4 + 4 * 4 + 4 + 4 + 4;
+
+    /**
+     * Size of a row: ID, price, quantity, supplier, reorder threshold, offset and length of the
+     * name in the heap.
+     */
+    private static final int ROW_SIZE = 8 + 8 + 4 + 4 + 4 + 4 + 4;
+
+    /**
+     * Size of a supplier: ID, offset and length of the name and of the phone in the heap, with a
+     * length of -1 for no phone.
+     */
+    private static final int SUPPLIER_SIZE = 4 + 4 + 4 + 4 + 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The first page of the catalog in a mode, as of a version of the products.
+     */
+    public static final class Page {
+
+        /** Version of the products the page was read at */
+        public final long version;
+
+        /** How the products are sorted and filtered */
+        public final CatalogMode mode;
+
+        /** Number of products of a full page */
+        public final int pageSize;
+
+        /** The products of the page, at most {@link #pageSize} */
+        public final List<Product> products;
+
+        /** Whether there may be more products past the page */
+        public final boolean mayHaveMore;
+
+        /** The suppliers of the products, as of when the page was read */
+        public final List<SupplierCache.Supplier> suppliers;
+
+        public Page(long version, CatalogMode mode, int pageSize, List<Product> products, boolean mayHaveMore,
+                List<SupplierCache.Supplier> suppliers) {
+            this.version = version;
+            this.mode = mode;
+            this.pageSize = pageSize;
+            this.products = products;
+            this.mayHaveMore = mayHaveMore;
+            this.suppliers = suppliers;
+        }
+    }
+
+    /** Snapshot shared by the whole app */
+    private static CatalogSnapshot sInstance;
+
+    private final ContentResolver mResolver;
+
+    private final File mFile;
+
+    /** Writes the snapshot */
+    private final Executor mExecutor;
+
+    /** Delays the writes after a change, on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Mode and page size of the snapshot to write, or null until the catalog tells them */
+    private volatile CatalogMode mMode;
+    private volatile int mPageSize;
+
+    /** Hands the write over to the executor once the delay is over */
+    private final Runnable mScheduleWrite = new Runnable() {
+        @Override
+        public void run() {
+            mExecutor.execute(mWrite);
+        }
+    };
+
+    private final Runnable mWrite = new Runnable() {
+        @Override
+        public void run() {
+            CatalogMode mode = mMode;
+            if (mode != null) {
+                write(mode, mPageSize);
+            }
+        }
+    };
+
+    /**
+     * Returns the snapshot shared by the whole app.
+     */
+    public static synchronized CatalogSnapshot getInstance(Context context) {
+        if (sInstance == null) {
+            Context app = context.getApplicationContext();
+            sInstance = new CatalogSnapshot(app.getContentResolver(),
+                    new File(app.getDatabasePath(InventoryDbHelper.DATABASE_NAME).getParentFile(), FILE_NAME),
+                    Executors.newSingleThreadExecutor());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create a snapshot in the given file of the products read through the given resolver,
+     * written on the given executor.
+     */
+    CatalogSnapshot(ContentResolver resolver, File file, Executor executor) {
+        mResolver = resolver;
+        mFile = file;
+        mExecutor = executor;
+        mResolver.registerContentObserver(InventoryEntry.CONTENT_URI, true, new ContentObserver(mMainHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                scheduleWrite();
+            }
+        });
+    }
+
+    /**
+     * Returns the snapshot in the file, or null if there is none, or it was written by another
+     * version of the app or database. Only reads the file, so it can be called on the main
+     * thread before the database is open.
+     */
+    public Page read() {
+        try {
+            return readFile(mFile);
+        } catch (IOException | IllegalArgumentException e) {
+            // Leave it to the database, the snapshot is written again after the next change
+            Log.w(LOG_TAG, "Cannot read the snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the current version of the products, or {@link #NO_VERSION} if it can't be read.
+     * Opens the database if it isn't yet.
+     */
+    public long readVersion() {
+        Cursor cursor = mResolver.query(VersionEntry.CONTENT_URI,
+                new String[] { VersionEntry.COLUMN_VERSION }, null, null, null);
+        if (cursor == null) {
+            return NO_VERSION;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : NO_VERSION;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Keep the first page of the catalog in the given mode from now on, writing it again in the
+     * background if it isn't the one in the file. Must be called on the main thread.
+     */
+    public void setMode(CatalogMode mode, int pageSize) {
+        if (!mode.equals(mMode) || pageSize != mPageSize) {
+            mMode = mode;
+            mPageSize = pageSize;
+            mMainHandler.removeCallbacks(mScheduleWrite);
+            mExecutor.execute(mWrite);
+        }
+    }
+
+    /**
+     * Write the snapshot a moment from now, unless the catalog hasn't told its mode yet. Called
+     * on the main thread.
+     */
+    private void scheduleWrite() {
+        if (mMode != null) {
+            mMainHandler.removeCallbacks(mScheduleWrite);
+            mMainHandler.postDelayed(mScheduleWrite, WRITE_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Write the first page of the catalog in the given mode to the file, unless the file already
+     * holds it as of the current version. Returns whether it was written. The snapshot is only a
+     * copy, so a failure leaves the file as it was.
+     */
+    boolean write(CatalogMode mode, int pageSize) {
+        // Read the version first, so a change made while the page is read makes it look stale
+        long version = readVersion();
+        if (version == NO_VERSION) {
+            return false;
+        }
+        Page current = read();
+        if (current != null && current.version == version && current.mode.equals(mode)
+                && current.pageSize == pageSize) {
+            return false;
+        }
+        List<Product> products = new ArrayList<>();
+        Cursor cursor = mResolver.query(mode.buildPageUri(null, pageSize), Product.PROJECTION, null, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            Product.Columns columns = new Product.Columns(cursor);
+            while (cursor.moveToNext()) {
+                products.add(columns.read(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        List<SupplierCache.Supplier> suppliers = readSuppliers(products);
+        if (suppliers == null) {
+            return false;
+        }
+        try {
+            writeFile(mFile, new Page(version, mode, pageSize, products, products.size() >= pageSize, suppliers));
+            return true;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Cannot write the snapshot", e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the suppliers of the given products, or null if they can't be read.
+     */
+    private List<SupplierCache.Supplier> readSuppliers(List<Product> products) {
+        Set<Integer> ids = new HashSet<>();
+        for (Product product : products) {
+            ids.add(product.supplier);
+        }
+        Cursor cursor = mResolver.query(SupplierEntry.CONTENT_URI, SupplierEntry.COLUMNS, null, null,
+                SupplierEntry._ID);
+        if (cursor == null) {
+            return null;
+        }
+        List<SupplierCache.Supplier> suppliers = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                if (ids.contains(cursor.getInt(0))) {
+                    suppliers.add(new SupplierCache.Supplier(cursor.getInt(0), cursor.getString(1),
+                            cursor.getString(2)));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return suppliers;
+    }
+
+    /**
+     * Write the page to the given file, replacing it at once.
+     */
+    static void writeFile(File file, Page page) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temporary);
+        try {
+            out.write(encode(page).array());
+            // Written for good before it replaces the file
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Cannot rename " + temporary + " to " + file);
+        }
+    }
+
+    /**
+     * Returns the page in the given file, or null if there is none.
+     *
+     * @throws IOException              if the file can't be read
+     * @throws IllegalArgumentException if the file isn't a page of this version of the app and
+     *                                  database
+     */
+    static Page readFile(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the page in the layout of the file, ready to be read.
+     */
+    static ByteBuffer encode(Page page) {
+        List<byte[]> names = new ArrayList<>(page.products.size());
+        byte[] sort = page.mode.sort.getBytes(UTF_8);
+        byte[] stock = page.mode.stock != null ? page.mode.stock.getBytes(UTF_8) : new byte[0];
+        int heapLength = sort.length + stock.length;
+        for (Product product : page.products) {
+            byte[] name = product.name != null ? product.name.getBytes(UTF_8) : new byte[0];
+            names.add(name);
+            heapLength += name.length;
+        }
+        List<byte[]> supplierStrings = new ArrayList<>(page.suppliers.size() * 2);
+        for (SupplierCache.Supplier supplier : page.suppliers) {
+            byte[] name = supplier.name != null ? supplier.name.getBytes(UTF_8) : new byte[0];
+            byte[] phone = supplier.phone != null ? supplier.phone.getBytes(UTF_8) : new byte[0];
+            supplierStrings.add(name);
+            supplierStrings.add(phone);
+            heapLength += name.length + phone.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + page.products.size() * ROW_SIZE
+                + page.suppliers.size() * SUPPLIER_SIZE + heapLength);
+        buffer.putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(InventoryDbHelper.DATABASE_VERSION)
+                .putLong(page.version)
+                .putInt(page.pageSize)
+                .put((byte) (page.mayHaveMore ? 1 : 0))
+                .putInt(page.mode.supplier)
+                .putInt(0).putInt(sort.length)
+                .putInt(sort.length).putInt(page.mode.stock != null ? stock.length : -1)
+                .putInt(page.products.size())
+                .putInt(page.suppliers.size())
+                .putInt(heapLength);
+        int offset = sort.length + stock.length;
+        for (int i = 0; i < page.products.size(); i++) {
+            Product product = page.products.get(i);
+            buffer.putLong(product.id)
+                    .putLong(product.price)
+                    .putInt(product.quantity)
+                    .putInt(product.supplier)
+                    .putInt(product.reorderThreshold)
+                    .putInt(offset)
+                    .putInt(names.get(i).length);
+            offset += names.get(i).length;
+        }
+        for (int i = 0; i < page.suppliers.size(); i++) {
+            byte[] name = supplierStrings.get(2 * i);
+            byte[] phone = supplierStrings.get(2 * i + 1);
+            buffer.putInt(page.suppliers.get(i).id)
+                    .putInt(offset)
+                    .putInt(name.length)
+                    .putInt(offset + name.length)
+                    .putInt(page.suppliers.get(i).phone != null ? phone.length : -1);
+            offset += name.length + phone.length;
+        }
+        buffer.put(sort).put(stock);
+        for (byte[] name : names) {
+            buffer.put(name);
+        }
+        for (byte[] string : supplierStrings) {
+            buffer.put(string);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the page in the given buffer, in the layout of the file.
+     *
+     * @throws IllegalArgumentException if the buffer isn't a page of this version of the app
+     *                                  and database
+     */
+    static Page decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a snapshot");
+        }
+        if (buffer.getInt() != FORMAT_VERSION || buffer.getInt() != InventoryDbHelper.DATABASE_VERSION) {
+            throw new IllegalArgumentException("Snapshot of another version");
+        }
+        long version = buffer.getLong();
+        int pageSize = buffer.getInt();
+        boolean mayHaveMore = buffer.get() != 0;
+        int supplier = buffer.getInt();
+        int sortOffset = buffer.getInt();
+        int sortLength = buffer.getInt();
+        int stockOffset = buffer.getInt();
+        int stockLength = buffer.getInt();
+        int count = buffer.getInt();
+        int supplierCount = buffer.getInt();
+        int heapLength = buffer.getInt();
+        if (count < 0 || supplierCount < 0 || heapLength < 0 || buffer.capacity()
+                != HEADER_SIZE + (long) count * ROW_SIZE + (long) supplierCount * SUPPLIER_SIZE + heapLength) {
+            throw new IllegalArgumentException("Snapshot of " + buffer.capacity() + " bytes is truncated");
+        }
+
+        int heap = HEADER_SIZE + count * ROW_SIZE + supplierCount * SUPPLIER_SIZE;
+        CatalogMode mode = new CatalogMode(string(buffer, heap, heapLength, sortOffset, sortLength), supplier,
+                stockLength < 0 ? null : string(buffer, heap, heapLength, stockOffset, stockLength));
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = buffer.getLong();
+            long price = buffer.getLong();
+            int quantity = buffer.getInt();
+            int productSupplier = buffer.getInt();
+            int reorderThreshold = buffer.getInt();
+            int nameOffset = buffer.getInt();
+            int nameLength = buffer.getInt();
+            products.add(new Product(id, string(buffer, heap, heapLength, nameOffset, nameLength), price,
+                    quantity, productSupplier, reorderThreshold));
+        }
+        List<SupplierCache.Supplier> suppliers = new ArrayList<>(supplierCount);
+        for (int i = 0; i < supplierCount; i++) {
+            int id = buffer.getInt();
+            int nameOffset = buffer.getInt();
+            int nameLength = buffer.getInt();
+            int phoneOffset = buffer.getInt();
+            int phoneLength = buffer.getInt();
+            suppliers.add(new SupplierCache.Supplier(id, string(buffer, heap, heapLength, nameOffset, nameLength),
+                    phoneLength < 0 ? null : string(buffer, heap, heapLength, phoneOffset, phoneLength)));
+        }
+        return new Page(version, mode, pageSize, Collections.unmodifiableList(products), mayHaveMore,
+                Collections.unmodifiableList(suppliers));
+    }
+
+    /**
+     * Returns the string at the given offset of the heap starting at the given position of the
+     * buffer, leaving the position of the buffer as it is.
+     */
+    private static String string(ByteBuffer buffer, int heap, int heapLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > heapLength - length) {
+            throw new IllegalArgumentException("String at " + offset + " out of the heap");
+        }
+        ByteBuffer string = buffer.duplicate();
+        string.position(heap + offset);
+        byte[] bytes = new byte[length];
+        string.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.MaintenanceEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SummaryEntry;
+
+/**
+ * Deletes every product of the inventory without holding the database for the whole time.
+ *
+ * A single DELETE of the whole table holds the write lock until the last row, and its triggers,
+ * are gone, which blocks every sale for as long as the catalog is large. Instead the products are
+ * deleted in chunks of consecutive IDs, each in its own transaction, so that the sales and edits
+ * waiting for the database run between two chunks. The IDs of a chunk are read first without
+ * the write lock, through a page of {@link InventoryEntry#buildPageUri(long, int)}.
+ *
+ * The pages the products took are then given back to the file system a few at a time through
+ * {@link InventoryEntry#RECLAIM_URI}, otherwise the database file keeps its size. A database too
+ * old for them to be reclaimed is converted through {@link MaintenanceEntry#VACUUM_URI} instead:
+ * the user asked for the wipe, and the file is at its smallest once the products are gone.
+ *
+ * Products added while the wipe runs get higher IDs than the ones deleted so far, and are deleted
+ * too. Wipes write to the database, so they must run off the main thread.
+ */
+public final class CatalogWiper {
+
+    /** Number of products deleted per transaction by default */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /** Number of free pages reclaimed per step, 1 MiB with the default page size of 4 KiB */
+    private static final int RECLAIM_STEP_PAGES = 256;
+
+    /** Selection of a chunk, the products after the first ID up to the second one */
+    private static final String CHUNK_SELECTION = InventoryEntry._ID + " > ? AND " + InventoryEntry._ID + " <= ?";
+
+    /**
+     * Receives the progress of a wipe, on the wiping thread, after each chunk and each step of
+     * the reclamation.
+     */
+    public interface Listener {
+        void onProgress(Progress progress);
+    }
+
+    /**
+     * Progress of a wipe, and its result once it has returned.
+     */
+    public static final class Progress {
+
+        /** Products deleted so far, and the number of products when the wipe started */
+        public long productsDeleted;
+        public long totalProducts;
+
+        /** Number of chunks deleted, and the longest time one of them held the database */
+        public int chunks;
+        public long longestChunkNanos;
+
+        /** Pages of the database file given back to the file system */
+        public long pagesReclaimed;
+
+        /** Time spent in the wipe, reclamation included */
+        public long elapsedNanos;
+
+        /** Whether the wipe was cancelled before every product was deleted and reclaimed */
+        public boolean cancelled;
+    }
+
+    private final ContentResolver mResolver;
+    private int mChunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile boolean mCancelled;
+
+    public CatalogWiper(Context context) {
+        this(context.getContentResolver());
+    }
+
+    /**
+     * Create a wiper deleting through the given resolver. Used by tests.
+     */
+    CatalogWiper(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Set the number of products deleted per transaction. Larger chunks delete faster but hold
+     * the database longer.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * Stop the running wipe after its current chunk or reclamation step. The products deleted
+     * so far stay deleted.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Delete every product, then reclaim the space they took.
+     *
+     * @param listener receives the progress after each chunk, may be null
+     * @return the final progress
+     */
+    public Progress wipe(Listener listener) {
+        mCancelled = false;
+        long start = System.nanoTime();
+        Progress progress = new Progress();
+        progress.totalProducts = countProducts();
+
+        long afterId = -1;
+        while (!mCancelled) {
+            long lastId = lastIdOfChunk(afterId);
+            if (lastId < 0) {
+                break;
+            }
+            long chunkStart = System.nanoTime();
+            int deleted = mResolver.delete(InventoryEntry.CONTENT_URI, CHUNK_SELECTION,
+                    new String[] { String.valueOf(afterId), String.valueOf(lastId) });
+            progress.longestChunkNanos = Math.max(progress.longestChunkNanos, System.nanoTime() - chunkStart);
+            progress.productsDeleted += deleted;
+            progress.chunks++;
+            afterId = lastId;
+            report(progress, start, listener);
+        }
+
+        ContentValues none = new ContentValues();
+        if (!mCancelled) {
+            progress.pagesReclaimed += mResolver.update(MaintenanceEntry.VACUUM_URI, none, null, null);
+        }
+        while (!mCancelled) {
+            int pages = mResolver.update(InventoryEntry.buildReclaimUri(RECLAIM_STEP_PAGES), none, null, null);
+            if (pages <= 0) {
+                break;
+            }
+            progress.pagesReclaimed += pages;
+            report(progress, start, listener);
+        }
+
+        progress.cancelled = mCancelled;
+        report(progress, start, listener);
+        return progress;
+    }
+
+    /**
+     * Returns the ID of the last product of the chunk after the given ID, or -1 if there are no
+     * products after it.
+     */
+    private long lastIdOfChunk(long afterId) {
+        Cursor cursor = mResolver.query(InventoryEntry.buildPageUri(afterId, mChunkSize),
+                new String[] { InventoryEntry._ID }, null, null, null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToLast() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the number of products, from the summary of the stock of each supplier rather
+     * than a count of the inventory table.
+     */
+    private long countProducts() {
+        Cursor cursor = mResolver.query(SummaryEntry.CONTENT_URI,
+                new String[] { SummaryEntry.COLUMN_PRODUCTS }, null, null, null);
+        long products = 0;
+        if (cursor == null) {
+            return products;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                products += cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        return products;
+    }
+
+    private static void report(Progress progress, long start, Listener listener) {
+        progress.elapsedNanos = System.nanoTime() - start;
+        if (listener != null) {
+            listener.onProgress(progress);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.android.inventoryapp2.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the records of a UTF-8 CSV file from a channel, one at a time, through a buffer of
+ * fixed size. Fields are separated by commas and may be quoted with double quotes, in which case
+ * they can hold commas, line breaks and doubled quotes. Records end with a line feed, optionally
+ * preceded by a carriage return.
+ *
+ * The records are split on the bytes as read, which is safe in UTF-8 since the bytes of the
+ * quote, comma and line breaks never occur inside another character. Only the fields are
+ * decoded, and the reader knows the byte offset of every record, so that reading can resume
+ * from a record later on.
+ */
+final class CsvReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final ReadableByteChannel mChannel;
+
+    /** Longest record this reader accepts, in bytes */
+    private final int mMaxRecordLength;
+
+    /** Bytes read from the channel, from mStart up to mLimit not yet consumed */
+    private ByteBuffer mBuffer;
+    private int mStart;
+    private int mLimit;
+    private boolean mEndOfInput;
+
+    /** Byte offset in the input of mStart, and number of lines before it */
+    private long mOffset;
+    private long mLineNumber;
+
+    /** Fields of the current record */
+    private String[] mFields = new String[8];
+    private int mFieldCount;
+
+    /** Bounds of the fields of the record being parsed, in the buffer */
+    private int[] mFieldStarts = new int[8];
+    private int[] mFieldEnds = new int[8];
+    private boolean[] mFieldQuoted = new boolean[8];
+
+    /**
+     * Create a reader of the channel, from its current position.
+     *
+     * @param bufferSize      size of the buffer records are read through, in bytes
+     * @param maxRecordLength longest record accepted, the buffer grows up to this size to hold
+     *                        records longer than bufferSize
+     */
+    CsvReader(ReadableByteChannel channel, int bufferSize, int maxRecordLength) {
+        mChannel = channel;
+        mBuffer = ByteBuffer.allocate(bufferSize);
+        mMaxRecordLength = Math.max(bufferSize, maxRecordLength);
+    }
+
+    /**
+     * Read the next record. Returns false at the end of the input.
+     *
+     * @throws IOException if the input can't be read or has a record longer than the maximum
+     */
+    boolean readRecord() throws IOException {
+        while (true) {
+            int end = parseRecord();
+            if (end >= 0) {
+                decodeFields();
+                mOffset += end - mStart;
+                mStart = end;
+                return true;
+            }
+            if (mEndOfInput) {
+                return false;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Returns the number of fields of the current record.
+     */
+    int getFieldCount() {
+        return mFieldCount;
+    }
+
+    /**
+     * Returns a field of the current record, without the quotes around it.
+     */
+    String getField(int index) {
+        return mFields[index];
+    }
+
+    /**
+     * Returns the byte offset in the input of the end of the current record, where reading
+     * would resume after it.
+     */
+    long getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * Returns the number of lines of the input up to the end of the current record.
+     */
+    long getLineNumber() {
+        return mLineNumber;
+    }
+
+    /**
+     * Skip ahead to the record starting at the given byte offset, which must be the offset of a
+     * record returned by {@link #getOffset()} when the same input was read before. File channels
+     * are moved to the offset directly, other channels are read up to it.
+     *
+     * @param lineNumber number of lines of the input before the offset
+     */
+    void skipTo(long offset, long lineNumber) throws IOException {
+        long skip = offset - mOffset;
+        if (skip < 0) {
+            throw new IllegalArgumentException("Cannot skip back to " + offset + " from " + mOffset);
+        }
+        int buffered = mLimit - mStart;
+        if (skip <= buffered) {
+            mStart += (int) skip;
+        } else {
+            skip -= buffered;
+            mStart = 0;
+            mLimit = 0;
+            if (mChannel instanceof FileChannel) {
+                FileChannel file = (FileChannel) mChannel;
+                file.position(file.position() + skip);
+            } else {
+                ByteBuffer discard = ByteBuffer.wrap(mBuffer.array());
+                while (skip > 0) {
+                    discard.clear();
+                    discard.limit((int) Math.min(skip, discard.capacity()));
+                    int read = mChannel.read(discard);
+                    if (read < 0) {
+                        throw new IOException("Input ends before offset " + offset);
+                    }
+                    skip -= read;
+                }
+            }
+        }
+        mOffset = offset;
+        mLineNumber = lineNumber;
+    }
+
+    /**
+     * Find the fields of the record starting at mStart. Returns the position after its end, or
+     * -1 if the record isn't complete in the buffer.
+     */
+    private int parseRecord() {
+        byte[] bytes = mBuffer.array();
+        mFieldCount = 0;
+        if (mStart == mLimit) {
+            return -1;
+        }
+
+        // The UTF-8 byte order mark some editors write isn't part of the first field
+        if (mOffset == 0 && mLimit - mStart >= 3 && bytes[mStart] == (byte) 0xEF
+                && bytes[mStart + 1] == (byte) 0xBB && bytes[mStart + 2] == (byte) 0xBF) {
+            mStart += 3;
+            mOffset += 3;
+        }
+
+        int lines = 0;
+        int fieldStart = mStart;
+        boolean quoted = false;
+        boolean inQuotes = false;
+        int position = mStart;
+        while (position < mLimit) {
+            byte b = bytes[position];
+            if (inQuotes) {
+                if (b == QUOTE) {
+                    if (position + 1 == mLimit && !mEndOfInput) {
+                        // Can't tell a closing quote from a doubled one yet
+                        return -1;
+                    }
+                    if (position + 1 < mLimit && bytes[position + 1] == QUOTE) {
+                        position++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else if (b == LF) {
+                    lines++;
+                }
+            } else if (b == QUOTE && position == fieldStart) {
+                quoted = true;
+                inQuotes = true;
+            } else if (b == COMMA) {
+                addField(fieldStart, position, quoted);
+                fieldStart = position + 1;
+                quoted = false;
+            } else if (b == LF) {
+                int end = position > fieldStart && bytes[position - 1] == CR ? position - 1 : position;
+                addField(fieldStart, end, quoted);
+                mLineNumber += lines + 1;
+                return position + 1;
+            }
+            position++;
+        }
+
+        // The last record may not end with a line break
+        if (!mEndOfInput) {
+            return -1;
+        }
+        int end = position > fieldStart && bytes[position - 1] == CR ? position - 1 : position;
+        addField(fieldStart, end, quoted);
+        mLineNumber += lines + 1;
+        return position;
+    }
+
+    private void addField(int start, int end, boolean quoted) {
+        if (mFieldCount == mFieldStarts.length) {
+            int length = mFieldCount * 2;
+            mFieldStarts = copyOf(mFieldStarts, length);
+            mFieldEnds = copyOf(mFieldEnds, length);
+            boolean[] fieldQuoted = new boolean[length];
+            System.arraycopy(mFieldQuoted, 0, fieldQuoted, 0, mFieldCount);
+            mFieldQuoted = fieldQuoted;
+            String[] fields = new String[length];
+            System.arraycopy(mFields, 0, fields, 0, mFieldCount);
+            mFields = fields;
+        }
+        mFieldStarts[mFieldCount] = start;
+        mFieldEnds[mFieldCount] = end;
+        mFieldQuoted[mFieldCount] = quoted;
+        mFieldCount++;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    /**
+     * Decode the fields found by {@link #parseRecord()}.
+     */
+    private void decodeFields() {
+        byte[] bytes = mBuffer.array();
+        for (int i = 0; i < mFieldCount; i++) {
+            int start = mFieldStarts[i];
+            int end = mFieldEnds[i];
+            if (!mFieldQuoted[i]) {
+                mFields[i] = new String(bytes, start, end - start, UTF_8);
+                continue;
+            }
+            // Drop the opening quote and everything from the closing one, then undouble quotes
+            int close = start + 1;
+            while (close < end) {
+                if (bytes[close] == QUOTE) {
+                    if (close + 1 < end && bytes[close + 1] == QUOTE) {
+                        close++;
+                    } else {
+                        break;
+                    }
+                }
+                close++;
+            }
+            String field = new String(bytes, start + 1, close - start - 1, UTF_8);
+            mFields[i] = field.indexOf('"') >= 0 ? field.replace("\"\"", "\"") : field;
+        }
+    }
+
+    /**
+     * Read more of the input into the buffer, keeping the record being read. The buffer grows
+     * when the record fills it.
+     */
+    private void fill() throws IOException {
+        byte[] bytes = mBuffer.array();
+        int pending = mLimit - mStart;
+        if (mStart > 0) {
+            System.arraycopy(bytes, mStart, bytes, 0, pending);
+            mStart = 0;
+            mLimit = pending;
+        } else if (mLimit == bytes.length) {
+            if (bytes.length >= mMaxRecordLength) {
+                throw new IOException("Record at line " + (mLineNumber + 1) + " is longer than "
+                        + mMaxRecordLength + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(Math.min(bytes.length * 2, mMaxRecordLength));
+            buffer.put(bytes, 0, mLimit);
+            mBuffer = buffer;
+        }
+        mBuffer.clear();
+        mBuffer.position(mLimit);
+        int read = mChannel.read(mBuffer);
+        if (read < 0) {
+            mEndOfInput = true;
+        } else {
+            mLimit += read;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.ContentResolverCompat;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.MaintenanceEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the database fast as the catalog changes, while nobody is waiting for it.
+ *
+ * A maintenance run refreshes the statistics the indexes are chosen by, merges the segments of
+ * the full-text search index, gives the free pages back to the file system and checks the
+ * integrity of the database, through the {@link MaintenanceEntry} URIs and
+ * {@link InventoryEntry#RECLAIM_URI}. The merges and the reclamation hold the write lock, so they
+ * run in steps sized to hold it for about the step budget each, from the time the previous steps
+ * took per page: sales and edits wait at most about that long. The statistics and the integrity
+ * check read the database without holding up writes. A database too old for its free pages to
+ * be reclaimed is first converted through {@link MaintenanceEntry#VACUUM_URI}, outside of the
+ * steps and their budget, as the device is idle and charging while the maintenance runs.
+ *
+ * The size of the database and the latency of a few catalog queries are measured before and
+ * after, and the report of the last run is kept. Runs write to the database, so they must run
+ * off the main thread.
+ */
+public final class DatabaseMaintainer {
+
+    /** Time each step holding the write lock aims for by default */
+    public static final long DEFAULT_STEP_BUDGET_MILLIS = 20;
+
+    /** Name of the preferences holding the report of the last run */
+    private static final String PREFERENCES_NAME = "maintenance";
+
+    /** Key of the report of the last run, and of the time it ended */
+    private static final String KEY_LAST_REPORT = "lastReport";
+    private static final String KEY_LAST_RUN = "lastRun";
+
+    /** Pages of the first step of a merge or reclamation, before its time per page is known */
+    private static final int FIRST_STEP_PAGES = 16;
+
+    /** Most pages of a step, however fast the previous ones were */
+    private static final int MAX_STEP_PAGES = 4096;
+
+    /** Number of times each sampled query runs, the median is reported */
+    private static final int LATENCY_RUNS = 5;
+
+    /** Number of products of the sampled pages, as many as the catalog shows at a time */
+    private static final int SAMPLE_PAGE_SIZE = 50;
+
+    /** Names of the sampled queries in the report, in the order of {@link #SAMPLE_QUERIES} */
+    public static final String[] SAMPLE_NAMES = { "page", "page by name", "search" };
+
+    /** The catalog queries timed before and after the maintenance */
+    private static final Uri[] SAMPLE_QUERIES = {
+            InventoryEntry.buildPageUri(-1, SAMPLE_PAGE_SIZE),
+            InventoryEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_SORT, InventoryContract.SORT_NAME)
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(SAMPLE_PAGE_SIZE))
+                    .build(),
+            InventoryEntry.buildSearchUri("b") };
+
+    /**
+     * Result of a maintenance run.
+     */
+    public static final class Report {
+
+        /** Pages of the database file, and those of them free, before and after the run */
+        public long pagesBefore;
+        public long pagesAfter;
+        public long freePagesBefore;
+        public long freePagesAfter;
+
+        /**
+         * Median latency of each sampled query, in the order of {@link #SAMPLE_NAMES}, before
+         * and after the run, in microseconds.
+         */
+        public final long[] latencyMicrosBefore = new long[SAMPLE_QUERIES.length];
+        public final long[] latencyMicrosAfter = new long[SAMPLE_QUERIES.length];
+
+        /** Tables whose statistics were refreshed */
+        public int tablesAnalyzed;
+
+        /** Rows of the full-text search index written by the merges, about one per page */
+        public long searchIndexRowsMerged;
+
+        /** Free pages given back to the file system */
+        public long pagesReclaimed;
+
+        /** Steps holding the write lock, and the longest of them */
+        public int steps;
+        public long longestStepNanos;
+
+        /**
+         * Problems found by the integrity check, empty if none. Null if the check didn't run
+         * to the end.
+         */
+        public List<String> integrityProblems;
+
+        /** Time spent in the run */
+        public long elapsedNanos;
+
+        /** Whether the run was cancelled before it was done */
+        public boolean cancelled;
+
+        @Override
+        public String toString() {
+            return "pages " + pagesBefore + " -> " + pagesAfter + ", free " + freePagesBefore + " -> "
+                    + freePagesAfter + ", latency us " + Arrays.toString(latencyMicrosBefore) + " -> "
+                    + Arrays.toString(latencyMicrosAfter) + ", " + tablesAnalyzed + " tables analyzed, "
+                    + searchIndexRowsMerged + " search rows merged, " + pagesReclaimed + " pages reclaimed, "
+                    + steps + " steps, longest " + longestStepNanos / 1000 + " us, integrity "
+                    + (integrityProblems == null ? "unchecked" : integrityProblems.isEmpty() ? "ok"
+                    : integrityProblems.size() + " problems") + ", " + elapsedNanos / 1000000 + " ms"
+                    + (cancelled ? ", cancelled" : "");
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final SharedPreferences mPreferences;
+    private long mStepBudgetNanos = DEFAULT_STEP_BUDGET_MILLIS * 1000000;
+    private volatile boolean mCancelled;
+    private volatile CancellationSignal mIntegritySignal;
+
+    public DatabaseMaintainer(Context context) {
+        this(context.getContentResolver(),
+                context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+    }
+
+    /**
+     * Create a maintainer working through the given resolver and keeping the report of the last
+     * run in the given preferences. Used by tests.
+     */
+    DatabaseMaintainer(ContentResolver resolver, SharedPreferences preferences) {
+        mResolver = resolver;
+        mPreferences = preferences;
+    }
+
+    /**
+     * Set the time each step holding the write lock aims for. Shorter steps keep the writes
+     * waiting less, longer ones get the maintenance done in less time.
+     */
+    public void setStepBudgetMillis(long budgetMillis) {
+        if (budgetMillis < 1) {
+            throw new IllegalArgumentException("Step budget must be at least 1 ms");
+        }
+        mStepBudgetNanos = budgetMillis * 1000000;
+    }
+
+    /**
+     * Stop the running maintenance after its current step. The integrity check stops at once.
+     */
+    public void cancel() {
+        mCancelled = true;
+        CancellationSignal signal = mIntegritySignal;
+        if (signal != null) {
+            signal.cancel();
+        }
+    }
+
+    /**
+     * Returns the report of the last run that wasn't cancelled, or null if there was none.
+     */
+    public String getLastReport() {
+        return mPreferences.getString(KEY_LAST_REPORT, null);
+    }
+
+    /**
+     * Returns the time the last run that wasn't cancelled ended, in milliseconds since the
+     * epoch, or 0 if there was none.
+     */
+    public long getLastRunMillis() {
+        return mPreferences.getLong(KEY_LAST_RUN, 0);
+    }
+
+    /**
+     * Run the maintenance, and keep its report unless it is cancelled.
+     */
+    public Report run() {
+        mCancelled = false;
+        long start = System.nanoTime();
+        Report report = new Report();
+        long[] size = readSize();
+        report.pagesBefore = size[0];
+        report.freePagesBefore = size[1];
+        sampleLatencies(report.latencyMicrosBefore);
+
+        if (!mCancelled) {
+            report.tablesAnalyzed = mResolver.update(MaintenanceEntry.STATISTICS_URI, new ContentValues(),
+                    null, null);
+        }
+        report.searchIndexRowsMerged = runSteps(MaintenanceEntry.SEARCH_INDEX_URI, report);
+        if (!mCancelled) {
+            report.pagesReclaimed = mResolver.update(MaintenanceEntry.VACUUM_URI, new ContentValues(), null, null);
+        }
+        report.pagesReclaimed += runSteps(InventoryEntry.RECLAIM_URI, report);
+        if (!mCancelled) {
+            report.integrityProblems = checkIntegrity();
+        }
+
+        size = readSize();
+        report.pagesAfter = size[0];
+        report.freePagesAfter = size[1];
+        sampleLatencies(report.latencyMicrosAfter);
+        report.cancelled = mCancelled;
+        report.elapsedNanos = System.nanoTime() - start;
+        if (!report.cancelled) {
+            mPreferences.edit()
+                    .putString(KEY_LAST_REPORT, report.toString())
+                    .putLong(KEY_LAST_RUN, System.currentTimeMillis())
+                    .apply();
+        }
+        return report;
+    }
+
+    /**
+     * Update the given URI taking a number of pages in its limit until it returns 0, sizing each
+     * step from the time the previous ones took per unit done. Returns the total of the units
+     * done.
+     */
+    private long runSteps(Uri uri, Report report) {
+        ContentValues none = new ContentValues();
+        long total = 0;
+        long totalNanos = 0;
+        int pages = FIRST_STEP_PAGES;
+        while (!mCancelled) {
+            Uri step = uri.buildUpon()
+                    .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT, String.valueOf(pages))
+                    .build();
+            long stepStart = System.nanoTime();
+            int done = mResolver.update(step, none, null, null);
+            long stepNanos = System.nanoTime() - stepStart;
+            if (done <= 0) {
+                break;
+            }
+            report.steps++;
+            report.longestStepNanos = Math.max(report.longestStepNanos, stepNanos);
+            total += done;
+            totalNanos += stepNanos;
+            pages = (int) Math.max(1, Math.min(MAX_STEP_PAGES, mStepBudgetNanos * total / Math.max(totalNanos, 1)));
+        }
+        return total;
+    }
+
+    /**
+     * Returns the problems found by the integrity check, empty if none, or null if it was
+     * cancelled.
+     */
+    private List<String> checkIntegrity() {
+        CancellationSignal signal = new CancellationSignal();
+        mIntegritySignal = signal;
+        try {
+            if (mCancelled) {
+                return null;
+            }
+            Cursor cursor = ContentResolverCompat.query(mResolver, MaintenanceEntry.INTEGRITY_URI, null, null, null,
+                    null, signal);
+            if (cursor == null) {
+                return null;
+            }
+            List<String> problems = new ArrayList<>();
+            try {
+                while (cursor.moveToNext()) {
+                    String problem = cursor.getString(0);
+                    if (!MaintenanceEntry.INTEGRITY_OK.equals(problem)) {
+                        problems.add(problem);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return Collections.unmodifiableList(problems);
+        } catch (OperationCanceledException e) {
+            return null;
+        } finally {
+            mIntegritySignal = null;
+        }
+    }
+
+    /**
+     * Returns the number of pages of the database, and of free pages.
+     */
+    private long[] readSize() {
+        Cursor cursor = mResolver.query(MaintenanceEntry.CONTENT_URI, new String[] {
+                MaintenanceEntry.COLUMN_PAGE_COUNT, MaintenanceEntry.COLUMN_FREE_PAGES }, null, null, null);
+        long[] size = new long[2];
+        if (cursor == null) {
+            return size;
+        }
+        try {
+            if (cursor.moveToFirst()) {
+                size[0] = cursor.getLong(0);
+                size[1] = cursor.getLong(1);
+            }
+        } finally {
+            cursor.close();
+        }
+        return size;
+    }
+
+    /**
+     * Time each of the sample queries, reading all the rows, and store the median latencies.
+     */
+    private void sampleLatencies(long[] micros) {
+        long[] runs = new long[LATENCY_RUNS];
+        for (int i = 0; i < SAMPLE_QUERIES.length; i++) {
+            for (int run = 0; run < LATENCY_RUNS; run++) {
+                long start = System.nanoTime();
+                Cursor cursor = mResolver.query(SAMPLE_QUERIES[i], null, null, null, null);
+                if (cursor != null) {
+                    cursor.getCount();
+                    cursor.close();
+                }
+                runs[run] = System.nanoTime() - start;
+            }
+            Arrays.sort(runs);
+            micros[i] = runs[LATENCY_RUNS / 2] / 1000;
+        }
+    }
+}
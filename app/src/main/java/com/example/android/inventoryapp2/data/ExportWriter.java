@@ -0,0 +1,294 @@
+package com.example.android.inventoryapp2.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes products to a stream as UTF-8 CSV or JSON, one at a time. Every product is encoded
+ * straight into a byte buffer of fixed size that is reused for the whole export, so writing
+ * doesn't allocate per product and memory use doesn't grow with the number of products.
+ *
+ * The CSV has the columns read by {@link CatalogImporter}, after the ID, so that an export can be
+ * imported again. The JSON is an array holding one object per product. In both, the price is in
+ * dollars and the supplier is given by name.
+ */
+final class ExportWriter {
+
+    /** Formats of the export */
+    static final int FORMAT_CSV = 0;
+    static final int FORMAT_JSON = 1;
+
+    /**
+     * Column headers of the CSV, and keys of the JSON objects. Spelled out rather than taken
+     * from {@link CatalogImporter}, so that this class doesn't depend on Android.
+     */
+    private static final String[] HEADERS = { "id", "name", "price", "quantity", "supplier", "phone" };
+
+    /** Longest sequence of bytes written at once, a number with its separators */
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    private final OutputStream mOut;
+    private final int mFormat;
+    private final byte[] mBuffer;
+    private int mLength;
+
+    /** Number of products written so far */
+    private long mCount;
+
+    /**
+     * Create a writer of the given format, writing to the stream through a buffer of the given
+     * size, in bytes.
+     */
+    ExportWriter(OutputStream out, int format, int bufferSize) {
+        if (format != FORMAT_CSV && format != FORMAT_JSON) {
+            throw new IllegalArgumentException("Unknown format " + format);
+        }
+        mOut = out;
+        mFormat = format;
+        mBuffer = new byte[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+    }
+
+    /**
+     * Write what comes before the products: the header of the CSV, or the opening bracket of the
+     * JSON array.
+     */
+    void writeStart() throws IOException {
+        if (mFormat == FORMAT_CSV) {
+            for (int i = 0; i < HEADERS.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(HEADERS[i]);
+            }
+            writeByte('\n');
+        } else {
+            writeByte('[');
+        }
+    }
+
+    /**
+     * Write a product. The name, supplier name and phone are given as characters, so that they
+     * can be copied out of a cursor without creating strings.
+     *
+     * @param price price in cents
+     */
+    void writeProduct(long id, char[] name, int nameLength, int price, int quantity, char[] supplier,
+                      int supplierLength, char[] phone, int phoneLength) throws IOException {
+        if (mFormat == FORMAT_CSV) {
+            writeLong(id);
+            writeByte(',');
+            writeCsvText(name, nameLength);
+            writeByte(',');
+            writePrice(price);
+            writeByte(',');
+            writeLong(quantity);
+            writeByte(',');
+            writeCsvText(supplier, supplierLength);
+            writeByte(',');
+            writeCsvText(phone, phoneLength);
+            writeByte('\n');
+        } else {
+            writeAscii(mCount == 0 ? "\n{\"" : ",\n{\"");
+            writeAscii(HEADERS[0]);
+            writeAscii("\":");
+            writeLong(id);
+            writeJsonKey(1);
+            writeJsonText(name, nameLength);
+            writeJsonKey(2);
+            writePrice(price);
+            writeJsonKey(3);
+            writeLong(quantity);
+            writeJsonKey(4);
+            writeJsonText(supplier, supplierLength);
+            writeJsonKey(5);
+            writeJsonText(phone, phoneLength);
+            writeByte('}');
+        }
+        mCount++;
+    }
+
+    /**
+     * Write what comes after the products, and flush the buffer to the stream. The stream is
+     * left open.
+     */
+    void finish() throws IOException {
+        if (mFormat == FORMAT_JSON) {
+            writeAscii(mCount == 0 ? "]\n" : "\n]\n");
+        }
+        flush();
+        mOut.flush();
+    }
+
+    /**
+     * Returns the number of products written.
+     */
+    long getCount() {
+        return mCount;
+    }
+
+    private void writeJsonKey(int header) throws IOException {
+        writeAscii(",\"");
+        writeAscii(HEADERS[header]);
+        writeAscii("\":");
+    }
+
+    /**
+     * Write a price in cents as dollars with two decimals, such as 12.50.
+     */
+    private void writePrice(int price) throws IOException {
+        long cents = price;
+        if (cents < 0) {
+            writeByte('-');
+            cents = -cents;
+        }
+        writeLong(cents / 100);
+        writeByte('.');
+        writeByte((int) ('0' + cents % 100 / 10));
+        writeByte((int) ('0' + cents % 10));
+    }
+
+    /**
+     * Write a number in decimal, without creating a string for it.
+     */
+    private void writeLong(long value) throws IOException {
+        ensureCapacity(20);
+        if (value < 0) {
+            mBuffer[mLength++] = '-';
+        } else {
+            // Negative numbers hold one more value, so the digits are taken from the negation
+            value = -value;
+        }
+        int start = mLength;
+        do {
+            mBuffer[mLength++] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = mLength - 1; i < j; i++, j--) {
+            byte b = mBuffer[i];
+            mBuffer[i] = mBuffer[j];
+            mBuffer[j] = b;
+        }
+    }
+
+    /**
+     * Write a CSV field, quoted if it holds a comma, quote or line break.
+     */
+    private void writeCsvText(char[] text, int length) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < length && !quote; i++) {
+            char c = text[i];
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writeChars(text, 0, length);
+            return;
+        }
+        writeByte('"');
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (text[i] == '"') {
+                // Write up to and including the quote, then the quote again
+                writeChars(text, start, i + 1);
+                start = i;
+            }
+        }
+        writeChars(text, start, length);
+        writeByte('"');
+    }
+
+    /**
+     * Write a JSON string, escaping quotes, backslashes and control characters.
+     */
+    private void writeJsonText(char[] text, int length) throws IOException {
+        writeByte('"');
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text[i];
+            if (c != '"' && c != '\\' && c >= 0x20) {
+                continue;
+            }
+            writeChars(text, start, i);
+            start = i + 1;
+            writeByte('\\');
+            switch (c) {
+                case '"':
+                case '\\':
+                    writeByte(c);
+                    break;
+                case '\n':
+                    writeByte('n');
+                    break;
+                case '\r':
+                    writeByte('r');
+                    break;
+                case '\t':
+                    writeByte('t');
+                    break;
+                default:
+                    writeAscii("u00");
+                    writeByte(Character.forDigit(c >> 4, 16));
+                    writeByte(Character.forDigit(c & 0xF, 16));
+            }
+        }
+        writeChars(text, start, length);
+        writeByte('"');
+    }
+
+    /**
+     * Write the characters from start to end in UTF-8. A surrogate without its pair is written
+     * as "?", like String.getBytes() does.
+     */
+    private void writeChars(char[] text, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = text[i];
+            ensureCapacity(4);
+            if (c < 0x80) {
+                mBuffer[mLength++] = (byte) c;
+            } else if (c < 0x800) {
+                mBuffer[mLength++] = (byte) (0xC0 | c >> 6);
+                mBuffer[mLength++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                mBuffer[mLength++] = (byte) (0xE0 | c >> 12);
+                mBuffer[mLength++] = (byte) (0x80 | c >> 6 & 0x3F);
+                mBuffer[mLength++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(text[i + 1])) {
+                int codePoint = Character.toCodePoint(c, text[++i]);
+                mBuffer[mLength++] = (byte) (0xF0 | codePoint >> 18);
+                mBuffer[mLength++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                mBuffer[mLength++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                mBuffer[mLength++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                mBuffer[mLength++] = '?';
+            }
+        }
+    }
+
+    private void writeAscii(String text) throws IOException {
+        ensureCapacity(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            mBuffer[mLength++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        ensureCapacity(1);
+        mBuffer[mLength++] = (byte) b;
+    }
+
+    /**
+     * Flush the buffer if it has less than the given number of bytes left.
+     */
+    private void ensureCapacity(int bytes) throws IOException {
+        if (mLength + bytes > mBuffer.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (mLength > 0) {
+            mOut.write(mBuffer, 0, mLength);
+            mLength = 0;
+        }
+    }
+}
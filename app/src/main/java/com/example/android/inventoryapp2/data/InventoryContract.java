@@ -1,6 +1,7 @@
 package com.example.android.inventoryapp2.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.provider.BaseColumns;
 import android.net.Uri;
 
@@ -38,6 +39,178 @@ public final class InventoryContract {
      */
     public static final String PATH_INVENTORY = "inventory";
 
+    /**
+     * Path appended to a single product URI to sell from its stock, for instance
+     * content://com.example.android.inventory/inventory/3/sell.
+     */
+    public static final String PATH_SELL = "sell";
+
+    /**
+     * Query parameter limiting the number of rows returned by a query of the inventory table.
+     * Used together with {@link #QUERY_PARAMETER_AFTER_ID} to load the catalog one page at a time.
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /**
+     * Query parameter restricting a query of the inventory table to the products whose ID is
+     * greater than the given one. Paged queries are ordered by ID unless they have a
+     * {@link #QUERY_PARAMETER_SORT}, so the last ID of one page is the key of the next.
+     */
+    public static final String QUERY_PARAMETER_AFTER_ID = "after";
+
+    /**
+     * Query parameter ordering a paged query of the inventory table by one of
+     * {@link #SORT_NAME}, {@link #SORT_PRICE} or {@link #SORT_QUANTITY}, then by ID. The key of
+     * the next page is then the sort key of the last product of a page, as
+     * {@link #QUERY_PARAMETER_AFTER_KEY}, together with its ID.
+     */
+    public static final String QUERY_PARAMETER_SORT = "sort";
+
+    /**
+     * Possible values for the {@link #QUERY_PARAMETER_SORT} parameter. Names are compared
+     * ignoring case.
+     */
+    public static final String SORT_NAME = "name";
+    public static final String SORT_PRICE = "price";
+    public static final String SORT_QUANTITY = "quantity";
+
+    /**
+     * Query parameter holding the sort key of the product given by
+     * {@link #QUERY_PARAMETER_AFTER_ID}, when the query has a {@link #QUERY_PARAMETER_SORT}.
+     */
+    public static final String QUERY_PARAMETER_AFTER_KEY = "afterKey";
+
+    /**
+     * Query parameter restricting a paged query of the inventory table to the products of the
+     * supplier with the given ID.
+     */
+    public static final String QUERY_PARAMETER_SUPPLIER = "supplier";
+
+    /**
+     * Query parameter restricting a paged query of the inventory table to the products in stock,
+     * {@link #STOCK_IN}, or low on stock, {@link #STOCK_LOW}.
+     */
+    public static final String QUERY_PARAMETER_STOCK = "stock";
+
+    /**
+     * Possible values for the {@link #QUERY_PARAMETER_STOCK} parameter. Products are low on stock
+     * when they have less units than their {@link InventoryEntry#COLUMN_REORDER_THRESHOLD}, as in
+     * {@link LowStockEntry}.
+     */
+    public static final String STOCK_IN = "in";
+    public static final String STOCK_LOW = "low";
+
+    /**
+     * Path for searching products by name and supplier name, for instance
+     * content://com.example.android.inventory/inventory/search?q=pear.
+     */
+    public static final String PATH_SEARCH = "search";
+
+    /**
+     * Query parameter holding the text to search for. Every word must match the start of a word
+     * in the product or supplier name.
+     */
+    public static final String QUERY_PARAMETER_SEARCH = "q";
+
+    /**
+     * Query parameter of the export URI holding the MIME type it is read as when opened without
+     * asking for one, and named after. CSV if not given.
+     */
+    public static final String QUERY_PARAMETER_TYPE = "type";
+
+    /**
+     * Path for inserting or updating products by name and supplier, for instance
+     * content://com.example.android.inventory/inventory/upsert.
+     */
+    public static final String PATH_UPSERT = "upsert";
+
+    /**
+     * Path for exporting the inventory to a file, for instance
+     * content://com.example.android.inventory/inventory/export.
+     */
+    public static final String PATH_EXPORT = "export";
+
+    /**
+     * Path for reclaiming the space left free by deleted products, for instance
+     * content://com.example.android.inventory/inventory/reclaim.
+     */
+    public static final String PATH_RECLAIM = "reclaim";
+
+    /**
+     * Path for the stock of each supplier, for instance
+     * content://com.example.android.inventory/inventory/summary.
+     */
+    public static final String PATH_SUMMARY = "summary";
+
+    /**
+     * Path for the version of the products, for instance
+     * content://com.example.android.inventory/inventory/version.
+     */
+    public static final String PATH_VERSION = "version";
+
+    /**
+     * Possible path for the suppliers, for instance
+     * content://com.example.android.inventory/suppliers.
+     */
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    /**
+     * Possible path for the sales ledger, for instance
+     * content://com.example.android.inventory/sales.
+     */
+    public static final String PATH_SALES = "sales";
+
+    /**
+     * Possible path for the products low on stock, for instance
+     * content://com.example.android.inventory/lowstock.
+     */
+    public static final String PATH_LOW_STOCK = "lowstock";
+
+    /**
+     * Query parameter of the URIs the provider notifies when a product changes, naming what
+     * happened to it: {@link #CHANGE_INSERT}, {@link #CHANGE_UPDATE} or {@link #CHANGE_DELETE}.
+     * A notification of a URI without it, such as {@link InventoryEntry#CONTENT_URI}, means that
+     * any number of products may have changed.
+     */
+    public static final String QUERY_PARAMETER_CHANGE = "change";
+
+    /**
+     * Possible values for the {@link #QUERY_PARAMETER_CHANGE} parameter.
+     */
+    public static final String CHANGE_INSERT = "insert";
+    public static final String CHANGE_UPDATE = "update";
+    public static final String CHANGE_DELETE = "delete";
+
+    /**
+     * Path for the diagnostics of the provider, for instance
+     * content://com.example.android.inventory/diagnostics.
+     */
+    public static final String PATH_DIAGNOSTICS = "diagnostics";
+
+    /**
+     * Path for the maintenance of the database, for instance
+     * content://com.example.android.inventory/maintenance.
+     */
+    public static final String PATH_MAINTENANCE = "maintenance";
+
+    /**
+     * Path appended to the maintenance URI to refresh the statistics of the indexes, for
+     * instance content://com.example.android.inventory/maintenance/statistics.
+     */
+    public static final String PATH_STATISTICS = "statistics";
+
+    /**
+     * Path appended to the maintenance URI to check the integrity of the database, for
+     * instance content://com.example.android.inventory/maintenance/integrity.
+     */
+    public static final String PATH_INTEGRITY = "integrity";
+
+    /**
+     * Path appended to the maintenance URI to let the free pages of an old database be
+     * reclaimed, for instance content://com.example.android.inventory/maintenance/vacuum.
+     */
+    public static final String PATH_VACUUM = "vacuum";
+
     /**
      * Inner class that defines constant values for the inventory database table.
      * Each entry in the table represents a single product.
@@ -77,7 +250,7 @@ public final class InventoryContract {
         public final static String COLUMN_PRODUCT_NAME ="name";
 
         /**
-         * Price of the product.
+         * Price of the product, in cents. A missing price is stored as 0.
          *
          * Type: INTEGER
          */
@@ -91,39 +264,616 @@ public final class InventoryContract {
         public final static String COLUMN_PRODUCT_QUANTITY = "quantity";
 
         /**
-         * Supplier name of the product.
-         *
-         * The only possible values are {@link #SUPPLIER_PEARSON}, {@link #SUPPLIER_BROOK_TAYLOR},
-         * or {@link #SUPPLIER_AMERICAN_BOOK}.
+         * Supplier of the product, the {@link SupplierEntry#_ID} of a row of the suppliers table.
+         * Products can only be given a supplier that exists, and a supplier with products can't
+         * be deleted.
          *
          * Type: INTEGER
          */
         public final static String COLUMN_SUPPLIER_NAME = "supplierName";
 
         /**
-         * Supplier phone number of the product.
+         * Phone number of the supplier of the product. It is stored once per supplier, as
+         * {@link SupplierEntry#COLUMN_PHONE}, and read from there. Writing it with a product
+         * sets the phone of the product's supplier, so it changes for all of its products. A
+         * null phone keeps the phone of the supplier.
          *
          * Type: TEXT
          */
         public final static String COLUMN_SUPPLIER_PHONE = "supplierPhone";
 
         /**
-         * Possible values for the supplier name.
+         * Number of units below which the product is low on stock and should be reordered, see
+         * {@link LowStockEntry}. Defaults to {@link #LOW_STOCK_THRESHOLD} when missing.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_REORDER_THRESHOLD = "reorderThreshold";
+
+        /**
+         * Key for the number of units to sell in the values passed to an update of a
+         * {@link #buildSellUri(long) sell URI}. Defaults to 1 when missing.
+         *
+         * Type: INTEGER
+         */
+        public final static String SELL_AMOUNT = "amount";
+
+        /**
+         * Key for the time of the sale, in milliseconds since the epoch, in the values passed to
+         * an update of a {@link #buildSellUri(long) sell URI}. Recorded in the sales ledger as
+         * {@link SalesEntry#COLUMN_SOLD_AT}. Defaults to the time of the update when missing.
+         *
+         * Type: INTEGER
+         */
+        public final static String SELL_TIME = "soldAt";
+
+        /**
+         * Returned by an update of a {@link #buildSellUri(long) sell URI} when the product does
+         * not exist or does not have enough stock. Otherwise the update returns the new quantity.
+         */
+        public static final int SELL_INSUFFICIENT_STOCK = -1;
+
+        /**
+         * The content URI to insert or update products by name and supplier, with
+         * {@link ContentResolver#bulkInsert(Uri, android.content.ContentValues[])}. Each product
+         * updates the price, quantity and phone of the products with the same name, ignoring
+         * case, and supplier, or is inserted if there are none. A missing price or quantity
+         * keeps the current one. Returns the number of products inserted or updated.
+         */
+        public static final Uri UPSERT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_UPSERT);
+
+        /**
+         * The content URI to export every product to a stream, in ID order. Opening it with
+         * {@link ContentResolver#openInputStream(Uri)} reads a CSV file, and
+         * {@link ContentResolver#openTypedAssetFileDescriptor(Uri, String, android.os.Bundle)}
+         * reads {@link #MIME_TYPE_CSV} or {@link #MIME_TYPE_JSON}. The products are written as
+         * they are read, a page at a time, so exports of any size use little memory. Querying
+         * it returns the {@link android.provider.OpenableColumns} of the export, see
+         * {@link #buildExportUri(String)} for an export read and named as JSON.
+         */
+        public static final Uri EXPORT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_EXPORT);
+
+        /**
+         * The content URI to give back to the file system the space left free in the database
+         * by deleted products. Updating it, with any values, reclaims at most the number of
+         * pages given by its {@link #QUERY_PARAMETER_LIMIT}, or all of them, and returns the
+         * number of pages reclaimed, 0 once there are none left. The database can't be written
+         * while pages are reclaimed, so large amounts should be reclaimed a few pages at a time,
+         * see {@link #buildReclaimUri(int)}. Old databases must be converted through
+         * {@link MaintenanceEntry#VACUUM_URI} first.
+         */
+        public static final Uri RECLAIM_URI = Uri.withAppendedPath(CONTENT_URI, PATH_RECLAIM);
+
+        /**
+         * The MIME types {@link #EXPORT_URI} can be read as. The CSV has the columns of a
+         * supplier catalog after the ID, so that it can be imported again.
+         */
+        public static final String MIME_TYPE_CSV = "text/csv";
+        public static final String MIME_TYPE_JSON = "application/json";
+
+        /**
+         * IDs of the suppliers every database starts with. More can be added through
+         * {@link SupplierEntry#CONTENT_URI}.
          */
         public static final int SUPPLIER_PEARSON = 0;
         public static final int SUPPLIER_BROOK_TAYLOR = 1;
         public static final int SUPPLIER_AMERICAN_BOOK = 2;
 
         /**
-         * Returns whether or not the given supplier is {@link #SUPPLIER_PEARSON}, {@link #SUPPLIER_BROOK_TAYLOR},
-         * or {@link #SUPPLIER_AMERICAN_BOOK}.
+         * The {@link #COLUMN_REORDER_THRESHOLD} of new products, and of the products of databases
+         * older than the column.
+         */
+        public static final int LOW_STOCK_THRESHOLD = 5;
+
+        /**
+         * Returns the URI used to load a page of at most pageSize products, starting after the
+         * product with the given ID. Pass -1 to load the first page.
          */
-        public static boolean isValidSupplier(int gender) {
-            if (gender == SUPPLIER_PEARSON || gender == SUPPLIER_BROOK_TAYLOR || gender == SUPPLIER_AMERICAN_BOOK) {
-                return true;
+        public static Uri buildPageUri(long afterId, int pageSize) {
+            Uri.Builder builder = CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(pageSize));
+            if (afterId >= 0) {
+                builder.appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId));
             }
-            return false;
+            return builder.build();
+        }
+
+        /**
+         * Returns the URI used to reclaim at most the given number of free pages of the
+         * database, see {@link #RECLAIM_URI}.
+         */
+        public static Uri buildReclaimUri(int maxPages) {
+            return RECLAIM_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(maxPages))
+                    .build();
+        }
+
+        /**
+         * Returns the URI of the export read as the given MIME type, one of {@link #MIME_TYPE_CSV}
+         * and {@link #MIME_TYPE_JSON}, when it is opened without asking for a type, and named
+         * with its extension, see {@link #EXPORT_URI}.
+         */
+        public static Uri buildExportUri(String mimeType) {
+            return EXPORT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_TYPE, mimeType)
+                    .build();
+        }
+
+        /**
+         * Returns the URI used to search for products matching the given text. The results are
+         * ranked, best match first.
+         */
+        public static Uri buildSearchUri(String query) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_SEARCH)
+                    .appendQueryParameter(QUERY_PARAMETER_SEARCH, query)
+                    .build();
+        }
+
+        /**
+         * Returns the URI notified when the product with the given ID was inserted, updated or
+         * deleted, for instance content://com.example.android.inventory/inventory/3?change=update.
+         *
+         * @param change one of {@link #CHANGE_INSERT}, {@link #CHANGE_UPDATE} or {@link #CHANGE_DELETE}
+         */
+        public static Uri buildChangeUri(long id, String change) {
+            return ContentUris.withAppendedId(CONTENT_URI, id).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_CHANGE, change)
+                    .build();
+        }
+
+        /**
+         * Returns the URI used to sell units of the product with the given ID. Updating it
+         * decrements the stock atomically in the database, records the sale in the
+         * {@link SalesEntry sales ledger} and returns the new quantity.
+         */
+        public static Uri buildSellUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id).buildUpon()
+                    .appendPath(PATH_SELL)
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the suppliers table. Each entry in the table
+     * represents a supplier, which products refer to by ID in
+     * {@link InventoryEntry#COLUMN_SUPPLIER_NAME}.
+     *
+     * Querying {@link #CONTENT_URI} returns the suppliers in ID order. Inserting into it adds a
+     * supplier, updating a single supplier URI renames it or changes its phone, and deleting one
+     * removes it if it has no products. A change of a supplier also changes what the products
+     * of the supplier read, so it is notified on {@link InventoryEntry#CONTENT_URI} as well.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+
+        /** The content URI to access the suppliers in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of suppliers.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single supplier.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /** Name of database table for suppliers */
+        public final static String TABLE_NAME = "suppliers";
+
+        /**
+         * Unique ID number for the supplier, stored in {@link InventoryEntry#COLUMN_SUPPLIER_NAME}.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * Name of the supplier, unique ignoring case.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_NAME = "name";
+
+        /**
+         * Phone number of the supplier, or null if there is none.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_PHONE = "phone";
+
+        /** All the columns returned by a query of {@link #CONTENT_URI} */
+        public static final String[] COLUMNS = { _ID, COLUMN_NAME, COLUMN_PHONE };
+    }
+
+    /**
+     * Inner class that defines constant values for the sales ledger. Each entry in the table
+     * represents a sale, appended in the transaction that took its units out of stock, and never
+     * changed or deleted afterwards, not even with its product.
+     *
+     * Querying {@link #CONTENT_URI} returns the sales in the order they were recorded, which is
+     * ID order. The ledger is only written by selling through {@link InventoryEntry#buildSellUri(long)},
+     * and is notified on {@link #CONTENT_URI} for every sale.
+     */
+    public static final class SalesEntry implements BaseColumns {
+
+        /** The content URI to access the sales ledger in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SALES);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of sales.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SALES;
+
+        /** Name of database table for the sales ledger */
+        public final static String TABLE_NAME = "sales";
+
+        /**
+         * Unique ID number for the sale, in the order the sales were recorded.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * The {@link InventoryEntry#_ID} of the product sold, which may have been deleted since.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT = "product";
+
+        /**
+         * Number of units sold.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UNITS = "units";
+
+        /**
+         * Price of one unit when it was sold, in cents.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRICE = "price";
+
+        /**
+         * Time of the sale, in milliseconds since the epoch, as given by
+         * {@link InventoryEntry#SELL_TIME}. A sale is recorded shortly after it is made, so the
+         * times are not always in ID order.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SOLD_AT = "soldAt";
+
+        /** All the columns returned by a query of {@link #CONTENT_URI} */
+        public static final String[] COLUMNS = { _ID, COLUMN_PRODUCT, COLUMN_UNITS, COLUMN_PRICE,
+                COLUMN_SOLD_AT };
+    }
+
+    /**
+     * Inner class that defines constant values for the products low on stock: those with less
+     * units than their {@link InventoryEntry#COLUMN_REORDER_THRESHOLD}. Each entry is added in
+     * the transaction that takes its product below the threshold, and removed in the one that
+     * brings it back up or deletes it, so the entries are never more than the products to reorder.
+     *
+     * Querying {@link #CONTENT_URI} returns the entries in the order they were added, which is ID
+     * order, with the name, quantity and threshold of their product. An entry gets a new ID every
+     * time its product goes below the threshold, so with {@link #QUERY_PARAMETER_AFTER_ID} the
+     * query only returns the products that went low since the entry with the given ID. Its cursors
+     * are notified of the changes of {@link InventoryEntry#CONTENT_URI}.
+     */
+    public static final class LowStockEntry implements BaseColumns {
+
+        /** The content URI to access the products low on stock in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_LOW_STOCK);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of products low on stock.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_LOW_STOCK;
+
+        /** Name of database table for the products low on stock */
+        public final static String TABLE_NAME = "low_stock";
+
+        /**
+         * Unique ID number for the entry, in the order the products went low on stock. IDs are
+         * never reused.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * The {@link InventoryEntry#_ID} of the product low on stock.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT = "product";
+
+        /** All the columns returned by a query of {@link #CONTENT_URI} */
+        public static final String[] COLUMNS = { _ID, COLUMN_PRODUCT, InventoryEntry.COLUMN_PRODUCT_NAME,
+                InventoryEntry.COLUMN_PRODUCT_QUANTITY, InventoryEntry.COLUMN_REORDER_THRESHOLD };
+
+        /**
+         * Returns the URI of the products that went low on stock after the entry with the given
+         * ID. Pass 0 for all of them.
+         */
+        public static Uri buildAfterUri(long afterId) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId))
+                    .build();
         }
     }
 
+    /**
+     * Inner class that defines constant values for the summary of the stock. Querying
+     * {@link #CONTENT_URI} returns one row per supplier that has products, in supplier order.
+     * The summary is kept up to date in the same transaction as every change of a product, so
+     * reading it never scans the inventory table. Its cursors are notified of the changes of
+     * {@link InventoryEntry#CONTENT_URI}.
+     *
+     * Updating {@link #CONTENT_URI}, with any values, checks the summary against a full scan of
+     * the inventory table and repairs it. The update returns the number of suppliers whose
+     * summary was wrong, which should always be 0.
+     */
+    public static final class SummaryEntry {
+
+        /** The content URI to access the summary in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_SUMMARY);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the list of suppliers.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUMMARY;
+
+        /** Name of database table for the summary */
+        public final static String TABLE_NAME = "inventory_summary";
+
+        /**
+         * Supplier the row sums up, one of the supplier constants of {@link InventoryEntry}.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SUPPLIER_NAME = InventoryEntry.COLUMN_SUPPLIER_NAME;
+
+        /**
+         * Number of products of the supplier.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCTS = "products";
+
+        /**
+         * Number of units in stock of the products of the supplier.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UNITS = "units";
+
+        /**
+         * Value of the stock of the supplier, the sum of price times quantity, in cents.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_VALUE = "value";
+
+        /** All the columns returned by a query of {@link #CONTENT_URI} */
+        public static final String[] COLUMNS = { COLUMN_SUPPLIER_NAME, COLUMN_PRODUCTS, COLUMN_UNITS,
+                COLUMN_VALUE };
+    }
+
+    /**
+     * Inner class that defines constant values for the version of the products. Querying
+     * {@link #CONTENT_URI} returns one row, whose {@link #COLUMN_VERSION} changes in the same
+     * transaction as every insert, update and delete of a product, and never takes the same
+     * value twice in a database. Copies of the products made outside the database, such as the
+     * {@link CatalogSnapshot}, keep the version they were read at, and are current as long as
+     * it is the same. Its cursors are notified of the changes of {@link InventoryEntry#CONTENT_URI}.
+     */
+    public static final class VersionEntry {
+
+        /** The content URI to access the version in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_VERSION);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the version.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_VERSION;
+
+        /** Name of database table holding the version */
+        public final static String TABLE_NAME = "inventory_version";
+
+        /**
+         * The version of the products. It starts from a random value when the database is
+         * created, so that the versions of a database deleted and created again don't repeat.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_VERSION = "version";
+    }
+
+    /**
+     * Inner class that defines constant values for the diagnostics of the provider. Querying
+     * {@link #CONTENT_URI} returns one row per metric. Updating it with
+     * {@link #COLUMN_ENABLED} starts or stops recording, and deleting it resets the metrics.
+     * Recording is off until it is started.
+     */
+    public static final class DiagnosticsEntry {
+
+        /** The content URI to access the diagnostics in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_DIAGNOSTICS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the list of metrics.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_DIAGNOSTICS;
+
+        /**
+         * Name of the metric, for instance "query inventory/#" for the queries of single
+         * products, or one of the NAME constants.
+         *
+         * Type: TEXT
+         */
+        public static final String COLUMN_NAME = "name";
+
+        /**
+         * Number of operations or events counted.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_COUNT = "count";
+
+        /**
+         * Number of rows returned by queries, or changed by writes.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_ROWS = "rows";
+
+        /**
+         * Mean latency, in microseconds.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_MEAN_MICROS = "mean_us";
+
+        /**
+         * Upper bounds of the 50th, 90th and 99th percentile latencies, in microseconds.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_P50_MICROS = "p50_us";
+        public static final String COLUMN_P90_MICROS = "p90_us";
+        public static final String COLUMN_P99_MICROS = "p99_us";
+
+        /**
+         * Key of the value passed to an update of {@link #CONTENT_URI}, true to record metrics.
+         */
+        public static final String COLUMN_ENABLED = "enabled";
+
+        /**
+         * Names of the metrics other than operations. {@link #NAME_ENABLED} has a count of 1
+         * while metrics are recorded, 0 otherwise.
+         */
+        public static final String NAME_ENABLED = "enabled";
+        public static final String NAME_NOTIFICATIONS = "notifyChange";
+        public static final String NAME_WINDOW_FILLS = "cursorWindowFill";
+        public static final String NAME_CACHE_HITS = "productCache.hit";
+        public static final String NAME_CACHE_MISSES = "productCache.miss";
+        public static final String NAME_CACHE_EVICTIONS = "productCache.eviction";
+
+        /** All the columns returned by a query of {@link #CONTENT_URI} */
+        public static final String[] COLUMNS = { COLUMN_NAME, COLUMN_COUNT, COLUMN_ROWS,
+                COLUMN_MEAN_MICROS, COLUMN_P50_MICROS, COLUMN_P90_MICROS, COLUMN_P99_MICROS };
+    }
+
+    /**
+     * Inner class that defines constant values for the maintenance of the database. Querying
+     * {@link #CONTENT_URI} returns one row with the size of the database. The other URIs each
+     * run one step of the maintenance, none of which is needed for the app to work.
+     */
+    public static final class MaintenanceEntry {
+
+        /** The content URI to read the size of the database */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_MAINTENANCE);
+
+        /**
+         * The content URI to bring the statistics the indexes are chosen by up to date, for the
+         * tables whose size changed a lot since they were last computed. Updating it, with any
+         * values, returns the number of tables whose statistics were refreshed. The indexes are
+         * read without holding up writes, which only wait for the statistics to be saved.
+         */
+        public static final Uri STATISTICS_URI = Uri.withAppendedPath(CONTENT_URI, PATH_STATISTICS);
+
+        /**
+         * The content URI to merge the segments the full-text search index grows by. Updating
+         * it, with any values, writes about the number of pages given by its
+         * {@link #QUERY_PARAMETER_LIMIT}, or merges every segment, and returns the number of
+         * rows of the index written, 0 once there is nothing left to merge. The database can't
+         * be written while they are, see {@link #buildSearchIndexUri(int)}.
+         */
+        public static final Uri SEARCH_INDEX_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * The content URI to check the integrity of the database. Querying it returns a row
+         * per problem found in {@link #COLUMN_INTEGRITY}, or a single row of
+         * {@link #INTEGRITY_OK}. The whole database is read, without holding up writes.
+         */
+        public static final Uri INTEGRITY_URI = Uri.withAppendedPath(CONTENT_URI, PATH_INTEGRITY);
+
+        /**
+         * The content URI to convert a database created before its free pages could be
+         * reclaimed through {@link InventoryEntry#RECLAIM_URI}. Updating it, with any values,
+         * rewrites the whole database file once at most 10 MiB of it is in use, and returns the
+         * number of free pages given back, 0 if there was nothing to convert yet. The database
+         * can't be written until it is done, however long it takes, so it is only updated while
+         * nobody waits for it or when the user asked for it, never in steps of a budget.
+         */
+        public static final Uri VACUUM_URI = Uri.withAppendedPath(CONTENT_URI, PATH_VACUUM);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the size of the database.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_MAINTENANCE;
+
+        /**
+         * The MIME type of the {@link #INTEGRITY_URI} for the list of problems.
+         */
+        public static final String INTEGRITY_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_MAINTENANCE + "/" + PATH_INTEGRITY;
+
+        /**
+         * Number of pages of the database file, free ones included.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_PAGE_COUNT = "page_count";
+
+        /**
+         * Number of pages of the database file left free by deletes, until they are reclaimed
+         * through {@link InventoryEntry#RECLAIM_URI}.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_FREE_PAGES = "freelist_count";
+
+        /**
+         * Size of a page, in bytes.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_PAGE_SIZE = "page_size";
+
+        /** All the columns returned by a query of {@link #CONTENT_URI} */
+        public static final String[] COLUMNS = { COLUMN_PAGE_COUNT, COLUMN_FREE_PAGES, COLUMN_PAGE_SIZE };
+
+        /**
+         * Problem found by the integrity check, or {@link #INTEGRITY_OK}.
+         *
+         * Type: TEXT
+         */
+        public static final String COLUMN_INTEGRITY = "integrity_check";
+
+        /** Value of the only row of an integrity check that found no problem */
+        public static final String INTEGRITY_OK = "ok";
+
+        /**
+         * Returns the URI used to merge about the given number of pages of the full-text search
+         * index, see {@link #SEARCH_INDEX_URI}.
+         */
+        public static Uri buildSearchIndexUri(int maxPages) {
+            return SEARCH_INDEX_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(maxPages))
+                    .build();
+        }
+    }
 }
@@ -1,9 +1,25 @@
 package com.example.android.inventoryapp2.data;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.LowStockEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SalesEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SummaryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SupplierEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.VersionEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Database helper for Inventory app. Manages database creation and version management.
@@ -16,12 +32,95 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
     public static final String LOG_TAG = InventoryDbHelper.class.getSimpleName();
 
     /** Name of the database file */
-    private static final String DATABASE_NAME = "inventory.db";
+    static final String DATABASE_NAME = "inventory.db";
 
     /**
-     * Database version. If you change the database schema, you must increment the database version.
+     * Database version. If you change the database schema, you must increment the database version
+     * and add the migration to the new version in {@link #migrateTo(SQLiteDatabase, int)}.
+     *
+     * Version 1: inventory table.
+     * Version 2: indexes on product name, supplier name and quantity.
+     * Version 3: full-text search table over product and supplier names.
+     * Version 4: summary table of the stock of each supplier.
+     * Version 5: suppliers table, referred to by the products instead of repeating the phone.
+     * Version 6: indexes ordering the catalog by name within a supplier, and by price.
+     * Version 7: sales ledger.
+     * Version 8: reorder threshold of each product, and table of the products low on stock.
+     * Version 9: version of the products, changed by every write of the inventory table.
      */
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 9;
+
+    /** Name of the case insensitive index on {@link InventoryEntry#COLUMN_PRODUCT_NAME} */
+    static final String INDEX_PRODUCT_NAME = "inventory_name_idx";
+
+    /**
+     * Name of the index on {@link InventoryEntry#COLUMN_SUPPLIER_NAME}. Since version 6 it goes on
+     * with the product name, ignoring case, so the products of a supplier are read in name order.
+     */
+    static final String INDEX_SUPPLIER_NAME = "inventory_supplier_idx";
+
+    /** Name of the index on {@link InventoryEntry#COLUMN_PRODUCT_QUANTITY} */
+    static final String INDEX_PRODUCT_QUANTITY = "inventory_quantity_idx";
+
+    /** Name of the index on {@link InventoryEntry#COLUMN_PRODUCT_PRICE} */
+    static final String INDEX_PRODUCT_PRICE = "inventory_price_idx";
+
+    /**
+     * Name of the full-text search table. Each row has the same docid as the product it indexes,
+     * and the triggers created in version 3 keep it in sync with the inventory table.
+     */
+    static final String TABLE_SEARCH = "inventory_fts";
+
+    /** Column of {@link #TABLE_SEARCH} holding the product name */
+    static final String COLUMN_SEARCH_NAME = "name";
+
+    /** Column of {@link #TABLE_SEARCH} holding the supplier name */
+    static final String COLUMN_SEARCH_SUPPLIER = "supplier";
+
+    /**
+     * Name of the view the products are read from: the inventory table with the phone of each
+     * product's supplier, as {@link InventoryEntry#COLUMN_SUPPLIER_PHONE}. SQLite leaves the
+     * suppliers table out of queries that don't read the phone.
+     */
+    static final String VIEW_PRODUCTS = "inventory_products";
+
+    /** Name of the table SQLite keeps the statistics of the indexes in, created by ANALYZE */
+    private static final String TABLE_STATISTICS = "sqlite_stat1";
+
+    /**
+     * Names of the suppliers every database starts with, indexed by their ID, the supplier
+     * constants of {@link InventoryEntry}.
+     */
+    private static final String[] SUPPLIER_NAMES = { "Pearson", "Taylor and Brook", "American Book Co." };
+
+    /**
+     * SQL query computing the rows of {@link SummaryEntry#TABLE_NAME} from the inventory table,
+     * with a full scan. Products without a supplier are summed up under supplier -1.
+     */
+    static final String SQL_SUMMARY_SCAN = "SELECT ifnull(" + InventoryEntry.COLUMN_SUPPLIER_NAME
+            + ", -1) AS " + SummaryEntry.COLUMN_SUPPLIER_NAME + ", count(*) AS " + SummaryEntry.COLUMN_PRODUCTS
+            + ", ifnull(sum(" + InventoryEntry.COLUMN_PRODUCT_QUANTITY + "), 0) AS " + SummaryEntry.COLUMN_UNITS
+            + ", ifnull(sum(ifnull(" + InventoryEntry.COLUMN_PRODUCT_PRICE + ", 0) * "
+            + InventoryEntry.COLUMN_PRODUCT_QUANTITY + "), 0) AS " + SummaryEntry.COLUMN_VALUE
+            + " FROM " + InventoryEntry.TABLE_NAME + " GROUP BY 1";
+
+    /** SQL query returning the rows of {@link SummaryEntry#TABLE_NAME} that have products */
+    private static final String SQL_SUMMARY_ROWS = "SELECT " + SummaryEntry.COLUMN_SUPPLIER_NAME + ", "
+            + SummaryEntry.COLUMN_PRODUCTS + ", " + SummaryEntry.COLUMN_UNITS + ", " + SummaryEntry.COLUMN_VALUE
+            + " FROM " + SummaryEntry.TABLE_NAME + " WHERE " + SummaryEntry.COLUMN_PRODUCTS + " > 0";
+
+    /** Value of the auto_vacuum pragma of databases whose free pages can be reclaimed */
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * Most pages in use in a database created without incremental auto-vacuum for
+     * {@link #enableIncrementalVacuum(SQLiteDatabase)} to convert it, 10 MiB with the default
+     * page size of 4 KiB.
+     */
+    private static final int MAX_VACUUM_PAGES = 2560;
+
+    /** Connection settings applied every time the database is opened */
+    private final Profile mProfile;
 
     /**
      * Constructs a new instance of {@link InventoryDbHelper}.
@@ -29,7 +128,93 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      * @param context of the app
      */
     public InventoryDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME, Profile.DEFAULT);
+    }
+
+    /**
+     * Constructs a new instance of {@link InventoryDbHelper} for the database file with the given
+     * name. Used by tests to work on their own copy of the database.
+     *
+     * @param context of the app
+     * @param name    of the database file
+     */
+    InventoryDbHelper(Context context, String name) {
+        this(context, name, Profile.DEFAULT);
+    }
+
+    /**
+     * Constructs a new instance of {@link InventoryDbHelper} for the database file with the given
+     * name, opened with the given connection settings.
+     *
+     * @param context of the app
+     * @param name    of the database file
+     * @param profile connection settings
+     */
+    InventoryDbHelper(Context context, String name, Profile profile) {
+        super(context, name, null, DATABASE_VERSION);
+        mProfile = profile;
+    }
+
+    /**
+     * This is called when the connection is being configured, before the database is created
+     * or upgraded. Apply the connection settings of the profile.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        configure(db);
+    }
+
+    /**
+     * This is called when the database has been opened. Devices before Jelly Bean never call
+     * {@link #onConfigure(SQLiteDatabase)}, so apply the connection settings here instead.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            configure(db);
+        }
+        StartupTrace.mark(StartupTrace.DATABASE_OPENED);
+    }
+
+    /**
+     * Apply the connection settings of the profile to the given database.
+     */
+    private void configure(SQLiteDatabase db) {
+        // Keep the pages freed by deletes in the file until reclaimFreePages() gives them back a
+        // few at a time, rather than moving pages at the end of every delete as the full
+        // auto-vacuum of the platform's SQLite does. Full databases switch at once, databases
+        // without auto-vacuum only while they are empty, or when enableIncrementalVacuum()
+        // converts them
+        if (longPragma(db, "auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            pragma(db, "auto_vacuum = INCREMENTAL");
+        }
+        if (mProfile.writeAheadLogging) {
+            db.enableWriteAheadLogging();
+        }
+        pragma(db, "synchronous = " + mProfile.synchronous);
+        pragma(db, "cache_size = -" + mProfile.cacheSizeKib);
+        pragma(db, "mmap_size = " + mProfile.mmapSizeBytes);
+        pragma(db, "temp_store = " + mProfile.tempStore);
+
+        // Products refer to their supplier, and SQLite only checks that it exists when asked to
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            db.setForeignKeyConstraintsEnabled(true);
+        } else {
+            db.execSQL("PRAGMA foreign_keys = ON");
+        }
+    }
+
+    /**
+     * Run a PRAGMA statement. Some pragmas return their new value as a row, which
+     * {@link SQLiteDatabase#execSQL(String)} refuses, so step through them as a query.
+     */
+    private static void pragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
@@ -48,14 +233,622 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
 
         // Execute the SQL statement
         db.execSQL(SQL_CREATE_INVENTORY_TABLE);
+
+        // That is the version 1 schema. Bring it up to date with the same migrations used to
+        // upgrade existing databases, so new and upgraded installs always end up identical.
+        onUpgrade(db, 1, DATABASE_VERSION);
     }
 
     /**
-     * This is called when the database needs to be upgraded.
+     * This is called when the database needs to be upgraded. Apply every migration from the
+     * version after oldVersion up to newVersion, in order. This runs inside a transaction, so
+     * a failed migration leaves the database at its old version.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrateTo(db, version);
+        }
+    }
+
+    /**
+     * Migrate the database from the previous version to the given version.
+     */
+    private static void migrateTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2:
+                // Index the columns products are looked up and filtered by
+                createIndexes(db);
+                break;
+            case 3:
+                // Index product and supplier names for full-text search
+                db.execSQL("CREATE VIRTUAL TABLE " + TABLE_SEARCH + " USING fts4("
+                        + COLUMN_SEARCH_NAME + ", " + COLUMN_SEARCH_SUPPLIER + ");");
+                db.execSQL("INSERT INTO " + TABLE_SEARCH + " (docid, " + COLUMN_SEARCH_NAME + ", "
+                        + COLUMN_SEARCH_SUPPLIER + ") SELECT " + InventoryEntry._ID + ", "
+                        + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                        + supplierNameSql(InventoryEntry.COLUMN_SUPPLIER_NAME, version)
+                        + " FROM " + InventoryEntry.TABLE_NAME + ";");
+
+                // Keep the search table in sync. Sales only change the quantity, so they don't
+                // touch it.
+                createSearchTriggers(db, version);
+                break;
+            case 4:
+                // Sum up the stock of each supplier, so the value of the stock can be read
+                // without scanning the inventory table
+                db.execSQL("CREATE TABLE " + SummaryEntry.TABLE_NAME + " ("
+                        + SummaryEntry.COLUMN_SUPPLIER_NAME + " INTEGER PRIMARY KEY, "
+                        + SummaryEntry.COLUMN_PRODUCTS + " INTEGER NOT NULL, "
+                        + SummaryEntry.COLUMN_UNITS + " INTEGER NOT NULL, "
+                        + SummaryEntry.COLUMN_VALUE + " INTEGER NOT NULL);");
+                db.execSQL("INSERT INTO " + SummaryEntry.TABLE_NAME + " " + SQL_SUMMARY_SCAN + ";");
+
+                // Keep it in sync by adding and subtracting the changed products, in the
+                // transaction of the change. Only the columns it sums trigger an update.
+                createSummaryTriggers(db);
+                break;
+            case 5:
+                // Move the suppliers into their own table. The supplier constants become the IDs
+                // of the rows, so the products keep referring to the same suppliers. Any other
+                // supplier a product has gets a row too, so that every product stays valid.
+                db.execSQL("CREATE TABLE " + SupplierEntry.TABLE_NAME + " ("
+                        + SupplierEntry._ID + " INTEGER PRIMARY KEY, "
+                        + SupplierEntry.COLUMN_NAME + " TEXT NOT NULL UNIQUE COLLATE NOCASE, "
+                        + SupplierEntry.COLUMN_PHONE + " TEXT);");
+                for (int id = 0; id < SUPPLIER_NAMES.length; id++) {
+                    db.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + ", "
+                            + SupplierEntry.COLUMN_NAME + ") VALUES (?, ?);", new Object[] { id, SUPPLIER_NAMES[id] });
+                }
+                db.execSQL("INSERT OR IGNORE INTO " + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + ", "
+                        + SupplierEntry.COLUMN_NAME + ") SELECT DISTINCT " + InventoryEntry.COLUMN_SUPPLIER_NAME
+                        + ", 'Supplier ' || " + InventoryEntry.COLUMN_SUPPLIER_NAME + " FROM "
+                        + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry.COLUMN_SUPPLIER_NAME + " IS NOT NULL;");
+
+                // A supplier keeps the phone most of its products have
+                db.execSQL("UPDATE " + SupplierEntry.TABLE_NAME + " SET " + SupplierEntry.COLUMN_PHONE
+                        + " = (SELECT " + InventoryEntry.COLUMN_SUPPLIER_PHONE + " FROM " + InventoryEntry.TABLE_NAME
+                        + " WHERE " + InventoryEntry.COLUMN_SUPPLIER_NAME + " = " + SupplierEntry.TABLE_NAME + "."
+                        + SupplierEntry._ID + " AND " + InventoryEntry.COLUMN_SUPPLIER_PHONE + " <> ''"
+                        + " GROUP BY " + InventoryEntry.COLUMN_SUPPLIER_PHONE + " ORDER BY count(*) DESC LIMIT 1);");
+
+                // SQLite can't drop a column or add a foreign key to a table, so copy the products
+                // into a new table without the phone. The IDs are kept, and so is the last ID
+                // handed out, so that the IDs of deleted products are never reused.
+                String newTable = InventoryEntry.TABLE_NAME + "_v5";
+                db.execSQL("CREATE TABLE " + newTable + " ("
+                        + InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + InventoryEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                        + InventoryEntry.COLUMN_PRODUCT_PRICE + " INTEGER, "
+                        + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL, "
+                        + InventoryEntry.COLUMN_SUPPLIER_NAME + " INTEGER REFERENCES "
+                        + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + "));");
+                String columns = InventoryEntry._ID + ", " + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                        + InventoryEntry.COLUMN_PRODUCT_PRICE + ", " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                        + InventoryEntry.COLUMN_SUPPLIER_NAME;
+                db.execSQL("INSERT INTO " + newTable + " (" + columns + ") SELECT " + columns + " FROM "
+                        + InventoryEntry.TABLE_NAME + ";");
+                // The old table may have a last ID without any product left, so its counter is
+                // copied rather than updated. sqlite_sequence has no key to replace a row on.
+                db.execSQL("DELETE FROM sqlite_sequence WHERE name = '" + newTable + "';");
+                db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT '" + newTable + "', seq"
+                        + " FROM sqlite_sequence WHERE name = '" + InventoryEntry.TABLE_NAME + "';");
+
+                // Dropping the old table drops its indexes and triggers, without running them,
+                // so the search and summary tables are left as they are
+                db.execSQL("DROP TABLE " + InventoryEntry.TABLE_NAME + ";");
+                db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + InventoryEntry.TABLE_NAME + ";");
+                createIndexes(db);
+                createSearchTriggers(db, version);
+                createSummaryTriggers(db);
+
+                // Renaming a supplier renames it in the search table
+                db.execSQL("CREATE TRIGGER " + SupplierEntry.TABLE_NAME + "_update AFTER UPDATE OF "
+                        + SupplierEntry.COLUMN_NAME + " ON " + SupplierEntry.TABLE_NAME + " BEGIN UPDATE "
+                        + TABLE_SEARCH + " SET " + COLUMN_SEARCH_SUPPLIER + " = new." + SupplierEntry.COLUMN_NAME
+                        + " WHERE docid IN (SELECT " + InventoryEntry._ID + " FROM " + InventoryEntry.TABLE_NAME
+                        + " WHERE " + InventoryEntry.COLUMN_SUPPLIER_NAME + " = new." + SupplierEntry._ID
+                        + "); END;");
+
+                createProductsView(db, version);
+                break;
+            case 6:
+                // Every sort of the catalog reads an index in order rather than sorting the
+                // products. The supplier index goes on with the name, which it replaces for the
+                // products of one supplier. Sorting a supplier's products by price or quantity
+                // walks the index of that column, skipping the other suppliers, rather than
+                // keeping one more index per column up to date.
+                db.execSQL("DROP INDEX " + INDEX_SUPPLIER_NAME + ";");
+                db.execSQL("CREATE INDEX " + INDEX_SUPPLIER_NAME + " ON " + InventoryEntry.TABLE_NAME
+                        + " (" + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+                        + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE);");
+                db.execSQL("CREATE INDEX " + INDEX_PRODUCT_PRICE + " ON " + InventoryEntry.TABLE_NAME
+                        + " (" + InventoryEntry.COLUMN_PRODUCT_PRICE + ");");
+
+                // Products are paged by price, and read a missing price as 0, so store it as 0
+                db.execSQL("UPDATE " + InventoryEntry.TABLE_NAME + " SET " + InventoryEntry.COLUMN_PRODUCT_PRICE
+                        + " = 0 WHERE " + InventoryEntry.COLUMN_PRODUCT_PRICE + " IS NULL;");
+                break;
+            case 7:
+                // Record every sale. The ledger is only appended to and read in ID order, so it
+                // has no index to keep up to date, and no foreign key so that it outlives the
+                // products sold.
+                db.execSQL("CREATE TABLE " + SalesEntry.TABLE_NAME + " ("
+                        + SalesEntry._ID + " INTEGER PRIMARY KEY, "
+                        + SalesEntry.COLUMN_PRODUCT + " INTEGER NOT NULL, "
+                        + SalesEntry.COLUMN_UNITS + " INTEGER NOT NULL, "
+                        + SalesEntry.COLUMN_PRICE + " INTEGER NOT NULL, "
+                        + SalesEntry.COLUMN_SOLD_AT + " INTEGER NOT NULL);");
+                break;
+            case 8:
+                // Give every product its own threshold, starting from the one of the catalog filter
+                db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                        + InventoryEntry.COLUMN_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT "
+                        + InventoryEntry.LOW_STOCK_THRESHOLD + ";");
+                db.execSQL("DROP VIEW " + VIEW_PRODUCTS + ";");
+                createProductsView(db, version);
+
+                // Keep the products below their threshold in a table of their own, as the partial
+                // index SQLite only has since 3.8.0 would. The triggers only write to it when a
+                // product crosses its threshold, so most sales don't touch it. AUTOINCREMENT
+                // never reuses an ID, so the entries added since a given one are the products
+                // that went low since, read with a range of the table's own B-tree.
+                db.execSQL("CREATE TABLE " + LowStockEntry.TABLE_NAME + " ("
+                        + LowStockEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + LowStockEntry.COLUMN_PRODUCT + " INTEGER NOT NULL UNIQUE);");
+                db.execSQL("INSERT INTO " + LowStockEntry.TABLE_NAME + " (" + LowStockEntry.COLUMN_PRODUCT
+                        + ") SELECT " + InventoryEntry._ID + " FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+                        + lowStockSql(null) + " ORDER BY " + InventoryEntry._ID + ";");
+                createLowStockTriggers(db);
+                break;
+            case 9:
+                // One row, changed with every product so that the copies of the catalog kept
+                // outside the database can tell whether they are current without reading it
+                db.execSQL("CREATE TABLE " + VersionEntry.TABLE_NAME + " ("
+                        + VersionEntry.COLUMN_VERSION + " INTEGER NOT NULL);");
+                // Halved so that counting up from it never overflows
+                db.execSQL("INSERT INTO " + VersionEntry.TABLE_NAME + " VALUES (random() >> 1);");
+                createVersionTriggers(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    /**
+     * Create the indexes of the inventory table.
+     */
+    private static void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + INDEX_PRODUCT_NAME + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE);");
+        db.execSQL("CREATE INDEX " + INDEX_SUPPLIER_NAME + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_SUPPLIER_NAME + ");");
+        db.execSQL("CREATE INDEX " + INDEX_PRODUCT_QUANTITY + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ");");
+    }
+
+    /**
+     * Create the triggers of the inventory table keeping {@link #TABLE_SEARCH} in sync, as of the
+     * given database version.
+     */
+    private static void createSearchTriggers(SQLiteDatabase db, int version) {
+        db.execSQL("CREATE TRIGGER " + TABLE_SEARCH + "_insert AFTER INSERT ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN INSERT INTO " + TABLE_SEARCH
+                + " (docid, " + COLUMN_SEARCH_NAME + ", " + COLUMN_SEARCH_SUPPLIER + ") VALUES (new."
+                + InventoryEntry._ID + ", new." + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + supplierNameSql("new." + InventoryEntry.COLUMN_SUPPLIER_NAME, version) + "); END;");
+        db.execSQL("CREATE TRIGGER " + TABLE_SEARCH + "_update AFTER UPDATE OF "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME
+                + " ON " + InventoryEntry.TABLE_NAME + " BEGIN UPDATE " + TABLE_SEARCH + " SET "
+                + COLUMN_SEARCH_NAME + " = new." + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+                + COLUMN_SEARCH_SUPPLIER + " = "
+                + supplierNameSql("new." + InventoryEntry.COLUMN_SUPPLIER_NAME, version)
+                + " WHERE docid = old." + InventoryEntry._ID + "; END;");
+        db.execSQL("CREATE TRIGGER " + TABLE_SEARCH + "_delete AFTER DELETE ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN DELETE FROM " + TABLE_SEARCH
+                + " WHERE docid = old." + InventoryEntry._ID + "; END;");
     }
 
+    /**
+     * Create the view {@link #VIEW_PRODUCTS} as of the given database version.
+     */
+    private static void createProductsView(SQLiteDatabase db, int version) {
+        String threshold = version >= 8 ? InventoryEntry.COLUMN_REORDER_THRESHOLD + ", " : "";
+        db.execSQL("CREATE VIEW " + VIEW_PRODUCTS + " AS SELECT "
+                + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " AS " + InventoryEntry._ID + ", "
+                + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_PRODUCT_NAME + " AS "
+                + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_PRODUCT_PRICE + ", "
+                + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+                + threshold + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_PHONE + " AS "
+                + InventoryEntry.COLUMN_SUPPLIER_PHONE + " FROM " + InventoryEntry.TABLE_NAME
+                + " LEFT JOIN " + SupplierEntry.TABLE_NAME + " ON " + SupplierEntry.TABLE_NAME + "."
+                + SupplierEntry._ID + " = " + InventoryEntry.TABLE_NAME + "."
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + ";");
+    }
+
+    /**
+     * Create the triggers of the inventory table keeping {@link LowStockEntry#TABLE_NAME} in sync.
+     * A product that stays low, or stays stocked, leaves the table as it is.
+     */
+    private static void createLowStockTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER " + LowStockEntry.TABLE_NAME + "_insert AFTER INSERT ON "
+                + InventoryEntry.TABLE_NAME + " WHEN " + lowStockSql("new") + " BEGIN INSERT INTO "
+                + LowStockEntry.TABLE_NAME + " (" + LowStockEntry.COLUMN_PRODUCT + ") VALUES (new."
+                + InventoryEntry._ID + "); END;");
+        db.execSQL("CREATE TRIGGER " + LowStockEntry.TABLE_NAME + "_update AFTER UPDATE OF "
+                + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ", " + InventoryEntry.COLUMN_REORDER_THRESHOLD
+                + " ON " + InventoryEntry.TABLE_NAME + " WHEN (" + lowStockSql("new") + ") <> ("
+                + lowStockSql("old") + ") BEGIN DELETE FROM " + LowStockEntry.TABLE_NAME + " WHERE "
+                + LowStockEntry.COLUMN_PRODUCT + " = old." + InventoryEntry._ID + "; INSERT INTO "
+                + LowStockEntry.TABLE_NAME + " (" + LowStockEntry.COLUMN_PRODUCT + ") SELECT new."
+                + InventoryEntry._ID + " WHERE " + lowStockSql("new") + "; END;");
+        db.execSQL("CREATE TRIGGER " + LowStockEntry.TABLE_NAME + "_delete AFTER DELETE ON "
+                + InventoryEntry.TABLE_NAME + " WHEN " + lowStockSql("old") + " BEGIN DELETE FROM "
+                + LowStockEntry.TABLE_NAME + " WHERE " + LowStockEntry.COLUMN_PRODUCT + " = old."
+                + InventoryEntry._ID + "; END;");
+    }
+
+    /**
+     * Create the triggers of the inventory table changing the version in
+     * {@link VersionEntry#TABLE_NAME}.
+     */
+    private static void createVersionTriggers(SQLiteDatabase db) {
+        String bump = " ON " + InventoryEntry.TABLE_NAME + " BEGIN UPDATE " + VersionEntry.TABLE_NAME + " SET "
+                + VersionEntry.COLUMN_VERSION + " = " + VersionEntry.COLUMN_VERSION + " + 1; END;";
+        db.execSQL("CREATE TRIGGER " + VersionEntry.TABLE_NAME + "_insert AFTER INSERT" + bump);
+        db.execSQL("CREATE TRIGGER " + VersionEntry.TABLE_NAME + "_update AFTER UPDATE" + bump);
+        db.execSQL("CREATE TRIGGER " + VersionEntry.TABLE_NAME + "_delete AFTER DELETE" + bump);
+    }
+
+    /**
+     * Returns an SQL condition true when the given product, "new", "old" or null for the row
+     * of the inventory table, is below its reorder threshold.
+     */
+    private static String lowStockSql(String product) {
+        String prefix = product != null ? product + "." : "";
+        return prefix + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " < " + prefix
+                + InventoryEntry.COLUMN_REORDER_THRESHOLD;
+    }
+
+    /**
+     * Create the triggers of the inventory table keeping the summary table in sync.
+     */
+    private static void createSummaryTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER " + SummaryEntry.TABLE_NAME + "_insert AFTER INSERT ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN " + summaryRowSql("new")
+                + summaryDeltaSql("new", "+") + " END;");
+        db.execSQL("CREATE TRIGGER " + SummaryEntry.TABLE_NAME + "_update AFTER UPDATE OF "
+                + InventoryEntry.COLUMN_PRODUCT_PRICE + ", " + InventoryEntry.COLUMN_PRODUCT_QUANTITY
+                + ", " + InventoryEntry.COLUMN_SUPPLIER_NAME + " ON " + InventoryEntry.TABLE_NAME
+                + " BEGIN " + summaryDeltaSql("old", "-") + summaryRowSql("new")
+                + summaryDeltaSql("new", "+") + " END;");
+        db.execSQL("CREATE TRIGGER " + SummaryEntry.TABLE_NAME + "_delete AFTER DELETE ON "
+                + InventoryEntry.TABLE_NAME + " BEGIN " + summaryDeltaSql("old", "-") + " END;");
+    }
+
+    /**
+     * Returns the SQL statement of a trigger adding the summary row of the supplier of the given
+     * product, "new" or "old", if it doesn't exist yet.
+     */
+    private static String summaryRowSql(String product) {
+        return "INSERT OR IGNORE INTO " + SummaryEntry.TABLE_NAME + " VALUES (ifnull(" + product + "."
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + ", -1), 0, 0, 0);";
+    }
+
+    /**
+     * Returns the SQL statement of a trigger adding the given product, "new" or "old", to the
+     * summary row of its supplier, or subtracting it when the sign is "-".
+     */
+    private static String summaryDeltaSql(String product, String sign) {
+        String quantity = product + "." + InventoryEntry.COLUMN_PRODUCT_QUANTITY;
+        return "UPDATE " + SummaryEntry.TABLE_NAME + " SET "
+                + SummaryEntry.COLUMN_PRODUCTS + " = " + SummaryEntry.COLUMN_PRODUCTS + " " + sign + " 1, "
+                + SummaryEntry.COLUMN_UNITS + " = " + SummaryEntry.COLUMN_UNITS + " " + sign + " " + quantity + ", "
+                + SummaryEntry.COLUMN_VALUE + " = " + SummaryEntry.COLUMN_VALUE + " " + sign + " ifnull("
+                + product + "." + InventoryEntry.COLUMN_PRODUCT_PRICE + ", 0) * " + quantity
+                + " WHERE " + SummaryEntry.COLUMN_SUPPLIER_NAME + " = ifnull(" + product + "."
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + ", -1);";
+    }
+
+    /**
+     * Check the summary table against a full scan of the inventory table, and rebuild it if
+     * they differ. The triggers keep them equal, so a difference means the database was changed
+     * behind their back, for instance restored from a backup of another version. Must be called
+     * in a transaction. Returns the number of suppliers whose summary was wrong.
+     */
+    static int repairSummary(SQLiteDatabase db) {
+        // Suppliers in one and not the other, or with different sums
+        Cursor cursor = db.rawQuery("SELECT count(*) FROM (SELECT " + SummaryEntry.COLUMN_SUPPLIER_NAME
+                + " FROM (" + SQL_SUMMARY_SCAN + " EXCEPT " + SQL_SUMMARY_ROWS + ") UNION SELECT "
+                + SummaryEntry.COLUMN_SUPPLIER_NAME + " FROM (" + SQL_SUMMARY_ROWS + " EXCEPT "
+                + SQL_SUMMARY_SCAN + "))", null);
+        int wrong;
+        try {
+            cursor.moveToFirst();
+            wrong = cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+        if (wrong > 0) {
+            db.delete(SummaryEntry.TABLE_NAME, null, null);
+            db.execSQL("INSERT INTO " + SummaryEntry.TABLE_NAME + " " + SQL_SUMMARY_SCAN);
+        }
+        return wrong;
+    }
+
+    /**
+     * Give back to the file system up to the given number of the pages that deletes left free
+     * in the database file, or all of them if it isn't positive, through incremental
+     * auto-vacuum. Each call holds the write lock
+     * while it moves pages, so large amounts of free pages should be reclaimed in several calls.
+     * Must not be called in a transaction. Returns the number of pages reclaimed, 0 once there
+     * are none left, or if the database was created before incremental auto-vacuum was enabled
+     * and {@link #enableIncrementalVacuum(SQLiteDatabase)} hasn't converted it yet.
+     */
+    static int reclaimFreePages(SQLiteDatabase db, int maxPages) {
+        long free = longPragma(db, "freelist_count");
+        if (free == 0 || longPragma(db, "auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            return 0;
+        }
+        // Each row returned is one page moved, step through all of them
+        Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + maxPages + ")", null);
+        try {
+            while (cursor.moveToNext()) {
+                // Nothing to read
+            }
+        } finally {
+            cursor.close();
+        }
+        return (int) (free - longPragma(db, "freelist_count"));
+    }
+
+    /**
+     * Convert a database created before incremental auto-vacuum was enabled, so that
+     * {@link #reclaimFreePages(SQLiteDatabase, int)} can give its free pages back. The
+     * conversion is a VACUUM, which rewrites the whole file holding the write lock for as long as
+     * it takes, so it is done only once at most {@link #MAX_VACUUM_PAGES} of its pages are in
+     * use, for instance after all the products were deleted, and never in a step of a budget.
+     * Must not be called in a transaction. Returns the number of free pages given back, 0 if the
+     * database needs no conversion, has no free pages or is still too large.
+     */
+    static int enableIncrementalVacuum(SQLiteDatabase db) {
+        long free = longPragma(db, "freelist_count");
+        if (free == 0 || longPragma(db, "auto_vacuum") == AUTO_VACUUM_INCREMENTAL
+                || longPragma(db, "page_count") - free > MAX_VACUUM_PAGES) {
+            return 0;
+        }
+        pragma(db, "auto_vacuum = INCREMENTAL");
+        db.execSQL("VACUUM");
+        return (int) Math.min(free, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Bring the statistics the query planner chooses indexes by up to date, for the tables
+     * never analyzed and those whose number of rows has at least doubled or halved since, as
+     * PRAGMA optimize does on the SQLite versions that have it. Returns the number of tables
+     * whose statistics were refreshed.
+     *
+     * ANALYZE would hold the write lock while it reads every index. Instead each index is read
+     * outside of a transaction, so by a reader connection while products are written, and its
+     * statistics, the same ANALYZE computes, are written to sqlite_stat1 in one short
+     * transaction. The connection writing them loads them at once, the others when they open.
+     * Must not be called in a transaction.
+     */
+    static int refreshStatistics(SQLiteDatabase db) {
+        // The indexes of each table, but the shadow tables of the full-text search
+        Map<String, List<String[]>> indexes = new LinkedHashMap<>();
+        Cursor cursor = db.rawQuery("SELECT tbl_name, name, sql FROM sqlite_master WHERE type = 'index'"
+                + " AND tbl_name NOT LIKE ? ORDER BY tbl_name, name", new String[] { TABLE_SEARCH + "%" });
+        try {
+            while (cursor.moveToNext()) {
+                List<String[]> tableIndexes = indexes.get(cursor.getString(0));
+                if (tableIndexes == null) {
+                    tableIndexes = new ArrayList<>();
+                    indexes.put(cursor.getString(0), tableIndexes);
+                }
+                tableIndexes.add(new String[] { cursor.getString(1), cursor.getString(2) });
+            }
+        } finally {
+            cursor.close();
+        }
+
+        boolean hasStatistics = DatabaseUtils.longForQuery(db, "SELECT count(*) FROM sqlite_master WHERE name = '"
+                + TABLE_STATISTICS + "'", null) > 0;
+        List<String> tables = new ArrayList<>();
+        List<ContentValues> statistics = new ArrayList<>();
+        for (Map.Entry<String, List<String[]>> entry : indexes.entrySet()) {
+            String table = entry.getKey();
+            long rows = DatabaseUtils.queryNumEntries(db, table);
+            long analyzedRows = hasStatistics ? DatabaseUtils.longForQuery(db, "SELECT ifnull(max(CAST(stat AS"
+                    + " INTEGER)), -1) FROM " + TABLE_STATISTICS + " WHERE tbl = ?", new String[] { table }) : -1;
+            if (analyzedRows < 0 ? rows == 0 : rows <= analyzedRows * 2 && rows * 2 >= analyzedRows) {
+                continue;
+            }
+            tables.add(table);
+            // Empty tables have no statistics, as after ANALYZE
+            for (int i = 0; rows > 0 && i < entry.getValue().size(); i++) {
+                String[] index = entry.getValue().get(i);
+                ContentValues values = new ContentValues();
+                values.put("tbl", table);
+                values.put("idx", index[0]);
+                values.put("stat", indexStatistics(db, table, index[0], index[1], rows));
+                statistics.add(values);
+            }
+        }
+        if (tables.isEmpty()) {
+            return 0;
+        }
+
+        db.beginTransaction();
+        try {
+            if (!hasStatistics) {
+                // Analyzing the schema table creates the statistics table, and reads no index
+                db.execSQL("ANALYZE sqlite_master");
+            }
+            for (String table : tables) {
+                db.delete(TABLE_STATISTICS, "tbl = ?", new String[] { table });
+            }
+            for (ContentValues values : statistics) {
+                db.insert(TABLE_STATISTICS, null, values);
+            }
+            // Load the new statistics into the query planner
+            db.execSQL("ANALYZE sqlite_master");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return tables.size();
+    }
+
+    /**
+     * Returns the statistics of the given index in the format of sqlite_stat1: the number of
+     * rows, then the average number of rows with the same values of its first column, of its
+     * first two columns, and so on.
+     *
+     * @param sql the statement that created the index, null for the indexes of constraints
+     */
+    private static String indexStatistics(SQLiteDatabase db, String table, String index, String sql, long rows) {
+        StringBuilder statistics = new StringBuilder().append(rows);
+        StringBuilder columns = new StringBuilder();
+        Cursor cursor = db.rawQuery("PRAGMA index_info(" + index + ")", null);
+        try {
+            int nameColumn = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                String column = cursor.getString(nameColumn);
+                columns.append(columns.length() == 0 ? "" : ", ").append(column);
+                // Group by the collation of the index, so that the index is read in its order
+                Matcher collation = Pattern.compile("\\b" + Pattern.quote(column) + "\\s+COLLATE\\s+(\\w+)",
+                        Pattern.CASE_INSENSITIVE).matcher(sql != null ? sql : "");
+                if (collation.find()) {
+                    columns.append(" COLLATE ").append(collation.group(1));
+                }
+                long distinct = DatabaseUtils.longForQuery(db, "SELECT count(*) FROM (SELECT 1 FROM " + table
+                        + " INDEXED BY " + index + " GROUP BY " + columns + ")", null);
+                // Rounded up, as ANALYZE does
+                statistics.append(' ').append((rows + distinct - 1) / Math.max(distinct, 1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return statistics.toString();
+    }
+
+    /**
+     * Merge the segments of the full-text search index, writing about the given number of
+     * pages, or all of them into one if it isn't positive. Every change of a product adds a
+     * segment, and a search reads each of them until they are merged. The write lock is held
+     * while the pages are written. Must not be called in a transaction. Returns the number of
+     * rows of the index written, about one per page, 0 once there is nothing left to merge.
+     *
+     * Merges of a given number of pages need SQLite 3.7.17, Android 5.0, earlier versions
+     * merge nothing then.
+     */
+    static int mergeSearchIndex(SQLiteDatabase db, int maxPages) {
+        String command = maxPages > 0 ? "merge=" + maxPages + ",2" : "optimize";
+        if (maxPages > 0 && !isSqliteAtLeast(db, 3, 7, 17)) {
+            return 0;
+        }
+        // In a transaction, so that the changes are counted on the connection that made them
+        db.beginTransaction();
+        try {
+            long changes = DatabaseUtils.longForQuery(db, "SELECT total_changes()", null);
+            db.execSQL("INSERT INTO " + TABLE_SEARCH + " (" + TABLE_SEARCH + ") VALUES ('" + command + "')");
+            changes = DatabaseUtils.longForQuery(db, "SELECT total_changes()", null) - changes;
+            db.setTransactionSuccessful();
+            // A merge with nothing to do still counts a change
+            return changes < 2 ? 0 : (int) Math.min(changes, Integer.MAX_VALUE);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns whether the SQLite library of the database is at least of the given version.
+     */
+    private static boolean isSqliteAtLeast(SQLiteDatabase db, int major, int minor, int patch) {
+        String[] version = DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null).split("\\.");
+        int[] required = { major, minor, patch };
+        for (int i = 0; i < required.length; i++) {
+            int part = i < version.length ? Integer.parseInt(version[i]) : 0;
+            if (part != required[i]) {
+                return part > required[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of a PRAGMA statement returning a number.
+     */
+    private static long longPragma(SQLiteDatabase db, String pragma) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA " + pragma, null);
+    }
+
+    /**
+     * Returns an SQL expression mapping the supplier ID in the given column to the name of the
+     * supplier, so products can be searched by supplier name. Before version 5 there is no
+     * suppliers table, and the names are spelled out.
+     */
+    private static String supplierNameSql(String column, int version) {
+        if (version >= 5) {
+            return "(SELECT " + SupplierEntry.COLUMN_NAME + " FROM " + SupplierEntry.TABLE_NAME
+                    + " WHERE " + SupplierEntry._ID + " = " + column + ")";
+        }
+        StringBuilder sql = new StringBuilder("CASE ").append(column);
+        for (int id = 0; id < SUPPLIER_NAMES.length; id++) {
+            sql.append(" WHEN ").append(id).append(" THEN '").append(SUPPLIER_NAMES[id]).append('\'');
+        }
+        return sql.append(" END").toString();
+    }
+
+    /**
+     * Connection settings for the inventory database.
+     *
+     * SQLite applies these settings per connection. Android opens extra read-only connections
+     * when write-ahead logging is enabled and only the primary connection goes through
+     * {@link #onConfigure(SQLiteDatabase)}, so the page cache, mmap and temp store sizes mostly
+     * benefit writes and queries that run on the primary connection.
+     */
+    public static final class Profile {
+
+        /**
+         * The settings used by the app:
+         * <ul>
+         * <li>Write-ahead logging, so the catalog can be read while a sale is being written.</li>
+         * <li>NORMAL synchronous level. With write-ahead logging the database can't be corrupted,
+         * a power loss can only roll back the last few committed transactions.</li>
+         * <li>2 MiB page cache, the default of the platform's SQLite.</li>
+         * <li>No memory mapped I/O, which is unreliable on some devices and filesystems.</li>
+         * <li>Temporary tables and indexes in memory, to keep sorts off the flash storage.</li>
+         * </ul>
+         */
+        public static final Profile DEFAULT = new Profile(true, "NORMAL", 2048, 0, "MEMORY");
+
+        /** The settings of a default {@link SQLiteOpenHelper}, with a rollback journal */
+        public static final Profile ROLLBACK_JOURNAL = new Profile(false, "FULL", 2048, 0, "DEFAULT");
+
+        /** Whether write-ahead logging is enabled instead of the rollback journal */
+        public final boolean writeAheadLogging;
+
+        /** Synchronous level: OFF, NORMAL or FULL */
+        public final String synchronous;
+
+        /** Maximum size of the page cache, in KiB */
+        public final int cacheSizeKib;
+
+        /** Maximum number of bytes of the database file accessed through memory mapped I/O */
+        public final long mmapSizeBytes;
+
+        /** Where temporary tables and indexes are stored: DEFAULT, FILE or MEMORY */
+        public final String tempStore;
+
+        public Profile(boolean writeAheadLogging, String synchronous, int cacheSizeKib,
+                       long mmapSizeBytes, String tempStore) {
+            this.writeAheadLogging = writeAheadLogging;
+            this.synchronous = synchronous;
+            this.cacheSizeKib = cacheSizeKib;
+            this.mmapSizeBytes = mmapSizeBytes;
+            this.tempStore = tempStore;
+        }
+    }
 }
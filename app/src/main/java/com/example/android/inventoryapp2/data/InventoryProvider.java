@@ -1,15 +1,52 @@
 package com.example.android.inventoryapp2.data;
 
+import android.content.ClipDescription;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.content.res.AssetFileDescriptor;
+import android.database.CharArrayBuffer;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.text.TextUtils;
 import android.util.Log;
 
+import com.example.android.inventoryapp2.data.InventoryContract.DiagnosticsEntry;
 import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.LowStockEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.MaintenanceEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SalesEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SummaryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.SupplierEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.VersionEntry;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * {@link ContentProvider} for Inventory app.
@@ -27,6 +64,82 @@ public class InventoryProvider extends ContentProvider {
     /** URI matcher code for the content URI for a single product in the inventory table */
     public static final int INVENTORY_ID = 101;
 
+    /** URI matcher code for the content URI to sell units of a single product */
+    public static final int INVENTORY_SELL = 102;
+
+    /** URI matcher code for the content URI to search the inventory table */
+    public static final int INVENTORY_SEARCH = 103;
+
+    /** URI matcher code for the content URI of the diagnostics of the provider */
+    public static final int DIAGNOSTICS = 104;
+
+    /** URI matcher code for the content URI to insert or update products by name and supplier */
+    public static final int INVENTORY_UPSERT = 105;
+
+    /** URI matcher code for the content URI to export the inventory table to a stream */
+    public static final int INVENTORY_EXPORT = 106;
+
+    /** URI matcher code for the content URI of the summary of the stock of each supplier */
+    public static final int INVENTORY_SUMMARY = 107;
+
+    /** URI matcher code for the content URI for the suppliers table */
+    public static final int SUPPLIERS = 108;
+
+    /** URI matcher code for the content URI for a single supplier in the suppliers table */
+    public static final int SUPPLIERS_ID = 109;
+
+    /** URI matcher code for the content URI for the sales ledger */
+    public static final int SALES = 110;
+
+    /** URI matcher code for the products low on stock */
+    public static final int LOW_STOCK = 111;
+
+    /** URI matcher code for the content URI to reclaim the free pages of the database */
+    public static final int INVENTORY_RECLAIM = 112;
+
+    /** URI matcher code for the size of the database */
+    public static final int MAINTENANCE = 113;
+
+    /** URI matcher code for the content URI to refresh the statistics of the indexes */
+    public static final int MAINTENANCE_STATISTICS = 114;
+
+    /** URI matcher code for the content URI to merge the segments of the full-text search index */
+    public static final int MAINTENANCE_SEARCH_INDEX = 115;
+
+    /** URI matcher code for the integrity check of the database */
+    public static final int MAINTENANCE_INTEGRITY = 116;
+
+    /** URI matcher code for the content URI of the version of the products */
+    public static final int INVENTORY_VERSION = 117;
+
+    /** URI matcher code for the content URI to convert an old database to incremental vacuum */
+    public static final int MAINTENANCE_VACUUM = 118;
+
+    /**
+     * Names of the URI patterns in the metrics, indexed by URI matcher code minus
+     * {@link #INVENTORY}. Operations on the diagnostics themselves aren't recorded.
+     */
+    private static final String[] METRICS_MATCH_NAMES = {
+            InventoryContract.PATH_INVENTORY,
+            InventoryContract.PATH_INVENTORY + "/#",
+            InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_SELL,
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SEARCH,
+            InventoryContract.PATH_DIAGNOSTICS,
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_UPSERT,
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_EXPORT,
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SUMMARY,
+            InventoryContract.PATH_SUPPLIERS,
+            InventoryContract.PATH_SUPPLIERS + "/#",
+            InventoryContract.PATH_SALES,
+            InventoryContract.PATH_LOW_STOCK,
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_RECLAIM,
+            InventoryContract.PATH_MAINTENANCE,
+            InventoryContract.PATH_MAINTENANCE + "/" + InventoryContract.PATH_STATISTICS,
+            InventoryContract.PATH_MAINTENANCE + "/" + InventoryContract.PATH_SEARCH,
+            InventoryContract.PATH_MAINTENANCE + "/" + InventoryContract.PATH_INTEGRITY,
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_VERSION,
+            InventoryContract.PATH_MAINTENANCE + "/" + InventoryContract.PATH_VACUUM };
+
     /** URI matcher object to match a context URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
      * It's common to use NO_MATCH as the input for this case.
@@ -52,17 +165,317 @@ public class InventoryProvider extends ContentProvider {
         // For example, "content://com.example.android.inventory/inventory/3" matches, but
         // "content://com.example.android.inventory/inventory" (without a number at the end) doesn't match.
         sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY + "/#", INVENTORY_ID);
+
+        // The content URI of the form "content://com.example.android.inventory/inventory/#/sell" will map
+        // to the integer code {@link #INVENTORY_SELL}. Updating this URI sells units of ONE single row
+        // of the inventory table.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_SELL, INVENTORY_SELL);
+
+        // The content URI of the form "content://com.example.android.inventory/inventory/search" will map
+        // to the integer code {@link #INVENTORY_SEARCH}. This URI is used to search the inventory table,
+        // with the text to search for in the "q" query parameter.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SEARCH, INVENTORY_SEARCH);
+
+        // The content URI of the form "content://com.example.android.inventory/diagnostics" will map
+        // to the integer code {@link #DIAGNOSTICS}. This URI is used to read and reset the metrics
+        // of the provider.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_DIAGNOSTICS, DIAGNOSTICS);
+
+        // The content URI of the form "content://com.example.android.inventory/inventory/upsert" will map
+        // to the integer code {@link #INVENTORY_UPSERT}. Bulk inserting into this URI inserts or updates
+        // products by name and supplier, as imports of supplier catalogs do.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_UPSERT, INVENTORY_UPSERT);
+
+        // The content URI of the form "content://com.example.android.inventory/inventory/export" will map
+        // to the integer code {@link #INVENTORY_EXPORT}. Opening this URI streams the whole inventory
+        // table as CSV or JSON.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_EXPORT, INVENTORY_EXPORT);
+
+        // The content URI of the form "content://com.example.android.inventory/inventory/summary" will map
+        // to the integer code {@link #INVENTORY_SUMMARY}. This URI is used to read the stock of each
+        // supplier without scanning the inventory table.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SUMMARY, INVENTORY_SUMMARY);
+
+        // The content URIs of the form "content://com.example.android.inventory/suppliers" and
+        // "content://com.example.android.inventory/suppliers/#" will map to the integer codes
+        // {@link #SUPPLIERS} and {@link #SUPPLIERS_ID}. These URIs are used to provide access to
+        // all the suppliers and to ONE single supplier.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_SUPPLIERS, SUPPLIERS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_SUPPLIERS + "/#", SUPPLIERS_ID);
+
+        // The content URI of the form "content://com.example.android.inventory/sales" will map to the
+        // integer code {@link #SALES}. This URI is used to read the sales ledger, which only sales
+        // write to.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_SALES, SALES);
+
+        // The content URI of the form "content://com.example.android.inventory/lowstock" will map to
+        // the integer code {@link #LOW_STOCK}. This URI is used to read the products below their
+        // reorder threshold, or only those that went below it after a given entry.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_LOW_STOCK, LOW_STOCK);
+
+        // The content URI of the form "content://com.example.android.inventory/inventory/reclaim" will map
+        // to the integer code {@link #INVENTORY_RECLAIM}. Updating this URI gives back to the file system
+        // the pages deleted products left free in the database.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_RECLAIM, INVENTORY_RECLAIM);
+
+        // The content URIs of the form "content://com.example.android.inventory/maintenance" and below
+        // will map to the MAINTENANCE codes. They are used to keep the database fast while the device
+        // is idle, see MaintenanceEntry.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_MAINTENANCE, MAINTENANCE);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_MAINTENANCE + "/" + InventoryContract.PATH_STATISTICS, MAINTENANCE_STATISTICS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_MAINTENANCE + "/" + InventoryContract.PATH_SEARCH, MAINTENANCE_SEARCH_INDEX);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_MAINTENANCE + "/" + InventoryContract.PATH_INTEGRITY, MAINTENANCE_INTEGRITY);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_MAINTENANCE + "/" + InventoryContract.PATH_VACUUM, MAINTENANCE_VACUUM);
+
+        // The content URI of the form "content://com.example.android.inventory/inventory/version" will map
+        // to the integer code {@link #INVENTORY_VERSION}. This URI is used to tell whether a copy of the
+        // products kept outside the database is current.
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_VERSION, INVENTORY_VERSION);
     }
 
+    /**
+     * Maximum number of products a change notifies one by one. A change of more products is
+     * notified once on {@link InventoryEntry#CONTENT_URI}.
+     */
+    private static final int MAX_ROW_NOTIFICATIONS = 50;
+
+    /** Maximum number of products kept in the product cache, enough for the hot set of a store */
+    private static final int PRODUCT_CACHE_SIZE = 500;
+
+    /** Maximum number of problems an integrity check reports */
+    private static final int MAX_INTEGRITY_PROBLEMS = 100;
+
+    /** Maximum number of search results returned when the search URI doesn't set a limit */
+    private static final int DEFAULT_SEARCH_LIMIT = 200;
+
+    /**
+     * Number of products read per query of an export. A page of products fits in one cursor
+     * window, so each query fills a single window.
+     */
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    /** Size of the buffer exports are written through */
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+    /** MIME types of the exports, in order of preference */
+    private static final String[] EXPORT_MIME_TYPES = { InventoryEntry.MIME_TYPE_CSV, InventoryEntry.MIME_TYPE_JSON };
+
+    /** Extensions of the names of the exports, in the order of {@link #EXPORT_MIME_TYPES} */
+    private static final String[] EXPORT_EXTENSIONS = { "csv", "json" };
+
+    /**
+     * Tables searched by the {@link #INVENTORY_SEARCH} code: the products matching the full-text
+     * query, bound to the first "?", joined with the products. The number of matched terms
+     * ("hits") is used to rank the results: offsets() lists four integers separated by spaces
+     * for each of them. The CROSS JOIN keeps the matches in the outer loop, as the planner would
+     * otherwise run the full-text query for every product of the view.
+     */
+    private static final String SEARCH_TABLES = "(SELECT docid, "
+            + "(length(offsets) - length(replace(offsets, ' ', '')) + 1) / 4 AS hits FROM (SELECT docid, offsets("
+            + InventoryDbHelper.TABLE_SEARCH + ") AS offsets FROM " + InventoryDbHelper.TABLE_SEARCH
+            + " WHERE " + InventoryDbHelper.TABLE_SEARCH + " MATCH ?)) AS matches"
+            + " CROSS JOIN " + InventoryDbHelper.VIEW_PRODUCTS
+            + " ON " + InventoryDbHelper.VIEW_PRODUCTS + "." + InventoryEntry._ID + " = matches.docid";
+
+    /**
+     * Tables read by the {@link #LOW_STOCK} code: the entries of the products low on stock,
+     * joined with their product. The LEFT JOIN keeps the entries in the outer loop, so a range
+     * of entry IDs is read from the low stock table and each product looked up by its ID, and is
+     * left out by SQLite when no column of the product is read, to count the entries.
+     */
+    private static final String LOW_STOCK_TABLES = "(SELECT " + LowStockEntry.TABLE_NAME + "."
+            + LowStockEntry._ID + " AS " + LowStockEntry._ID + ", " + LowStockEntry.COLUMN_PRODUCT + ", "
+            + InventoryEntry.COLUMN_PRODUCT_NAME + ", " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + InventoryEntry.COLUMN_REORDER_THRESHOLD + " FROM " + LowStockEntry.TABLE_NAME
+            + " LEFT JOIN " + InventoryEntry.TABLE_NAME + " ON " + InventoryEntry.TABLE_NAME + "."
+            + InventoryEntry._ID + " = " + LowStockEntry.COLUMN_PRODUCT + ")";
+
+    /**
+     * Ranking of the search results: products whose name starts with the first search word,
+     * bound to the last "?", then the products with the most matched terms, then by name.
+     */
+    private static final String SEARCH_ORDER = "CASE WHEN " + InventoryEntry.COLUMN_PRODUCT_NAME
+            + " LIKE ? THEN 0 ELSE 1 END, hits DESC, " + InventoryEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE";
+
+    /**
+     * SQL statement used to insert a single product. Compiled once per batch and reused for each
+     * row, or taken from the statement pool for a single product.
+     */
+    private static final String SQL_INSERT_PRODUCT = "INSERT INTO " + InventoryEntry.TABLE_NAME + " ("
+            + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+            + InventoryEntry.COLUMN_PRODUCT_PRICE + ", "
+            + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + InventoryEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryEntry.COLUMN_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ifnull(?, "
+            + InventoryEntry.LOW_STOCK_THRESHOLD + "))";
+
+    /** Columns of the values a single product is inserted from with {@link #SQL_INSERT_PRODUCT} */
+    private static final String[] PRODUCT_INSERT_COLUMNS = { InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRODUCT_PRICE, InventoryEntry.COLUMN_PRODUCT_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_NAME, InventoryEntry.COLUMN_REORDER_THRESHOLD,
+            InventoryEntry.COLUMN_SUPPLIER_PHONE };
+
+    /** SQL statement setting the quantity of the product with the ID bound to the last "?" */
+    private static final String SQL_UPDATE_QUANTITY = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " = ? WHERE " + InventoryEntry._ID + " = ?";
+
+    /**
+     * SQL statement setting the columns the editor saves, but the reorder threshold, of the
+     * product with the ID bound to the last "?".
+     */
+    private static final String SQL_UPDATE_PRODUCT = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_PRODUCT_NAME + " = ?, " + InventoryEntry.COLUMN_PRODUCT_PRICE + " = ?, "
+            + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " = ?, " + InventoryEntry.COLUMN_SUPPLIER_NAME + " = ? WHERE "
+            + InventoryEntry._ID + " = ?";
+
+    /** Like {@link #SQL_UPDATE_PRODUCT}, also setting the reorder threshold */
+    private static final String SQL_UPDATE_PRODUCT_THRESHOLD = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_PRODUCT_NAME + " = ?, " + InventoryEntry.COLUMN_PRODUCT_PRICE + " = ?, "
+            + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " = ?, " + InventoryEntry.COLUMN_SUPPLIER_NAME + " = ?, "
+            + InventoryEntry.COLUMN_REORDER_THRESHOLD + " = ? WHERE " + InventoryEntry._ID + " = ?";
+
+    /** SQL statement deleting the product with the ID bound to the "?" */
+    private static final String SQL_DELETE_PRODUCT = "DELETE FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    /**
+     * Condition matching the products with the name, ignoring case, and supplier bound to the
+     * two "?". The unary + keeps SQLite from picking the supplier index, which only narrows the
+     * search down to a third of the products, over the name index.
+     */
+    private static final String SQL_WHERE_NAME_AND_SUPPLIER = " WHERE " + InventoryEntry.COLUMN_PRODUCT_NAME
+            + " = ? COLLATE NOCASE AND +" + InventoryEntry.COLUMN_SUPPLIER_NAME + " = ?";
+
+    /**
+     * SQL query returning the ID of the first product with the name and supplier bound to the
+     * two "?", or -1 if there is none.
+     */
+    private static final String SQL_FIND_PRODUCT = "SELECT ifnull((SELECT " + InventoryEntry._ID
+            + " FROM " + InventoryEntry.TABLE_NAME + SQL_WHERE_NAME_AND_SUPPLIER + " LIMIT 1), -1)";
+
+    /**
+     * SQL statement updating the price and quantity of the products with a name and supplier,
+     * keeping them when NULL is bound to them.
+     */
+    private static final String SQL_UPSERT_PRODUCT = "UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+            + InventoryEntry.COLUMN_PRODUCT_PRICE + " = ifnull(?, " + InventoryEntry.COLUMN_PRODUCT_PRICE + "), "
+            + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " = ifnull(?, " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ")"
+            + SQL_WHERE_NAME_AND_SUPPLIER;
+
+    /**
+     * SQL statement setting the phone bound to the first "?" of the supplier bound to the second,
+     * only writing if the phone differs.
+     */
+    private static final String SQL_SUPPLIER_PHONE = "UPDATE " + SupplierEntry.TABLE_NAME + " SET "
+            + SupplierEntry.COLUMN_PHONE + " = ?1 WHERE " + SupplierEntry._ID + " = ?2 AND "
+            + SupplierEntry.COLUMN_PHONE + " IS NOT ?1";
+
+    /** SQL query returning the phone of the supplier bound to the "?", null if there is none */
+    private static final String SQL_READ_SUPPLIER_PHONE = "SELECT (SELECT " + SupplierEntry.COLUMN_PHONE
+            + " FROM " + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID + " = ?)";
+
+    /**
+     * Columns of a product by ID read without a projection: the columns of a {@link Product},
+     * then the phone of its supplier, as in the view of the products.
+     */
+    private static final String[] PRODUCT_VIEW_COLUMNS = concat(Product.PROJECTION,
+            InventoryEntry.COLUMN_SUPPLIER_PHONE);
+
+    /** SQL query returning 1 if the supplier bound to the "?" exists, 0 otherwise */
+    private static final String SQL_SUPPLIER_EXISTS = "SELECT count(*) FROM " + SupplierEntry.TABLE_NAME
+            + " WHERE " + SupplierEntry._ID + " = ?";
+
+    /** SQL statement used to sell units of a product. Only succeeds if there is enough stock */
+    private static final String SQL_SELL_PRODUCT = "UPDATE " + InventoryEntry.TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " = " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " - ?"
+            + " WHERE " + InventoryEntry._ID + " = ? AND " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + " >= ?";
+
+    /**
+     * SQL statement appending a sale to the ledger: the units bound to the first "?", sold at the
+     * time bound to the second, of the product bound to the third, at its current price.
+     */
+    private static final String SQL_RECORD_SALE = "INSERT INTO " + SalesEntry.TABLE_NAME + " ("
+            + SalesEntry.COLUMN_PRODUCT + ", " + SalesEntry.COLUMN_UNITS + ", " + SalesEntry.COLUMN_PRICE + ", "
+            + SalesEntry.COLUMN_SOLD_AT + ") SELECT " + InventoryEntry._ID + ", ?, "
+            + InventoryEntry.COLUMN_PRODUCT_PRICE + ", ? FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    /** SQL statement used to read back the quantity of a product after a sale */
+    private static final String SQL_PRODUCT_QUANTITY = "SELECT " + InventoryEntry.COLUMN_PRODUCT_QUANTITY
+            + " FROM " + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry._ID + " = ?";
+
+    /**
+     * SQL query returning the next page of an export: the products after the ID bound to the "?",
+     * in ID order, with the columns written by {@link ExportWriter}. The supplier is given by its
+     * current name, or by its ID if it has no row.
+     */
+    private static final String SQL_EXPORT_PAGE = "SELECT " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID
+            + ", " + InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_PRODUCT_NAME + ", "
+            + InventoryEntry.COLUMN_PRODUCT_PRICE + ", " + InventoryEntry.COLUMN_PRODUCT_QUANTITY + ", ifnull("
+            + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_NAME + ", "
+            + InventoryEntry.COLUMN_SUPPLIER_NAME + "), " + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_PHONE
+            + " FROM " + InventoryEntry.TABLE_NAME + " LEFT JOIN " + SupplierEntry.TABLE_NAME + " ON "
+            + SupplierEntry.TABLE_NAME + "." + SupplierEntry._ID + " = " + InventoryEntry.TABLE_NAME + "."
+            + InventoryEntry.COLUMN_SUPPLIER_NAME + " WHERE " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID
+            + " > ? ORDER BY " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + " LIMIT " + EXPORT_PAGE_SIZE;
+
     /** Database helper object */
     private InventoryDbHelper mDbHelper;
 
+    /**
+     * Products recently read or written, serving single product queries without going to the
+     * database. The provider lives as long as its process, and so does the cache.
+     */
+    private ProductCache mProductCache;
+
+    /**
+     * Compiled statements of the writes made one product at a time, and of the sales, reused
+     * from one call to the next.
+     */
+    private StatementPool mStatements;
+
+    /** Latency and row counts of the operations, recorded once enabled through the diagnostics URI */
+    private ProviderMetrics mMetrics;
+
+    /** Creates cursors counting their window fills, used while metrics are recorded */
+    private MeteredCursor.Factory mMeteredCursorFactory;
+
+    /**
+     * Set while {@link #applyBatch(ArrayList)} runs on the current thread. Change notifications
+     * raised by the individual operations are collected here and sent once the batch has committed.
+     */
+    private final ThreadLocal<LinkedHashSet<Uri>> mBatchNotifications = new ThreadLocal<>();
+
+    /**
+     * Set while {@link #applyBatch(ArrayList)} runs on the current thread. The products the
+     * individual operations wrote through to the cache are collected here and confirmed once the
+     * batch has committed.
+     */
+    private final ThreadLocal<CacheWrites> mBatchCacheWrites = new ThreadLocal<>();
+
     /**
      * Initialize the provider and the database helper object.
      */
     @Override
     public boolean onCreate() {
+        StartupTrace.mark(StartupTrace.PROVIDER_CREATED);
+        // The database is opened by the first query, on the thread of the loader making it
         mDbHelper = new InventoryDbHelper(getContext());
+        mProductCache = new ProductCache(PRODUCT_CACHE_SIZE);
+        mStatements = new StatementPool();
+        mMetrics = new ProviderMetrics(METRICS_MATCH_NAMES);
+        mMeteredCursorFactory = new MeteredCursor.Factory(mMetrics);
         return true;
     }
 
@@ -72,23 +485,100 @@ public class InventoryProvider extends ContentProvider {
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Perform the query for the given URI, like {@link #query(Uri, String[], String, String[], String)}.
+     * Searches stop early if the given signal is cancelled, for instance when the search text
+     * changed before the previous search finished.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
+        long start = mMetrics.start();
+
+        // Figure out if the URI matcher can match the URI to a specific code
+        int match = sUriMatcher.match(uri);
+        if (match == DIAGNOSTICS) {
+            // The diagnostics are in memory, no need for the database
+            Cursor cursor = queryDiagnostics(projection);
+            cursor.setNotificationUri(getContext().getContentResolver(), uri);
+            return cursor;
+        }
+        if (match == INVENTORY_EXPORT) {
+            // Apps the export is shared with ask for its name before opening it
+            return queryExport(uri, projection);
+        }
+
         // Get readable database
         SQLiteDatabase database = mDbHelper.getReadableDatabase();
 
         // This cursor will hold the result of the query
         Cursor cursor;
 
-        // Figure out if the URI matcher can match the URI to a specific code
-        int match = sUriMatcher.match(uri);
         switch (match) {
             case INVENTORY:
-                // For the INVENTORY code, query the inventory table directly with the given
-                // projection, selection, selection arguments, and sort order. The cursor
-                // could contain multiple rows of the inventory table.
-                cursor = database.query(InventoryEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                // For the INVENTORY code, query the products with the given projection,
+                // selection, selection arguments, and sort order. The cursor could contain
+                // multiple rows of the inventory table.
+                //
+                // If the URI asks for a page, only return the products after the key of the page,
+                // in ID order or the order of the sort key, up to the page size.
+                String limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+                String afterId = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_ID);
+                String sort = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SORT);
+                if (sort != null) {
+                    // A page of the catalog in the order of the sort key, filtered by supplier
+                    // and stock
+                    if (sortOrder != null) {
+                        throw new IllegalArgumentException("Sorted queries are ordered by their sort key " + uri);
+                    }
+                    String supplier = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SUPPLIER);
+                    String afterKey = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_KEY);
+                    if ((afterId == null) != (afterKey == null)) {
+                        throw new IllegalArgumentException("Sorted pages start after an ID and a key " + uri);
+                    }
+                    selection = DatabaseUtils.concatenateWhere(selection, catalogSelection(sort, supplier != null,
+                            uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_STOCK), afterId != null));
+                    List<String> args = new ArrayList<>();
+                    if (supplier != null) {
+                        args.add(String.valueOf(Integer.parseInt(supplier)));
+                    }
+                    if (afterId != null) {
+                        args.add(afterKey);
+                        args.add(afterKey);
+                        args.add(String.valueOf(Long.parseLong(afterId)));
+                    }
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                            args.toArray(new String[args.size()]));
+                    sortOrder = catalogOrder(sort);
+                } else if (limit != null || afterId != null) {
+                    if (sortOrder != null) {
+                        throw new IllegalArgumentException("Paged queries are ordered by ID " + uri);
+                    }
+                    sortOrder = InventoryEntry._ID + " ASC";
+                    if (afterId != null) {
+                        selection = DatabaseUtils.concatenateWhere(selection, InventoryEntry._ID + ">?");
+                        selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                                new String[] { String.valueOf(Long.parseLong(afterId)) });
+                    }
+                }
+                if (limit != null) {
+                    limit = String.valueOf(Integer.parseInt(limit));
+                }
+                cursor = database.queryWithFactory(cursorFactory(), false, InventoryDbHelper.VIEW_PRODUCTS,
+                        projection, selection, selectionArgs, null, null, sortOrder, limit);
                 break;
             case INVENTORY_ID:
+                // Serve the product from the cache if it has the columns asked for, the phone of
+                // its supplier aside
+                if (projection == null || Product.hasColumns(withoutColumn(projection,
+                        InventoryEntry.COLUMN_SUPPLIER_PHONE))) {
+                    cursor = queryProduct(database, ContentUris.parseId(uri), projection);
+                    break;
+                }
+
                 // For the INVENTORY_ID code, extract out the ID from the URI.
                 // For an example URI such as "content://com.example.android.inventory/inventory/3",
                 // the selection will be "_id=?" and the selection argument will be a
@@ -102,8 +592,86 @@ public class InventoryProvider extends ContentProvider {
 
                 // This will perform a query on the inventory table where the _id equals 3 to return a
                 // Cursor containing that row of the table.
-                cursor = database.query(InventoryEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                cursor = database.queryWithFactory(cursorFactory(), false, InventoryDbHelper.VIEW_PRODUCTS,
+                        projection, selection, selectionArgs, null, null, sortOrder, null);
+                break;
+            case INVENTORY_SEARCH:
+                // For the INVENTORY_SEARCH code, look the words up in the full-text search table
+                // and return the matching products, best match first.
+                if (sortOrder != null) {
+                    throw new IllegalArgumentException("Search results are ordered by rank " + uri);
+                }
+                cursor = searchProducts(database, uri, projection, selection, selectionArgs,
+                        cancellationSignal);
+                break;
+            case INVENTORY_SUMMARY:
+                // For the INVENTORY_SUMMARY code, read the summary table kept up to date by the
+                // triggers of the inventory table, skipping the suppliers without products.
+                selection = DatabaseUtils.concatenateWhere(selection, SummaryEntry.COLUMN_PRODUCTS + ">0");
+                if (sortOrder == null) {
+                    sortOrder = SummaryEntry.COLUMN_SUPPLIER_NAME;
+                }
+                cursor = database.queryWithFactory(cursorFactory(), false, SummaryEntry.TABLE_NAME,
+                        projection, selection, selectionArgs, null, null, sortOrder, null);
+                // The summary changes with any product
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case SUPPLIERS_ID:
+                // For the SUPPLIERS_ID code, only the supplier with the ID in the URI
+                selection = DatabaseUtils.concatenateWhere(selection, SupplierEntry._ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[] { String.valueOf(ContentUris.parseId(uri)) });
+                // Fall through
+            case SUPPLIERS:
+                // For the SUPPLIERS code, query the suppliers table, in ID order by default
+                if (sortOrder == null) {
+                    sortOrder = SupplierEntry._ID;
+                }
+                cursor = database.queryWithFactory(cursorFactory(), false, SupplierEntry.TABLE_NAME,
+                        projection, selection, selectionArgs, null, null, sortOrder, null);
+                break;
+            case SALES:
+                // For the SALES code, query the ledger, in the order the sales were recorded by
+                // default
+                if (sortOrder == null) {
+                    sortOrder = SalesEntry._ID;
+                }
+                cursor = database.queryWithFactory(cursorFactory(), false, SalesEntry.TABLE_NAME,
+                        projection, selection, selectionArgs, null, null, sortOrder, null);
+                break;
+            case LOW_STOCK:
+                // For the LOW_STOCK code, query the products low on stock in the order they went
+                // low, only those after the entry with the given ID if any
+                String afterEntry = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_AFTER_ID);
+                if (afterEntry != null) {
+                    selection = DatabaseUtils.concatenateWhere(selection, LowStockEntry._ID + ">?");
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                            new String[] { String.valueOf(Long.parseLong(afterEntry)) });
+                }
+                if (sortOrder == null) {
+                    sortOrder = LowStockEntry._ID;
+                }
+                cursor = database.queryWithFactory(cursorFactory(), false, LOW_STOCK_TABLES,
+                        projection, selection, selectionArgs, null, null, sortOrder, null);
+                // The entries change with the products
+                uri = InventoryEntry.CONTENT_URI;
+                break;
+            case MAINTENANCE:
+                cursor = queryDatabaseSize(database, projection);
+                break;
+            case MAINTENANCE_INTEGRITY:
+                // A read-only pragma, run by a reader connection while products are written
+                String sql = "PRAGMA integrity_check(" + MAX_INTEGRITY_PROBLEMS + ")";
+                cursor = cancellationSignal == null ? database.rawQuery(sql, null)
+                        : database.rawQuery(sql, null, cancellationSignal);
+                break;
+            case INVENTORY_VERSION:
+                // For the INVENTORY_VERSION code, read the one row of the version table kept
+                // up to date by the triggers of the inventory table
+                cursor = database.queryWithFactory(cursorFactory(), false, VersionEntry.TABLE_NAME,
+                        projection, selection, selectionArgs, null, null, null, null);
+                // The version changes with any product
+                uri = InventoryEntry.CONTENT_URI;
                 break;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
@@ -114,77 +682,891 @@ public class InventoryProvider extends ContentProvider {
         // If the data at this URI changes, then we know we need to update the Cursor.
         cursor.setNotificationUri(getContext().getContentResolver(), uri);
 
+        // Count the rows returned while the query is timed. Counting fills the first cursor
+        // window, which the caller would do right away anyway.
+        mMetrics.record(ProviderMetrics.QUERY, match - INVENTORY, start,
+                mMetrics.isEnabled() ? cursor.getCount() : 0);
+
         // Return the cursor
         return cursor;
     }
 
     /**
-     * Insert new data into the provider with the given ContentValues.
+     * Returns the cursor factory for the queries of the inventory table: null for the default
+     * cursors, or one counting the cursor window fills while metrics are recorded.
+     */
+    private SQLiteDatabase.CursorFactory cursorFactory() {
+        return mMetrics.isEnabled() ? mMeteredCursorFactory : null;
+    }
+
+    /**
+     * Returns a cursor holding the one row of {@link MaintenanceEntry#CONTENT_URI}, the size of
+     * the database.
+     */
+    private static Cursor queryDatabaseSize(SQLiteDatabase database, String[] projection) {
+        String[] columns = projection != null ? projection : MaintenanceEntry.COLUMNS;
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (!Arrays.asList(MaintenanceEntry.COLUMNS).contains(columns[i])) {
+                throw new IllegalArgumentException("Unknown maintenance column " + columns[i]);
+            }
+            // The columns are named after the pragmas returning them
+            row[i] = DatabaseUtils.longForQuery(database, "PRAGMA " + columns[i], null);
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    /**
+     * Returns a cursor holding the metrics of the provider, one row per operation and URI
+     * pattern that was recorded, followed by the counters.
+     */
+    private Cursor queryDiagnostics(String[] projection) {
+        // Index in DiagnosticsEntry.COLUMNS of each column asked for
+        String[] columns = projection != null ? projection : DiagnosticsEntry.COLUMNS;
+        int[] indices = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            indices[i] = Arrays.asList(DiagnosticsEntry.COLUMNS).indexOf(columns[i]);
+            if (indices[i] < 0) {
+                throw new IllegalArgumentException("Unknown diagnostics column " + columns[i]);
+            }
+        }
+
+        MatrixCursor cursor = new MatrixCursor(columns);
+        for (int operation = 0; operation < mMetrics.getOperationCount(); operation++) {
+            for (int match = 0; match < mMetrics.getMatchCount(); match++) {
+                long count = mMetrics.getCount(operation, match);
+                if (count == 0) {
+                    continue;
+                }
+                addDiagnosticsRow(cursor, indices,
+                        mMetrics.getOperationName(operation) + " " + mMetrics.getMatchName(match),
+                        count,
+                        mMetrics.getRows(operation, match),
+                        mMetrics.getTotalNanos(operation, match) / count / 1000,
+                        mMetrics.getPercentileMicros(operation, match, 0.5),
+                        mMetrics.getPercentileMicros(operation, match, 0.9),
+                        mMetrics.getPercentileMicros(operation, match, 0.99));
+            }
+        }
+        addDiagnosticsRow(cursor, indices, DiagnosticsEntry.NAME_ENABLED,
+                mMetrics.isEnabled() ? 1 : 0, 0, null, null, null, null);
+        addDiagnosticsRow(cursor, indices, DiagnosticsEntry.NAME_NOTIFICATIONS,
+                mMetrics.getNotificationCount(), 0, null, null, null, null);
+        addDiagnosticsRow(cursor, indices, DiagnosticsEntry.NAME_WINDOW_FILLS,
+                mMetrics.getWindowFillCount(), mMetrics.getWindowRowCount(), null, null, null, null);
+        addDiagnosticsRow(cursor, indices, DiagnosticsEntry.NAME_CACHE_HITS,
+                mProductCache.getHitCount(), 0, null, null, null, null);
+        addDiagnosticsRow(cursor, indices, DiagnosticsEntry.NAME_CACHE_MISSES,
+                mProductCache.getMissCount(), 0, null, null, null, null);
+        addDiagnosticsRow(cursor, indices, DiagnosticsEntry.NAME_CACHE_EVICTIONS,
+                mProductCache.getEvictionCount(), 0, null, null, null, null);
+        return cursor;
+    }
+
+    /**
+     * Returns a cursor holding the {@link OpenableColumns} of the export at the given URI, named
+     * after the MIME type it is read as. Its size isn't known until it has been written. Other
+     * columns are left out, as the FileProvider of the support library does, since apps the
+     * export is shared with ask for columns of their own.
+     */
+    private static Cursor queryExport(Uri uri, String[] projection) {
+        String[] columns = projection != null ? projection
+                : new String[] { OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE };
+        String extension = EXPORT_EXTENSIONS[Arrays.asList(EXPORT_MIME_TYPES).indexOf(exportType(uri))];
+        List<String> known = new ArrayList<>(columns.length);
+        List<Object> row = new ArrayList<>(columns.length);
+        for (String column : columns) {
+            if (OpenableColumns.DISPLAY_NAME.equals(column)) {
+                known.add(column);
+                row.add(InventoryEntry.TABLE_NAME + "." + extension);
+            } else if (OpenableColumns.SIZE.equals(column)) {
+                known.add(column);
+                row.add(null);
+            }
+        }
+        MatrixCursor cursor = new MatrixCursor(known.toArray(new String[known.size()]), 1);
+        cursor.addRow(row.toArray());
+        return cursor;
+    }
+
+    /**
+     * Returns the MIME type the export at the given URI is read as when opened without asking
+     * for one: its {@link InventoryContract#QUERY_PARAMETER_TYPE}, or CSV.
+     */
+    private static String exportType(Uri uri) {
+        String type = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_TYPE);
+        if (type == null) {
+            return InventoryEntry.MIME_TYPE_CSV;
+        }
+        if (!Arrays.asList(EXPORT_MIME_TYPES).contains(type)) {
+            throw new IllegalArgumentException("Cannot export as " + type + " " + uri);
+        }
+        return type;
+    }
+
+    /**
+     * Add a row to the diagnostics cursor, given the values of all of
+     * {@link DiagnosticsEntry#COLUMNS} and the indices of the ones in the cursor.
+     */
+    private static void addDiagnosticsRow(MatrixCursor cursor, int[] indices, Object... values) {
+        Object[] row = new Object[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            row[i] = values[indices[i]];
+        }
+        cursor.addRow(row);
+    }
+
+    /**
+     * Returns a cursor holding the product with the given ID, or no rows if there is no such
+     * product. The product comes from the cache, or is read from the database and cached. The
+     * phone of its supplier, if asked for, is read by the supplier's ID.
+     */
+    private Cursor queryProduct(SQLiteDatabase database, long id, String[] projection) {
+        Product product = mProductCache.get(id);
+        if (product == null) {
+            long generation = mProductCache.getGeneration();
+            Cursor row = database.query(InventoryEntry.TABLE_NAME, Product.PROJECTION,
+                    InventoryEntry._ID + "=?", new String[] { String.valueOf(id) }, null, null, null);
+            try {
+                if (row.moveToFirst()) {
+                    product = new Product.Columns(row).read(row);
+                    mProductCache.putIfUnchanged(product, generation);
+                }
+            } finally {
+                row.close();
+            }
+        }
+
+        String[] columns = projection != null ? projection : PRODUCT_VIEW_COLUMNS;
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        if (product != null) {
+            int phoneIndex = Arrays.asList(columns).indexOf(InventoryEntry.COLUMN_SUPPLIER_PHONE);
+            if (phoneIndex < 0) {
+                cursor.addRow(product.toRow(columns));
+                return cursor;
+            }
+            Object[] productRow = product.toRow(withoutColumn(columns, InventoryEntry.COLUMN_SUPPLIER_PHONE));
+            Object[] row = new Object[columns.length];
+            System.arraycopy(productRow, 0, row, 0, phoneIndex);
+            row[phoneIndex] = readSupplierPhone(database, product.supplier);
+            System.arraycopy(productRow, phoneIndex, row, phoneIndex + 1, productRow.length - phoneIndex);
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * Returns the phone of the supplier with the given ID, or null if it has none.
+     */
+    private String readSupplierPhone(SQLiteDatabase database, int supplier) {
+        SQLiteStatement read = mStatements.acquire(database, SQL_READ_SUPPLIER_PHONE);
+        try {
+            read.bindLong(1, supplier);
+            return read.simpleQueryForString();
+        } finally {
+            mStatements.release(database, SQL_READ_SUPPLIER_PHONE, read);
+        }
+    }
+
+    /**
+     * Returns the given columns but the given one, which is at most once among them.
+     */
+    private static String[] withoutColumn(String[] columns, String column) {
+        List<String> without = new ArrayList<>(Arrays.asList(columns));
+        without.remove(column);
+        return without.toArray(new String[without.size()]);
+    }
+
+    /**
+     * Returns the given columns followed by the given one.
+     */
+    private static String[] concat(String[] columns, String column) {
+        String[] all = Arrays.copyOf(columns, columns.length + 1);
+        all[columns.length] = column;
+        return all;
+    }
+
+    /**
+     * Returns the selection of a sorted page of the catalog, as asked for by a URI with the given
+     * {@link InventoryContract#QUERY_PARAMETER_SORT} and {@link InventoryContract#QUERY_PARAMETER_STOCK}.
+     * Its arguments are the supplier, if filtered by supplier, then if the page starts after a
+     * product, the sort key of the product twice and its ID.
+     *
+     * Every page is read from an index in the order of {@link #catalogOrder(String)}, never
+     * sorted: the page after a product starts with a search of the index for its sort key. The
+     * unary + keeps SQLite from using the index of any other column, which would find the
+     * products of a supplier or the stock faster but leave them to be sorted.
+     */
+    static String catalogSelection(String sort, boolean filterSupplier, String stock, boolean after) {
+        String column = sortColumn(sort);
+        String collation = InventoryContract.SORT_NAME.equals(sort) ? " COLLATE NOCASE" : "";
+        StringBuilder selection = new StringBuilder();
+        if (filterSupplier) {
+            // The supplier index goes on with the name, so it is read in name order. The
+            // argument is a string, and +supplierName has no affinity to make it a number.
+            selection.append(InventoryContract.SORT_NAME.equals(sort) ? "" : "+")
+                    .append(InventoryEntry.COLUMN_SUPPLIER_NAME).append(" = CAST(? AS INTEGER)");
+        }
+        if (stock != null) {
+            String quantity = (InventoryContract.SORT_QUANTITY.equals(sort) ? "" : "+")
+                    + InventoryEntry.COLUMN_PRODUCT_QUANTITY;
+            if (selection.length() > 0) {
+                selection.append(" AND ");
+            }
+            if (InventoryContract.STOCK_IN.equals(stock)) {
+                selection.append(quantity).append(" > 0");
+            } else if (InventoryContract.STOCK_LOW.equals(stock)) {
+                // Below the threshold of the product, like the low stock table
+                selection.append(quantity).append(" < ").append(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+            } else {
+                throw new IllegalArgumentException("Unknown stock " + stock);
+            }
+        }
+        if (after) {
+            // Rows with the same key are in ID order. SQLite searches the index for the first
+            // condition, and skips the rows before the product with the second.
+            if (selection.length() > 0) {
+                selection.append(" AND ");
+            }
+            selection.append(column).append(" >= ?").append(collation).append(" AND (")
+                    .append(column).append(" > ?").append(collation).append(" OR ")
+                    .append(InventoryEntry._ID).append(" > ?)");
+        }
+        return selection.toString();
+    }
+
+    /**
+     * Returns the order of a sorted page of the catalog, as asked for by a URI with the given
+     * {@link InventoryContract#QUERY_PARAMETER_SORT}.
+     */
+    static String catalogOrder(String sort) {
+        return sortColumn(sort) + (InventoryContract.SORT_NAME.equals(sort) ? " COLLATE NOCASE" : "")
+                + ", " + InventoryEntry._ID;
+    }
+
+    /**
+     * Returns the column sorted by for the given {@link InventoryContract#QUERY_PARAMETER_SORT}.
+     */
+    private static String sortColumn(String sort) {
+        switch (sort) {
+            case InventoryContract.SORT_NAME:
+                return InventoryEntry.COLUMN_PRODUCT_NAME;
+            case InventoryContract.SORT_PRICE:
+                return InventoryEntry.COLUMN_PRODUCT_PRICE;
+            case InventoryContract.SORT_QUANTITY:
+                return InventoryEntry.COLUMN_PRODUCT_QUANTITY;
+            default:
+                throw new IllegalArgumentException("Unknown sort " + sort);
+        }
+    }
+
+    /**
+     * Search the products for the text in the {@link InventoryContract#QUERY_PARAMETER_SEARCH}
+     * parameter of the given URI. Every word of the text must be the start of a word in the
+     * product name or supplier name.
+     */
+    private Cursor searchProducts(SQLiteDatabase database, Uri uri, String[] projection, String selection,
+                                  String[] selectionArgs, CancellationSignal cancellationSignal) {
+        String text = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SEARCH);
+        String[] words = text == null ? new String[0] : text.trim().split("[^\\p{L}\\p{N}]+");
+
+        // Every word becomes a prefix term of the full-text query, e.g. "3d puz" -> "3d* puz*"
+        StringBuilder matchExpression = new StringBuilder();
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                matchExpression.append(matchExpression.length() == 0 ? "" : " ").append(word).append('*');
+            }
+        }
+        if (matchExpression.length() == 0) {
+            // Nothing to search for, so nothing matches
+            return database.query(InventoryDbHelper.VIEW_PRODUCTS, projection, "0", null, null, null, null);
+        }
+        String firstWord = matchExpression.substring(0, matchExpression.indexOf("*"));
+
+        String limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+        limit = String.valueOf(limit == null ? DEFAULT_SEARCH_LIMIT : Integer.parseInt(limit));
+
+        // The arguments follow the order of the "?" in the query: the full-text query in the
+        // tables, then the selection, then the first word in the order
+        String[] args = DatabaseUtils.appendSelectionArgs(
+                new String[] { matchExpression.toString() }, selectionArgs);
+        args = DatabaseUtils.appendSelectionArgs(args, new String[] { firstWord + "%" });
+
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(SEARCH_TABLES);
+        builder.setCursorFactory(cursorFactory());
+        if (cancellationSignal == null) {
+            return builder.query(database, projection, selection, args, null, null, SEARCH_ORDER, limit);
+        }
+        return builder.query(database, projection, selection, args, null, null, SEARCH_ORDER, limit,
+                cancellationSignal);
+    }
+
+    /**
+     * Insert new data into the provider with the given ContentValues.
+     */
+    @Override
+    public Uri insert(Uri uri, ContentValues contentValues) {
+        long start = mMetrics.start();
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
+            case INVENTORY:
+                Uri newUri = insertProduct(uri, contentValues);
+                mMetrics.record(ProviderMetrics.INSERT, match - INVENTORY, start, newUri != null ? 1 : 0);
+                return newUri;
+            case SUPPLIERS:
+                newUri = insertSupplier(uri, contentValues);
+                mMetrics.record(ProviderMetrics.INSERT, match - INVENTORY, start, newUri != null ? 1 : 0);
+                return newUri;
+            default:
+                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+    }
+
+    /**
+     * Insert a product into the database with the given content values. Return the new content URI
+     * for that specific row in the database.
+     */
+    private Uri insertProduct(Uri uri, ContentValues values) {
+        // Check that the values describe a valid product
+        validateProduct(values);
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Insert the new product with the given values, and the phone into its supplier. The
+        // values the editor saves are bound to a pooled statement, others go through insert().
+        long id;
+        boolean phoneChanged = false;
+        database.beginTransaction();
+        try {
+            validateSuppliers(database, values);
+            if (hasOnlyProductColumns(values)) {
+                SQLiteStatement insert = mStatements.acquire(database, SQL_INSERT_PRODUCT);
+                try {
+                    bindProduct(insert, values);
+                    id = insert.executeInsert();
+                } catch (SQLException e) {
+                    // Like insert(), a constraint failure is logged and returns -1
+                    Log.e(LOG_TAG, "Error inserting " + values, e);
+                    id = -1;
+                } finally {
+                    mStatements.release(database, SQL_INSERT_PRODUCT, insert);
+                }
+            } else {
+                id = database.insert(InventoryEntry.TABLE_NAME, null, withoutPhone(values));
+            }
+            if (id != -1) {
+                phoneChanged = updateSupplierPhone(database, values);
+                database.setTransactionSuccessful();
+            }
+        } finally {
+            database.endTransaction();
+        }
+
+        // If the ID is -1, then the insertion failed. Log an error and return null.
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        // Write the new product through to the cache
+        Long price = values.getAsLong(InventoryEntry.COLUMN_PRODUCT_PRICE);
+        Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY);
+        Integer threshold = values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+        mProductCache.put(new Product(id,
+                values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME),
+                price != null ? price : 0,
+                quantity != null ? quantity : 0,
+                values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME),
+                threshold != null ? threshold : InventoryEntry.LOW_STOCK_THRESHOLD));
+
+        // Notify all listeners that the product was inserted
+        notifyChange(InventoryEntry.buildChangeUri(id, InventoryContract.CHANGE_INSERT));
+        if (phoneChanged) {
+            notifySupplierChange();
+        }
+
+        // Return the new URI with the ID (of the newly inserted row) appended at the end
+        return ContentUris.withAppendedId(uri, id);
+
+    }
+
+    /**
+     * Check that the given content values describe a valid new product. Throws an
+     * {@link IllegalArgumentException} naming the first invalid value. Whether the supplier
+     * exists is checked against the database, by {@link #validateSuppliers(SQLiteDatabase, ContentValues...)}.
+     */
+    static void validateProduct(ContentValues values) {
+        // Check that the name is not null
+        String name = values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
+        if (name == null) {
+            throw new IllegalArgumentException("Product requires a name");
+        }
+
+        // Check that price is valid. Greater than or equal to 0
+        Integer price = values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_PRICE);
+        if (price != null && price < 0) {
+            throw new IllegalArgumentException("Product requires valid price");
+        }
+
+        // Check that quantity is valid. Greater than or equal to 0
+        Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY);
+        if (quantity != null && quantity < 0) {
+            throw new IllegalArgumentException("Product requires valid quantity");
+        }
+
+        // Check that the reorder threshold, if given, is valid. Greater than or equal to 0
+        Integer threshold = values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+        if (values.containsKey(InventoryEntry.COLUMN_REORDER_THRESHOLD) && (threshold == null || threshold < 0)) {
+            throw new IllegalArgumentException("Product requires valid reorder threshold");
+        }
+
+        // Check that there is a supplier
+        Integer supplier = values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        if (supplier == null) {
+            throw new IllegalArgumentException("Product requires valid supplier name");
+        }
+    }
+
+    /**
+     * Check that the suppliers of the given products exist, each supplier once. Throws an
+     * {@link IllegalArgumentException} like {@link #validateProduct(ContentValues)} does, rather
+     * than leaving it to the foreign key, so that a batch is rejected before anything is written.
+     */
+    private void validateSuppliers(SQLiteDatabase database, ContentValues... products) {
+        Set<Integer> checked = new HashSet<>();
+        SQLiteStatement exists = mStatements.acquire(database, SQL_SUPPLIER_EXISTS);
+        try {
+            for (ContentValues values : products) {
+                Integer supplier = values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME);
+                if (supplier == null || !checked.add(supplier)) {
+                    continue;
+                }
+                exists.bindLong(1, supplier);
+                if (exists.simpleQueryForLong() == 0) {
+                    throw new IllegalArgumentException("Product requires valid supplier name");
+                }
+            }
+        } finally {
+            mStatements.release(database, SQL_SUPPLIER_EXISTS, exists);
+        }
+    }
+
+    /**
+     * Returns whether the given product values only hold the columns bound by
+     * {@link #bindProduct(SQLiteStatement, ContentValues)}, and the supplier phone.
+     */
+    private static boolean hasOnlyProductColumns(ContentValues values) {
+        int columns = 0;
+        for (String column : PRODUCT_INSERT_COLUMNS) {
+            if (values.containsKey(column)) {
+                columns++;
+            }
+        }
+        return columns == values.size();
+    }
+
+    /**
+     * Returns the given product values without the supplier phone, which is stored in the
+     * suppliers table rather than in the inventory table.
+     */
+    private static ContentValues withoutPhone(ContentValues values) {
+        if (!values.containsKey(InventoryEntry.COLUMN_SUPPLIER_PHONE)) {
+            return values;
+        }
+        ContentValues productValues = new ContentValues(values);
+        productValues.remove(InventoryEntry.COLUMN_SUPPLIER_PHONE);
+        return productValues;
+    }
+
+    /**
+     * Set the phone of the supplier of the given product values to the phone in the values, with
+     * a pooled {@link #SQL_SUPPLIER_PHONE} statement. Returns whether the phone changed.
+     */
+    private boolean updateSupplierPhone(SQLiteDatabase database, ContentValues values) {
+        if (!values.containsKey(InventoryEntry.COLUMN_SUPPLIER_PHONE)) {
+            return false;
+        }
+        SQLiteStatement statement = mStatements.acquire(database, SQL_SUPPLIER_PHONE);
+        try {
+            return updateSupplierPhone(statement, values);
+        } finally {
+            mStatements.release(database, SQL_SUPPLIER_PHONE, statement);
+        }
+    }
+
+    /**
+     * Set the phone of the supplier of the given product values to the phone in the values, with
+     * the {@link #SQL_SUPPLIER_PHONE} statement. Returns whether the phone changed, which it
+     * doesn't when the values have no phone or the same phone.
+     */
+    private static boolean updateSupplierPhone(SQLiteStatement statement, ContentValues values) {
+        String phone = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_PHONE);
+        Integer supplier = values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        if (phone == null || supplier == null) {
+            return false;
+        }
+        statement.bindString(1, phone);
+        statement.bindLong(2, supplier);
+        return statement.executeUpdateDelete() != 0;
+    }
+
+    /**
+     * Insert a batch of products in a single transaction. Every row is validated with the same
+     * rules as {@link #insert(Uri, ContentValues)} before anything is written, so an invalid row
+     * rejects the whole batch. Listeners are notified after the batch has committed, once per
+     * product for a small batch and once in all for a large one.
+     * Return the number of rows inserted.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        long start = mMetrics.start();
+        final int match = sUriMatcher.match(uri);
+        if (match == INVENTORY_UPSERT) {
+            int rowsChanged = upsertProducts(values);
+            mMetrics.record(ProviderMetrics.BULK_INSERT, match - INVENTORY, start, rowsChanged);
+            return rowsChanged;
+        }
+        if (match != INVENTORY) {
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+
+        // Validate the whole batch up front
+        for (ContentValues row : values) {
+            validateProduct(row);
+        }
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Compile the insert once and rebind it for every row, all inside one transaction
+        int rowsInserted = 0;
+        List<Long> ids = new ArrayList<>();
+        boolean phoneChanged = false;
+        database.beginTransaction();
+        SQLiteStatement insert = database.compileStatement(SQL_INSERT_PRODUCT);
+        SQLiteStatement phone = database.compileStatement(SQL_SUPPLIER_PHONE);
+        try {
+            validateSuppliers(database, values);
+            for (ContentValues row : values) {
+                bindProduct(insert, row);
+                long id = insert.executeInsert();
+                if (id != -1) {
+                    rowsInserted++;
+                    if (ids.size() <= MAX_ROW_NOTIFICATIONS) {
+                        ids.add(id);
+                    }
+                }
+                phoneChanged |= updateSupplierPhone(phone, row);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            phone.close();
+            database.endTransaction();
+        }
+
+        // The new products aren't cached: a shipment shouldn't push the products selling right
+        // now out of the cache.
+
+        // Notify all listeners of the new products
+        if (rowsInserted != 0) {
+            notifyRowChanges(ids, InventoryContract.CHANGE_INSERT);
+        }
+        if (phoneChanged) {
+            notifySupplierChange();
+        }
+
+        mMetrics.record(ProviderMetrics.BULK_INSERT, match - INVENTORY, start, rowsInserted);
+
+        // Return the number of rows inserted
+        return rowsInserted;
+    }
+
+    /**
+     * Insert or update a batch of products in a single transaction, matching them to the
+     * existing products by name, ignoring case, and supplier. Every row is validated up front
+     * like {@link #bulkInsert(Uri, ContentValues[])} does. Return the number of products inserted
+     * or updated.
+     */
+    private int upsertProducts(ContentValues[] values) {
+        // Validate the whole batch up front
+        for (ContentValues row : values) {
+            validateProduct(row);
+        }
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Each row is looked up by the name index, then either updates the products found or
+        // is inserted. The statements are compiled once for the whole batch.
+        List<Long> insertedIds = new ArrayList<>();
+        List<Long> updatedIds = new ArrayList<>();
+        boolean duplicatesUpdated = false;
+        boolean phoneChanged = false;
+        database.beginTransaction();
+        SQLiteStatement find = database.compileStatement(SQL_FIND_PRODUCT);
+        SQLiteStatement update = database.compileStatement(SQL_UPSERT_PRODUCT);
+        SQLiteStatement insert = database.compileStatement(SQL_INSERT_PRODUCT);
+        SQLiteStatement phone = database.compileStatement(SQL_SUPPLIER_PHONE);
+        try {
+            validateSuppliers(database, values);
+            for (ContentValues row : values) {
+                // A catalog names the same supplier on every line, so its phone is only
+                // written by the first line, or when it changes
+                phoneChanged |= updateSupplierPhone(phone, row);
+
+                String name = row.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
+                int supplier = row.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME);
+                find.bindString(1, name);
+                find.bindLong(2, supplier);
+                long id = find.simpleQueryForLong();
+                if (id == -1) {
+                    bindProduct(insert, row);
+                    id = insert.executeInsert();
+                    if (id != -1) {
+                        insertedIds.add(id);
+                    }
+                    continue;
+                }
+
+                update.clearBindings();
+                bindInteger(update, 1, row.getAsInteger(InventoryEntry.COLUMN_PRODUCT_PRICE));
+                bindInteger(update, 2, row.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY));
+                update.bindString(3, name);
+                update.bindLong(4, supplier);
+                if (update.executeUpdateDelete() > 1) {
+                    duplicatesUpdated = true;
+                }
+                updatedIds.add(id);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            find.close();
+            update.close();
+            insert.close();
+            phone.close();
+            database.endTransaction();
+        }
+
+        // Only the first of several products with the same name and supplier is known, so the
+        // others could be stale in the cache
+        if (duplicatesUpdated) {
+            CacheWrites writes = new CacheWrites();
+            writes.clear(mProductCache);
+            confirmCacheWrites(writes);
+        } else {
+            removeCachedProducts(updatedIds);
+        }
+
+        // Notify all listeners of the products inserted and updated, once in all for many
+        if (insertedIds.size() + updatedIds.size() > MAX_ROW_NOTIFICATIONS) {
+            notifyChange(InventoryEntry.CONTENT_URI);
+        } else {
+            notifyRowChanges(insertedIds, InventoryContract.CHANGE_INSERT);
+            notifyRowChanges(updatedIds, InventoryContract.CHANGE_UPDATE);
+        }
+        if (phoneChanged) {
+            notifySupplierChange();
+        }
+        return insertedIds.size() + updatedIds.size();
+    }
+
+    /**
+     * Bind the product columns of the given content values to the {@link #SQL_INSERT_PRODUCT}
+     * statement. The values must already have passed {@link #validateProduct(ContentValues)}.
+     */
+    private static void bindProduct(SQLiteStatement insert, ContentValues values) {
+        insert.clearBindings();
+        insert.bindString(1, values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME));
+        Integer price = values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_PRICE);
+        insert.bindLong(2, price != null ? price : 0);
+        bindInteger(insert, 3, values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY));
+        insert.bindLong(4, values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME));
+        bindInteger(insert, 5, values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD));
+    }
+
+    /**
+     * Bind an optional integer value, binding NULL when the value is missing.
      */
-    @Override
-    public Uri insert(Uri uri, ContentValues contentValues) {
-        final int match = sUriMatcher.match(uri);
-        switch (match) {
-            case INVENTORY:
-                return insertProduct(uri, contentValues);
-            default:
-                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+    private static void bindInteger(SQLiteStatement statement, int index, Integer value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, value);
         }
     }
 
     /**
-     * Insert a product into the database with the given content values. Return the new content URI
-     * for that specific row in the database.
+     * Apply a batch of insert, update and delete operations in a single transaction. If any
+     * operation fails the whole batch is rolled back. Listeners are notified after the batch has
+     * committed, once per changed product, or once in all if the batch changed many products.
      */
-    private Uri insertProduct(Uri uri, ContentValues values) {
-        // Check that the name is not null
-        String name = values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME);
-        if (name == null) {
-            throw new IllegalArgumentException("Product requires a name");
-        }
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        long start = mMetrics.start();
 
-        // Check that price is valid. Greater than or equal to 0
-        Integer price = values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_PRICE);
-        if (price != null && price < 0) {
-            throw new IllegalArgumentException("Product requires valid price");
-        }
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        // Check that quantity is valid. Greater than or equal to 0
-        Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY);
-        if (quantity != null && quantity < 0) {
-            throw new IllegalArgumentException("Product requires valid quantity");
+        ContentProviderResult[] results;
+        LinkedHashSet<Uri> notifications = new LinkedHashSet<>();
+        mBatchNotifications.set(notifications);
+        CacheWrites cacheWrites = new CacheWrites();
+        mBatchCacheWrites.set(cacheWrites);
+        boolean successful = false;
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            successful = true;
+        } finally {
+            database.endTransaction();
+            mBatchNotifications.remove();
+            mBatchCacheWrites.remove();
+            // The operations wrote through to the cache, but were rolled back
+            if (!successful) {
+                mProductCache.clear();
+            }
         }
+        cacheWrites.confirm(mProductCache);
 
-        // Check the supplier is valid
-        Integer supplier = values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME);
-        if (supplier == null || !InventoryEntry.isValidSupplier(supplier)) {
-            throw new IllegalArgumentException("Product requires valid supplier name");
+        // Notify all listeners of the products the batch changed
+        if (notifications.size() > MAX_ROW_NOTIFICATIONS
+                || notifications.contains(InventoryEntry.CONTENT_URI)) {
+            notifyChange(InventoryEntry.CONTENT_URI);
+            // The inventory URI doesn't cover the suppliers or the sales
+            if (notifications.contains(SupplierEntry.CONTENT_URI)) {
+                notifyChange(SupplierEntry.CONTENT_URI);
+            }
+            if (notifications.contains(SalesEntry.CONTENT_URI)) {
+                notifyChange(SalesEntry.CONTENT_URI);
+            }
+        } else {
+            for (Uri notification : notifications) {
+                notifyChange(notification);
+            }
         }
 
-        // Check that the phone number is not null
-        String phone = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_PHONE);
-        if (phone == null) {
-            throw new IllegalArgumentException("Supplier requires a phone number");
+        // A batch can mix URIs, so it is recorded under the inventory table as a whole, with the
+        // number of operations applied as its rows. Each operation is also recorded on its own.
+        mMetrics.record(ProviderMetrics.APPLY_BATCH, 0, start, results.length);
+        return results;
+    }
+
+    /**
+     * Notify all listeners that the data at the given URI has changed, unless a batch is being
+     * applied on this thread, in which case the notification is sent when the batch commits.
+     */
+    private void notifyChange(Uri uri) {
+        LinkedHashSet<Uri> batchNotifications = mBatchNotifications.get();
+        if (batchNotifications != null) {
+            batchNotifications.add(uri);
+            return;
         }
+        mMetrics.countNotification();
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
 
-        // Get writeable database
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+    /**
+     * Notify all listeners that the products with the given IDs were changed by the given
+     * operation. Listeners are notified once on {@link InventoryEntry#CONTENT_URI} instead if the
+     * IDs are null, meaning they aren't known, or if there are more than
+     * {@link #MAX_ROW_NOTIFICATIONS} of them.
+     */
+    private void notifyRowChanges(List<Long> ids, String change) {
+        if (ids == null || ids.size() > MAX_ROW_NOTIFICATIONS) {
+            notifyChange(InventoryEntry.CONTENT_URI);
+            return;
+        }
+        for (long id : ids) {
+            notifyChange(InventoryEntry.buildChangeUri(id, change));
+        }
+    }
 
-        // Insert the new product with the given values
-        long id = database.insert(InventoryEntry.TABLE_NAME, null, values);
+    /**
+     * Notify all listeners that suppliers changed. The products read the phone of their
+     * supplier, and are searched by its name, so they changed too.
+     */
+    private void notifySupplierChange() {
+        notifyChange(SupplierEntry.CONTENT_URI);
+        notifyChange(InventoryEntry.CONTENT_URI);
+    }
 
-        // If the ID is -1, then the insertion failed. Log an error and return null.
-        if (id == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
-            return null;
+    /**
+     * Write the update of the products with the given IDs through to the cache. Must be called
+     * inside the transaction of the update, so that concurrent updates of the same product
+     * reach the cache in the order they reached the database, and the returned writes confirmed
+     * with {@link #confirmCacheWrites(CacheWrites)} once it has committed. The cache is cleared
+     * if the IDs aren't all known.
+     */
+    private CacheWrites updateCachedProducts(List<Long> ids, ContentValues values) {
+        CacheWrites writes = new CacheWrites();
+        if (ids.size() > MAX_ROW_NOTIFICATIONS) {
+            writes.clear(mProductCache);
+            return writes;
+        }
+        for (long id : ids) {
+            Product cached = mProductCache.peek(id);
+            if (cached != null) {
+                writes.put(mProductCache, cached.withValues(values));
+            } else {
+                writes.remove(mProductCache, id);
+            }
         }
+        return writes;
+    }
 
-        // Notify all listeners that the data has changed for the product content URI
-        getContext().getContentResolver().notifyChange(uri, null);
+    /**
+     * Remove the deleted products with the given IDs from the cache, or clear the cache if the
+     * IDs aren't all known.
+     */
+    private void removeCachedProducts(List<Long> ids) {
+        CacheWrites writes = new CacheWrites();
+        if (ids.size() > MAX_ROW_NOTIFICATIONS) {
+            writes.clear(mProductCache);
+        } else {
+            for (long id : ids) {
+                writes.remove(mProductCache, id);
+            }
+        }
+        confirmCacheWrites(writes);
+    }
 
-        // Return the new URI with the ID (of the newly inserted row) appended at the end
-        return ContentUris.withAppendedId(uri, id);
+    /**
+     * Confirm the writes through to the cache of a transaction that has committed, unless a
+     * batch is being applied on this thread, in which case they are confirmed when the batch
+     * commits. Until then, a reader missing the cache could cache a product as it was before.
+     */
+    private void confirmCacheWrites(CacheWrites writes) {
+        CacheWrites batchWrites = mBatchCacheWrites.get();
+        if (batchWrites != null) {
+            batchWrites.add(writes);
+            return;
+        }
+        writes.confirm(mProductCache);
+    }
 
+    /**
+     * Returns the IDs of the products matching the selection, stopping after one more than
+     * {@link #MAX_ROW_NOTIFICATIONS} since that many are notified on the table URI anyway.
+     */
+    private static List<Long> selectIds(SQLiteDatabase database, String selection, String[] selectionArgs) {
+        Cursor cursor = database.query(InventoryEntry.TABLE_NAME, new String[] { InventoryEntry._ID },
+                selection, selectionArgs, null, null, null, String.valueOf(MAX_ROW_NOTIFICATIONS + 1));
+        try {
+            List<Long> ids = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
@@ -193,20 +1575,166 @@ public class InventoryProvider extends ContentProvider {
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
+        long start = mMetrics.start();
         final int match = sUriMatcher.match(uri);
+        int result;
         switch (match) {
             case INVENTORY:
-                return updateProduct(uri, contentValues, selection, selectionArgs);
+                result = updateProduct(uri, contentValues, selection, selectionArgs);
+                break;
             case INVENTORY_ID:
-                // For the INVENTORY_ID code, extract out the ID from the URI,
-                // so we know which row to update. Selection will be "_id=?" and selection
-                // arguments will be a String array containing the actual ID.
-                selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                return updateProduct(uri, contentValues, selection, selectionArgs);
+                // For the INVENTORY_ID code, the ID is extracted from the URI by updateProduct(),
+                // which only builds a selection for it if the values need one
+                result = updateProduct(uri, contentValues, null, null);
+                break;
+            case INVENTORY_SELL:
+                // For the INVENTORY_SELL code, the ID is the second path segment and the values
+                // only carry the number of units to sell.
+                long id = Long.parseLong(uri.getPathSegments().get(1));
+                result = sellProduct(id, contentValues);
+                // A sale returns the quantity left, it changed one row unless it failed
+                mMetrics.record(ProviderMetrics.UPDATE, match - INVENTORY, start,
+                        result != InventoryEntry.SELL_INSUFFICIENT_STOCK ? 1 : 0);
+                return result;
+            case DIAGNOSTICS:
+                return updateDiagnostics(uri, contentValues);
+            case INVENTORY_SUMMARY:
+                result = repairSummary();
+                break;
+            case INVENTORY_RECLAIM:
+                // Not in a transaction, the pages are given back as soon as the step commits
+                String limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+                result = InventoryDbHelper.reclaimFreePages(mDbHelper.getWritableDatabase(),
+                        limit != null ? Integer.parseInt(limit) : -1);
+                break;
+            case MAINTENANCE_STATISTICS:
+                result = InventoryDbHelper.refreshStatistics(mDbHelper.getWritableDatabase());
+                break;
+            case MAINTENANCE_VACUUM:
+                // Holds the write lock while the whole file is rewritten, see VACUUM_URI
+                result = InventoryDbHelper.enableIncrementalVacuum(mDbHelper.getWritableDatabase());
+                break;
+            case MAINTENANCE_SEARCH_INDEX:
+                limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+                result = InventoryDbHelper.mergeSearchIndex(mDbHelper.getWritableDatabase(),
+                        limit != null ? Integer.parseInt(limit) : -1);
+                break;
+            case SUPPLIERS_ID:
+                result = updateSupplier(ContentUris.parseId(uri), contentValues);
+                break;
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
+        mMetrics.record(ProviderMetrics.UPDATE, match - INVENTORY, start, result);
+        return result;
+    }
+
+    /**
+     * Check the summary of the stock against the inventory table and repair it, in a transaction
+     * so that no product changes in between. Return the number of suppliers whose summary was
+     * wrong.
+     */
+    private int repairSummary() {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int wrong;
+        database.beginTransaction();
+        try {
+            wrong = InventoryDbHelper.repairSummary(database);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (wrong > 0) {
+            Log.w(LOG_TAG, "Repaired the summary of " + wrong + " suppliers");
+            notifyChange(InventoryEntry.CONTENT_URI);
+        }
+        return wrong;
+    }
+
+    /**
+     * Start or stop recording metrics, as given by {@link DiagnosticsEntry#COLUMN_ENABLED}.
+     * Return 1 if metrics are now recorded, 0 otherwise.
+     */
+    private int updateDiagnostics(Uri uri, ContentValues values) {
+        Boolean enabled = values == null ? null : values.getAsBoolean(DiagnosticsEntry.COLUMN_ENABLED);
+        if (enabled == null) {
+            throw new IllegalArgumentException("Diagnostics requires " + DiagnosticsEntry.COLUMN_ENABLED);
+        }
+        mMetrics.setEnabled(enabled);
+        // Not counted as a notification of the data, and never held back by a batch
+        getContext().getContentResolver().notifyChange(uri, null);
+        return enabled ? 1 : 0;
+    }
+
+    /**
+     * Sell units of the product with the given ID. The stock is checked and decremented by a
+     * single statement, so concurrent sales can never oversell or overwrite each other, and the
+     * sale is appended to the ledger in the same transaction.
+     * Return the new quantity, or {@link InventoryEntry#SELL_INSUFFICIENT_STOCK} if the product
+     * doesn't exist or doesn't have enough stock.
+     */
+    private int sellProduct(long id, ContentValues values) {
+        // Check that the amount is valid. Greater than 0, and 1 if not given
+        Integer amount = values == null ? null : values.getAsInteger(InventoryEntry.SELL_AMOUNT);
+        if (amount == null) {
+            amount = 1;
+        } else if (amount <= 0) {
+            throw new IllegalArgumentException("Sale requires a positive amount");
+        }
+        Long soldAt = values == null ? null : values.getAsLong(InventoryEntry.SELL_TIME);
+        if (soldAt == null) {
+            soldAt = System.currentTimeMillis();
+        }
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Decrement the stock, record the sale and read back the new quantity in the same
+        // transaction. A sale made within a batch commits with the whole batch.
+        int quantity = InventoryEntry.SELL_INSUFFICIENT_STOCK;
+        CacheWrites writes = new CacheWrites();
+        database.beginTransaction();
+        SQLiteStatement sell = mStatements.acquire(database, SQL_SELL_PRODUCT);
+        SQLiteStatement record = mStatements.acquire(database, SQL_RECORD_SALE);
+        SQLiteStatement read = mStatements.acquire(database, SQL_PRODUCT_QUANTITY);
+        try {
+            sell.bindLong(1, amount);
+            sell.bindLong(2, id);
+            sell.bindLong(3, amount);
+            if (sell.executeUpdateDelete() != 0) {
+                record.bindLong(1, amount);
+                record.bindLong(2, soldAt);
+                record.bindLong(3, id);
+                record.executeInsert();
+
+                read.bindLong(1, id);
+                quantity = (int) read.simpleQueryForLong();
+
+                // Write the new quantity through to the cache
+                Product cached = mProductCache.peek(id);
+                if (cached != null) {
+                    writes.put(mProductCache, cached.withQuantity(quantity));
+                } else {
+                    writes.remove(mProductCache, id);
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            mStatements.release(database, SQL_SELL_PRODUCT, sell);
+            mStatements.release(database, SQL_RECORD_SALE, record);
+            mStatements.release(database, SQL_PRODUCT_QUANTITY, read);
+            database.endTransaction();
+        }
+        confirmCacheWrites(writes);
+
+        // If the sale went through, notify listeners of that product only, and of the ledger
+        if (quantity != InventoryEntry.SELL_INSUFFICIENT_STOCK) {
+            notifyChange(InventoryEntry.buildChangeUri(id, InventoryContract.CHANGE_UPDATE));
+            notifyChange(SalesEntry.CONTENT_URI);
+        }
+
+        // Return the new quantity
+        return quantity;
     }
 
     /**
@@ -244,11 +1772,21 @@ public class InventoryProvider extends ContentProvider {
             }
         }
 
+        // If the {@link InventoryEntry#COLUMN_REORDER_THRESHOLD} key is present,
+        // check that the threshold value is valid.
+        if (values.containsKey(InventoryEntry.COLUMN_REORDER_THRESHOLD)) {
+            // Check that the threshold is greater than or equal to 0
+            Integer threshold = values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+            if (threshold == null || threshold < 0) {
+                throw new IllegalArgumentException("Product requires valid reorder threshold");
+            }
+        }
+
         // If the {@link InventoryEntry#COLUMN_SUPPLIER_NAME} key is present,
-        // check that the supplier name is valid.
+        // check that the supplier name is not null. It is checked to exist with the update.
         if (values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)) {
             Integer supplier = values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME);
-            if (supplier == null || !InventoryEntry.isValidSupplier(supplier)) {
+            if (supplier == null) {
                 throw new IllegalArgumentException("Product requires valid supplier name");
             }
         }
@@ -269,55 +1807,384 @@ public class InventoryProvider extends ContentProvider {
         // Otherwise, get writeable database to update the data
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        // Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(InventoryEntry.TABLE_NAME, values, selection, selectionArgs);
-        // If 1 or more rows were updated, then notify all listeners that the data at the
-        // given URI has changed
+        // Perform the update on the database and get the number of rows affected, noting which
+        // products are updated in the same transaction
+        int rowsUpdated;
+        List<Long> ids;
+        boolean phoneChanged;
+        CacheWrites cacheWrites = null;
+
+        // A product updated by ID with the columns the editor or a stock count writes is updated
+        // by a pooled statement, bound straight from the values. Otherwise the ID is the selection.
+        long id = sUriMatcher.match(uri) == INVENTORY_ID ? ContentUris.parseId(uri) : -1;
+        String updateSql = id != -1 ? updateByIdSql(values) : null;
+        ContentValues productValues = values;
+        if (updateSql == null) {
+            productValues = withoutPhone(values);
+            if (productValues.containsKey(InventoryEntry.COLUMN_PRODUCT_PRICE)
+                    && productValues.getAsInteger(InventoryEntry.COLUMN_PRODUCT_PRICE) == null) {
+                // A missing price is stored as 0
+                productValues = new ContentValues(productValues);
+                productValues.put(InventoryEntry.COLUMN_PRODUCT_PRICE, 0);
+            }
+        }
+        if (id != -1 && (updateSql == null || !values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME))) {
+            selection = InventoryEntry._ID + "=?";
+            selectionArgs = new String[] { String.valueOf(id) };
+        }
+        database.beginTransaction();
+        try {
+            validateSuppliers(database, values);
+            ids = id != -1 ? Collections.singletonList(id) : selectIds(database, selection, selectionArgs);
+            // The phone goes to the suppliers of the products, before the products are updated
+            // in case that changes which products the selection matches
+            phoneChanged = updateSupplierPhones(database, values, selection, selectionArgs);
+            if (updateSql != null) {
+                SQLiteStatement update = mStatements.acquire(database, updateSql);
+                try {
+                    bindUpdateById(update, updateSql, values, id);
+                    rowsUpdated = update.executeUpdateDelete();
+                } finally {
+                    mStatements.release(database, updateSql, update);
+                }
+            } else if (productValues.size() != 0) {
+                rowsUpdated = database.update(InventoryEntry.TABLE_NAME, productValues, selection, selectionArgs);
+            } else {
+                rowsUpdated = (int) DatabaseUtils.queryNumEntries(database, InventoryEntry.TABLE_NAME,
+                        selection, selectionArgs);
+            }
+            if (rowsUpdated != 0) {
+                cacheWrites = updateCachedProducts(ids, productValues);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (cacheWrites != null) {
+            confirmCacheWrites(cacheWrites);
+        }
+        // If 1 or more rows were updated, then notify all listeners of the updated products
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyRowChanges(ids, InventoryContract.CHANGE_UPDATE);
+        }
+        if (phoneChanged) {
+            notifySupplierChange();
         }
         // Return the number of rows updated
         return rowsUpdated;
     }
 
+    /**
+     * Returns the pooled statement updating a product by ID with exactly the product columns of
+     * the given values, the supplier phone aside, or null if there is none for these columns.
+     */
+    private static String updateByIdSql(ContentValues values) {
+        int size = values.size() - (values.containsKey(InventoryEntry.COLUMN_SUPPLIER_PHONE) ? 1 : 0);
+        if (size == 1 && values.containsKey(InventoryEntry.COLUMN_PRODUCT_QUANTITY)) {
+            return SQL_UPDATE_QUANTITY;
+        }
+        if ((size == 4 || size == 5)
+                && values.containsKey(InventoryEntry.COLUMN_PRODUCT_NAME)
+                && values.containsKey(InventoryEntry.COLUMN_PRODUCT_PRICE)
+                && values.containsKey(InventoryEntry.COLUMN_PRODUCT_QUANTITY)
+                && values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)) {
+            if (size == 4) {
+                return SQL_UPDATE_PRODUCT;
+            }
+            if (values.containsKey(InventoryEntry.COLUMN_REORDER_THRESHOLD)) {
+                return SQL_UPDATE_PRODUCT_THRESHOLD;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bind the product columns of the given values and the product ID to a statement returned
+     * by {@link #updateByIdSql(ContentValues)} for these values. The values must already have
+     * been validated, a missing price is stored as 0.
+     */
+    private static void bindUpdateById(SQLiteStatement update, String sql, ContentValues values, long id) {
+        if (SQL_UPDATE_QUANTITY.equals(sql)) {
+            bindInteger(update, 1, values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY));
+            update.bindLong(2, id);
+            return;
+        }
+        update.bindString(1, values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME));
+        Integer price = values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_PRICE);
+        update.bindLong(2, price != null ? price : 0);
+        bindInteger(update, 3, values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY));
+        update.bindLong(4, values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME));
+        if (SQL_UPDATE_PRODUCT_THRESHOLD.equals(sql)) {
+            update.bindLong(5, values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD));
+            update.bindLong(6, id);
+        } else {
+            update.bindLong(5, id);
+        }
+    }
+
+    /**
+     * Set the phone in the given product values, if any, on the supplier in the values, or else
+     * on the suppliers of the products matching the selection. Return whether any phone changed.
+     */
+    private boolean updateSupplierPhones(SQLiteDatabase database, ContentValues values,
+                                         String selection, String[] selectionArgs) {
+        String phone = values.getAsString(InventoryEntry.COLUMN_SUPPLIER_PHONE);
+        if (phone == null) {
+            return false;
+        }
+        if (values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)) {
+            return updateSupplierPhone(database, values);
+        }
+        ContentValues supplierValues = new ContentValues();
+        supplierValues.put(SupplierEntry.COLUMN_PHONE, phone);
+        String suppliers = SupplierEntry.COLUMN_PHONE + " IS NOT ? AND " + SupplierEntry._ID + " IN (SELECT "
+                + InventoryEntry.COLUMN_SUPPLIER_NAME + " FROM " + InventoryEntry.TABLE_NAME
+                + (TextUtils.isEmpty(selection) ? "" : " WHERE " + selection) + ")";
+        return database.update(SupplierEntry.TABLE_NAME, supplierValues, suppliers,
+                DatabaseUtils.appendSelectionArgs(new String[] { phone }, selectionArgs)) != 0;
+    }
+
+    /**
+     * Insert a supplier into the database with the given content values. Return the new content
+     * URI for that supplier, or null if the name is taken.
+     */
+    private Uri insertSupplier(Uri uri, ContentValues values) {
+        String name = values.getAsString(SupplierEntry.COLUMN_NAME);
+        if (TextUtils.isEmpty(name)) {
+            throw new IllegalArgumentException("Supplier requires a name");
+        }
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long id = database.insertWithOnConflict(SupplierEntry.TABLE_NAME, null, values,
+                SQLiteDatabase.CONFLICT_IGNORE);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+        notifyChange(SupplierEntry.CONTENT_URI);
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    /**
+     * Rename the supplier with the given ID, or change its phone. Return 1 if it changed, 0 if
+     * there is no such supplier or the new name is taken.
+     */
+    private int updateSupplier(long id, ContentValues values) {
+        if (values.containsKey(SupplierEntry._ID)) {
+            throw new IllegalArgumentException("Supplier ID cannot change");
+        }
+        if (values.containsKey(SupplierEntry.COLUMN_NAME)
+                && TextUtils.isEmpty(values.getAsString(SupplierEntry.COLUMN_NAME))) {
+            throw new IllegalArgumentException("Supplier requires a name");
+        }
+        if (values.size() == 0) {
+            return 0;
+        }
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int rowsUpdated = database.updateWithOnConflict(SupplierEntry.TABLE_NAME, values,
+                SupplierEntry._ID + "=?", new String[] { String.valueOf(id) }, SQLiteDatabase.CONFLICT_IGNORE);
+        if (rowsUpdated != 0) {
+            notifySupplierChange();
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Delete the supplier with the given ID, unless it still has products. Return 1 if it was
+     * deleted, 0 otherwise.
+     */
+    private int deleteSupplier(long id) {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        String supplier = String.valueOf(id);
+        int rowsDeleted = database.delete(SupplierEntry.TABLE_NAME, SupplierEntry._ID + "=? AND NOT EXISTS (SELECT 1 FROM "
+                + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry.COLUMN_SUPPLIER_NAME + "=?)",
+                new String[] { supplier, supplier });
+        if (rowsDeleted != 0) {
+            notifyChange(SupplierEntry.CONTENT_URI);
+        }
+        return rowsDeleted;
+    }
 
     /**
      * Delete the data at the given selection and selection arguments.
      */
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        long start = mMetrics.start();
+        final int match = sUriMatcher.match(uri);
+        if (match == DIAGNOSTICS) {
+            // Deleting the diagnostics forgets the metrics recorded so far
+            mMetrics.reset();
+            getContext().getContentResolver().notifyChange(uri, null);
+            return 0;
+        }
+        if (match == SUPPLIERS_ID) {
+            int rowsDeleted = deleteSupplier(ContentUris.parseId(uri));
+            mMetrics.record(ProviderMetrics.DELETE, match - INVENTORY, start, rowsDeleted);
+            return rowsDeleted;
+        }
+
         // Get writeable database
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        // Track the number of rows that were deleted
+        // Track the number of rows that were deleted, and which products they were
         int rowsDeleted;
+        List<Long> ids;
 
-        final int match = sUriMatcher.match(uri);
         switch (match) {
             case INVENTORY:
                 // Delete all rows that match the selection and selection args
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                database.beginTransaction();
+                try {
+                    ids = selectIds(database, selection, selectionArgs);
+                    rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
                 break;
             case INVENTORY_ID:
-                // Delete a single row given by the ID in the URI
-                selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                // Delete a single row given by the ID in the URI, with a pooled statement
+                long id = ContentUris.parseId(uri);
+                ids = Collections.singletonList(id);
+                SQLiteStatement delete = mStatements.acquire(database, SQL_DELETE_PRODUCT);
+                try {
+                    delete.bindLong(1, id);
+                    rowsDeleted = delete.executeUpdateDelete();
+                } finally {
+                    mStatements.release(database, SQL_DELETE_PRODUCT, delete);
+                }
                 break;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
 
-        // If 1 or more rows were deleted, then notify all listeners that the data at the
-        // given URI has changed
+        // If 1 or more rows were deleted, then remove them from the cache and notify all
+        // listeners of the deleted products
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            removeCachedProducts(ids);
+            notifyRowChanges(ids, InventoryContract.CHANGE_DELETE);
         }
 
+        mMetrics.record(ProviderMetrics.DELETE, match - INVENTORY, start, rowsDeleted);
+
         // Return the number of rows deleted
         return rowsDeleted;
     }
 
+    /**
+     * Open the export URI, as the MIME type of its URI. Other URIs have no files.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != INVENTORY_EXPORT) {
+            throw new FileNotFoundException("No file for URI " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Exports can only be read " + uri);
+        }
+        return openExport(uri, exportType(uri));
+    }
+
+    /**
+     * Returns the MIME types the export URI can be opened as that match the filter, or null
+     * for other URIs.
+     */
+    @Override
+    public String[] getStreamTypes(Uri uri, String mimeTypeFilter) {
+        if (sUriMatcher.match(uri) != INVENTORY_EXPORT) {
+            return null;
+        }
+        List<String> types = new ArrayList<>(EXPORT_MIME_TYPES.length);
+        for (String type : EXPORT_MIME_TYPES) {
+            if (ClipDescription.compareMimeTypes(type, mimeTypeFilter)) {
+                types.add(type);
+            }
+        }
+        return types.isEmpty() ? null : types.toArray(new String[types.size()]);
+    }
+
+    /**
+     * Open the export URI as the MIME type of its URI if it matches the filter, otherwise as the
+     * first of its MIME types that does.
+     */
+    @Override
+    public AssetFileDescriptor openTypedAssetFile(Uri uri, String mimeTypeFilter, Bundle opts)
+            throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != INVENTORY_EXPORT) {
+            return super.openTypedAssetFile(uri, mimeTypeFilter, opts);
+        }
+        String[] types = getStreamTypes(uri, mimeTypeFilter);
+        if (types == null) {
+            throw new FileNotFoundException("Cannot export " + uri + " as " + mimeTypeFilter);
+        }
+        String type = Arrays.asList(types).contains(exportType(uri)) ? exportType(uri) : types[0];
+        return new AssetFileDescriptor(openExport(uri, type), 0, AssetFileDescriptor.UNKNOWN_LENGTH);
+    }
+
+    /**
+     * Returns the read end of a pipe the inventory is exported to, as the given MIME type. The
+     * products are written on a background thread as the reader consumes them.
+     */
+    private ParcelFileDescriptor openExport(Uri uri, String mimeType) throws FileNotFoundException {
+        return openPipeHelper(uri, mimeType, null, null, new PipeDataWriter<Object>() {
+            @Override
+            public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType,
+                                        Bundle opts, Object args) {
+                long start = mMetrics.start();
+                int format = InventoryEntry.MIME_TYPE_JSON.equals(mimeType)
+                        ? ExportWriter.FORMAT_JSON : ExportWriter.FORMAT_CSV;
+                try {
+                    // The pipe is closed once this returns
+                    long rows = exportProducts(new FileOutputStream(output.getFileDescriptor()), format);
+                    mMetrics.record(ProviderMetrics.QUERY, INVENTORY_EXPORT - INVENTORY, start, rows);
+                } catch (IOException e) {
+                    // The reader closed the pipe before the end
+                    Log.w(LOG_TAG, "Export of " + uri + " stopped", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write every product to the stream, in ID order. The products are read one page at a time,
+     * after the last ID of the previous page, and copied into the writer through reused
+     * buffers. Pages are read outside of a transaction so writers aren't held up by a slow
+     * reader, so a product changed during the export appears as it was when its page was read.
+     * Returns the number of products written.
+     */
+    private long exportProducts(OutputStream out, int format) throws IOException {
+        SQLiteDatabase database = mDbHelper.getReadableDatabase();
+        ExportWriter writer = new ExportWriter(out, format, EXPORT_BUFFER_SIZE);
+        CharArrayBuffer name = new CharArrayBuffer(64);
+        CharArrayBuffer supplier = new CharArrayBuffer(32);
+        CharArrayBuffer phone = new CharArrayBuffer(16);
+        String[] afterId = { "-1" };
+        writer.writeStart();
+        int count;
+        do {
+            Cursor cursor = database.rawQuery(SQL_EXPORT_PAGE, afterId);
+            try {
+                count = cursor.getCount();
+                long id = -1;
+                while (cursor.moveToNext()) {
+                    id = cursor.getLong(0);
+                    cursor.copyStringToBuffer(1, name);
+                    cursor.copyStringToBuffer(4, supplier);
+                    cursor.copyStringToBuffer(5, phone);
+                    writer.writeProduct(id, name.data, name.sizeCopied, cursor.getInt(2), cursor.getInt(3),
+                            supplier.data, supplier.sizeCopied, phone.data, phone.sizeCopied);
+                }
+                afterId[0] = String.valueOf(id);
+            } finally {
+                cursor.close();
+            }
+        } while (count == EXPORT_PAGE_SIZE);
+        writer.finish();
+        return writer.getCount();
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      */
@@ -327,10 +2194,89 @@ public class InventoryProvider extends ContentProvider {
         switch (match) {
             case INVENTORY:
                 return InventoryEntry.CONTENT_LIST_TYPE;
+            case INVENTORY_SEARCH:
+            case INVENTORY_UPSERT:
+                return InventoryEntry.CONTENT_LIST_TYPE;
+            case INVENTORY_EXPORT:
+                return exportType(uri);
             case INVENTORY_ID:
+            case INVENTORY_SELL:
                 return InventoryEntry.CONTENT_ITEM_TYPE;
+            case INVENTORY_SUMMARY:
+                return SummaryEntry.CONTENT_LIST_TYPE;
+            case INVENTORY_VERSION:
+                return VersionEntry.CONTENT_ITEM_TYPE;
+            case INVENTORY_RECLAIM:
+            case MAINTENANCE_STATISTICS:
+            case MAINTENANCE_SEARCH_INDEX:
+            case MAINTENANCE_VACUUM:
+                return null;
+            case MAINTENANCE:
+                return MaintenanceEntry.CONTENT_ITEM_TYPE;
+            case MAINTENANCE_INTEGRITY:
+                return MaintenanceEntry.INTEGRITY_LIST_TYPE;
+            case DIAGNOSTICS:
+                return DiagnosticsEntry.CONTENT_LIST_TYPE;
+            case SUPPLIERS:
+                return SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIERS_ID:
+                return SupplierEntry.CONTENT_ITEM_TYPE;
+            case SALES:
+                return SalesEntry.CONTENT_LIST_TYPE;
+            case LOW_STOCK:
+                return LowStockEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The writes through to the {@link ProductCache} of one transaction, by product ID, to
+     * confirm once it has committed. A null product is a removed one.
+     */
+    private static final class CacheWrites {
+
+        private final LinkedHashMap<Long, Product> mProducts = new LinkedHashMap<>();
+
+        /** Whether the cache was cleared, in which case it is cleared again instead */
+        private boolean mCleared;
+
+        void put(ProductCache cache, Product product) {
+            cache.put(product);
+            mProducts.put(product.id, product);
+        }
+
+        void remove(ProductCache cache, long id) {
+            cache.remove(id);
+            mProducts.put(id, null);
+        }
+
+        void clear(ProductCache cache) {
+            cache.clear();
+            mCleared = true;
+            mProducts.clear();
+        }
+
+        /**
+         * Add the writes of a later transaction, committing with this one.
+         */
+        void add(CacheWrites writes) {
+            if (writes.mCleared) {
+                mCleared = true;
+                mProducts.clear();
+            } else if (!mCleared) {
+                mProducts.putAll(writes.mProducts);
+            }
+        }
+
+        void confirm(ProductCache cache) {
+            if (mCleared) {
+                cache.clear();
+                return;
+            }
+            for (Map.Entry<Long, Product> write : mProducts.entrySet()) {
+                cache.confirm(write.getKey(), write.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes to the inventory off the main thread. Writes are made one at a time, in the order they
+ * were queued, and their results are delivered to callbacks on the main thread.
+ *
+ * Sales are held in memory and group committed: every sale buffered is made with
+ * {@link ContentResolver#applyBatch(String, ArrayList)}, in a single transaction that
+ * decrements the stock and appends to the sales ledger for each of them. The buffer is written
+ * once it holds {@link #MAX_BATCH_SALES} sales, {@link #MAX_BATCH_DELAY_MILLIS} after its first
+ * sale, before any other write so that writes stay in order, and when {@link #flush()} is called.
+ *
+ * Writes queued are still only in memory until they are made. When the app is paused, flush the
+ * sales held and let {@link com.example.android.inventoryapp2.PendingWritesService} keep the app
+ * running until {@link #awaitWrites()} returns, so that no write is lost if the app is killed
+ * once it is in the background.
+ */
+public final class InventoryWriter {
+
+    /**
+     * Receives the result of a write on the main thread.
+     */
+    public interface Callback<T> {
+        void onWriteComplete(T result);
+    }
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = InventoryWriter.class.getSimpleName();
+
+    /**
+     * Most sales committed together. A batch notifies each product it sold, and the provider
+     * notifies the whole catalog instead past 50 notifications, so a full batch stays below.
+     */
+    static final int MAX_BATCH_SALES = 32;
+
+    /**
+     * Longest time a sale is held before it is written, in milliseconds. The quantity shown
+     * waits as long for the sale to be written, so it is kept short enough not to be noticed,
+     * and still long enough for a burst of taps to be committed together.
+     */
+    static final long MAX_BATCH_DELAY_MILLIS = 100;
+
+    /** Writer shared by the whole app */
+    private static InventoryWriter sInstance;
+
+    private final ContentResolver mResolver;
+
+    /** Runs the writes, one at a time in the order they are queued */
+    private final Executor mExecutor;
+
+    /** Delivers the results on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Most sales held before they are written */
+    private final int mMaxBatchSales;
+
+    /** Longest time the first sale held waits before it is written, in milliseconds */
+    private final long mMaxBatchDelayMillis;
+
+    /** Sales held and not queued yet, in the order they were made. Guarded by this */
+    private List<Sale> mBufferedSales = new ArrayList<>();
+
+    /** Number of calls to the provider, a batch of sales counting as one */
+    private final AtomicInteger mStatementCount = new AtomicInteger();
+
+    /** Number of writes queued and not made yet, a batch of sales counting as one */
+    private final AtomicInteger mQueuedCount = new AtomicInteger();
+
+    /**
+     * Returns the writer shared by the whole app.
+     */
+    public static synchronized InventoryWriter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new InventoryWriter(context.getApplicationContext().getContentResolver(),
+                    Executors.newSingleThreadExecutor());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create a writer running its writes on the given executor, which must run them one at a
+     * time in the order they are submitted.
+     */
+    InventoryWriter(ContentResolver resolver, Executor executor) {
+        this(resolver, executor, MAX_BATCH_SALES, MAX_BATCH_DELAY_MILLIS);
+    }
+
+    /**
+     * Create a writer like {@link #InventoryWriter(ContentResolver, Executor)}, holding at most
+     * the given number of sales for at most the given time before writing them.
+     */
+    InventoryWriter(ContentResolver resolver, Executor executor, int maxBatchSales, long maxBatchDelayMillis) {
+        mResolver = resolver;
+        mExecutor = executor;
+        mMaxBatchSales = maxBatchSales;
+        mMaxBatchDelayMillis = maxBatchDelayMillis;
+    }
+
+    /**
+     * Returns the number of calls to the provider so far, a batch of sales counting as one.
+     */
+    int getStatementCount() {
+        return mStatementCount.get();
+    }
+
+    /**
+     * Insert a product. The callback, if any, receives the URI of the new product, or null if
+     * the values were invalid.
+     */
+    public void insert(ContentValues values, final Callback<Uri> callback) {
+        final ContentValues copy = new ContentValues(values);
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                Uri uri = null;
+                try {
+                    mStatementCount.incrementAndGet();
+                    uri = mResolver.insert(InventoryEntry.CONTENT_URI, copy);
+                } catch (IllegalArgumentException | SQLException e) {
+                    Log.e(LOG_TAG, "Failed to insert product", e);
+                }
+                deliver(callback, uri);
+            }
+        });
+    }
+
+    /**
+     * Update the products of the given URI. The callback, if any, receives the number of
+     * products updated, 0 if the values were invalid.
+     */
+    public void update(final Uri uri, ContentValues values, final Callback<Integer> callback) {
+        final ContentValues copy = new ContentValues(values);
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                int rowsUpdated = 0;
+                try {
+                    mStatementCount.incrementAndGet();
+                    rowsUpdated = mResolver.update(uri, copy, null, null);
+                } catch (IllegalArgumentException | SQLException e) {
+                    Log.e(LOG_TAG, "Failed to update " + uri, e);
+                }
+                deliver(callback, rowsUpdated);
+            }
+        });
+    }
+
+    /**
+     * Delete the products of the given URI. The callback, if any, receives the number of
+     * products deleted.
+     */
+    public void delete(final Uri uri, final Callback<Integer> callback) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                int rowsDeleted = 0;
+                try {
+                    mStatementCount.incrementAndGet();
+                    rowsDeleted = mResolver.delete(uri, null, null);
+                } catch (IllegalArgumentException | SQLException e) {
+                    Log.e(LOG_TAG, "Failed to delete " + uri, e);
+                }
+                deliver(callback, rowsDeleted);
+            }
+        });
+    }
+
+    /**
+     * Sell one unit of the product with the given ID. The callback, if any, receives the
+     * quantity left after this unit, or {@link InventoryEntry#SELL_INSUFFICIENT_STOCK} if the
+     * product was out of stock.
+     */
+    public void sell(long id, Callback<Integer> callback) {
+        Sale sale = new Sale(id, System.currentTimeMillis(), callback);
+        boolean first;
+        synchronized (this) {
+            mBufferedSales.add(sale);
+            if (mBufferedSales.size() >= mMaxBatchSales) {
+                flushLocked();
+                return;
+            }
+            first = mBufferedSales.size() == 1;
+        }
+        if (first) {
+            mMainHandler.postDelayed(mFlush, mMaxBatchDelayMillis);
+        }
+    }
+
+    /**
+     * Queue the sales held, so that they are written right after the writes already queued.
+     * Doesn't wait for them to be written.
+     */
+    public synchronized void flush() {
+        flushLocked();
+    }
+
+    private void flushLocked() {
+        if (mBufferedSales.isEmpty()) {
+            return;
+        }
+        mMainHandler.removeCallbacks(mFlush);
+        execute(new SaleBatch(mBufferedSales));
+        mBufferedSales = new ArrayList<>();
+    }
+
+    /**
+     * Returns whether sales are held, or writes are queued and not made yet.
+     */
+    public synchronized boolean hasPendingWrites() {
+        return !mBufferedSales.isEmpty() || mQueuedCount.get() > 0;
+    }
+
+    /**
+     * Queue the sales held, then wait until every write queued so far has been made. Must not be
+     * called on the main thread, nor by a write.
+     */
+    public void awaitWrites() throws InterruptedException {
+        FutureTask<Void> done = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                // Every write queued before has been made
+            }
+        }, null);
+        synchronized (this) {
+            flushLocked();
+            mExecutor.execute(done);
+        }
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Queue a write on the executor, counting it until it has been made.
+     */
+    private void execute(final Runnable write) {
+        mQueuedCount.incrementAndGet();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write.run();
+                } finally {
+                    mQueuedCount.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /** Queues the sales held once the first of them has waited long enough */
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Queue a write other than a sale, after the sales held, so that every write is made in the
+     * order it was queued.
+     */
+    private void enqueue(Runnable write) {
+        synchronized (this) {
+            flushLocked();
+            execute(write);
+        }
+    }
+
+    private <T> void deliver(final Callback<T> callback, final T result) {
+        if (callback == null) {
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onWriteComplete(result);
+            }
+        });
+    }
+
+    /**
+     * Sale of one unit of a product.
+     */
+    private static final class Sale {
+
+        final long id;
+
+        /** Time of the sale, in milliseconds since the epoch */
+        final long soldAt;
+
+        final Callback<Integer> callback;
+
+        Sale(long id, long soldAt, Callback<Integer> callback) {
+            this.id = id;
+            this.soldAt = soldAt;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * Sales written in one batch, each with its own statement and ledger entry.
+     */
+    private final class SaleBatch implements Runnable {
+
+        final List<Sale> sales;
+
+        SaleBatch(List<Sale> sales) {
+            this.sales = sales;
+        }
+
+        @Override
+        public void run() {
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>(sales.size());
+            for (Sale sale : sales) {
+                operations.add(ContentProviderOperation.newUpdate(InventoryEntry.buildSellUri(sale.id))
+                        .withValue(InventoryEntry.SELL_AMOUNT, 1)
+                        .withValue(InventoryEntry.SELL_TIME, sale.soldAt)
+                        .build());
+            }
+
+            // The quantity left after each sale. A sale beyond the stock fails on its own, the
+            // batch goes on with the others.
+            final int[] quantities = new int[sales.size()];
+            try {
+                mStatementCount.incrementAndGet();
+                ContentProviderResult[] results = mResolver.applyBatch(InventoryContract.CONTENT_AUTHORITY,
+                        operations);
+                for (int i = 0; i < quantities.length; i++) {
+                    quantities[i] = results[i].count;
+                }
+            } catch (RemoteException | OperationApplicationException | SQLException e) {
+                Log.e(LOG_TAG, "Failed to sell " + sales.size() + " units", e);
+                for (int i = 0; i < quantities.length; i++) {
+                    quantities[i] = InventoryEntry.SELL_INSUFFICIENT_STOCK;
+                }
+            }
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < quantities.length; i++) {
+                        Callback<Integer> callback = sales.get(i).callback;
+                        if (callback != null) {
+                            callback.onWriteComplete(quantities[i]);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+import com.example.android.inventoryapp2.data.InventoryContract.LowStockEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the products that went low on stock since the last check, so they can be reordered.
+ *
+ * The provider keeps the products below their reorder threshold in {@link LowStockEntry}, with
+ * an entry ID that grows every time a product goes below it. The checker only remembers the last
+ * entry it reported, and reads the entries after it: the cost of a check depends on the products
+ * that went low since the last one, not on the size of the inventory. The products low on stock
+ * are only counted when some went low, for the alert.
+ *
+ * Checks read from the database, so they must run off the main thread.
+ */
+public final class LowStockChecker {
+
+    /** Name of the preferences holding the last entry reported */
+    private static final String PREFERENCES_NAME = "low_stock";
+
+    /** Key of the ID of the last entry reported */
+    private static final String KEY_LAST_ENTRY = "lastEntry";
+
+    /** Columns read from the entries */
+    private static final String[] PROJECTION = { LowStockEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME, InventoryEntry.COLUMN_PRODUCT_QUANTITY };
+
+    /**
+     * Products that went low on stock since the last check.
+     */
+    public static final class Result {
+
+        /** Names of the products that went low, in the order they did */
+        public final List<String> names;
+
+        /** Units left of each product, in the same order */
+        public final List<Integer> quantities;
+
+        /** Number of products low on stock, those that went low before included */
+        public final int lowProducts;
+
+        /** ID of the last entry read, remembered by {@link #acknowledge(Result)} */
+        final long lastEntry;
+
+        Result(List<String> names, List<Integer> quantities, int lowProducts, long lastEntry) {
+            this.names = Collections.unmodifiableList(names);
+            this.quantities = Collections.unmodifiableList(quantities);
+            this.lowProducts = lowProducts;
+            this.lastEntry = lastEntry;
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final SharedPreferences mPreferences;
+
+    public LowStockChecker(Context context) {
+        this(context.getContentResolver(),
+                context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+    }
+
+    /**
+     * Create a checker reading through the given resolver and keeping the last entry reported in
+     * the given preferences. Used by tests.
+     */
+    LowStockChecker(ContentResolver resolver, SharedPreferences preferences) {
+        mResolver = resolver;
+        mPreferences = preferences;
+    }
+
+    /**
+     * Returns the products that went low on stock since the last acknowledged check, or null if
+     * none did. The same products are returned again until {@link #acknowledge(Result)} is
+     * called, so that they are not lost if the alert can't be raised. Products that went low and
+     * were restocked in between are left out.
+     */
+    public Result check() {
+        long lastEntry = mPreferences.getLong(KEY_LAST_ENTRY, 0);
+        List<String> names = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        Cursor cursor = mResolver.query(LowStockEntry.buildAfterUri(lastEntry), PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                lastEntry = cursor.getLong(0);
+                names.add(cursor.getString(1));
+                quantities.add(cursor.getInt(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (names.isEmpty()) {
+            return null;
+        }
+        return new Result(names, quantities, countLowProducts(), lastEntry);
+    }
+
+    /**
+     * Remember that the products of the given result were reported, so the next check only
+     * returns the products that go low after them.
+     */
+    public void acknowledge(Result result) {
+        mPreferences.edit().putLong(KEY_LAST_ENTRY, result.lastEntry).apply();
+    }
+
+    /**
+     * Returns the number of products low on stock, one row each.
+     */
+    private int countLowProducts() {
+        Cursor cursor = mResolver.query(LowStockEntry.CONTENT_URI, new String[] { LowStockEntry._ID },
+                null, null, null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
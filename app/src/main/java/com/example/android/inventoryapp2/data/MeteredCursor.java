@@ -0,0 +1,72 @@
+package com.example.android.inventoryapp2.data;
+
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+/**
+ * {@link SQLiteCursor} counting the cursor windows it fills in {@link ProviderMetrics}. A
+ * cursor fills its first window when its count is first asked for, and another one every time
+ * it moves outside of the rows of the current window.
+ */
+final class MeteredCursor extends SQLiteCursor {
+
+    /**
+     * Creates metered cursors for the queries it is passed to.
+     */
+    static final class Factory implements SQLiteDatabase.CursorFactory {
+
+        private final ProviderMetrics mMetrics;
+
+        Factory(ProviderMetrics metrics) {
+            mMetrics = metrics;
+        }
+
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable,
+                                SQLiteQuery query) {
+            return new MeteredCursor(masterQuery, editTable, query, mMetrics);
+        }
+    }
+
+    private final ProviderMetrics mMetrics;
+
+    /** Whether the first window was filled */
+    private boolean mCounted;
+
+    private MeteredCursor(SQLiteCursorDriver driver, String editTable, SQLiteQuery query,
+                          ProviderMetrics metrics) {
+        super(driver, editTable, query);
+        mMetrics = metrics;
+    }
+
+    @Override
+    public int getCount() {
+        int count = super.getCount();
+        if (!mCounted) {
+            mCounted = true;
+            countWindowFill();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        CursorWindow window = getWindow();
+        boolean refill = window == null || newPosition < window.getStartPosition()
+                || newPosition >= window.getStartPosition() + window.getNumRows();
+        boolean moved = super.onMove(oldPosition, newPosition);
+        if (refill && mCounted) {
+            countWindowFill();
+        }
+        return moved;
+    }
+
+    private void countWindowFill() {
+        CursorWindow window = getWindow();
+        mMetrics.countWindowFill(window != null ? window.getNumRows() : 0);
+    }
+}
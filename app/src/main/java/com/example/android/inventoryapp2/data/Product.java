@@ -0,0 +1,196 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.example.android.inventoryapp2.data.InventoryContract.InventoryEntry;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of one row of the inventory table. The name and phone of its supplier
+ * are read from the {@link SupplierCache}.
+ */
+public final class Product {
+
+    /** Columns to query to read products */
+    public static final String[] PROJECTION = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_PRODUCT_NAME,
+            InventoryEntry.COLUMN_PRODUCT_PRICE,
+            InventoryEntry.COLUMN_PRODUCT_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_NAME,
+            InventoryEntry.COLUMN_REORDER_THRESHOLD};
+
+    /** Row ID of the product */
+    public final long id;
+
+    public final String name;
+
+    /** Price in cents */
+    public final long price;
+
+    public final int quantity;
+
+    /** ID of the supplier */
+    public final int supplier;
+
+    /** Number of units below which the product is low on stock */
+    public final int reorderThreshold;
+
+    public Product(long id, String name, long price, int quantity, int supplier, int reorderThreshold) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+        this.supplier = supplier;
+        this.reorderThreshold = reorderThreshold;
+    }
+
+    /**
+     * Returns whether the product is low on stock, as the low stock alerts and the catalog
+     * filter {@link InventoryContract#STOCK_LOW} see it.
+     */
+    public boolean isLowOnStock() {
+        return quantity < reorderThreshold;
+    }
+
+    /**
+     * Returns a copy of this product with the given quantity.
+     */
+    public Product withQuantity(int newQuantity) {
+        return new Product(id, name, price, newQuantity, supplier, reorderThreshold);
+    }
+
+    /**
+     * Returns a copy of this product with the columns present in the values replaced, as they
+     * are after an update of the row with those values.
+     */
+    public Product withValues(ContentValues values) {
+        Long newPrice = values.getAsLong(InventoryEntry.COLUMN_PRODUCT_PRICE);
+        Integer newQuantity = values.getAsInteger(InventoryEntry.COLUMN_PRODUCT_QUANTITY);
+        Integer newSupplier = values.getAsInteger(InventoryEntry.COLUMN_SUPPLIER_NAME);
+        Integer newThreshold = values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+        return new Product(id,
+                values.containsKey(InventoryEntry.COLUMN_PRODUCT_NAME)
+                        ? values.getAsString(InventoryEntry.COLUMN_PRODUCT_NAME) : name,
+                values.containsKey(InventoryEntry.COLUMN_PRODUCT_PRICE)
+                        ? (newPrice != null ? newPrice : 0) : price,
+                values.containsKey(InventoryEntry.COLUMN_PRODUCT_QUANTITY)
+                        ? (newQuantity != null ? newQuantity : 0) : quantity,
+                values.containsKey(InventoryEntry.COLUMN_SUPPLIER_NAME)
+                        ? (newSupplier != null ? newSupplier : 0) : supplier,
+                newThreshold != null ? newThreshold : reorderThreshold);
+    }
+
+    /**
+     * Returns whether all columns other than the quantity are the same as the other product's.
+     */
+    public boolean sameDetailsAs(Product other) {
+        return id == other.id
+                && price == other.price
+                && supplier == other.supplier
+                && reorderThreshold == other.reorderThreshold
+                && TextUtils.equals(name, other.name);
+    }
+
+    /**
+     * Returns whether every column of the projection is one of {@link #PROJECTION}. A null
+     * projection, meaning all columns, is the same as {@link #PROJECTION}.
+     */
+    public static boolean hasColumns(String[] projection) {
+        if (projection == null) {
+            return true;
+        }
+        for (String column : projection) {
+            if (!Arrays.asList(PROJECTION).contains(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the values of the given columns, for a row of a {@link android.database.MatrixCursor}.
+     * The columns must pass {@link #hasColumns(String[])}.
+     */
+    public Object[] toRow(String[] columns) {
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case InventoryEntry._ID:
+                    row[i] = id;
+                    break;
+                case InventoryEntry.COLUMN_PRODUCT_NAME:
+                    row[i] = name;
+                    break;
+                case InventoryEntry.COLUMN_PRODUCT_PRICE:
+                    row[i] = price;
+                    break;
+                case InventoryEntry.COLUMN_PRODUCT_QUANTITY:
+                    row[i] = quantity;
+                    break;
+                case InventoryEntry.COLUMN_SUPPLIER_NAME:
+                    row[i] = supplier;
+                    break;
+                case InventoryEntry.COLUMN_REORDER_THRESHOLD:
+                    row[i] = reorderThreshold;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown column " + columns[i]);
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Product)) {
+            return false;
+        }
+        Product other = (Product) o;
+        return quantity == other.quantity && sameDetailsAs(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+
+    /**
+     * Column indices of the product columns in a cursor, looked up once per cursor rather than
+     * once per row.
+     */
+    public static final class Columns {
+
+        private final int mId;
+        private final int mName;
+        private final int mPrice;
+        private final int mQuantity;
+        private final int mSupplier;
+        private final int mReorderThreshold;
+
+        public Columns(Cursor cursor) {
+            mId = cursor.getColumnIndexOrThrow(InventoryEntry._ID);
+            mName = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRODUCT_NAME);
+            mPrice = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRODUCT_PRICE);
+            mQuantity = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRODUCT_QUANTITY);
+            mSupplier = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_SUPPLIER_NAME);
+            mReorderThreshold = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_REORDER_THRESHOLD);
+        }
+
+        /**
+         * Read the product at the current position of the cursor.
+         */
+        public Product read(Cursor cursor) {
+            return new Product(
+                    cursor.getLong(mId),
+                    cursor.getString(mName),
+                    cursor.getLong(mPrice),
+                    cursor.getInt(mQuantity),
+                    cursor.getInt(mSupplier),
+                    cursor.getInt(mReorderThreshold));
+        }
+    }
+}
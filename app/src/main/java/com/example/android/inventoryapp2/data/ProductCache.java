@@ -0,0 +1,293 @@
+package com.example.android.inventoryapp2.data;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of {@link Product}s keyed by product ID, evicting the least recently used
+ * product when it is full. The IDs are kept in primitive arrays, so looking a product up
+ * doesn't box the ID or allocate map entries.
+ *
+ * Writers must call {@link #put(Product)} or {@link #remove(long)} for every product they
+ * change, while still holding the database write lock, then {@link #confirm(long, Product)} once
+ * the transaction has committed. Readers that missed the cache and read a product from the
+ * database add it with {@link #putIfUnchanged(Product, long)}, which drops the product if a
+ * writer changed the cache since the read started, so a stale product can never overwrite a
+ * newer one.
+ *
+ * All methods are thread safe.
+ */
+public final class ProductCache {
+
+    /** Marks the end of a slot list */
+    private static final int NONE = -1;
+
+    /** Maximum number of products cached */
+    private final int mCapacity;
+
+    /** ID of the product in each slot */
+    private final long[] mIds;
+
+    /** Product in each slot, or null if the slot is free */
+    private final Product[] mProducts;
+
+    /** Previous and next slots in the recently used list, most recent first */
+    private final int[] mPrevious;
+    private final int[] mNext;
+
+    /** Next slot in the same hash bucket */
+    private final int[] mChain;
+
+    /** First slot of each hash bucket, or NONE */
+    private final int[] mBuckets;
+
+    private int mHead = NONE;
+    private int mTail = NONE;
+
+    /** First free slot, free slots are chained through {@link #mNext} */
+    private int mFree;
+
+    private int mSize;
+
+    /** Incremented by every write, see {@link #putIfUnchanged(Product, long)} */
+    private long mGeneration;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    /**
+     * Create a cache holding at most the given number of products.
+     */
+    public ProductCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache requires a positive capacity");
+        }
+        mCapacity = capacity;
+        mIds = new long[capacity];
+        mProducts = new Product[capacity];
+        mPrevious = new int[capacity];
+        mNext = new int[capacity];
+        mChain = new int[capacity];
+        // Power of two with at least two buckets per slot, so chains stay short
+        mBuckets = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        reset();
+    }
+
+    private void reset() {
+        Arrays.fill(mBuckets, NONE);
+        Arrays.fill(mProducts, null);
+        for (int i = 0; i < mCapacity; i++) {
+            mNext[i] = i + 1 < mCapacity ? i + 1 : NONE;
+        }
+        mFree = 0;
+        mHead = NONE;
+        mTail = NONE;
+        mSize = 0;
+    }
+
+    /**
+     * Returns the cached product with the given ID and marks it as recently used, or returns
+     * null if it isn't cached. Counts a hit or a miss.
+     */
+    public synchronized Product get(long id) {
+        int slot = find(id);
+        if (slot == NONE) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        moveToHead(slot);
+        return mProducts[slot];
+    }
+
+    /**
+     * Returns the cached product with the given ID, or null if it isn't cached, without
+     * counting it or marking it as recently used.
+     */
+    public synchronized Product peek(long id) {
+        int slot = find(id);
+        return slot == NONE ? null : mProducts[slot];
+    }
+
+    /**
+     * Returns the current generation of the cache, to pass to
+     * {@link #putIfUnchanged(Product, long)} after reading a product from the database.
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Cache a product written to the database, replacing any cached product with the same ID.
+     */
+    public synchronized void put(Product product) {
+        mGeneration++;
+        insert(product);
+    }
+
+    /**
+     * Cache a product read from the database, unless the cache was written since the given
+     * generation, in which case the product may be stale and is dropped.
+     *
+     * @return whether the product was cached
+     */
+    public synchronized boolean putIfUnchanged(Product product, long generation) {
+        if (generation != mGeneration) {
+            return false;
+        }
+        insert(product);
+        return true;
+    }
+
+    /**
+     * Remove the product with the given ID, if it is cached.
+     */
+    public synchronized void remove(long id) {
+        mGeneration++;
+        int slot = find(id);
+        if (slot != NONE) {
+            unlink(slot);
+        }
+    }
+
+    /**
+     * Confirm the write of the product with the given ID, once the transaction that wrote it
+     * has committed. Until then, a reader missing the cache could read the row as it was before
+     * the write and cache it, so the product is removed unless it is still the one written, or
+     * if it was removed, given as null.
+     */
+    public synchronized void confirm(long id, Product written) {
+        int slot = find(id);
+        if (written != null && slot != NONE && mProducts[slot] == written) {
+            return;
+        }
+        mGeneration++;
+        if (slot != NONE) {
+            unlink(slot);
+        }
+    }
+
+    /**
+     * Remove all products, when the products that changed aren't known.
+     */
+    public synchronized void clear() {
+        mGeneration++;
+        reset();
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mCapacity;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private void insert(Product product) {
+        int slot = find(product.id);
+        if (slot == NONE) {
+            if (mFree == NONE) {
+                // Full, evict the least recently used product
+                mEvictionCount++;
+                unlink(mTail);
+            }
+            slot = mFree;
+            mFree = mNext[slot];
+
+            int bucket = bucket(product.id);
+            mIds[slot] = product.id;
+            mChain[slot] = mBuckets[bucket];
+            mBuckets[bucket] = slot;
+
+            mPrevious[slot] = NONE;
+            mNext[slot] = mHead;
+            if (mHead != NONE) {
+                mPrevious[mHead] = slot;
+            }
+            mHead = slot;
+            if (mTail == NONE) {
+                mTail = slot;
+            }
+            mSize++;
+        } else {
+            moveToHead(slot);
+        }
+        mProducts[slot] = product;
+    }
+
+    private int find(long id) {
+        for (int slot = mBuckets[bucket(id)]; slot != NONE; slot = mChain[slot]) {
+            if (mIds[slot] == id) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    private int bucket(long id) {
+        // Mix the bits, IDs are sequential
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (mBuckets.length - 1);
+    }
+
+    private void moveToHead(int slot) {
+        if (slot == mHead) {
+            return;
+        }
+        // Unlink from the recently used list. The slot isn't the head, so it has a previous
+        mNext[mPrevious[slot]] = mNext[slot];
+        if (mNext[slot] != NONE) {
+            mPrevious[mNext[slot]] = mPrevious[slot];
+        } else {
+            mTail = mPrevious[slot];
+        }
+        mPrevious[slot] = NONE;
+        mNext[slot] = mHead;
+        mPrevious[mHead] = slot;
+        mHead = slot;
+    }
+
+    /**
+     * Remove the product in the slot from the bucket and recently used list, and free the slot.
+     */
+    private void unlink(int slot) {
+        int bucket = bucket(mIds[slot]);
+        if (mBuckets[bucket] == slot) {
+            mBuckets[bucket] = mChain[slot];
+        } else {
+            int previous = mBuckets[bucket];
+            while (mChain[previous] != slot) {
+                previous = mChain[previous];
+            }
+            mChain[previous] = mChain[slot];
+        }
+
+        if (mPrevious[slot] != NONE) {
+            mNext[mPrevious[slot]] = mNext[slot];
+        } else {
+            mHead = mNext[slot];
+        }
+        if (mNext[slot] != NONE) {
+            mPrevious[mNext[slot]] = mPrevious[slot];
+        } else {
+            mTail = mPrevious[slot];
+        }
+
+        mProducts[slot] = null;
+        mNext[slot] = mFree;
+        mFree = slot;
+        mSize--;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.android.inventoryapp2.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency and row counts of the operations of {@link InventoryProvider}, per operation and per
+ * URI pattern, plus counters of change notifications and cursor window fills.
+ *
+ * Recording only updates atomic counters, so it never blocks the provider's threads. Latencies
+ * go into histograms with power of two buckets of microseconds, which is precise enough to
+ * tell a 1 ms query from a 10 ms one at a fixed memory cost.
+ *
+ * Metrics are disabled until {@link #setEnabled(boolean)} is called. While disabled,
+ * {@link #start()} and {@link #record(int, int, long, long)} only read a volatile flag.
+ */
+public final class ProviderMetrics {
+
+    /** Operations recorded */
+    public static final int QUERY = 0;
+    public static final int INSERT = 1;
+    public static final int BULK_INSERT = 2;
+    public static final int UPDATE = 3;
+    public static final int DELETE = 4;
+    public static final int APPLY_BATCH = 5;
+
+    private static final String[] OPERATION_NAMES =
+            { "query", "insert", "bulkInsert", "update", "delete", "applyBatch" };
+
+    /**
+     * Number of latency buckets. Bucket 0 holds latencies under 1 microsecond and bucket b
+     * latencies from 2^(b-1) up to 2^b microseconds. The last one holds everything longer.
+     */
+    static final int BUCKETS = 28;
+
+    /** Returned by {@link #start()} when metrics are disabled */
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    /** Names of the URI patterns, by match index */
+    private final String[] mMatchNames;
+
+    private volatile boolean mEnabled;
+
+    /** Latency histograms, BUCKETS counters per operation and match */
+    private final AtomicLongArray mHistograms;
+
+    /** Number of operations, total latency and rows returned or changed, per operation and match */
+    private final AtomicLongArray mCounts;
+    private final AtomicLongArray mTotalNanos;
+    private final AtomicLongArray mRows;
+
+    private final AtomicLong mNotificationCount = new AtomicLong();
+    private final AtomicLong mWindowFillCount = new AtomicLong();
+    private final AtomicLong mWindowRowCount = new AtomicLong();
+
+    /**
+     * Create metrics for the URI patterns with the given names. Operations are recorded with
+     * the index of their pattern in the array.
+     */
+    public ProviderMetrics(String[] matchNames) {
+        mMatchNames = matchNames.clone();
+        int slots = OPERATION_NAMES.length * matchNames.length;
+        mHistograms = new AtomicLongArray(slots * BUCKETS);
+        mCounts = new AtomicLongArray(slots);
+        mTotalNanos = new AtomicLongArray(slots);
+        mRows = new AtomicLongArray(slots);
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Start or stop recording. The metrics recorded so far are kept.
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Returns the start time of an operation, to pass to {@link #record(int, int, long, long)}
+     * when it completes.
+     */
+    public long start() {
+        return mEnabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Record an operation that started at the given time.
+     *
+     * @param operation one of the operation constants
+     * @param match     index of the URI pattern of the operation
+     * @param start     value returned by {@link #start()}, nothing is recorded if metrics were
+     *                  disabled then
+     * @param rows      number of rows returned or changed
+     */
+    public void record(int operation, int match, long start, long rows) {
+        if (start == NOT_STARTED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        int slot = slot(operation, match);
+        mCounts.incrementAndGet(slot);
+        mTotalNanos.addAndGet(slot, nanos);
+        mRows.addAndGet(slot, rows);
+        mHistograms.incrementAndGet(slot * BUCKETS + bucket(nanos / 1000));
+    }
+
+    /**
+     * Count a change notification sent by the provider.
+     */
+    public void countNotification() {
+        if (mEnabled) {
+            mNotificationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Count a cursor window filled with the given number of rows.
+     */
+    public void countWindowFill(int rows) {
+        if (mEnabled) {
+            mWindowFillCount.incrementAndGet();
+            mWindowRowCount.addAndGet(rows);
+        }
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+            mTotalNanos.set(i, 0);
+            mRows.set(i, 0);
+        }
+        for (int i = 0; i < mHistograms.length(); i++) {
+            mHistograms.set(i, 0);
+        }
+        mNotificationCount.set(0);
+        mWindowFillCount.set(0);
+        mWindowRowCount.set(0);
+    }
+
+    public int getOperationCount() {
+        return OPERATION_NAMES.length;
+    }
+
+    public String getOperationName(int operation) {
+        return OPERATION_NAMES[operation];
+    }
+
+    public int getMatchCount() {
+        return mMatchNames.length;
+    }
+
+    public String getMatchName(int match) {
+        return mMatchNames[match];
+    }
+
+    /**
+     * Returns the number of operations recorded.
+     */
+    public long getCount(int operation, int match) {
+        return mCounts.get(slot(operation, match));
+    }
+
+    /**
+     * Returns the number of rows returned or changed by the operations recorded.
+     */
+    public long getRows(int operation, int match) {
+        return mRows.get(slot(operation, match));
+    }
+
+    /**
+     * Returns the total latency of the operations recorded, in nanoseconds.
+     */
+    public long getTotalNanos(int operation, int match) {
+        return mTotalNanos.get(slot(operation, match));
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the latency of the operations recorded,
+     * in microseconds, or 0 if none were recorded. The bound is the end of the histogram bucket
+     * the percentile falls in, so it is at most twice the actual latency.
+     *
+     * @param fraction percentile as a fraction, e.g. 0.99 for the 99th percentile
+     */
+    public long getPercentileMicros(int operation, int match, double fraction) {
+        int base = slot(operation, match) * BUCKETS;
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = mHistograms.get(base + b);
+            total += counts[b];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return 1L << b;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+
+    public long getNotificationCount() {
+        return mNotificationCount.get();
+    }
+
+    public long getWindowFillCount() {
+        return mWindowFillCount.get();
+    }
+
+    public long getWindowRowCount() {
+        return mWindowRowCount.get();
+    }
+
+    private int slot(int operation, int match) {
+        return operation * mMatchNames.length + match;
+    }
+
+    /**
+     * Returns the histogram bucket of a latency in microseconds.
+     */
+    static int bucket(long micros) {
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return bucket < BUCKETS ? bucket : BUCKETS - 1;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.android.inventoryapp2.data;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Times the cold start of the app, from the start of its process to the first frame showing
+ * products of the catalog, split at the milestones in between.
+ *
+ * Each milestone is marked once per process, the first time it is reached, in
+ * {@link SystemClock#uptimeMillis()}. Once the catalog rows are drawn, the time from the start
+ * of the process to each milestone is written to Logcat under the {@link #LOG_TAG} tag. Before
+ * Nougat the start of the process isn't known, and the creation of the provider, which is
+ * created before any activity, stands for it.
+ */
+public final class StartupTrace {
+
+    /** Tag for the startup times */
+    public static final String LOG_TAG = "Startup";
+
+    /** The provider was created, the first code of the app to run */
+    public static final int PROVIDER_CREATED = 0;
+
+    /** The catalog activity was created, before its layout is inflated */
+    public static final int ACTIVITY_CREATED = 1;
+
+    /** The snapshot of the first page of the catalog was read, if there is one */
+    public static final int SNAPSHOT_READ = 2;
+
+    /** The database was opened, and created or upgraded if needed */
+    public static final int DATABASE_OPENED = 3;
+
+    /** The first page of the catalog was read, or the snapshot of it found current */
+    public static final int FIRST_PAGE_READ = 4;
+
+    /** The first frame of the catalog activity was drawn, with or without products */
+    public static final int FIRST_FRAME = 5;
+
+    /** The first frame showing the products of the catalog, from the snapshot or not, was drawn */
+    public static final int CATALOG_DRAWN = 6;
+
+    /** Names of the milestones in the log, by milestone */
+    private static final String[] NAMES = { "provider", "activity", "snapshot", "database", "first page",
+            "first frame", "catalog drawn" };
+
+    /** Time each milestone was reached, or 0 if it wasn't yet */
+    private static final long[] sMillis = new long[NAMES.length];
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Mark the given milestone as reached now, unless it already was. Marking
+     * {@link #CATALOG_DRAWN} writes the startup times to Logcat.
+     */
+    public static void mark(int milestone) {
+        long now = SystemClock.uptimeMillis();
+        synchronized (sMillis) {
+            if (sMillis[milestone] != 0) {
+                return;
+            }
+            sMillis[milestone] = now;
+        }
+        if (milestone == CATALOG_DRAWN) {
+            Log.i(LOG_TAG, summary());
+        }
+    }
+
+    /**
+     * Returns whether the given milestone was reached in this process.
+     */
+    public static boolean isMarked(int milestone) {
+        synchronized (sMillis) {
+            return sMillis[milestone] != 0;
+        }
+    }
+
+    /**
+     * Returns the time from the start of the process to the given milestone, or -1 if it
+     * wasn't reached.
+     */
+    public static long getMillis(int milestone) {
+        synchronized (sMillis) {
+            return sMillis[milestone] == 0 ? -1 : sMillis[milestone] - processStartMillis();
+        }
+    }
+
+    /**
+     * Returns the time the process started, or the provider was created if that isn't known.
+     * Guarded by sMillis.
+     */
+    private static long processStartMillis() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Process.getStartUptimeMillis();
+        }
+        return sMillis[PROVIDER_CREATED];
+    }
+
+    /**
+     * Returns the time from the start of the process to each milestone reached.
+     */
+    private static String summary() {
+        StringBuilder summary = new StringBuilder("Cold start:");
+        synchronized (sMillis) {
+            for (int i = 0; i < NAMES.length; i++) {
+                if (sMillis[i] != 0) {
+                    summary.append(i == 0 ? " " : ", ").append(NAMES[i]).append(' ')
+                            .append(sMillis[i] - processStartMillis()).append(" ms");
+                }
+            }
+        }
+        return summary.toString();
+    }
+}
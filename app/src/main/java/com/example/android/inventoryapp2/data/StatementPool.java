@@ -0,0 +1,103 @@
+package com.example.android.inventoryapp2.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Pool of compiled {@link SQLiteStatement}s, keyed by their SQL, for the statements a provider
+ * runs over and over with different arguments: the single product writes and the sales.
+ *
+ * SQLite itself caches the compiled statements of each connection by their SQL, but every new
+ * {@link SQLiteStatement} still takes a connection from the pool to look its SQL up, and
+ * {@link SQLiteDatabase#update} and {@link SQLiteDatabase#insert} build the SQL and its bind
+ * arguments again from the content values on every call. A statement from the pool is bound and
+ * run as it is.
+ *
+ * A statement is used by one thread at a time: it is taken with
+ * {@link #acquire(SQLiteDatabase, String)} and must be given back with
+ * {@link #release(SQLiteDatabase, String, SQLiteStatement)}, in a finally block. Statements are
+ * compiled against one database, and are dropped if the database changes. All methods are
+ * thread safe.
+ */
+final class StatementPool {
+
+    /** Most idle statements kept for one SQL, enough for the threads writing at the same time */
+    private static final int MAX_IDLE_STATEMENTS = 4;
+
+    /** Idle statements of each SQL, the most recently released last */
+    private final HashMap<String, ArrayList<SQLiteStatement>> mIdle = new HashMap<>();
+
+    /** Database the idle statements were compiled against */
+    private SQLiteDatabase mDatabase;
+
+    private long mCompileCount;
+    private long mReuseCount;
+
+    /**
+     * Returns a statement of the given SQL compiled against the given database, idle in the pool
+     * if there is one, or compiled now. The statement has no bound arguments.
+     */
+    SQLiteStatement acquire(SQLiteDatabase database, String sql) {
+        synchronized (this) {
+            if (database != mDatabase) {
+                closeIdle();
+                mDatabase = database;
+            }
+            ArrayList<SQLiteStatement> idle = mIdle.get(sql);
+            if (idle != null && !idle.isEmpty()) {
+                mReuseCount++;
+                return idle.remove(idle.size() - 1);
+            }
+            mCompileCount++;
+        }
+        // Compiling takes a database connection, which could be held by a thread waiting to
+        // release a statement, so it is done outside the lock
+        return database.compileStatement(sql);
+    }
+
+    /**
+     * Give back a statement taken with {@link #acquire(SQLiteDatabase, String)} for the given
+     * database and SQL. Its arguments are cleared, and it is closed if the pool already holds
+     * enough of them or the database changed in the meantime.
+     */
+    void release(SQLiteDatabase database, String sql, SQLiteStatement statement) {
+        statement.clearBindings();
+        synchronized (this) {
+            ArrayList<SQLiteStatement> idle = mIdle.get(sql);
+            if (idle == null) {
+                idle = new ArrayList<>(MAX_IDLE_STATEMENTS);
+                mIdle.put(sql, idle);
+            }
+            if (idle.size() < MAX_IDLE_STATEMENTS && database == mDatabase) {
+                idle.add(statement);
+                return;
+            }
+        }
+        statement.close();
+    }
+
+    /**
+     * Close the idle statements, compiled against a database that is no longer used.
+     */
+    private void closeIdle() {
+        for (ArrayList<SQLiteStatement> idle : mIdle.values()) {
+            for (SQLiteStatement statement : idle) {
+                statement.close();
+            }
+        }
+        mIdle.clear();
+    }
+
+    /** Returns the number of statements compiled because none was idle */
+    synchronized long getCompileCount() {
+        return mCompileCount;
+    }
+
+    /** Returns the number of statements taken from the pool */
+    synchronized long getReuseCount() {
+        return mReuseCount;
+    }
+}
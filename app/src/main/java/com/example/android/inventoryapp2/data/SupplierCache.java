@@ -0,0 +1,258 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.android.inventoryapp2.data.InventoryContract.SupplierEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * The suppliers table, held in memory by the whole app. There are only a handful of suppliers
+ * and every row of the catalog shows one, so they are read once rather than with every product,
+ * and looked up by ID without going to the database.
+ *
+ * The suppliers are read by the first call needing them, on the calling thread, so make it off
+ * the main thread where possible, as {@link com.example.android.inventoryapp2.InventoryLoader}
+ * does. After that they are read again in the background whenever the provider notifies a
+ * change of the suppliers, and the listeners are told on the main thread once the new
+ * suppliers are in. Until they are first read, {@link #peek(int)} looks up the suppliers
+ * {@link #offer(List) offered} from a copy such as the {@link CatalogSnapshot}, and the listeners
+ * are told once the suppliers replace them.
+ */
+public final class SupplierCache {
+
+    /**
+     * Told on the main thread when the suppliers have changed.
+     */
+    public interface Listener {
+        void onSuppliersChanged();
+    }
+
+    /**
+     * An immutable snapshot of one row of the suppliers table.
+     */
+    public static final class Supplier {
+
+        /** Row ID of the supplier, stored in the products of the supplier */
+        public final int id;
+
+        public final String name;
+
+        /** Phone of the supplier, or null if there is none */
+        public final String phone;
+
+        public Supplier(int id, String name, String phone) {
+            this.id = id;
+            this.name = name;
+            this.phone = phone;
+        }
+
+        @Override
+        public String toString() {
+            // Shown as is by the editor's supplier spinner
+            return name;
+        }
+    }
+
+    /** Cache shared by the whole app */
+    private static SupplierCache sInstance;
+
+    private final ContentResolver mResolver;
+
+    /** Reads the suppliers again after a change */
+    private final Executor mExecutor;
+
+    /** Delivers the changes on the main thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Suppliers in ID order, or null until they are first read */
+    private volatile List<Supplier> mSuppliers;
+
+    /**
+     * Suppliers indexed by ID. Supplier IDs are handed out in order, so the array is about as
+     * long as the list. Until the suppliers are first read, the offered ones, if any.
+     */
+    private volatile Supplier[] mById;
+
+    /** Listeners, only used on the main thread */
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    /**
+     * Returns the cache shared by the whole app.
+     */
+    public static synchronized SupplierCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SupplierCache(context.getApplicationContext().getContentResolver(),
+                    Executors.newSingleThreadExecutor());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create a cache of the suppliers read through the given resolver, read again on the given
+     * executor when they change.
+     */
+    SupplierCache(ContentResolver resolver, Executor executor) {
+        mResolver = resolver;
+        mExecutor = executor;
+        mResolver.registerContentObserver(SupplierEntry.CONTENT_URI, true, new ContentObserver(mMainHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                mExecutor.execute(mReload);
+            }
+        });
+    }
+
+    /**
+     * Returns the suppliers in ID order, reading them first if they haven't been yet.
+     */
+    public List<Supplier> getSuppliers() {
+        List<Supplier> suppliers = mSuppliers;
+        if (suppliers == null) {
+            suppliers = load();
+        }
+        return suppliers;
+    }
+
+    /**
+     * Returns the supplier with the given ID, or null if there is none, reading the suppliers
+     * first if they haven't been yet. Doesn't allocate once they are read.
+     */
+    public Supplier get(int id) {
+        if (mSuppliers == null) {
+            load();
+        }
+        return peek(id);
+    }
+
+    /**
+     * Returns the supplier with the given ID, or null if there is none or the suppliers haven't
+     * been read yet, nor offered. Never reads them, so it can be called on the main thread.
+     */
+    public Supplier peek(int id) {
+        Supplier[] byId = mById;
+        return byId != null && id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    /**
+     * Look the given suppliers up with {@link #peek(int)} until the suppliers are read, unless
+     * they already were. They are read from a copy that may be out of date, so the listeners are
+     * told once the suppliers replace them.
+     */
+    public synchronized void offer(List<Supplier> suppliers) {
+        if (mSuppliers == null) {
+            mById = index(suppliers);
+        }
+    }
+
+    /**
+     * Returns the position of the supplier with the given ID in {@link #getSuppliers()}, or -1
+     * if there is none.
+     */
+    public int indexOf(int id) {
+        List<Supplier> suppliers = getSuppliers();
+        for (int i = 0; i < suppliers.size(); i++) {
+            if (suppliers.get(i).id == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add a listener told of the changes of the suppliers. Must be called on the main thread.
+     */
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added with {@link #addListener(Listener)}. Must be called on the main
+     * thread.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Read the suppliers, unless another thread did while this one waited. Returns them.
+     */
+    private synchronized List<Supplier> load() {
+        if (mSuppliers == null) {
+            boolean offered = mById != null;
+            read();
+            if (offered) {
+                mMainHandler.post(mNotifyListeners);
+            }
+        }
+        return mSuppliers;
+    }
+
+    /**
+     * Read the suppliers from the provider and replace the ones held. Without a provider to
+     * read them from, there are no suppliers rather than a failure of every lookup.
+     */
+    private synchronized void read() {
+        List<Supplier> suppliers = new ArrayList<>();
+        Cursor cursor = mResolver.query(SupplierEntry.CONTENT_URI, SupplierEntry.COLUMNS, null, null,
+                SupplierEntry._ID);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    suppliers.add(new Supplier(cursor.getInt(0), cursor.getString(1), cursor.getString(2)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        mById = index(suppliers);
+        mSuppliers = Collections.unmodifiableList(suppliers);
+    }
+
+    /**
+     * Returns the given suppliers indexed by ID.
+     */
+    private static Supplier[] index(List<Supplier> suppliers) {
+        int length = 0;
+        for (Supplier supplier : suppliers) {
+            length = Math.max(length, supplier.id + 1);
+        }
+        Supplier[] byId = new Supplier[length];
+        for (Supplier supplier : suppliers) {
+            if (supplier.id >= 0) {
+                byId[supplier.id] = supplier;
+            }
+        }
+        return byId;
+    }
+
+    /** Tells the listeners, on the main thread */
+    private final Runnable mNotifyListeners = new Runnable() {
+        @Override
+        public void run() {
+            // Copied, so listeners can remove themselves
+            for (Listener listener : new ArrayList<>(mListeners)) {
+                listener.onSuppliersChanged();
+            }
+        }
+    };
+
+    /** Reads the suppliers again, then tells the listeners */
+    private final Runnable mReload = new Runnable() {
+        @Override
+        public void run() {
+            read();
+            mMainHandler.post(mNotifyListeners);
+        }
+    };
+}
@@ -0,0 +1,46 @@
+package com.example.android.inventoryapp2;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PriceFormatter}, checked against {@link NumberFormat}.
+ */
+public class PriceFormatterTest {
+
+    private static final long[] PRICES = {0, 1, 99, 100, 150, 250, 123456, 100000000, 9876543210L};
+
+    private Locale mDefaultLocale;
+
+    @Before
+    public void setUp() {
+        mDefaultLocale = Locale.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(mDefaultLocale);
+    }
+
+    @Test
+    public void format_matchesNumberFormat() {
+        Locale[] locales = {Locale.US, Locale.GERMANY, Locale.FRANCE, Locale.UK, Locale.JAPAN};
+        char[] buffer = new char[PriceFormatter.MAX_LENGTH];
+        for (Locale locale : locales) {
+            Locale.setDefault(locale);
+            PriceFormatter formatter = PriceFormatter.getInstance();
+            NumberFormat nf = NumberFormat.getCurrencyInstance();
+            for (long cents : PRICES) {
+                String expected = nf.format(new BigDecimal(cents).movePointLeft(2));
+                assertEquals(locale + " " + cents, expected, new String(buffer, 0, formatter.format(cents, buffer)));
+            }
+        }
+    }
+}
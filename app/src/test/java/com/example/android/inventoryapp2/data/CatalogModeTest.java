@@ -0,0 +1,105 @@
+package com.example.android.inventoryapp2.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CatalogMode}.
+ */
+public class CatalogModeTest {
+
+    private static Product newProduct(long id, String name, long price, int quantity, int supplier) {
+        return new Product(id, name, price, quantity, supplier,
+                InventoryContract.InventoryEntry.LOW_STOCK_THRESHOLD);
+    }
+
+    private static List<Long> ids(List<Product> products) {
+        List<Long> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void compare_ordersByKeyThenId() {
+        Product a = newProduct(3, "atlas", 500, 2, 0);
+        Product b = newProduct(1, "Atlas", 500, 9, 1);
+        Product c = newProduct(2, "Biology", 100, 2, 0);
+        List<Product> products = new ArrayList<>(Arrays.asList(c, a, b));
+
+        // Names ignore case, like the NOCASE index, so the ID breaks the tie
+        Collections.sort(products, CatalogMode.DEFAULT);
+        assertEquals(Arrays.asList(1L, 3L, 2L), ids(products));
+
+        Collections.sort(products, CatalogMode.DEFAULT.withSort(InventoryContract.SORT_PRICE));
+        assertEquals(Arrays.asList(2L, 1L, 3L), ids(products));
+
+        Collections.sort(products, CatalogMode.DEFAULT.withSort(InventoryContract.SORT_QUANTITY));
+        assertEquals(Arrays.asList(2L, 3L, 1L), ids(products));
+    }
+
+    @Test
+    public void compareNoCase_onlyFoldsAsciiAndComparesCodePoints() {
+        assertEquals(0, CatalogMode.compareNoCase("ABC", "abc"));
+        assertTrue(CatalogMode.compareNoCase("ab", "abc") < 0);
+        assertTrue(CatalogMode.compareNoCase("Zebra", "apple") > 0);
+        // "_" is between the upper and lower case letters, so before both once folded
+        assertTrue(CatalogMode.compareNoCase("_", "A") < 0);
+        // Other letters are not folded
+        assertTrue(CatalogMode.compareNoCase("\u00C9", "\u00E9") < 0);
+        // Code points above the surrogates sort before supplementary ones, as in UTF-8
+        assertTrue(CatalogMode.compareNoCase("\uFF21", "\uD83D\uDCDA") < 0);
+    }
+
+    @Test
+    public void matches_filtersBySupplierAndStock() {
+        Product soldOut = newProduct(1, "A", 100, 0, 0);
+        Product low = newProduct(2, "B", 100, InventoryContract.InventoryEntry.LOW_STOCK_THRESHOLD - 1, 1);
+        Product stocked = newProduct(3, "C", 100, InventoryContract.InventoryEntry.LOW_STOCK_THRESHOLD, 1);
+
+        CatalogMode inStock = CatalogMode.DEFAULT.withStock(InventoryContract.STOCK_IN);
+        assertFalse(inStock.matches(soldOut));
+        assertTrue(inStock.matches(low));
+        assertTrue(inStock.matches(stocked));
+
+        CatalogMode lowStock = CatalogMode.DEFAULT.withStock(InventoryContract.STOCK_LOW);
+        assertTrue(lowStock.matches(soldOut));
+        assertTrue(lowStock.matches(low));
+        assertFalse(lowStock.matches(stocked));
+
+        CatalogMode supplier = lowStock.withSupplier(1);
+        assertFalse(supplier.matches(soldOut));
+        assertTrue(supplier.matches(low));
+        assertTrue(supplier.withSupplier(CatalogMode.ALL_SUPPLIERS).matches(soldOut));
+    }
+
+    @Test
+    public void matches_usesTheReorderThresholdOfEachProduct() {
+        CatalogMode lowStock = CatalogMode.DEFAULT.withStock(InventoryContract.STOCK_LOW);
+        assertTrue(lowStock.matches(new Product(1, "A", 100, 10, 0, 20)));
+        assertFalse(lowStock.matches(new Product(2, "B", 100, 1, 0, 0)));
+        assertFalse(lowStock.matches(new Product(3, "C", 100, 20, 0, 20)));
+    }
+
+    @Test
+    public void equals_comparesEveryField() {
+        CatalogMode mode = new CatalogMode(InventoryContract.SORT_PRICE, 2, InventoryContract.STOCK_IN);
+        assertEquals(mode, CatalogMode.DEFAULT.withSort(InventoryContract.SORT_PRICE).withSupplier(2)
+                .withStock(InventoryContract.STOCK_IN));
+        assertEquals(mode.hashCode(), new CatalogMode(InventoryContract.SORT_PRICE, 2, InventoryContract.STOCK_IN).hashCode());
+        assertNotEquals(mode, mode.withStock(null));
+        assertNotEquals(mode, mode.withSupplier(CatalogMode.ALL_SUPPLIERS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsUnknownSort() {
+        new CatalogMode("_id", CatalogMode.ALL_SUPPLIERS, null);
+    }
+}
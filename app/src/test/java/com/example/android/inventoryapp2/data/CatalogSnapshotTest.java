@@ -0,0 +1,125 @@
+package com.example.android.inventoryapp2.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the file layout of {@link CatalogSnapshot}.
+ */
+public class CatalogSnapshotTest {
+
+    private static final List<Product> PRODUCTS = Arrays.asList(
+            new Product(7, "Atlas", 2599, 3, 0, 5),
+            new Product(2, "Biolog\u00EDa \uD83D\uDCDA", 0, 0, 2, 0),
+            new Product(Long.MAX_VALUE, "", Long.MAX_VALUE, Integer.MAX_VALUE, 1, Integer.MIN_VALUE));
+
+    private static final List<SupplierCache.Supplier> SUPPLIERS = Arrays.asList(
+            new SupplierCache.Supplier(0, "Pearson", "+44 20 7010 2000"),
+            new SupplierCache.Supplier(1, "Oxford \u00C9ditions", null),
+            new SupplierCache.Supplier(2, "", ""));
+
+    private static final CatalogMode MODE = CatalogMode.DEFAULT
+            .withSort(InventoryContract.SORT_PRICE)
+            .withSupplier(2)
+            .withStock(InventoryContract.STOCK_LOW);
+
+    @Test
+    public void decode_returnsTheEncodedPage() {
+        CatalogSnapshot.Page page = CatalogSnapshot.decode(
+                CatalogSnapshot.encode(new CatalogSnapshot.Page(-42, MODE, 50, PRODUCTS, true, SUPPLIERS)));
+
+        assertEquals(-42, page.version);
+        assertEquals(MODE, page.mode);
+        assertEquals(50, page.pageSize);
+        assertTrue(page.mayHaveMore);
+        assertEquals(PRODUCTS.size(), page.products.size());
+        for (int i = 0; i < PRODUCTS.size(); i++) {
+            Product expected = PRODUCTS.get(i);
+            Product actual = page.products.get(i);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.name, actual.name);
+            assertEquals(expected.price, actual.price);
+            assertEquals(expected.quantity, actual.quantity);
+            assertEquals(expected.supplier, actual.supplier);
+            assertEquals(expected.reorderThreshold, actual.reorderThreshold);
+        }
+        assertEquals(SUPPLIERS.size(), page.suppliers.size());
+        for (int i = 0; i < SUPPLIERS.size(); i++) {
+            assertEquals(SUPPLIERS.get(i).id, page.suppliers.get(i).id);
+            assertEquals(SUPPLIERS.get(i).name, page.suppliers.get(i).name);
+            assertEquals(SUPPLIERS.get(i).phone, page.suppliers.get(i).phone);
+        }
+    }
+
+    @Test
+    public void decode_keepsAModeWithoutStockFilter() {
+        CatalogSnapshot.Page page = CatalogSnapshot.decode(CatalogSnapshot.encode(
+                new CatalogSnapshot.Page(1, CatalogMode.DEFAULT, 50, Collections.<Product>emptyList(), false,
+                        Collections.<SupplierCache.Supplier>emptyList())));
+
+        assertEquals(CatalogMode.DEFAULT, page.mode);
+        assertNull(page.mode.stock);
+        assertTrue(page.products.isEmpty());
+        assertTrue(page.suppliers.isEmpty());
+        assertFalse(page.mayHaveMore);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsATruncatedPage() {
+        ByteBuffer buffer = CatalogSnapshot.encode(new CatalogSnapshot.Page(1, MODE, 50, PRODUCTS, true, SUPPLIERS));
+        CatalogSnapshot.decode(ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.capacity() - 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsAnotherDatabaseVersion() {
+        ByteBuffer buffer = CatalogSnapshot.encode(new CatalogSnapshot.Page(1, MODE, 50, PRODUCTS, true, SUPPLIERS));
+        // The database version follows the magic and the format
+        buffer.putInt(8, InventoryDbHelper.DATABASE_VERSION - 1);
+        CatalogSnapshot.decode(ByteBuffer.wrap(buffer.array()));
+    }
+
+    @Test
+    public void readFile_mapsTheWrittenFile() throws IOException {
+        File file = File.createTempFile("catalog", ".snapshot");
+        try {
+            CatalogSnapshot.writeFile(file, new CatalogSnapshot.Page(3, MODE, 50, PRODUCTS, false, SUPPLIERS));
+            CatalogSnapshot.Page page = CatalogSnapshot.readFile(file);
+
+            assertNotNull(page);
+            assertEquals(3, page.version);
+            assertEquals(PRODUCTS.get(1).name, page.products.get(1).name);
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readFile_returnsNullForAMissingFile() throws IOException {
+        File file = File.createTempFile("catalog", ".snapshot");
+        file.delete();
+        assertNull(CatalogSnapshot.readFile(file));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readFile_rejectsADamagedFile() throws IOException {
+        File file = File.createTempFile("catalog", ".snapshot");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(new byte[] { 'I', 'C', 'S' });
+            out.close();
+            CatalogSnapshot.readFile(file);
+        } finally {
+            file.delete();
+        }
+    }
+}
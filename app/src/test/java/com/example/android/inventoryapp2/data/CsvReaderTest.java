@@ -0,0 +1,88 @@
+package com.example.android.inventoryapp2.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CsvReader}.
+ */
+public class CsvReaderTest {
+
+    private static CsvReader newReader(String csv, int bufferSize) throws IOException {
+        return new CsvReader(Channels.newChannel(new ByteArrayInputStream(csv.getBytes("UTF-8"))),
+                bufferSize, 1024);
+    }
+
+    private static List<String> fields(CsvReader reader) {
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < reader.getFieldCount(); i++) {
+            fields.add(reader.getField(i));
+        }
+        return fields;
+    }
+
+    @Test
+    public void readRecord_splitsPlainAndQuotedFields() throws Exception {
+        CsvReader reader = newReader("\uFEFFname,price\r\n"
+                + "\"Atlas, 2nd edition\",12.50\n"
+                + "\"Say \"\"hi\"\"\",\n"
+                + "\"Two\nlines\",1", 8);
+
+        assertTrue(reader.readRecord());
+        assertEquals(Arrays.asList("name", "price"), fields(reader));
+        assertTrue(reader.readRecord());
+        assertEquals(Arrays.asList("Atlas, 2nd edition", "12.50"), fields(reader));
+        assertTrue(reader.readRecord());
+        assertEquals(Arrays.asList("Say \"hi\"", ""), fields(reader));
+        assertTrue(reader.readRecord());
+        assertEquals(Arrays.asList("Two\nlines", "1"), fields(reader));
+        assertEquals(5, reader.getLineNumber());
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void readRecord_decodesMultiByteCharactersAcrossBuffers() throws Exception {
+        CsvReader reader = newReader("Caf\u00E9,\u00DCn\u00EFc\u00F6d\u00E9\n", 4);
+
+        assertTrue(reader.readRecord());
+        assertEquals(Arrays.asList("Caf\u00E9", "\u00DCn\u00EFc\u00F6d\u00E9"), fields(reader));
+        assertFalse(reader.readRecord());
+    }
+
+    @Test(expected = IOException.class)
+    public void readRecord_rejectsRecordLongerThanMaximum() throws Exception {
+        char[] name = new char[2000];
+        Arrays.fill(name, 'a');
+        newReader(new String(name) + "\n", 16).readRecord();
+    }
+
+    @Test
+    public void skipTo_resumesAtOffsetOfRecord() throws Exception {
+        String csv = "name\nfirst\nsecond\nthird\n";
+        CsvReader reader = newReader(csv, 8);
+        reader.readRecord();
+        reader.readRecord();
+        long offset = reader.getOffset();
+        long line = reader.getLineNumber();
+
+        // A new reader skips the header and first record
+        CsvReader resumed = newReader(csv, 8);
+        resumed.readRecord();
+        resumed.skipTo(offset, line);
+        assertTrue(resumed.readRecord());
+        assertEquals("second", resumed.getField(0));
+        assertEquals(3, resumed.getLineNumber());
+        assertTrue(resumed.readRecord());
+        assertEquals("third", resumed.getField(0));
+        assertEquals(csv.length(), resumed.getOffset());
+        assertFalse(resumed.readRecord());
+    }
+}
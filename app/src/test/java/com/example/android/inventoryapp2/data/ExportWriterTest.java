@@ -0,0 +1,92 @@
+package com.example.android.inventoryapp2.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ExportWriter}.
+ */
+public class ExportWriterTest {
+
+    private static void writeProduct(ExportWriter writer, long id, String name, int price,
+                                     int quantity, String supplier, String phone) throws IOException {
+        writer.writeProduct(id, name.toCharArray(), name.length(), price, quantity, supplier.toCharArray(),
+                supplier.length(), phone.toCharArray(), phone.length());
+    }
+
+    @Test
+    public void csv_quotesFieldsAndReadsBackWithCsvReader() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // A small buffer, so that products are split across flushes
+        ExportWriter writer = new ExportWriter(out, ExportWriter.FORMAT_CSV, 16);
+        writer.writeStart();
+        writeProduct(writer, 1, "Atlas, \"2nd\" edition", 1250, 40, "Pearson", "360-220-8090");
+        writeProduct(writer, 2, "Caf\u00E9 \uD83D\uDCDA", 5, 0, "American Book Co.", "");
+        writer.finish();
+
+        assertEquals(2, writer.getCount());
+        assertEquals("id,name,price,quantity,supplier,phone\n"
+                + "1,\"Atlas, \"\"2nd\"\" edition\",12.50,40,Pearson,360-220-8090\n"
+                + "2,Caf\u00E9 \uD83D\uDCDA,0.05,0,American Book Co.,\n", out.toString("UTF-8"));
+
+        CsvReader reader = new CsvReader(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())),
+                16, 1024);
+        reader.readRecord();
+        assertTrue(reader.readRecord());
+        assertEquals("Atlas, \"2nd\" edition", reader.getField(1));
+        assertEquals(1250, CatalogImporter.parseCents(reader.getField(2)));
+        assertEquals("Pearson", reader.getField(4));
+        assertTrue(reader.readRecord());
+        assertEquals("Caf\u00E9 \uD83D\uDCDA", reader.getField(1));
+        assertEquals("American Book Co.", reader.getField(4));
+    }
+
+    @Test
+    public void json_escapesStringsIntoAnArray() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportWriter writer = new ExportWriter(out, ExportWriter.FORMAT_JSON, 16);
+        writer.writeStart();
+        writeProduct(writer, Long.MAX_VALUE, "Say \"hi\"\\\n\u0001", 100, Integer.MIN_VALUE,
+                "Taylor and Brook", "1");
+        writeProduct(writer, 3, "B", 0, 1, "7", "2");
+        writer.finish();
+
+        assertEquals("[\n"
+                + "{\"id\":9223372036854775807,\"name\":\"Say \\\"hi\\\"\\\\\\n\\u0001\",\"price\":1.00,"
+                + "\"quantity\":-2147483648,\"supplier\":\"Taylor and Brook\",\"phone\":\"1\"},\n"
+                + "{\"id\":3,\"name\":\"B\",\"price\":0.00,\"quantity\":1,\"supplier\":\"7\",\"phone\":\"2\"}\n"
+                + "]\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void csv_quotesSupplierNames() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportWriter writer = new ExportWriter(out, ExportWriter.FORMAT_CSV, 16);
+        writer.writeStart();
+        // A supplier renamed by the user, and a product without one
+        writeProduct(writer, 1, "Atlas", 100, 1, "Brook, Taylor & Sons", "1");
+        writeProduct(writer, 2, "Poetry", 100, 1, "", "");
+        writer.finish();
+
+        assertEquals("id,name,price,quantity,supplier,phone\n"
+                + "1,Atlas,1.00,1,\"Brook, Taylor & Sons\",1\n"
+                + "2,Poetry,1.00,1,,\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void json_writesEmptyArrayWithoutProducts() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportWriter writer = new ExportWriter(out, ExportWriter.FORMAT_JSON, 16);
+        writer.writeStart();
+        writer.finish();
+
+        assertEquals("[]\n", out.toString("UTF-8"));
+        assertEquals(0, writer.getCount());
+    }
+}
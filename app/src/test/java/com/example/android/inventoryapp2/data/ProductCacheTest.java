@@ -0,0 +1,97 @@
+package com.example.android.inventoryapp2.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ProductCache}.
+ */
+public class ProductCacheTest {
+
+    private static Product newProduct(long id, int quantity) {
+        return new Product(id, "Book " + id, 400, quantity, InventoryContract.InventoryEntry.SUPPLIER_PEARSON,
+                InventoryContract.InventoryEntry.LOW_STOCK_THRESHOLD);
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsed() {
+        ProductCache cache = new ProductCache(3);
+        cache.put(newProduct(1, 1));
+        cache.put(newProduct(2, 1));
+        cache.put(newProduct(3, 1));
+
+        // Use 1, so 2 is the least recently used
+        assertNotNull(cache.get(1));
+        cache.put(newProduct(4, 1));
+
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(4));
+        assertEquals(3, cache.size());
+        assertEquals(4, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void put_replacesProductWithSameId() {
+        ProductCache cache = new ProductCache(2);
+        cache.put(newProduct(7, 1));
+        cache.put(newProduct(7, 2));
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.get(7).quantity);
+    }
+
+    @Test
+    public void putIfUnchanged_dropsProductReadBeforeAWrite() {
+        ProductCache cache = new ProductCache(2);
+        long generation = cache.getGeneration();
+
+        // A writer changes the product while a reader is reading it from the database
+        cache.remove(5);
+        assertFalse(cache.putIfUnchanged(newProduct(5, 1), generation));
+        assertNull(cache.peek(5));
+
+        assertTrue(cache.putIfUnchanged(newProduct(5, 1), cache.getGeneration()));
+        assertNotNull(cache.peek(5));
+    }
+
+    @Test
+    public void confirm_dropsProductCachedFromTheRowBeforeTheCommit() {
+        ProductCache cache = new ProductCache(4);
+        Product written = newProduct(5, 2);
+        cache.put(written);
+        cache.confirm(5, written);
+        assertSame(written, cache.peek(5));
+
+        // A reader cached the row as it was before the commit of a removal
+        cache.remove(5);
+        long generation = cache.getGeneration();
+        assertTrue(cache.putIfUnchanged(newProduct(5, 1), generation));
+        cache.confirm(5, null);
+        assertNull(cache.peek(5));
+        assertFalse(cache.putIfUnchanged(newProduct(5, 1), generation));
+    }
+
+    @Test
+    public void remove_andClear() {
+        ProductCache cache = new ProductCache(4);
+        for (long id = 1; id <= 4; id++) {
+            cache.put(newProduct(id, 1));
+        }
+        cache.remove(2);
+        assertNull(cache.peek(2));
+        assertEquals(3, cache.size());
+
+        // Freed slots are reused without evicting
+        cache.put(newProduct(5, 1));
+        assertEquals(0, cache.getEvictionCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.peek(1));
+    }
+}
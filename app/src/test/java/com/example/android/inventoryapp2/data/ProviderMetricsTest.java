@@ -0,0 +1,91 @@
+package com.example.android.inventoryapp2.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ProviderMetrics}.
+ */
+public class ProviderMetricsTest {
+
+    private static ProviderMetrics newMetrics() {
+        return new ProviderMetrics(new String[] { "inventory", "inventory/#" });
+    }
+
+    @Test
+    public void bucket_isPowerOfTwoOfMicroseconds() {
+        assertEquals(0, ProviderMetrics.bucket(0));
+        assertEquals(1, ProviderMetrics.bucket(1));
+        assertEquals(2, ProviderMetrics.bucket(2));
+        assertEquals(2, ProviderMetrics.bucket(3));
+        assertEquals(11, ProviderMetrics.bucket(1024));
+        assertEquals(ProviderMetrics.BUCKETS - 1, ProviderMetrics.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void record_nothingWhileDisabled() {
+        ProviderMetrics metrics = newMetrics();
+        metrics.record(ProviderMetrics.QUERY, 1, metrics.start(), 1);
+        metrics.countNotification();
+        metrics.countWindowFill(10);
+
+        assertEquals(0, metrics.getCount(ProviderMetrics.QUERY, 1));
+        assertEquals(0, metrics.getNotificationCount());
+        assertEquals(0, metrics.getWindowFillCount());
+        assertEquals(0, metrics.getPercentileMicros(ProviderMetrics.QUERY, 1, 0.5));
+    }
+
+    @Test
+    public void record_countsPerOperationAndMatch() {
+        ProviderMetrics metrics = newMetrics();
+        metrics.setEnabled(true);
+        metrics.record(ProviderMetrics.QUERY, 1, metrics.start(), 1);
+        metrics.record(ProviderMetrics.QUERY, 1, metrics.start(), 1);
+        metrics.record(ProviderMetrics.DELETE, 0, metrics.start(), 30);
+        metrics.countWindowFill(10);
+        metrics.countWindowFill(5);
+
+        assertEquals(2, metrics.getCount(ProviderMetrics.QUERY, 1));
+        assertEquals(2, metrics.getRows(ProviderMetrics.QUERY, 1));
+        assertEquals(0, metrics.getCount(ProviderMetrics.QUERY, 0));
+        assertEquals(1, metrics.getCount(ProviderMetrics.DELETE, 0));
+        assertEquals(30, metrics.getRows(ProviderMetrics.DELETE, 0));
+        assertEquals(2, metrics.getWindowFillCount());
+        assertEquals(15, metrics.getWindowRowCount());
+        assertEquals("delete", metrics.getOperationName(ProviderMetrics.DELETE));
+        assertEquals("inventory/#", metrics.getMatchName(1));
+    }
+
+    @Test
+    public void getPercentileMicros_returnsBucketUpperBound() {
+        ProviderMetrics metrics = newMetrics();
+        metrics.setEnabled(true);
+        // 98 operations of about 100 us and 2 of about 10 ms, started in the past
+        for (int i = 0; i < 98; i++) {
+            metrics.record(ProviderMetrics.QUERY, 0, System.nanoTime() - 100000, 1);
+        }
+        for (int i = 0; i < 2; i++) {
+            metrics.record(ProviderMetrics.QUERY, 0, System.nanoTime() - 10000000, 1);
+        }
+
+        long p50 = metrics.getPercentileMicros(ProviderMetrics.QUERY, 0, 0.5);
+        long p99 = metrics.getPercentileMicros(ProviderMetrics.QUERY, 0, 0.99);
+        assertTrue(p50 >= 100 && p50 < 10000);
+        assertTrue(p99 >= 10000 && p99 <= 4 * 10000);
+    }
+
+    @Test
+    public void reset_forgetsEverything() {
+        ProviderMetrics metrics = newMetrics();
+        metrics.setEnabled(true);
+        metrics.record(ProviderMetrics.INSERT, 0, metrics.start(), 1);
+        metrics.countNotification();
+        metrics.reset();
+
+        assertTrue(metrics.isEnabled());
+        assertEquals(0, metrics.getCount(ProviderMetrics.INSERT, 0));
+        assertEquals(0, metrics.getNotificationCount());
+        assertEquals(0, metrics.getPercentileMicros(ProviderMetrics.INSERT, 0, 0.99));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.android.inventoryapp2;
+
+import com.example.android.inventoryapp2.benchmark.Harness;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Benchmarks of the work {@link InventoryAdapter#onBindViewHolder} does to turn a product into
+ * the text of its row. Setting the text on the views needs the Android framework and isn't
+ * measured. This class is in the app's package to reach {@link PriceFormatter}.
+ */
+public final class BindBenchmarks {
+
+    /** Row text shared by every row, as in strings.xml */
+    private static final char[] PHONE_PREFIX = "Phone: ".toCharArray();
+    private static final char[] IN_STOCK_SUFFIX = " in stock".toCharArray();
+
+    /** Number of rows bound for a page of the catalog */
+    private static final int PAGE_SIZE = 50;
+
+    /** Buffers of a row, like the ones of InventoryAdapter.ViewHolder */
+    private final char[] mPhoneChars = new char[64];
+    private final char[] mPriceChars = new char[PriceFormatter.MAX_LENGTH];
+    private final char[] mQuantityChars = new char[11 + IN_STOCK_SUFFIX.length];
+
+    /** Keeps the text lengths used, so the JIT can't drop the formatting */
+    private long mLengths;
+
+    private BindBenchmarks() {
+    }
+
+    /**
+     * Time formatting prices on their own.
+     */
+    public static void runPrice(Harness harness) throws Exception {
+        final BindBenchmarks bind = new BindBenchmarks();
+        final PriceFormatter formatter = PriceFormatter.getInstance();
+        harness.measure("bind.price", 0, 10, 20, 10000, new Harness.Operation() {
+            @Override
+            public void run(int index) {
+                bind.mLengths += formatter.format(index * 37L, bind.mPriceChars);
+            }
+        });
+    }
+
+    /**
+     * Time reading a page of products and formatting the text of their rows. The phone of a
+     * product is looked up in the given phones of the suppliers by the supplier ID in the fifth
+     * column of the page, like InventoryAdapter does in SupplierCache, or read from the sixth
+     * column if there are no phones.
+     */
+    public static void runPage(Harness harness, Connection connection, final int rows, String name,
+                               String pageQuery, final String[] supplierPhones) throws Exception {
+        final BindBenchmarks bind = new BindBenchmarks();
+        final PreparedStatement page = connection.prepareStatement(pageQuery);
+        harness.measure(name, rows, 5, 20, 10, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                page.setLong(1, (index * 7919L) % rows);
+                page.setInt(2, PAGE_SIZE);
+                ResultSet result = page.executeQuery();
+                try {
+                    while (result.next()) {
+                        String phone;
+                        if (supplierPhones != null) {
+                            int supplier = result.getInt(5);
+                            phone = supplier >= 0 && supplier < supplierPhones.length
+                                    ? supplierPhones[supplier] : null;
+                        } else {
+                            phone = result.getString(6);
+                        }
+                        bind.bindRow(result.getLong(3), result.getInt(4), phone);
+                    }
+                } finally {
+                    result.close();
+                }
+            }
+        });
+        page.close();
+    }
+
+    /**
+     * Format the text of a row the way InventoryAdapter.onBindViewHolder() does.
+     */
+    private void bindRow(long price, int quantity, String phone) {
+        int phoneLength = phone != null ? phone.length() : 0;
+        System.arraycopy(PHONE_PREFIX, 0, mPhoneChars, 0, PHONE_PREFIX.length);
+        if (phoneLength > 0) {
+            phone.getChars(0, phoneLength, mPhoneChars, PHONE_PREFIX.length);
+        }
+        mLengths += PHONE_PREFIX.length + phoneLength;
+
+        mLengths += PriceFormatter.getInstance().format(price, mPriceChars);
+
+        int length = 0;
+        do {
+            mQuantityChars[length++] = (char) ('0' + quantity % 10);
+            quantity /= 10;
+        } while (quantity > 0);
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            char c = mQuantityChars[i];
+            mQuantityChars[i] = mQuantityChars[j];
+            mQuantityChars[j] = c;
+        }
+        System.arraycopy(IN_STOCK_SUFFIX, 0, mQuantityChars, length, IN_STOCK_SUFFIX.length);
+        mLengths += length + IN_STOCK_SUFFIX.length;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import com.example.android.inventoryapp2.BindBenchmarks;
+import com.example.android.inventoryapp2.data.ExportBenchmarks;
+import com.example.android.inventoryapp2.data.ImportBenchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.Locale;
+
+/**
+ * Runs the data layer benchmarks at each catalog size and writes the results as JSON.
+ *
+ * Usage: BenchmarkRunner [--sizes 1000,100000,1000000] [--out directory]
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String sizes = "1000,100000,1000000";
+        File out = new File("benchmark-results");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if ("--sizes".equals(args[i])) {
+                sizes = args[i + 1];
+            } else if ("--out".equals(args[i])) {
+                out = new File(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        // Prices are formatted for the default locale, pin it so runs can be compared
+        Locale.setDefault(Locale.US);
+
+        Harness harness = new Harness();
+        File directory = Files.createTempDirectory("inventory-benchmark").toFile();
+        String sqliteVersion;
+        try {
+            BindBenchmarks.runPrice(harness);
+            MetricsBenchmarks.run(harness);
+            DbHelperBenchmarks.runCreate(harness, directory);
+
+            File file = new File(directory, "inventory.db");
+            sqliteVersion = null;
+            for (String size : sizes.split(",")) {
+                int rows = Integer.parseInt(size.trim());
+                InventoryDatabase.delete(file);
+                Connection connection = InventoryDatabase.open(file);
+                try {
+                    DatabaseMetaData metaData = connection.getMetaData();
+                    sqliteVersion = metaData.getDatabaseProductVersion();
+
+                    long start = System.nanoTime();
+                    InventoryDatabase.fill(connection, rows);
+                    System.out.printf("Filled %d rows in %d ms%n", rows, (System.nanoTime() - start) / 1000000);
+
+                    ProviderBenchmarks.run(harness, connection, rows);
+                    SummaryBenchmarks.run(harness, connection, rows);
+                    SalesBenchmarks.run(harness, connection, rows);
+                    LowStockBenchmarks.run(harness, connection, rows);
+                    BindBenchmarks.runPage(harness, connection, rows, "bind.page", InventoryDatabase.SQL_QUERY_PAGE,
+                            InventoryDatabase.supplierPhones(connection));
+                    ExportBenchmarks.run(harness, connection, directory, rows);
+                    ImportBenchmarks.run(harness, connection, directory, rows);
+                } finally {
+                    connection.close();
+                }
+                DbHelperBenchmarks.runOpen(harness, file, rows);
+                SnapshotBenchmarks.run(harness, file, directory, rows);
+                InventoryDatabase.delete(file);
+                SupplierBenchmarks.run(harness, directory, rows);
+                SortBenchmarks.run(harness, directory, rows);
+                WipeBenchmarks.run(directory, rows);
+                MaintenanceBenchmarks.run(directory, rows);
+            }
+        } finally {
+            directory.delete();
+        }
+
+        if (!out.isDirectory() && !out.mkdirs()) {
+            throw new IOException("Cannot create " + out);
+        }
+        File results = new File(out, "results.json");
+        writeJson(results, harness, sqliteVersion);
+        System.out.println("Results written to " + results);
+    }
+
+    /**
+     * Write the results with the environment they were measured in, one result per line so
+     * that two runs can also be compared with diff.
+     */
+    private static void writeJson(File file, Harness harness, String sqliteVersion) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("{\n");
+            writer.write("  \"java\": " + quote(System.getProperty("java.version")) + ",\n");
+            writer.write("  \"os\": " + quote(System.getProperty("os.name") + " "
+                    + System.getProperty("os.arch")) + ",\n");
+            writer.write("  \"sqlite\": " + quote(sqliteVersion) + ",\n");
+            writer.write("  \"results\": [\n");
+            int count = harness.getResults().size();
+            for (int i = 0; i < count; i++) {
+                Harness.Result result = harness.getResults().get(i);
+                writer.write(String.format(Locale.US, "    {\"benchmark\": %s, \"rows\": %d, "
+                                + "\"samples\": %d, \"operationsPerSample\": %d, \"minNanos\": %d, "
+                                + "\"medianNanos\": %d, \"p90Nanos\": %d}%s\n",
+                        quote(result.benchmark), result.rows, result.samples, result.operationsPerSample,
+                        result.minNanos, result.medianNanos, result.p90Nanos, i + 1 < count ? "," : ""));
+            }
+            writer.write("  ]\n");
+            writer.write("}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+/**
+ * Benchmarks of creating and opening the database, the work InventoryDbHelper does before the
+ * first query of the app.
+ */
+final class DbHelperBenchmarks {
+
+    private DbHelperBenchmarks() {
+    }
+
+    /**
+     * Time creating the schema in a new database file, as on the first launch of the app.
+     */
+    static void runCreate(Harness harness, final File directory) throws Exception {
+        harness.measure("dbHelper.create", 0, 2, 10, 1, new Harness.Operation() {
+            @Override
+            public void run(int index) throws Exception {
+                File file = new File(directory, "create-" + index + ".db");
+                InventoryDatabase.open(file).close();
+                InventoryDatabase.delete(file);
+            }
+        });
+    }
+
+    /**
+     * Time opening the database file holding the catalog, then reading its first page, as on a
+     * later launch of the app, and reading every product instead, as the catalog did before it
+     * was paged. Opening alone is timed too, the rest of each is the time of the first query.
+     */
+    static void runOpen(Harness harness, final File file, int rows) throws Exception {
+        harness.measure("dbHelper.open", rows, 2, 10, 1, new Harness.Operation() {
+            @Override
+            public void run(int index) throws Exception {
+                Connection connection = InventoryDatabase.open(file);
+                connection.close();
+            }
+        });
+        harness.measure("dbHelper.openFirstPage", rows, 2, 10, 1, new Harness.Operation() {
+            @Override
+            public void run(int index) throws Exception {
+                Connection connection = InventoryDatabase.open(file);
+                try {
+                    PreparedStatement page = connection.prepareStatement(InventoryDatabase.SQL_QUERY_PAGE);
+                    page.setLong(1, -1);
+                    page.setInt(2, 50);
+                    ProviderBenchmarks.readAll(page.executeQuery());
+                    page.close();
+                } finally {
+                    connection.close();
+                }
+            }
+        });
+        harness.measure("dbHelper.openWholeTable", rows, 1, 3, 1, new Harness.Operation() {
+            @Override
+            public void run(int index) throws Exception {
+                Connection connection = InventoryDatabase.open(file);
+                try {
+                    PreparedStatement all = connection.prepareStatement(InventoryDatabase.SQL_QUERY_PAGE);
+                    all.setLong(1, -1);
+                    all.setInt(2, -1);
+                    ProviderBenchmarks.readAll(all.executeQuery());
+                    all.close();
+                } finally {
+                    connection.close();
+                }
+            }
+        });
+    }
+}
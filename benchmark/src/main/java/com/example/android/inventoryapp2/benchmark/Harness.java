@@ -0,0 +1,94 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times benchmark operations and collects the results.
+ *
+ * Each benchmark runs its operation in samples of a fixed number of operations. The first
+ * samples only warm up the JIT and the SQLite page cache and are thrown away, the others are
+ * timed. Operations are passed the index of the operation, so they can pick their rows in a
+ * repeatable way rather than at random.
+ */
+public final class Harness {
+
+    /**
+     * A benchmarked operation.
+     */
+    public interface Operation {
+        void run(int index) throws Exception;
+    }
+
+    /**
+     * Timing of one benchmark at one catalog size.
+     */
+    public static final class Result {
+
+        /** Name of the benchmark, e.g. "provider.queryById" */
+        public final String benchmark;
+
+        /** Number of products in the catalog */
+        public final int rows;
+
+        /** Number of timed samples */
+        public final int samples;
+
+        /** Number of operations per sample */
+        public final int operationsPerSample;
+
+        /** Time per operation of the fastest, median and 90th percentile samples */
+        public final long minNanos;
+        public final long medianNanos;
+        public final long p90Nanos;
+
+        Result(String benchmark, int rows, int operationsPerSample, long[] sampleNanos) {
+            this.benchmark = benchmark;
+            this.rows = rows;
+            this.samples = sampleNanos.length;
+            this.operationsPerSample = operationsPerSample;
+            long[] sorted = sampleNanos.clone();
+            Arrays.sort(sorted);
+            minNanos = sorted[0] / operationsPerSample;
+            medianNanos = sorted[sorted.length / 2] / operationsPerSample;
+            p90Nanos = sorted[(sorted.length * 9) / 10] / operationsPerSample;
+        }
+    }
+
+    private final List<Result> mResults = new ArrayList<>();
+
+    /**
+     * Run the operation in warm-up samples, then in timed samples, and record the result.
+     */
+    public Result measure(String benchmark, int rows, int warmUpSamples, int samples,
+                          int operationsPerSample, Operation operation) throws Exception {
+        int index = 0;
+        for (int s = 0; s < warmUpSamples; s++) {
+            for (int i = 0; i < operationsPerSample; i++) {
+                operation.run(index++);
+            }
+        }
+        long[] sampleNanos = new long[samples];
+        for (int s = 0; s < samples; s++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < operationsPerSample; i++) {
+                operation.run(index++);
+            }
+            sampleNanos[s] = System.nanoTime() - start;
+        }
+
+        Result result = new Result(benchmark, rows, operationsPerSample, sampleNanos);
+        mResults.add(result);
+        System.out.printf("%-32s %9d rows  %,12d ns/op (min %,d, p90 %,d)%n", benchmark, rows,
+                result.medianNanos, result.minNanos, result.p90Nanos);
+        return result;
+    }
+
+    /**
+     * Returns the results recorded so far, in the order they were measured.
+     */
+    public List<Result> getResults() {
+        return mResults;
+    }
+}
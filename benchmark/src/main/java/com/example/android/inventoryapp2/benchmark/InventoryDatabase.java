@@ -0,0 +1,447 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * The inventory database as InventoryDbHelper creates and opens it, over JDBC.
+ *
+ * InventoryDbHelper and InventoryProvider need the Android framework, so their SQL is repeated
+ * here. Keep the schema, connection settings and statements in sync with them, or the
+ * benchmarks stop measuring what the app runs.
+ */
+public final class InventoryDatabase {
+
+    /** Database version of InventoryDbHelper */
+    static final int DATABASE_VERSION = 9;
+
+    /** Columns of the inventory table, as in InventoryContract.InventoryEntry */
+    static final String TABLE_NAME = "inventory";
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_PRODUCT_NAME = "name";
+    static final String COLUMN_PRODUCT_PRICE = "price";
+    static final String COLUMN_PRODUCT_QUANTITY = "quantity";
+    static final String COLUMN_SUPPLIER_NAME = "supplierName";
+    static final String COLUMN_SUPPLIER_PHONE = "supplierPhone";
+    static final String COLUMN_REORDER_THRESHOLD = "reorderThreshold";
+
+    /** Suppliers table, as in InventoryContract.SupplierEntry */
+    static final String TABLE_SUPPLIERS = "suppliers";
+    static final String COLUMN_NAME = "name";
+    static final String COLUMN_PHONE = "phone";
+
+    /** Products joined with the phone of their supplier, InventoryDbHelper.VIEW_PRODUCTS */
+    static final String VIEW_PRODUCTS = "inventory_products";
+
+    /** Suppliers every database starts with, in ID order */
+    private static final String[] SUPPLIER_NAMES = { "Pearson", "Taylor and Brook", "American Book Co." };
+
+    /** Full-text search table of InventoryDbHelper */
+    static final String TABLE_SEARCH = "inventory_fts";
+
+    /** Summary table of InventoryDbHelper, as in InventoryContract.SummaryEntry */
+    static final String TABLE_SUMMARY = "inventory_summary";
+
+    /** Sales ledger, as in InventoryContract.SalesEntry */
+    static final String TABLE_SALES = "sales";
+
+    /** Products low on stock, as in InventoryContract.LowStockEntry */
+    static final String TABLE_LOW_STOCK = "low_stock";
+
+    /** Version of the products, as in InventoryContract.VersionEntry */
+    static final String TABLE_VERSION = "inventory_version";
+
+    /** Reorder threshold of new products, InventoryContract.InventoryEntry.LOW_STOCK_THRESHOLD */
+    static final int LOW_STOCK_THRESHOLD = 5;
+
+    /** Columns read by the catalog, as in Product.PROJECTION */
+    static final String PRODUCT_COLUMNS = COLUMN_ID + ", " + COLUMN_PRODUCT_NAME + ", "
+            + COLUMN_PRODUCT_PRICE + ", " + COLUMN_PRODUCT_QUANTITY + ", " + COLUMN_SUPPLIER_NAME + ", "
+            + COLUMN_REORDER_THRESHOLD;
+
+    /** Columns of an export, the catalog's with the supplier by name, and the phone */
+    static final String EXPORT_COLUMNS = TABLE_NAME + "." + COLUMN_ID + ", " + TABLE_NAME + "." + COLUMN_PRODUCT_NAME
+            + ", " + COLUMN_PRODUCT_PRICE + ", " + COLUMN_PRODUCT_QUANTITY + ", ifnull(" + TABLE_SUPPLIERS + "."
+            + COLUMN_NAME + ", " + COLUMN_SUPPLIER_NAME + "), " + TABLE_SUPPLIERS + "." + COLUMN_PHONE;
+
+    /**
+     * Statements of InventoryProvider. The benchmarks never give a product its reorder threshold,
+     * so the insert leaves it out, and the products get the default like the provider gives them.
+     */
+    public static final String SQL_INSERT_PRODUCT = "INSERT INTO " + TABLE_NAME + " ("
+            + COLUMN_PRODUCT_NAME + ", " + COLUMN_PRODUCT_PRICE + ", " + COLUMN_PRODUCT_QUANTITY + ", "
+            + COLUMN_SUPPLIER_NAME + ") VALUES (?, ?, ?, ?)";
+    static final String SQL_QUERY_PRODUCT = "SELECT " + PRODUCT_COLUMNS + " FROM " + TABLE_NAME
+            + " WHERE " + COLUMN_ID + "=?";
+    static final String SQL_QUERY_PAGE = "SELECT " + PRODUCT_COLUMNS + " FROM " + VIEW_PRODUCTS
+            + " WHERE " + COLUMN_ID + ">? ORDER BY " + COLUMN_ID + " ASC LIMIT ?";
+    static final String SQL_SEARCH = "SELECT " + PRODUCT_COLUMNS + " FROM (SELECT docid,"
+            + " (length(offsets) - length(replace(offsets, ' ', '')) + 1) / 4 AS hits FROM (SELECT docid, offsets("
+            + TABLE_SEARCH + ") AS offsets FROM " + TABLE_SEARCH + " WHERE " + TABLE_SEARCH
+            + " MATCH ?)) AS matches CROSS JOIN " + VIEW_PRODUCTS + " ON " + VIEW_PRODUCTS + "." + COLUMN_ID
+            + " = matches.docid ORDER BY CASE WHEN " + COLUMN_PRODUCT_NAME + " LIKE ? THEN 0 ELSE 1 END,"
+            + " hits DESC, " + COLUMN_PRODUCT_NAME + " COLLATE NOCASE LIMIT 200";
+    static final String SQL_UPDATE_PRODUCT = "UPDATE " + TABLE_NAME + " SET "
+            + COLUMN_PRODUCT_NAME + "=?, " + COLUMN_PRODUCT_PRICE + "=? WHERE " + COLUMN_ID + "=?";
+    static final String SQL_SELL_PRODUCT = "UPDATE " + TABLE_NAME + " SET "
+            + COLUMN_PRODUCT_QUANTITY + " = " + COLUMN_PRODUCT_QUANTITY + " - ? WHERE "
+            + COLUMN_ID + " = ? AND " + COLUMN_PRODUCT_QUANTITY + " >= ?";
+    static final String SQL_RECORD_SALE = "INSERT INTO " + TABLE_SALES + " (product, units, price, soldAt) SELECT "
+            + COLUMN_ID + ", ?, " + COLUMN_PRODUCT_PRICE + ", ? FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + " = ?";
+    static final String SQL_PRODUCT_QUANTITY = "SELECT " + COLUMN_PRODUCT_QUANTITY + " FROM "
+            + TABLE_NAME + " WHERE " + COLUMN_ID + " = ?";
+    static final String SQL_DELETE_PRODUCT = "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + "=?";
+    static final String SQL_SUMMARY_SCAN = "SELECT ifnull(" + COLUMN_SUPPLIER_NAME + ", -1) AS "
+            + COLUMN_SUPPLIER_NAME + ", count(*) AS products, ifnull(sum(" + COLUMN_PRODUCT_QUANTITY
+            + "), 0) AS units, ifnull(sum(ifnull(" + COLUMN_PRODUCT_PRICE + ", 0) * " + COLUMN_PRODUCT_QUANTITY
+            + "), 0) AS value FROM " + TABLE_NAME + " GROUP BY 1";
+    static final String SQL_QUERY_SUMMARY = "SELECT " + COLUMN_SUPPLIER_NAME + ", products, units, value FROM "
+            + TABLE_SUMMARY + " WHERE products>0 ORDER BY " + COLUMN_SUPPLIER_NAME;
+    public static final String SQL_EXPORT_PAGE = "SELECT " + EXPORT_COLUMNS + " FROM " + TABLE_NAME
+            + " LEFT JOIN " + TABLE_SUPPLIERS + " ON " + TABLE_SUPPLIERS + "." + COLUMN_ID + " = " + TABLE_NAME + "."
+            + COLUMN_SUPPLIER_NAME + " WHERE " + TABLE_NAME + "." + COLUMN_ID + " > ? ORDER BY " + TABLE_NAME + "."
+            + COLUMN_ID + " LIMIT 1000";
+    public static final String SQL_FIND_PRODUCT = "SELECT ifnull((SELECT " + COLUMN_ID + " FROM "
+            + TABLE_NAME + " WHERE " + COLUMN_PRODUCT_NAME + " = ? COLLATE NOCASE AND +"
+            + COLUMN_SUPPLIER_NAME + " = ? LIMIT 1), -1)";
+    public static final String SQL_UPSERT_PRODUCT = "UPDATE " + TABLE_NAME + " SET "
+            + COLUMN_PRODUCT_PRICE + " = ifnull(?, " + COLUMN_PRODUCT_PRICE + "), "
+            + COLUMN_PRODUCT_QUANTITY + " = ifnull(?, " + COLUMN_PRODUCT_QUANTITY + ") WHERE "
+            + COLUMN_PRODUCT_NAME + " = ? COLLATE NOCASE AND +" + COLUMN_SUPPLIER_NAME + " = ?";
+    public static final String SQL_SUPPLIER_PHONE = "UPDATE " + TABLE_SUPPLIERS + " SET "
+            + COLUMN_PHONE + " = ?1 WHERE " + COLUMN_ID + " = ?2 AND " + COLUMN_PHONE + " IS NOT ?1";
+    static final String LOW_STOCK_TABLES = "(SELECT " + TABLE_LOW_STOCK + "." + COLUMN_ID + " AS " + COLUMN_ID
+            + ", product, " + COLUMN_PRODUCT_NAME + ", " + COLUMN_PRODUCT_QUANTITY + ", " + COLUMN_REORDER_THRESHOLD
+            + " FROM " + TABLE_LOW_STOCK + " LEFT JOIN " + TABLE_NAME + " ON " + TABLE_NAME + "." + COLUMN_ID
+            + " = product)";
+    static final String SQL_LOW_STOCK_AFTER = "SELECT " + COLUMN_ID + ", " + COLUMN_PRODUCT_NAME + ", "
+            + COLUMN_PRODUCT_QUANTITY + " FROM " + LOW_STOCK_TABLES + " WHERE " + COLUMN_ID + ">? ORDER BY " + COLUMN_ID;
+    static final String SQL_LOW_STOCK_IDS = "SELECT " + COLUMN_ID + " FROM " + LOW_STOCK_TABLES + " ORDER BY "
+            + COLUMN_ID;
+
+    /** Words product names are made of, so searches have realistic matches */
+    private static final String[] WORDS = { "art", "atlas", "biology", "calculus", "chemistry",
+            "dictionary", "economics", "french", "geometry", "history", "italian", "java",
+            "kitchen", "literature", "music", "novel", "physics", "poetry", "puzzle", "spanish" };
+
+    private InventoryDatabase() {
+    }
+
+    /**
+     * Open the database file with the connection settings of InventoryDbHelper.Profile.DEFAULT,
+     * creating the schema if the file is new.
+     */
+    public static Connection open(File file) throws SQLException {
+        return open(file, DATABASE_VERSION);
+    }
+
+    /**
+     * Open the database file like {@link #open(File)}, creating the schema of the given version,
+     * 4 to 8, if the file is new. Used to compare the versions.
+     */
+    static Connection open(File file, int databaseVersion) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        Statement statement = connection.createStatement();
+        try {
+            // Before the log, which writes the header of a new file
+            statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+            statement.execute("PRAGMA cache_size = -2048");
+            statement.execute("PRAGMA mmap_size = 0");
+            statement.execute("PRAGMA temp_store = MEMORY");
+            statement.execute("PRAGMA foreign_keys = ON");
+
+            ResultSet version = statement.executeQuery("PRAGMA user_version");
+            int userVersion = version.next() ? version.getInt(1) : 0;
+            version.close();
+            if (userVersion == 0) {
+                connection.setAutoCommit(false);
+                try {
+                    createSchema(statement, databaseVersion);
+                    statement.execute("PRAGMA user_version = " + databaseVersion);
+                    connection.commit();
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return connection;
+    }
+
+    /**
+     * Create the schema of the given version, 4 to 8, as InventoryDbHelper.onCreate() and its
+     * migrations leave it. Version 5 is created directly rather than by copying the products of
+     * version 4, which ends up the same on an empty database.
+     */
+    private static void createSchema(Statement statement, int version) throws SQLException {
+        if (version >= 5) {
+            statement.execute("CREATE TABLE " + TABLE_SUPPLIERS + " (" + COLUMN_ID + " INTEGER PRIMARY KEY, "
+                    + COLUMN_NAME + " TEXT NOT NULL UNIQUE COLLATE NOCASE, " + COLUMN_PHONE + " TEXT);");
+            for (int id = 0; id < SUPPLIER_NAMES.length; id++) {
+                statement.execute("INSERT INTO " + TABLE_SUPPLIERS + " (" + COLUMN_ID + ", " + COLUMN_NAME
+                        + ") VALUES (" + id + ", '" + SUPPLIER_NAMES[id] + "');");
+            }
+            statement.execute("CREATE TABLE " + TABLE_NAME + " ("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                    + COLUMN_PRODUCT_PRICE + " INTEGER, "
+                    + COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL, "
+                    + COLUMN_SUPPLIER_NAME + " INTEGER REFERENCES " + TABLE_SUPPLIERS + " (" + COLUMN_ID + "));");
+        } else {
+            statement.execute("CREATE TABLE " + TABLE_NAME + " ("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                    + COLUMN_PRODUCT_PRICE + " INTEGER, "
+                    + COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL, "
+                    + COLUMN_SUPPLIER_NAME + " INTEGER, "
+                    + COLUMN_SUPPLIER_PHONE + " TEXT);");
+        }
+
+        // Version 2
+        statement.execute("CREATE INDEX inventory_name_idx ON " + TABLE_NAME
+                + " (" + COLUMN_PRODUCT_NAME + " COLLATE NOCASE);");
+        statement.execute("CREATE INDEX inventory_supplier_idx ON " + TABLE_NAME
+                + " (" + COLUMN_SUPPLIER_NAME + ");");
+        statement.execute("CREATE INDEX inventory_quantity_idx ON " + TABLE_NAME
+                + " (" + COLUMN_PRODUCT_QUANTITY + ");");
+
+        // Version 3
+        statement.execute("CREATE VIRTUAL TABLE " + TABLE_SEARCH + " USING fts4(name, supplier);");
+        statement.execute("CREATE TRIGGER " + TABLE_SEARCH + "_insert AFTER INSERT ON " + TABLE_NAME
+                + " BEGIN INSERT INTO " + TABLE_SEARCH + " (docid, name, supplier) VALUES (new."
+                + COLUMN_ID + ", new." + COLUMN_PRODUCT_NAME + ", "
+                + supplierNameSql("new." + COLUMN_SUPPLIER_NAME, version) + "); END;");
+        statement.execute("CREATE TRIGGER " + TABLE_SEARCH + "_update AFTER UPDATE OF "
+                + COLUMN_PRODUCT_NAME + ", " + COLUMN_SUPPLIER_NAME + " ON " + TABLE_NAME
+                + " BEGIN UPDATE " + TABLE_SEARCH + " SET name = new." + COLUMN_PRODUCT_NAME
+                + ", supplier = " + supplierNameSql("new." + COLUMN_SUPPLIER_NAME, version)
+                + " WHERE docid = old." + COLUMN_ID + "; END;");
+        statement.execute("CREATE TRIGGER " + TABLE_SEARCH + "_delete AFTER DELETE ON " + TABLE_NAME
+                + " BEGIN DELETE FROM " + TABLE_SEARCH + " WHERE docid = old." + COLUMN_ID + "; END;");
+
+        // Version 4
+        statement.execute("CREATE TABLE " + TABLE_SUMMARY + " (" + COLUMN_SUPPLIER_NAME
+                + " INTEGER PRIMARY KEY, products INTEGER NOT NULL, units INTEGER NOT NULL,"
+                + " value INTEGER NOT NULL);");
+        statement.execute("INSERT INTO " + TABLE_SUMMARY + " " + SQL_SUMMARY_SCAN + ";");
+        statement.execute("CREATE TRIGGER " + TABLE_SUMMARY + "_insert AFTER INSERT ON " + TABLE_NAME
+                + " BEGIN " + summaryRowSql("new") + summaryDeltaSql("new", "+") + " END;");
+        statement.execute("CREATE TRIGGER " + TABLE_SUMMARY + "_update AFTER UPDATE OF "
+                + COLUMN_PRODUCT_PRICE + ", " + COLUMN_PRODUCT_QUANTITY + ", " + COLUMN_SUPPLIER_NAME
+                + " ON " + TABLE_NAME + " BEGIN " + summaryDeltaSql("old", "-") + summaryRowSql("new")
+                + summaryDeltaSql("new", "+") + " END;");
+        statement.execute("CREATE TRIGGER " + TABLE_SUMMARY + "_delete AFTER DELETE ON " + TABLE_NAME
+                + " BEGIN " + summaryDeltaSql("old", "-") + " END;");
+
+        // Version 5
+        if (version >= 5) {
+            statement.execute("CREATE TRIGGER " + TABLE_SUPPLIERS + "_update AFTER UPDATE OF " + COLUMN_NAME
+                    + " ON " + TABLE_SUPPLIERS + " BEGIN UPDATE " + TABLE_SEARCH + " SET supplier = new."
+                    + COLUMN_NAME + " WHERE docid IN (SELECT " + COLUMN_ID + " FROM " + TABLE_NAME + " WHERE "
+                    + COLUMN_SUPPLIER_NAME + " = new." + COLUMN_ID + "); END;");
+            statement.execute(productsViewSql(5));
+        }
+
+        // Version 6
+        if (version >= 6) {
+            statement.execute("DROP INDEX inventory_supplier_idx;");
+            statement.execute("CREATE INDEX inventory_supplier_idx ON " + TABLE_NAME + " ("
+                    + COLUMN_SUPPLIER_NAME + ", " + COLUMN_PRODUCT_NAME + " COLLATE NOCASE);");
+            statement.execute("CREATE INDEX inventory_price_idx ON " + TABLE_NAME
+                    + " (" + COLUMN_PRODUCT_PRICE + ");");
+        }
+
+        // Version 7
+        if (version >= 7) {
+            statement.execute("CREATE TABLE " + TABLE_SALES + " (" + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                    + " product INTEGER NOT NULL, units INTEGER NOT NULL, price INTEGER NOT NULL,"
+                    + " soldAt INTEGER NOT NULL);");
+        }
+
+        // Version 8
+        if (version >= 8) {
+            statement.execute("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_REORDER_THRESHOLD
+                    + " INTEGER NOT NULL DEFAULT " + LOW_STOCK_THRESHOLD + ";");
+            statement.execute("DROP VIEW " + VIEW_PRODUCTS + ";");
+            statement.execute(productsViewSql(version));
+            statement.execute("CREATE TABLE " + TABLE_LOW_STOCK + " (" + COLUMN_ID
+                    + " INTEGER PRIMARY KEY AUTOINCREMENT, product INTEGER NOT NULL UNIQUE);");
+            statement.execute("CREATE TRIGGER " + TABLE_LOW_STOCK + "_insert AFTER INSERT ON " + TABLE_NAME
+                    + " WHEN " + lowStockSql("new") + " BEGIN INSERT INTO " + TABLE_LOW_STOCK
+                    + " (product) VALUES (new." + COLUMN_ID + "); END;");
+            statement.execute("CREATE TRIGGER " + TABLE_LOW_STOCK + "_update AFTER UPDATE OF "
+                    + COLUMN_PRODUCT_QUANTITY + ", " + COLUMN_REORDER_THRESHOLD + " ON " + TABLE_NAME
+                    + " WHEN (" + lowStockSql("new") + ") <> (" + lowStockSql("old") + ") BEGIN DELETE FROM "
+                    + TABLE_LOW_STOCK + " WHERE product = old." + COLUMN_ID + "; INSERT INTO " + TABLE_LOW_STOCK
+                    + " (product) SELECT new." + COLUMN_ID + " WHERE " + lowStockSql("new") + "; END;");
+            statement.execute("CREATE TRIGGER " + TABLE_LOW_STOCK + "_delete AFTER DELETE ON " + TABLE_NAME
+                    + " WHEN " + lowStockSql("old") + " BEGIN DELETE FROM " + TABLE_LOW_STOCK
+                    + " WHERE product = old." + COLUMN_ID + "; END;");
+        }
+
+        // Version 9
+        if (version >= 9) {
+            statement.execute("CREATE TABLE " + TABLE_VERSION + " (version INTEGER NOT NULL);");
+            statement.execute("INSERT INTO " + TABLE_VERSION + " (version) VALUES (random() >> 1);");
+            String bump = " ON " + TABLE_NAME + " BEGIN UPDATE " + TABLE_VERSION + " SET version = version + 1; END;";
+            statement.execute("CREATE TRIGGER " + TABLE_VERSION + "_insert AFTER INSERT" + bump);
+            statement.execute("CREATE TRIGGER " + TABLE_VERSION + "_update AFTER UPDATE" + bump);
+            statement.execute("CREATE TRIGGER " + TABLE_VERSION + "_delete AFTER DELETE" + bump);
+        }
+    }
+
+    private static String productsViewSql(int version) {
+        String threshold = version >= 8 ? COLUMN_REORDER_THRESHOLD + ", " : "";
+        return "CREATE VIEW " + VIEW_PRODUCTS + " AS SELECT " + TABLE_NAME + "." + COLUMN_ID
+                + " AS " + COLUMN_ID + ", " + TABLE_NAME + "." + COLUMN_PRODUCT_NAME + " AS "
+                + COLUMN_PRODUCT_NAME + ", " + COLUMN_PRODUCT_PRICE + ", " + COLUMN_PRODUCT_QUANTITY + ", "
+                + COLUMN_SUPPLIER_NAME + ", " + threshold + TABLE_SUPPLIERS + "." + COLUMN_PHONE + " AS "
+                + COLUMN_SUPPLIER_PHONE + " FROM " + TABLE_NAME + " LEFT JOIN " + TABLE_SUPPLIERS + " ON "
+                + TABLE_SUPPLIERS + "." + COLUMN_ID + " = " + TABLE_NAME + "." + COLUMN_SUPPLIER_NAME + ";";
+    }
+
+    private static String lowStockSql(String product) {
+        return product + "." + COLUMN_PRODUCT_QUANTITY + " < " + product + "." + COLUMN_REORDER_THRESHOLD;
+    }
+
+    /**
+     * Returns the query of a sorted page of the catalog, as InventoryProvider runs it for a URI
+     * with the given sort, supplier filter, stock filter and afterKey. The sort and stock are the
+     * values of InventoryContract, the sorts named like their columns. Its arguments are the
+     * supplier if filtered, then the key twice and the ID of the product the page starts after,
+     * then the page size.
+     */
+    static String catalogPageSql(String sort, boolean filterSupplier, String stock, boolean after) {
+        String collation = COLUMN_PRODUCT_NAME.equals(sort) ? " COLLATE NOCASE" : "";
+        StringBuilder sql = new StringBuilder("SELECT ").append(PRODUCT_COLUMNS).append(" FROM ")
+                .append(VIEW_PRODUCTS).append(" WHERE 1");
+        if (filterSupplier) {
+            sql.append(" AND ").append(COLUMN_PRODUCT_NAME.equals(sort) ? "" : "+")
+                    .append(COLUMN_SUPPLIER_NAME).append(" = CAST(? AS INTEGER)");
+        }
+        if (stock != null) {
+            sql.append(" AND ").append(COLUMN_PRODUCT_QUANTITY.equals(sort) ? "" : "+")
+                    .append(COLUMN_PRODUCT_QUANTITY).append("in".equals(stock) ? " > 0" : " < " + COLUMN_REORDER_THRESHOLD);
+        }
+        if (after) {
+            sql.append(" AND ").append(sort).append(" >= ?").append(collation).append(" AND (")
+                    .append(sort).append(" > ?").append(collation).append(" OR ")
+                    .append(COLUMN_ID).append(" > ?)");
+        }
+        return sql.append(" ORDER BY ").append(sort).append(collation).append(", ").append(COLUMN_ID)
+                .append(" LIMIT ?").toString();
+    }
+
+    private static String summaryRowSql(String product) {
+        return "INSERT OR IGNORE INTO " + TABLE_SUMMARY + " VALUES (ifnull(" + product + "."
+                + COLUMN_SUPPLIER_NAME + ", -1), 0, 0, 0);";
+    }
+
+    private static String summaryDeltaSql(String product, String sign) {
+        String quantity = product + "." + COLUMN_PRODUCT_QUANTITY;
+        return "UPDATE " + TABLE_SUMMARY + " SET products = products " + sign + " 1, units = units "
+                + sign + " " + quantity + ", value = value " + sign + " ifnull(" + product + "."
+                + COLUMN_PRODUCT_PRICE + ", 0) * " + quantity + " WHERE " + COLUMN_SUPPLIER_NAME
+                + " = ifnull(" + product + "." + COLUMN_SUPPLIER_NAME + ", -1);";
+    }
+
+    private static String supplierNameSql(String column, int version) {
+        if (version >= 5) {
+            return "(SELECT " + COLUMN_NAME + " FROM " + TABLE_SUPPLIERS + " WHERE " + COLUMN_ID + " = "
+                    + column + ")";
+        }
+        return "CASE " + column + " WHEN 0 THEN 'Pearson' WHEN 1 THEN 'Taylor and Brook'"
+                + " WHEN 2 THEN 'American Book Co.' END";
+    }
+
+    /**
+     * Returns the name of the product inserted at the given index, two words and a number.
+     */
+    public static String productName(int index) {
+        return WORDS[index % WORDS.length] + " " + WORDS[(index / WORDS.length) % WORDS.length]
+                + " " + index;
+    }
+
+    /**
+     * Returns the phone of the supplier of the product inserted at the given index.
+     */
+    static String supplierPhone(int index) {
+        return "360-220-" + (8090 + index % 3);
+    }
+
+    /**
+     * Bind the values of the product inserted at the given index to {@link #SQL_INSERT_PRODUCT}.
+     */
+    static void bindProduct(PreparedStatement insert, int index) throws SQLException {
+        insert.setString(1, productName(index));
+        insert.setLong(2, 100 + (index * 37) % 10000);
+        insert.setInt(3, 1000);
+        insert.setInt(4, index % 3);
+    }
+
+    /**
+     * Insert the given number of products in one transaction, the way a bulk insert does,
+     * setting the phone of each supplier as the bulk insert does with the phone of the products.
+     */
+    public static void fill(Connection connection, int rows) throws SQLException {
+        connection.setAutoCommit(false);
+        PreparedStatement insert = connection.prepareStatement(SQL_INSERT_PRODUCT);
+        PreparedStatement phone = connection.prepareStatement(SQL_SUPPLIER_PHONE);
+        try {
+            for (int i = 0; i < rows; i++) {
+                bindProduct(insert, i);
+                insert.executeUpdate();
+                phone.setString(1, supplierPhone(i));
+                phone.setInt(2, i % 3);
+                phone.executeUpdate();
+            }
+            connection.commit();
+        } finally {
+            insert.close();
+            phone.close();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Returns the phones of the suppliers indexed by ID, read once the way SupplierCache does.
+     */
+    public static String[] supplierPhones(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery("SELECT " + COLUMN_ID + ", " + COLUMN_PHONE + " FROM "
+                    + TABLE_SUPPLIERS + " ORDER BY " + COLUMN_ID);
+            String[] phones = new String[0];
+            while (result.next()) {
+                int id = result.getInt(1);
+                if (id >= phones.length) {
+                    phones = Arrays.copyOf(phones, id + 1);
+                }
+                phones[id] = result.getString(2);
+            }
+            result.close();
+            return phones;
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Delete the database file and its write-ahead log.
+     */
+    public static void delete(File file) {
+        file.delete();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+        new File(file.getPath() + "-journal").delete();
+    }
+}
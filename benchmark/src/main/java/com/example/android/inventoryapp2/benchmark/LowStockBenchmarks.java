@@ -0,0 +1,113 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static com.example.android.inventoryapp2.benchmark.InventoryDatabase.*;
+
+/**
+ * Benchmarks of the low stock check of LowStockService, once a few products went below their
+ * reorder threshold since the last check.
+ *
+ * One product in a thousand is already low and was reported by the last check, then a few more
+ * go low. The check reads the entries after the last one reported and counts the products low on
+ * stock, as LowStockChecker does, and is timed against reading the new entries alone and against
+ * the scan of the whole inventory a check would run without the low stock table.
+ *
+ * The products are restocked afterwards, which removes their entries.
+ */
+final class LowStockBenchmarks {
+
+    /** One product in this many is low on stock before the last check */
+    private static final int LOW_EVERY = 1000;
+
+    /** Products going low since the last check */
+    private static final int CHANGED = 10;
+
+    /** Quantity of the products at the start, InventoryDatabase.bindProduct */
+    private static final int QUANTITY = 1000;
+
+    /** Query of the scan, the products below their threshold */
+    private static final String SQL_SCAN = "SELECT " + COLUMN_ID + ", " + COLUMN_PRODUCT_NAME + ", "
+            + COLUMN_PRODUCT_QUANTITY + " FROM " + TABLE_NAME + " WHERE " + COLUMN_PRODUCT_QUANTITY + " < "
+            + COLUMN_REORDER_THRESHOLD;
+
+    private LowStockBenchmarks() {
+    }
+
+    static void run(Harness harness, Connection connection, int rows) throws Exception {
+        Statement statement = connection.createStatement();
+        final PreparedStatement after = connection.prepareStatement(SQL_LOW_STOCK_AFTER);
+        final PreparedStatement ids = connection.prepareStatement(SQL_LOW_STOCK_IDS);
+        final PreparedStatement scan = connection.prepareStatement(SQL_SCAN);
+        PreparedStatement setQuantity = connection.prepareStatement("UPDATE " + TABLE_NAME + " SET "
+                + COLUMN_PRODUCT_QUANTITY + " = ? WHERE " + COLUMN_ID + " = ?");
+        try {
+            statement.executeUpdate("UPDATE " + TABLE_NAME + " SET " + COLUMN_PRODUCT_QUANTITY + " = 2 WHERE "
+                    + COLUMN_ID + " % " + LOW_EVERY + " = 0");
+            ResultSet result = statement.executeQuery("SELECT ifnull(max(" + COLUMN_ID + "), 0) FROM "
+                    + TABLE_LOW_STOCK);
+            final long lastEntry = result.next() ? result.getLong(1) : 0;
+            result.close();
+
+            // A few sales take products below their threshold, each in its own transaction
+            for (int i = 0; i < CHANGED; i++) {
+                setQuantity.setInt(1, 1);
+                setQuantity.setLong(2, ProviderBenchmarks.productId(i, rows));
+                setQuantity.executeUpdate();
+            }
+            after.setLong(1, lastEntry);
+            int changed = count(after.executeQuery());
+            int low = count(ids.executeQuery());
+            if (changed == 0 || low != count(scan.executeQuery())) {
+                throw new IllegalStateException("Found " + changed + " new of " + low + " products low on stock");
+            }
+            System.out.printf("lowStock: %d new of %d products low on stock%n", changed, low);
+
+            harness.measure("lowStock.check", rows, 5, 20, 20, new Harness.Operation() {
+                @Override
+                public void run(int index) throws SQLException {
+                    after.setLong(1, lastEntry);
+                    ProviderBenchmarks.readAll(after.executeQuery());
+                    ProviderBenchmarks.readAll(ids.executeQuery());
+                }
+            });
+            harness.measure("lowStock.newEntries", rows, 5, 20, 20, new Harness.Operation() {
+                @Override
+                public void run(int index) throws SQLException {
+                    after.setLong(1, lastEntry);
+                    ProviderBenchmarks.readAll(after.executeQuery());
+                }
+            });
+            harness.measure("lowStock.scan", rows, 1, 5, 1, new Harness.Operation() {
+                @Override
+                public void run(int index) throws SQLException {
+                    ProviderBenchmarks.readAll(scan.executeQuery());
+                }
+            });
+        } finally {
+            statement.executeUpdate("UPDATE " + TABLE_NAME + " SET " + COLUMN_PRODUCT_QUANTITY + " = " + QUANTITY
+                    + " WHERE " + COLUMN_ID + " IN (SELECT product FROM " + TABLE_LOW_STOCK + ")");
+            statement.close();
+            after.close();
+            ids.close();
+            scan.close();
+            setQuantity.close();
+        }
+    }
+
+    private static int count(ResultSet result) throws SQLException {
+        int count = 0;
+        try {
+            while (result.next()) {
+                count++;
+            }
+        } finally {
+            result.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.example.android.inventoryapp2.benchmark.InventoryDatabase.*;
+
+/**
+ * Benchmarks of the maintenance DatabaseMaintainer runs while the device is idle, on a catalog
+ * whose products were edited one at a time after it was filled.
+ *
+ * The statistics are computed the way InventoryDbHelper.refreshStatistics() does, reading the
+ * indexes on a second connection as the reader connections of the pool do, then saving them on
+ * the first one. The time the save held the write lock is compared with the time ANALYZE holds
+ * it, and the two must compute the same statistics. The full-text search index is merged in
+ * steps of a few pages, as InventoryDbHelper.mergeSearchIndex() does, and the longest step is
+ * printed. The median latency of a few catalog queries is printed before and after.
+ *
+ * The benchmark runs on a database file of its own, filled with the catalog and deleted
+ * afterwards.
+ */
+final class MaintenanceBenchmarks {
+
+    /** Pages of each merge of the search index, as DatabaseMaintainer starts with */
+    private static final int MERGE_STEP_PAGES = 16;
+
+    /** Number of times each sampled query runs, the median is printed */
+    private static final int LATENCY_RUNS = 5;
+
+    /** Number of products of the sampled pages */
+    private static final int PAGE_SIZE = 50;
+
+    private static final String SQL_RENAME_PRODUCT = "UPDATE " + TABLE_NAME + " SET " + COLUMN_PRODUCT_NAME
+            + " = " + COLUMN_PRODUCT_NAME + " || ' 2nd edition' WHERE " + COLUMN_ID + " = ?";
+
+    private MaintenanceBenchmarks() {
+    }
+
+    static void run(File directory, int rows) throws Exception {
+        File file = new File(directory, "maintenance.db");
+        Connection connection = InventoryDatabase.open(file);
+        Connection reader = InventoryDatabase.open(file);
+        try {
+            InventoryDatabase.fill(connection, rows);
+            // Products edited one at a time each add a segment to the search index
+            PreparedStatement rename = connection.prepareStatement(SQL_RENAME_PRODUCT);
+            try {
+                for (int i = 0; i < Math.min(rows, 1000); i++) {
+                    rename.setLong(1, 1 + (long) i * rows / Math.min(rows, 1000));
+                    rename.executeUpdate();
+                }
+            } finally {
+                rename.close();
+            }
+
+            long[] before = sampleLatencies(reader);
+            Map<String, String> statistics = refreshStatistics(connection, reader, rows);
+            long[] after = sampleLatencies(reader);
+            analyze(connection, rows, statistics);
+            mergeSearchIndex(connection, rows);
+            System.out.printf("%-32s %9d rows  median us %s before the statistics, %s after%n",
+                    "maintenance.latency", rows, Arrays.toString(before), Arrays.toString(after));
+        } finally {
+            reader.close();
+            connection.close();
+            InventoryDatabase.delete(file);
+        }
+    }
+
+    /**
+     * Compute the statistics of the inventory indexes on the reader and save them on the
+     * connection, printing the time of each part. Returns the statistics by index name.
+     */
+    private static Map<String, String> refreshStatistics(Connection connection, Connection reader, int rows)
+            throws SQLException {
+        Statement statement = reader.createStatement();
+        Map<String, String> statistics = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        try {
+            List<String[]> indexes = new ArrayList<>();
+            ResultSet result = statement.executeQuery("SELECT name, sql FROM sqlite_master WHERE type = 'index'"
+                    + " AND tbl_name = '" + TABLE_NAME + "' ORDER BY name");
+            while (result.next()) {
+                indexes.add(new String[] { result.getString(1), result.getString(2) });
+            }
+            result.close();
+            long count = longQuery(statement, "SELECT count(*) FROM " + TABLE_NAME);
+            for (String[] index : indexes) {
+                statistics.put(index[0], indexStatistics(statement, index[0], index[1], count));
+            }
+        } finally {
+            statement.close();
+        }
+        long read = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        statement = connection.createStatement();
+        PreparedStatement insert = null;
+        connection.setAutoCommit(false);
+        try {
+            // Creates the statistics table
+            statement.execute("ANALYZE sqlite_master");
+            insert = connection.prepareStatement("INSERT INTO sqlite_stat1 VALUES (?, ?, ?)");
+            statement.executeUpdate("DELETE FROM sqlite_stat1 WHERE tbl = '" + TABLE_NAME + "'");
+            for (Map.Entry<String, String> entry : statistics.entrySet()) {
+                insert.setString(1, TABLE_NAME);
+                insert.setString(2, entry.getKey());
+                insert.setString(3, entry.getValue());
+                insert.executeUpdate();
+            }
+            statement.execute("ANALYZE sqlite_master");
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+            if (insert != null) {
+                insert.close();
+            }
+            statement.close();
+        }
+        System.out.printf("%-32s %9d rows  %,12d ms reading the indexes, %,d us holding the write lock%n",
+                "maintenance.statistics", rows, read / 1000000, (System.nanoTime() - start) / 1000);
+        return statistics;
+    }
+
+    /**
+     * Returns the statistics of an index in the format of sqlite_stat1, as
+     * InventoryDbHelper.indexStatistics() computes them.
+     */
+    private static String indexStatistics(Statement statement, String index, String sql, long rows)
+            throws SQLException {
+        List<String> names = new ArrayList<>();
+        ResultSet result = statement.executeQuery("PRAGMA index_info(" + index + ")");
+        while (result.next()) {
+            names.add(result.getString("name"));
+        }
+        result.close();
+        StringBuilder statistics = new StringBuilder().append(rows);
+        StringBuilder columns = new StringBuilder();
+        for (String column : names) {
+            columns.append(columns.length() == 0 ? "" : ", ").append(column);
+            Matcher collation = Pattern.compile("\\b" + Pattern.quote(column) + "\\s+COLLATE\\s+(\\w+)",
+                    Pattern.CASE_INSENSITIVE).matcher(sql != null ? sql : "");
+            if (collation.find()) {
+                columns.append(" COLLATE ").append(collation.group(1));
+            }
+            long distinct = longQuery(statement, "SELECT count(*) FROM (SELECT 1 FROM " + TABLE_NAME
+                    + " INDEXED BY " + index + " GROUP BY " + columns + ")");
+            statistics.append(' ').append((rows + distinct - 1) / Math.max(distinct, 1));
+        }
+        return statistics.toString();
+    }
+
+    /**
+     * Analyze the inventory table, printing how long it held the write lock, and check that it
+     * computed the given statistics.
+     */
+    private static void analyze(Connection connection, int rows, Map<String, String> expected)
+            throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            long start = System.nanoTime();
+            statement.execute("ANALYZE " + TABLE_NAME);
+            long elapsed = System.nanoTime() - start;
+            Map<String, String> statistics = new LinkedHashMap<>();
+            ResultSet result = statement.executeQuery("SELECT idx, stat FROM sqlite_stat1 WHERE tbl = '"
+                    + TABLE_NAME + "' ORDER BY idx");
+            while (result.next()) {
+                statistics.put(result.getString(1), result.getString(2));
+            }
+            result.close();
+            if (!statistics.equals(expected)) {
+                throw new IllegalStateException("ANALYZE computed " + statistics + ", not " + expected);
+            }
+            System.out.printf("%-32s %9d rows  %,12d ms holding the write lock%n", "maintenance.analyze", rows,
+                    elapsed / 1000000);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Merge the segments of the search index a few pages at a time, printing the number of
+     * steps and the longest one.
+     */
+    private static void mergeSearchIndex(Connection connection, int rows) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            long segments = longQuery(statement, "SELECT count(*) FROM " + TABLE_SEARCH + "_segdir");
+            int steps = 0;
+            long longestStep = 0;
+            long start = System.nanoTime();
+            while (true) {
+                long stepStart = System.nanoTime();
+                long changes = longQuery(statement, "SELECT total_changes()");
+                statement.executeUpdate("INSERT INTO " + TABLE_SEARCH + " (" + TABLE_SEARCH + ") VALUES ('merge="
+                        + MERGE_STEP_PAGES + ",2')");
+                changes = longQuery(statement, "SELECT total_changes()") - changes;
+                if (changes < 2) {
+                    break;
+                }
+                longestStep = Math.max(longestStep, System.nanoTime() - stepStart);
+                steps++;
+            }
+            System.out.printf("%-32s %9d rows  %,12d ms, %d segments merged in %d steps, longest step %,d us%n",
+                    "maintenance.searchMerge", rows, (System.nanoTime() - start) / 1000000, segments, steps,
+                    longestStep / 1000);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns the median latency in microseconds of a page of the catalog by name, of the low
+     * stock of a supplier by quantity, and of a search.
+     */
+    private static long[] sampleLatencies(Connection reader) throws SQLException {
+        PreparedStatement[] queries = {
+                reader.prepareStatement(catalogPageSql(COLUMN_PRODUCT_NAME, false, null, false)),
+                reader.prepareStatement(catalogPageSql(COLUMN_PRODUCT_QUANTITY, true, "low", false)),
+                reader.prepareStatement(SQL_SEARCH) };
+        queries[0].setInt(1, PAGE_SIZE);
+        queries[1].setInt(1, 1);
+        queries[1].setInt(2, PAGE_SIZE);
+        queries[2].setString(1, "bio*");
+        queries[2].setString(2, "bio%");
+        long[] micros = new long[queries.length];
+        long[] runs = new long[LATENCY_RUNS];
+        try {
+            for (int i = 0; i < queries.length; i++) {
+                for (int run = 0; run < LATENCY_RUNS; run++) {
+                    long start = System.nanoTime();
+                    ProviderBenchmarks.readAll(queries[i].executeQuery());
+                    runs[run] = System.nanoTime() - start;
+                }
+                Arrays.sort(runs);
+                micros[i] = runs[LATENCY_RUNS / 2] / 1000;
+            }
+        } finally {
+            for (PreparedStatement query : queries) {
+                query.close();
+            }
+        }
+        return micros;
+    }
+
+    private static long longQuery(Statement statement, String sql) throws SQLException {
+        ResultSet result = statement.executeQuery(sql);
+        try {
+            return result.next() ? result.getLong(1) : 0;
+        } finally {
+            result.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import com.example.android.inventoryapp2.data.ProviderMetrics;
+
+/**
+ * Benchmarks of the cost {@link ProviderMetrics} adds to every provider operation, with metrics
+ * disabled and enabled.
+ */
+final class MetricsBenchmarks {
+
+    /** Number of URI patterns of the provider */
+    private static final int MATCHES = 4;
+
+    private MetricsBenchmarks() {
+    }
+
+    static void run(Harness harness) throws Exception {
+        for (final boolean enabled : new boolean[] { false, true }) {
+            final ProviderMetrics metrics = new ProviderMetrics(new String[] { "a", "b", "c", "d" });
+            metrics.setEnabled(enabled);
+            harness.measure(enabled ? "metrics.enabled" : "metrics.disabled", 0, 10, 20, 100000,
+                    new Harness.Operation() {
+                        @Override
+                        public void run(int index) {
+                            long start = metrics.start();
+                            metrics.record(ProviderMetrics.QUERY, index % MATCHES, start, 1);
+                            metrics.countNotification();
+                        }
+                    });
+        }
+    }
+}
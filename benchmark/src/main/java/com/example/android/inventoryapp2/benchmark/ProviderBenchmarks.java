@@ -0,0 +1,217 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static com.example.android.inventoryapp2.benchmark.InventoryDatabase.*;
+
+/**
+ * Benchmarks of the statements InventoryProvider runs for its queries and writes.
+ *
+ * The writes leave the catalog as they found it: every product inserted is deleted again and
+ * updates keep the product names, so each benchmark at a size sees the same rows.
+ */
+final class ProviderBenchmarks {
+
+    /** Number of products in a page of the catalog, as in CatalogActivity */
+    private static final int PAGE_SIZE = 50;
+
+    /** Number of pages read when scrolling through the catalog */
+    private static final int SCROLLED_PAGES = 20;
+
+    /** Number of rows in a supplier shipment */
+    private static final int SHIPMENT_ROWS = 1000;
+
+    /** Search texts, as full-text query and first word LIKE pattern */
+    private static final String[][] SEARCHES = { { "puz*", "puz%" }, { "chem*", "chem%" },
+            { "art* hist*", "art%" }, { "pearson*", "pearson%" }, { "novel* 12*", "novel%" } };
+
+    private ProviderBenchmarks() {
+    }
+
+    /**
+     * Returns the ID of the product to use for the operation with the given index, spread over
+     * the whole catalog.
+     */
+    static long productId(int index, int rows) {
+        return 1 + (index * 7919L) % rows;
+    }
+
+    static void run(Harness harness, final Connection connection, final int rows) throws Exception {
+        final PreparedStatement queryProduct = connection.prepareStatement(SQL_QUERY_PRODUCT);
+        harness.measure("provider.queryById", rows, 5, 20, 500, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                queryProduct.setLong(1, productId(index, rows));
+                readAll(queryProduct.executeQuery());
+            }
+        });
+
+        final PreparedStatement queryPage = connection.prepareStatement(SQL_QUERY_PAGE);
+        harness.measure("provider.queryPage", rows, 5, 20, 50, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                queryPage.setLong(1, productId(index, rows) - 1);
+                queryPage.setInt(2, PAGE_SIZE);
+                readAll(queryPage.executeQuery());
+            }
+        });
+
+        // Macrobenchmark: keyset pages read one after the other, like scrolling the catalog
+        harness.measure("provider.scrollCatalog", rows, 2, 10, 1, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                long afterId = -1;
+                for (int page = 0; page < SCROLLED_PAGES; page++) {
+                    queryPage.setLong(1, afterId);
+                    queryPage.setInt(2, PAGE_SIZE);
+                    long lastId = readAll(queryPage.executeQuery());
+                    if (lastId < 0) {
+                        break;
+                    }
+                    afterId = lastId;
+                }
+            }
+        });
+
+        final PreparedStatement search = connection.prepareStatement(SQL_SEARCH);
+        harness.measure("provider.search", rows, 2, 10, SEARCHES.length, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                String[] text = SEARCHES[index % SEARCHES.length];
+                search.setString(1, text[0]);
+                search.setString(2, text[1]);
+                readAll(search.executeQuery());
+            }
+        });
+
+        // Single product writes, one transaction each. The products inserted are the ones
+        // deleted afterwards, so both run the same number of operations.
+        final PreparedStatement insert = connection.prepareStatement(SQL_INSERT_PRODUCT);
+        harness.measure("provider.insert", rows, 2, 10, 100, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                bindProduct(insert, rows + index);
+                insert.executeUpdate();
+            }
+        });
+        final PreparedStatement delete = connection.prepareStatement(SQL_DELETE_PRODUCT);
+        harness.measure("provider.deleteById", rows, 2, 10, 100, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                delete.setLong(1, rows + 1 + index);
+                delete.executeUpdate();
+            }
+        });
+
+        final PreparedStatement update = connection.prepareStatement(SQL_UPDATE_PRODUCT);
+        harness.measure("provider.updateById", rows, 2, 10, 100, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                long id = productId(index, rows);
+                update.setString(1, productName((int) id - 1));
+                update.setLong(2, 100 + index % 1000);
+                update.setLong(3, id);
+                update.executeUpdate();
+            }
+        });
+
+        final PreparedStatement sell = connection.prepareStatement(SQL_SELL_PRODUCT);
+        final PreparedStatement record = connection.prepareStatement(SQL_RECORD_SALE);
+        final PreparedStatement readQuantity = connection.prepareStatement(SQL_PRODUCT_QUANTITY);
+        harness.measure("provider.sell", rows, 2, 10, 100, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                // Decrement, record and read back in one transaction, like
+                // InventoryProvider.sellProduct()
+                connection.setAutoCommit(false);
+                try {
+                    sell(sell, record, readQuantity, productId(index, rows));
+                    connection.commit();
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+
+        // Macrobenchmark: a shipment inserted in one transaction, like bulkInsert(), with the
+        // phone of each product written to its supplier
+        final PreparedStatement phone = connection.prepareStatement(SQL_SUPPLIER_PHONE);
+        harness.measure("provider.bulkInsert", rows, 1, 5, 1, new Harness.Operation() {
+            @Override
+            public void run(int index) throws SQLException {
+                connection.setAutoCommit(false);
+                try {
+                    for (int i = 0; i < SHIPMENT_ROWS; i++) {
+                        bindProduct(insert, rows + i);
+                        insert.executeUpdate();
+                        phone.setString(1, supplierPhone(rows + i));
+                        phone.setInt(2, (rows + i) % 3);
+                        phone.executeUpdate();
+                    }
+                    connection.commit();
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + " > " + rows);
+        statement.close();
+
+        queryProduct.close();
+        queryPage.close();
+        search.close();
+        insert.close();
+        delete.close();
+        update.close();
+        sell.close();
+        record.close();
+        readQuantity.close();
+        phone.close();
+    }
+
+    /**
+     * Sell one unit of the product with the given ID like InventoryProvider.sellProduct(), with
+     * {@link InventoryDatabase#SQL_SELL_PRODUCT}, {@link InventoryDatabase#SQL_RECORD_SALE} and
+     * {@link InventoryDatabase#SQL_PRODUCT_QUANTITY}, in the transaction of the caller.
+     */
+    static void sell(PreparedStatement sell, PreparedStatement record, PreparedStatement readQuantity,
+                     long id) throws SQLException {
+        sell.setInt(1, 1);
+        sell.setLong(2, id);
+        sell.setInt(3, 1);
+        if (sell.executeUpdate() != 0) {
+            record.setInt(1, 1);
+            record.setLong(2, System.currentTimeMillis());
+            record.setLong(3, id);
+            record.executeUpdate();
+            readQuantity.setLong(1, id);
+            readAll(readQuantity.executeQuery());
+        }
+    }
+
+    /**
+     * Read every column of every row of the result, like a cursor being filled.
+     *
+     * @return the value of the first column of the last row, or -1 if there were no rows
+     */
+    static long readAll(ResultSet result) throws SQLException {
+        long last = -1;
+        try {
+            int columns = result.getMetaData().getColumnCount();
+            while (result.next()) {
+                last = result.getLong(1);
+                for (int i = 2; i <= columns; i++) {
+                    result.getObject(i);
+                }
+            }
+        } finally {
+            result.close();
+        }
+        return last;
+    }
+}
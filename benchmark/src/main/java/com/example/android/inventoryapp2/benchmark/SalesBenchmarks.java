@@ -0,0 +1,78 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static com.example.android.inventoryapp2.benchmark.InventoryDatabase.*;
+
+/**
+ * Benchmarks of sales recorded in the ledger, committed one by one like a sale made on its own,
+ * against group committed like InventoryWriter does with the sales it holds. Both are timed per
+ * sale, with the synchronous setting of the app and with FULL, where every commit waits for the
+ * disk.
+ *
+ * Every sale is recorded in the ledger, which is emptied again afterwards.
+ */
+final class SalesBenchmarks {
+
+    /** Sales committed together, InventoryWriter.MAX_BATCH_SALES */
+    private static final int BATCH_SALES = 32;
+
+    /** Sales per sample, a whole number of batches */
+    private static final int SAMPLE_SALES = 10 * BATCH_SALES;
+
+    private SalesBenchmarks() {
+    }
+
+    static void run(Harness harness, final Connection connection, final int rows) throws Exception {
+        final PreparedStatement sell = connection.prepareStatement(SQL_SELL_PRODUCT);
+        final PreparedStatement record = connection.prepareStatement(SQL_RECORD_SALE);
+        final PreparedStatement readQuantity = connection.prepareStatement(SQL_PRODUCT_QUANTITY);
+        Statement statement = connection.createStatement();
+        try {
+            for (String synchronous : new String[] { "NORMAL", "FULL" }) {
+                statement.execute("PRAGMA synchronous = " + synchronous);
+                String suffix = "NORMAL".equals(synchronous) ? "" : ".syncFull";
+
+                final int[] sale = new int[1];
+                harness.measure("sales.perSaleCommit" + suffix, rows, 1, 5, SAMPLE_SALES, new Harness.Operation() {
+                    @Override
+                    public void run(int index) throws SQLException {
+                        connection.setAutoCommit(false);
+                        try {
+                            ProviderBenchmarks.sell(sell, record, readQuantity,
+                                    ProviderBenchmarks.productId(sale[0]++, rows));
+                            connection.commit();
+                        } finally {
+                            connection.setAutoCommit(true);
+                        }
+                    }
+                });
+                harness.measure("sales.groupCommit" + suffix, rows, 1, 5, SAMPLE_SALES, new Harness.Operation() {
+                    @Override
+                    public void run(int index) throws SQLException {
+                        // The first sale of a batch opens its transaction, the last commits it
+                        if (index % BATCH_SALES == 0) {
+                            connection.setAutoCommit(false);
+                        }
+                        ProviderBenchmarks.sell(sell, record, readQuantity,
+                                ProviderBenchmarks.productId(sale[0]++, rows));
+                        if (index % BATCH_SALES == BATCH_SALES - 1) {
+                            connection.commit();
+                            connection.setAutoCommit(true);
+                        }
+                    }
+                });
+            }
+        } finally {
+            statement.execute("PRAGMA synchronous = NORMAL");
+            statement.executeUpdate("DELETE FROM " + TABLE_SALES);
+            statement.close();
+            sell.close();
+            record.close();
+            readQuantity.close();
+        }
+    }
+}
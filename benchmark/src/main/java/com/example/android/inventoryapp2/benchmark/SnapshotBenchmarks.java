@@ -0,0 +1,172 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks of the first rows of a cold start, read from the snapshot CatalogSnapshot writes
+ * next to the database instead of from the database. The snapshot is the first page of the
+ * catalog in the layout of CatalogSnapshot, repeated here without its header fields of the
+ * mode. Reading it maps the file and decodes every product; checking it opens the database and
+ * reads the version of the products, as InventoryLoader does before keeping the rows it painted.
+ *
+ * Compare with dbHelper.open and dbHelper.openFirstPage, the way without a snapshot.
+ */
+final class SnapshotBenchmarks {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Size of the header of the file: version, count and length of the heap of the names */
+    private static final int HEADER_SIZE = 8 + 4 + 4;
+
+    /** Size of a product in the file: ID, price, quantity, supplier, offset and length of the name */
+    private static final int ROW_SIZE = 8 + 8 + 4 + 4 + 4 + 4;
+
+    private static final String SQL_VERSION = "SELECT version FROM " + InventoryDatabase.TABLE_VERSION;
+
+    private SnapshotBenchmarks() {
+    }
+
+    /**
+     * Write the snapshot of the first page of the database file holding the catalog, then time
+     * reading it and checking its version, as on a later launch of the app.
+     */
+    static void run(Harness harness, final File file, final File directory, int rows) throws Exception {
+        final File snapshot = new File(directory, "catalog.snapshot");
+        final long version = writeSnapshot(file, snapshot);
+        try {
+            harness.measure("snapshot.read", rows, 2, 10, 1, new Harness.Operation() {
+                @Override
+                public void run(int index) throws Exception {
+                    readSnapshot(snapshot);
+                }
+            });
+            harness.measure("snapshot.readAndCheck", rows, 2, 10, 1, new Harness.Operation() {
+                @Override
+                public void run(int index) throws Exception {
+                    long[] read = readSnapshot(snapshot);
+                    Connection connection = InventoryDatabase.open(file);
+                    try {
+                        if (readVersion(connection) != version || read[0] != version) {
+                            throw new IllegalStateException("Snapshot out of date");
+                        }
+                    } finally {
+                        connection.close();
+                    }
+                }
+            });
+        } finally {
+            snapshot.delete();
+        }
+    }
+
+    /**
+     * Write the first page of the catalog to the snapshot file. Returns its version.
+     */
+    private static long writeSnapshot(File file, File snapshot) throws Exception {
+        Connection connection = InventoryDatabase.open(file);
+        try {
+            long version = readVersion(connection);
+            PreparedStatement page = connection.prepareStatement(InventoryDatabase.SQL_QUERY_PAGE);
+            page.setLong(1, -1);
+            page.setInt(2, 50);
+            List<Object[]> products = new ArrayList<>();
+            List<byte[]> names = new ArrayList<>();
+            int heapLength = 0;
+            ResultSet result = page.executeQuery();
+            try {
+                while (result.next()) {
+                    products.add(new Object[] { result.getLong(1), result.getLong(3), result.getInt(4),
+                            result.getInt(5) });
+                    byte[] name = result.getString(2).getBytes(UTF_8);
+                    names.add(name);
+                    heapLength += name.length;
+                }
+            } finally {
+                result.close();
+            }
+            page.close();
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + products.size() * ROW_SIZE + heapLength);
+            buffer.putLong(version).putInt(products.size()).putInt(heapLength);
+            int offset = 0;
+            for (int i = 0; i < products.size(); i++) {
+                Object[] product = products.get(i);
+                buffer.putLong((Long) product[0])
+                        .putLong((Long) product[1])
+                        .putInt((Integer) product[2])
+                        .putInt((Integer) product[3])
+                        .putInt(offset)
+                        .putInt(names.get(i).length);
+                offset += names.get(i).length;
+            }
+            for (byte[] name : names) {
+                buffer.put(name);
+            }
+            FileOutputStream out = new FileOutputStream(snapshot);
+            try {
+                out.write(buffer.array());
+            } finally {
+                out.close();
+            }
+            return version;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Map the snapshot file and decode its products. Returns its version, then the ID of each
+     * product.
+     */
+    private static long[] readSnapshot(File snapshot) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(snapshot, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long version = buffer.getLong();
+            int count = buffer.getInt();
+            buffer.getInt();
+            int heap = HEADER_SIZE + count * ROW_SIZE;
+            long[] read = new long[count + 1];
+            read[0] = version;
+            for (int i = 0; i < count; i++) {
+                read[i + 1] = buffer.getLong();
+                buffer.getLong();
+                buffer.getInt();
+                buffer.getInt();
+                int nameOffset = buffer.getInt();
+                byte[] name = new byte[buffer.getInt()];
+                ByteBuffer string = buffer.duplicate();
+                string.position(heap + nameOffset);
+                string.get(name);
+                new String(name, UTF_8);
+            }
+            return read;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long readVersion(Connection connection) throws Exception {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery(SQL_VERSION);
+            result.next();
+            return result.getLong(1);
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static com.example.android.inventoryapp2.benchmark.InventoryDatabase.*;
+
+/**
+ * Benchmarks of the sort and filter modes of the catalog, read a page at a time in the order
+ * of an index the way InventoryProvider does for a URI with a sort.
+ *
+ * Switching the mode reads the first page of the new order, which is timed for every sort and
+ * filter, along with a page from the middle of the order and, as the baseline, the first page
+ * sorted without the index. Every mode is then read to the end to check that the pages hold
+ * each product it shows exactly once.
+ *
+ * The database is its own, as one product in nineteen has its stock lowered to be filtered,
+ * spread over the names. Most products still have the same stock, so the pages from the middle
+ * of the quantity order show the cost of a long run of equal keys: the search of the index
+ * finds the start of the run, and the rows of the run before the product are skipped one by one.
+ */
+final class SortBenchmarks {
+
+    /** Number of products in a page of the catalog, as in CatalogActivity */
+    private static final int PAGE_SIZE = 50;
+
+    /** Sorts of InventoryContract, named like their columns */
+    private static final String[] SORTS = { COLUMN_PRODUCT_NAME, COLUMN_PRODUCT_PRICE, COLUMN_PRODUCT_QUANTITY };
+
+    /** Filters of the catalog: none, a supplier, and the stocks of InventoryContract */
+    private static final String FILTER_SUPPLIER = "supplier";
+    private static final String[] FILTERS = { null, FILTER_SUPPLIER, "in", "low" };
+
+    /** Supplier filtered by */
+    private static final int SUPPLIER = 1;
+
+    private SortBenchmarks() {
+    }
+
+    static void run(Harness harness, File directory, int rows) throws Exception {
+        File file = new File(directory, "sort.db");
+        Connection connection = InventoryDatabase.open(file);
+        try {
+            InventoryDatabase.fill(connection, rows);
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate("UPDATE " + TABLE_NAME + " SET " + COLUMN_PRODUCT_QUANTITY + " = "
+                        + COLUMN_ID + " % 10 WHERE " + COLUMN_ID + " % 19 = 0");
+            } finally {
+                statement.close();
+            }
+
+            for (String sort : SORTS) {
+                for (String filter : FILTERS) {
+                    runMode(harness, connection, rows, sort, filter);
+                }
+                runUnindexed(harness, connection, rows, sort);
+            }
+        } finally {
+            connection.close();
+            InventoryDatabase.delete(file);
+        }
+    }
+
+    private static void runMode(Harness harness, Connection connection, int rows, String sort,
+                                String filter) throws Exception {
+        String name = "sort." + sort + (filter != null ? "." + filter : "");
+        String stock = FILTER_SUPPLIER.equals(filter) ? null : filter;
+        final boolean filterSupplier = FILTER_SUPPLIER.equals(filter);
+        final PreparedStatement first = connection.prepareStatement(
+                catalogPageSql(sort, filterSupplier, stock, false));
+        final PreparedStatement next = connection.prepareStatement(
+                catalogPageSql(sort, filterSupplier, stock, true));
+        try {
+            harness.measure(name + ".switch", rows, 5, 20, 20, new Harness.Operation() {
+                @Override
+                public void run(int index) throws SQLException {
+                    int parameter = bindFilter(first, filterSupplier);
+                    first.setInt(parameter, PAGE_SIZE);
+                    ProviderBenchmarks.readAll(first.executeQuery());
+                }
+            });
+
+            // Walk every page, keeping the key of the one in the middle
+            int expected = countRows(connection, filterSupplier, stock);
+            int count = 0;
+            String[] middle = null;
+            String[] last = null;
+            while (true) {
+                ResultSet page;
+                if (last == null) {
+                    first.setInt(bindFilter(first, filterSupplier), PAGE_SIZE);
+                    page = first.executeQuery();
+                } else {
+                    page = bindNext(next, filterSupplier, last).executeQuery();
+                }
+                String[] pageLast = null;
+                try {
+                    int column = keyColumn(sort);
+                    while (page.next()) {
+                        pageLast = new String[] { page.getString(column), page.getString(1) };
+                        count++;
+                    }
+                } finally {
+                    page.close();
+                }
+                if (pageLast == null) {
+                    break;
+                }
+                last = pageLast;
+                if (middle == null && count >= expected / 2) {
+                    middle = last;
+                }
+            }
+            if (count != expected) {
+                throw new IllegalStateException(name + " read " + count + " products of " + expected);
+            }
+
+            if (middle != null) {
+                final String[] after = middle;
+                harness.measure(name + ".middlePage", rows, 5, 20, 20, new Harness.Operation() {
+                    @Override
+                    public void run(int index) throws SQLException {
+                        ProviderBenchmarks.readAll(bindNext(next, filterSupplier, after).executeQuery());
+                    }
+                });
+            }
+        } finally {
+            first.close();
+            next.close();
+        }
+    }
+
+    /**
+     * Time the first page sorted by the key without its index, as it was before the catalog
+     * had sort modes: SQLite reads every product and sorts them in a temporary B-tree.
+     */
+    private static void runUnindexed(Harness harness, Connection connection, int rows, String sort)
+            throws Exception {
+        final PreparedStatement first = connection.prepareStatement(catalogPageSql(sort, false, null, false)
+                .replace(" ORDER BY " + sort, " ORDER BY +" + sort));
+        try {
+            harness.measure("sort." + sort + ".switchUnindexed", rows, 1, 5, 1, new Harness.Operation() {
+                @Override
+                public void run(int index) throws SQLException {
+                    first.setInt(1, PAGE_SIZE);
+                    ProviderBenchmarks.readAll(first.executeQuery());
+                }
+            });
+        } finally {
+            first.close();
+        }
+    }
+
+    /**
+     * Bind the supplier if filtered by. Returns the index of the next parameter.
+     */
+    private static int bindFilter(PreparedStatement statement, boolean filterSupplier) throws SQLException {
+        if (filterSupplier) {
+            statement.setString(1, String.valueOf(SUPPLIER));
+            return 2;
+        }
+        return 1;
+    }
+
+    /**
+     * Bind the page after the product with the given key and ID, as strings like the provider
+     * receives them in the URI.
+     */
+    private static PreparedStatement bindNext(PreparedStatement next, boolean filterSupplier, String[] after)
+            throws SQLException {
+        int parameter = bindFilter(next, filterSupplier);
+        next.setString(parameter, after[0]);
+        next.setString(parameter + 1, after[0]);
+        next.setString(parameter + 2, after[1]);
+        next.setInt(parameter + 3, PAGE_SIZE);
+        return next;
+    }
+
+    /**
+     * Returns the column of {@link InventoryDatabase#PRODUCT_COLUMNS} holding the key of the sort.
+     */
+    private static int keyColumn(String sort) {
+        if (COLUMN_PRODUCT_NAME.equals(sort)) {
+            return 2;
+        }
+        return COLUMN_PRODUCT_PRICE.equals(sort) ? 3 : 4;
+    }
+
+    private static int countRows(Connection connection, boolean filterSupplier, String stock)
+            throws SQLException {
+        String sql = "SELECT count(*) FROM " + TABLE_NAME + " WHERE 1";
+        if (filterSupplier) {
+            sql += " AND " + COLUMN_SUPPLIER_NAME + " = " + SUPPLIER;
+        }
+        if (stock != null) {
+            sql += " AND " + COLUMN_PRODUCT_QUANTITY + ("in".equals(stock) ? " > 0" : " < 5");
+        }
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery(sql);
+            return result.next() ? result.getInt(1) : 0;
+        } finally {
+            statement.close();
+        }
+    }
+}
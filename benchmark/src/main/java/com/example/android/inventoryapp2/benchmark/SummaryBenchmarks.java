@@ -0,0 +1,61 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static com.example.android.inventoryapp2.benchmark.InventoryDatabase.*;
+
+/**
+ * Benchmarks of reading the stock of each supplier from the summary table kept by the triggers
+ * of InventoryDbHelper, against summing it up with a full scan of the inventory table. The
+ * cost the triggers add to the writes shows in {@link ProviderBenchmarks}.
+ */
+final class SummaryBenchmarks {
+
+    private SummaryBenchmarks() {
+    }
+
+    static void run(Harness harness, Connection connection, int rows) throws Exception {
+        final PreparedStatement table = connection.prepareStatement(SQL_QUERY_SUMMARY);
+        final PreparedStatement scan = connection.prepareStatement(SQL_SUMMARY_SCAN);
+        try {
+            // Both must agree before their speed means anything
+            if (!read(table.executeQuery()).equals(read(scan.executeQuery()))) {
+                throw new IllegalStateException("The summary table doesn't match the inventory table");
+            }
+            harness.measure("summary.table", rows, 5, 20, 100, new Harness.Operation() {
+                @Override
+                public void run(int index) throws SQLException {
+                    read(table.executeQuery());
+                }
+            });
+            harness.measure("summary.scan", rows, 1, 5, 1, new Harness.Operation() {
+                @Override
+                public void run(int index) throws SQLException {
+                    read(scan.executeQuery());
+                }
+            });
+        } finally {
+            table.close();
+            scan.close();
+        }
+    }
+
+    /**
+     * Returns the rows of the summary as text, and closes them.
+     */
+    private static String read(ResultSet resultSet) throws SQLException {
+        StringBuilder rows = new StringBuilder();
+        try {
+            while (resultSet.next()) {
+                rows.append(resultSet.getInt(1)).append(' ').append(resultSet.getLong(2)).append(' ')
+                        .append(resultSet.getLong(3)).append(' ').append(resultSet.getLong(4)).append('\n');
+            }
+        } finally {
+            resultSet.close();
+        }
+        return rows.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import com.example.android.inventoryapp2.BindBenchmarks;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Benchmarks comparing the products of version 4 of the database, where every product holds
+ * the phone of its supplier, with version 5, where the phone is held once in the suppliers
+ * table. The size of the database file is printed for both, and binding a page of the catalog
+ * is timed for both: version 4 reads the phone with every row, version 5 looks it up in the
+ * suppliers read once, the way SupplierCache does.
+ */
+final class SupplierBenchmarks {
+
+    /** Statements of InventoryProvider at version 4, and its page query at version 5 */
+    private static final String SQL_INSERT_PRODUCT_V4 = "INSERT INTO " + InventoryDatabase.TABLE_NAME + " ("
+            + InventoryDatabase.COLUMN_PRODUCT_NAME + ", " + InventoryDatabase.COLUMN_PRODUCT_PRICE + ", "
+            + InventoryDatabase.COLUMN_PRODUCT_QUANTITY + ", " + InventoryDatabase.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryDatabase.COLUMN_SUPPLIER_PHONE + ") VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_QUERY_PAGE_V4 = "SELECT " + InventoryDatabase.COLUMN_ID + ", "
+            + InventoryDatabase.COLUMN_PRODUCT_NAME + ", " + InventoryDatabase.COLUMN_PRODUCT_PRICE + ", "
+            + InventoryDatabase.COLUMN_PRODUCT_QUANTITY + ", " + InventoryDatabase.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryDatabase.COLUMN_SUPPLIER_PHONE + " FROM " + InventoryDatabase.TABLE_NAME + " WHERE " + InventoryDatabase.COLUMN_ID + ">? ORDER BY "
+            + InventoryDatabase.COLUMN_ID + " ASC LIMIT ?";
+    private static final String SQL_QUERY_PAGE_V5 = "SELECT " + InventoryDatabase.COLUMN_ID + ", "
+            + InventoryDatabase.COLUMN_PRODUCT_NAME + ", " + InventoryDatabase.COLUMN_PRODUCT_PRICE + ", "
+            + InventoryDatabase.COLUMN_PRODUCT_QUANTITY + ", " + InventoryDatabase.COLUMN_SUPPLIER_NAME + " FROM "
+            + InventoryDatabase.VIEW_PRODUCTS + " WHERE " + InventoryDatabase.COLUMN_ID + ">? ORDER BY "
+            + InventoryDatabase.COLUMN_ID + " ASC LIMIT ?";
+
+    private SupplierBenchmarks() {
+    }
+
+    static void run(Harness harness, File directory, int rows) throws Exception {
+        File file = new File(directory, "suppliers-v4.db");
+        Connection connection = InventoryDatabase.open(file, 4);
+        try {
+            fillVersion4(connection, rows);
+            printSize("suppliers.size.v4", connection, rows);
+            BindBenchmarks.runPage(harness, connection, rows, "suppliers.bindPage.v4", SQL_QUERY_PAGE_V4, null);
+        } finally {
+            connection.close();
+            InventoryDatabase.delete(file);
+        }
+
+        file = new File(directory, "suppliers-v5.db");
+        connection = InventoryDatabase.open(file, 5);
+        try {
+            InventoryDatabase.fill(connection, rows);
+            printSize("suppliers.size.v5", connection, rows);
+            BindBenchmarks.runPage(harness, connection, rows, "suppliers.bindPage.v5",
+                    SQL_QUERY_PAGE_V5, InventoryDatabase.supplierPhones(connection));
+        } finally {
+            connection.close();
+            InventoryDatabase.delete(file);
+        }
+    }
+
+    /**
+     * Insert the products {@link InventoryDatabase#fill(Connection, int)} does, each with the
+     * phone of its supplier.
+     */
+    private static void fillVersion4(Connection connection, int rows) throws SQLException {
+        connection.setAutoCommit(false);
+        PreparedStatement insert = connection.prepareStatement(SQL_INSERT_PRODUCT_V4);
+        try {
+            for (int i = 0; i < rows; i++) {
+                InventoryDatabase.bindProduct(insert, i);
+                insert.setString(5, InventoryDatabase.supplierPhone(i));
+                insert.executeUpdate();
+            }
+            connection.commit();
+        } finally {
+            insert.close();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Print the size of the database, the pages in use once the log is written back.
+     */
+    private static void printSize(String benchmark, Connection connection, int rows) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            ResultSet pages = statement.executeQuery("PRAGMA page_count");
+            long pageCount = pages.next() ? pages.getLong(1) : 0;
+            pages.close();
+            ResultSet pageSize = statement.executeQuery("PRAGMA page_size");
+            long size = pageCount * (pageSize.next() ? pageSize.getLong(1) : 0);
+            pageSize.close();
+            System.out.printf("%-40s %d KiB, %d bytes per product%n", benchmark, size / 1024,
+                    size / Math.max(1, rows));
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.android.inventoryapp2.benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.example.android.inventoryapp2.benchmark.InventoryDatabase.*;
+
+/**
+ * Benchmarks of deleting every product while sales go on, with one DELETE of the whole table
+ * as the catalog did before CatalogWiper, and with the chunks of consecutive IDs CatalogWiper
+ * deletes in their own transactions, followed by the reclamation of the free pages.
+ *
+ * In the app every write goes through the one primary connection of the database, which a sale
+ * waits for while a delete holds it. The benchmark shares one connection between the wipe and a
+ * thread selling products the same way, through a fair lock like the queue of the connection
+ * pool. The IDs of each chunk are read on a second connection, as the reader connections of the
+ * pool do. For each way, the longest time the wipe held the connection and the latency of the
+ * sales made meanwhile are printed.
+ *
+ * Each way runs on a database file of its own, filled with the catalog and deleted afterwards.
+ */
+final class WipeBenchmarks {
+
+    /** Products deleted per transaction, CatalogWiper.DEFAULT_CHUNK_SIZE */
+    private static final int CHUNK_SIZE = 500;
+
+    /** Pages reclaimed per step, CatalogWiper.RECLAIM_STEP_PAGES */
+    private static final int RECLAIM_STEP_PAGES = 256;
+
+    /** Time between two sales of the selling thread */
+    private static final long SALE_INTERVAL_MILLIS = 1;
+
+    private static final String SQL_DELETE_ALL = "DELETE FROM " + TABLE_NAME;
+    private static final String SQL_DELETE_CHUNK = "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_ID
+            + " > ? AND " + COLUMN_ID + " <= ?";
+    private static final String SQL_CHUNK_IDS = "SELECT " + COLUMN_ID + " FROM " + TABLE_NAME + " WHERE "
+            + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " LIMIT ?";
+
+    private WipeBenchmarks() {
+    }
+
+    static void run(File directory, int rows) throws Exception {
+        for (boolean chunked : new boolean[] { false, true }) {
+            File file = new File(directory, "wipe.db");
+            Connection connection = InventoryDatabase.open(file);
+            Connection reader = InventoryDatabase.open(file);
+            try {
+                InventoryDatabase.fill(connection, rows);
+                // Write the filled catalog back to the database, not in the first chunk
+                Statement statement = connection.createStatement();
+                statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+                statement.close();
+                ReentrantLock primary = new ReentrantLock(true);
+                Seller seller = new Seller(connection, primary, rows);
+                seller.start();
+                seller.awaitFirstSale();
+                long start = System.nanoTime();
+                long longestHold = chunked ? wipeInChunks(connection, reader, primary)
+                        : wipeAtOnce(connection, primary);
+                long elapsed = System.nanoTime() - start;
+                long[] latencies = seller.finish();
+                String benchmark = chunked ? "wipe.chunked" : "wipe.singleDelete";
+                System.out.printf("%-32s %9d rows  %,12d ms, longest hold %,d us, %d sales meanwhile"
+                                + " (median %,d us, p99 %,d us, max %,d us)%n", benchmark, rows,
+                        elapsed / 1000000, longestHold / 1000, latencies.length, percentile(latencies, 50) / 1000,
+                        percentile(latencies, 99) / 1000, percentile(latencies, 100) / 1000);
+                if (chunked) {
+                    reclaim(connection, primary, rows);
+                }
+            } finally {
+                reader.close();
+                connection.close();
+                InventoryDatabase.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Delete every product in one statement, returning the time it held the connection.
+     */
+    private static long wipeAtOnce(Connection connection, ReentrantLock primary) throws SQLException {
+        Statement statement = connection.createStatement();
+        primary.lock();
+        try {
+            long start = System.nanoTime();
+            statement.executeUpdate(SQL_DELETE_ALL);
+            return System.nanoTime() - start;
+        } finally {
+            primary.unlock();
+            statement.close();
+        }
+    }
+
+    /**
+     * Delete every product a chunk at a time, as CatalogWiper does, returning the longest time a
+     * chunk held the connection.
+     */
+    private static long wipeInChunks(Connection connection, Connection reader, ReentrantLock primary)
+            throws SQLException {
+        PreparedStatement ids = reader.prepareStatement(SQL_CHUNK_IDS);
+        PreparedStatement delete = connection.prepareStatement(SQL_DELETE_CHUNK);
+        long longestHold = 0;
+        try {
+            long afterId = -1;
+            while (true) {
+                ids.setLong(1, afterId);
+                ids.setInt(2, CHUNK_SIZE);
+                long lastId = ProviderBenchmarks.readAll(ids.executeQuery());
+                if (lastId < 0) {
+                    return longestHold;
+                }
+                primary.lock();
+                try {
+                    long start = System.nanoTime();
+                    delete.setLong(1, afterId);
+                    delete.setLong(2, lastId);
+                    delete.executeUpdate();
+                    longestHold = Math.max(longestHold, System.nanoTime() - start);
+                } finally {
+                    primary.unlock();
+                }
+                afterId = lastId;
+            }
+        } finally {
+            ids.close();
+            delete.close();
+        }
+    }
+
+    /**
+     * Reclaim the free pages left by the wipe a step at a time, as InventoryDbHelper does, and
+     * print the longest step and the pages reclaimed.
+     */
+    private static void reclaim(Connection connection, ReentrantLock primary, int rows) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            long free = longPragma(statement, "freelist_count");
+            long left = free;
+            long longestStep = 0;
+            long start = System.nanoTime();
+            while (left > 0) {
+                primary.lock();
+                try {
+                    long stepStart = System.nanoTime();
+                    statement.executeUpdate("PRAGMA incremental_vacuum(" + RECLAIM_STEP_PAGES + ")");
+                    longestStep = Math.max(longestStep, System.nanoTime() - stepStart);
+                } finally {
+                    primary.unlock();
+                }
+                long stillFree = longPragma(statement, "freelist_count");
+                if (stillFree == left) {
+                    throw new IllegalStateException("No pages reclaimed, " + left + " still free");
+                }
+                left = stillFree;
+            }
+            System.out.printf("%-32s %9d rows  %,12d ms, %d pages, longest step %,d us%n", "wipe.reclaim", rows,
+                    (System.nanoTime() - start) / 1000000, free, longestStep / 1000);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static long longPragma(Statement statement, String pragma) throws SQLException {
+        ResultSet result = statement.executeQuery("PRAGMA " + pragma);
+        try {
+            return result.next() ? result.getLong(1) : 0;
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Returns the given percentile of the sorted latencies, 0 if there are none.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    /**
+     * Thread selling a unit of a product every {@link #SALE_INTERVAL_MILLIS}, each sale in its
+     * own transaction, and recording how long each one took, waiting for the connection included.
+     * The products with the highest IDs are sold, which the chunks delete last.
+     */
+    private static final class Seller extends Thread {
+
+        private final Connection mConnection;
+        private final ReentrantLock mPrimary;
+        private final int mRows;
+        private final PreparedStatement mSell;
+        private final PreparedStatement mRecord;
+        private final PreparedStatement mReadQuantity;
+        private final CountDownLatch mFirstSale = new CountDownLatch(1);
+        private volatile boolean mStopped;
+        private long[] mLatencies = new long[1024];
+        private int mSales;
+        private Exception mError;
+
+        /**
+         * Create a seller, with its statements compiled now rather than while the wipe holds the
+         * connection.
+         */
+        Seller(Connection connection, ReentrantLock primary, int rows) throws SQLException {
+            mConnection = connection;
+            mPrimary = primary;
+            mRows = rows;
+            mSell = connection.prepareStatement(SQL_SELL_PRODUCT);
+            mRecord = connection.prepareStatement(SQL_RECORD_SALE);
+            mReadQuantity = connection.prepareStatement(SQL_PRODUCT_QUANTITY);
+        }
+
+        @Override
+        public void run() {
+            try {
+                try {
+                    while (!mStopped) {
+                        long start = System.nanoTime();
+                        mPrimary.lock();
+                        try {
+                            mConnection.setAutoCommit(false);
+                            ProviderBenchmarks.sell(mSell, mRecord, mReadQuantity, mRows - mSales % 100);
+                            mConnection.commit();
+                            mConnection.setAutoCommit(true);
+                        } finally {
+                            mPrimary.unlock();
+                        }
+                        if (mSales == mLatencies.length) {
+                            mLatencies = Arrays.copyOf(mLatencies, mSales * 2);
+                        }
+                        mLatencies[mSales++] = System.nanoTime() - start;
+                        mFirstSale.countDown();
+                        Thread.sleep(SALE_INTERVAL_MILLIS);
+                    }
+                } finally {
+                    mSell.close();
+                    mRecord.close();
+                    mReadQuantity.close();
+                }
+            } catch (Exception e) {
+                mError = e;
+            } finally {
+                mFirstSale.countDown();
+            }
+        }
+
+        /**
+         * Wait until the first sale was made, so that the wipe starts with sales going on.
+         */
+        void awaitFirstSale() throws InterruptedException {
+            mFirstSale.await();
+        }
+
+        /**
+         * Stop selling, and return the sorted latencies of the sales made.
+         */
+        long[] finish() throws Exception {
+            mStopped = true;
+            join();
+            if (mError != null) {
+                throw mError;
+            }
+            long[] latencies = Arrays.copyOf(mLatencies, mSales);
+            Arrays.sort(latencies);
+            return latencies;
+        }
+    }
+}
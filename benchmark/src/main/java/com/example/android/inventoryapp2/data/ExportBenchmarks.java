@@ -0,0 +1,107 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.benchmark.Harness;
+import com.example.android.inventoryapp2.benchmark.InventoryDatabase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Benchmarks of exporting the whole inventory to a file the way InventoryProvider does: one
+ * keyset page of products per query, written through {@link ExportWriter}, as CSV and as JSON.
+ * The rows per second and the peak heap used are printed, the peak sampled after each page.
+ * This class is in the data package to reach {@link ExportWriter}.
+ */
+public final class ExportBenchmarks {
+
+    /** Buffer of InventoryProvider exports */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ExportBenchmarks() {
+    }
+
+    public static void run(Harness harness, final Connection connection, File directory,
+                           final int rows) throws Exception {
+        final File file = new File(directory, "export");
+        try {
+            for (final int format : new int[] { ExportWriter.FORMAT_CSV, ExportWriter.FORMAT_JSON }) {
+                String benchmark = format == ExportWriter.FORMAT_CSV ? "export.csv" : "export.json";
+                final long[] peakHeap = new long[1];
+                Harness.Result result = harness.measure(benchmark, rows, 1, 3, 1, new Harness.Operation() {
+                    @Override
+                    public void run(int index) throws Exception {
+                        peakHeap[0] = Math.max(peakHeap[0], export(connection, file, format));
+                    }
+                });
+                System.out.printf("%-40s %d rows/s, %d KiB written, peak heap %d KiB%n", benchmark,
+                        rows * 1000000000L / Math.max(1, result.medianNanos), file.length() / 1024,
+                        peakHeap[0] / 1024);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Export every product to the file. Returns the peak heap used.
+     */
+    private static long export(Connection connection, File file, int format)
+            throws IOException, SQLException {
+        FileOutputStream out = new FileOutputStream(file);
+        PreparedStatement page = connection.prepareStatement(InventoryDatabase.SQL_EXPORT_PAGE);
+        long peakHeap = 0;
+        try {
+            ExportWriter writer = new ExportWriter(out, format, BUFFER_SIZE);
+            // JDBC returns strings, copy them like Cursor.copyStringToBuffer() does
+            char[] name = new char[64];
+            char[] supplier = new char[32];
+            char[] phone = new char[16];
+            long afterId = -1;
+            int count;
+            writer.writeStart();
+            do {
+                page.setLong(1, afterId);
+                ResultSet resultSet = page.executeQuery();
+                count = 0;
+                while (resultSet.next()) {
+                    afterId = resultSet.getLong(1);
+                    String nameValue = resultSet.getString(2);
+                    String supplierValue = resultSet.getString(5);
+                    String phoneValue = resultSet.getString(6);
+                    if (nameValue.length() > name.length) {
+                        name = new char[nameValue.length()];
+                    }
+                    if (supplierValue.length() > supplier.length) {
+                        supplier = new char[supplierValue.length()];
+                    }
+                    if (phoneValue.length() > phone.length) {
+                        phone = new char[phoneValue.length()];
+                    }
+                    nameValue.getChars(0, nameValue.length(), name, 0);
+                    supplierValue.getChars(0, supplierValue.length(), supplier, 0);
+                    phoneValue.getChars(0, phoneValue.length(), phone, 0);
+                    writer.writeProduct(afterId, name, nameValue.length(), resultSet.getInt(3), resultSet.getInt(4),
+                            supplier, supplierValue.length(), phone, phoneValue.length());
+                    count++;
+                }
+                resultSet.close();
+                peakHeap = Math.max(peakHeap, usedHeap());
+            } while (count == 1000);
+            writer.finish();
+        } finally {
+            page.close();
+            out.close();
+        }
+        return peakHeap;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
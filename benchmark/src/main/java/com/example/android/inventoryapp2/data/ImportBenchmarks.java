@@ -0,0 +1,180 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.benchmark.Harness;
+import com.example.android.inventoryapp2.benchmark.InventoryDatabase;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Benchmarks of importing a supplier catalog with one line per product in the catalog: reading
+ * it with {@link CsvReader} alone, then upserting its rows in batches the way CatalogImporter
+ * and InventoryProvider do. Half of the lines update existing products and half add new ones.
+ * The rows per second and the peak heap used are printed, the peak sampled after each batch
+ * like CatalogImporter does. This class is in the data package to reach {@link CsvReader}.
+ */
+public final class ImportBenchmarks {
+
+    /** Buffer and longest row of CatalogImporter */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ROW_LENGTH = 1024 * 1024;
+
+    /** Rows per transaction, CatalogImporter.DEFAULT_BATCH_SIZE */
+    private static final int BATCH_SIZE = 500;
+
+    /** Keeps the field lengths read, so the JIT can't drop the decoding */
+    private static long sLengths;
+
+    private ImportBenchmarks() {
+    }
+
+    public static void run(Harness harness, final Connection connection, File directory,
+                           final int rows) throws Exception {
+        final File file = new File(directory, "catalog.csv");
+        writeCatalog(file, rows);
+        try {
+            final long[] peakHeap = new long[1];
+            Harness.Result parse = harness.measure("import.parse", rows, 1, 3, 1, new Harness.Operation() {
+                @Override
+                public void run(int index) throws IOException {
+                    peakHeap[0] = Math.max(peakHeap[0], parse(file));
+                }
+            });
+            print("import.parse", rows, parse, peakHeap[0]);
+
+            peakHeap[0] = 0;
+            Harness.Result upsert = harness.measure("import.upsert", rows, 0, 1, 1, new Harness.Operation() {
+                @Override
+                public void run(int index) throws Exception {
+                    peakHeap[0] = Math.max(peakHeap[0], upsert(file, connection));
+                }
+            });
+            print("import.upsert", rows, upsert, peakHeap[0]);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void print(String benchmark, int rows, Harness.Result result, long peakHeap) {
+        System.out.printf("%-40s %d rows/s, peak heap %d KiB%n", benchmark,
+                rows * 1000000000L / Math.max(1, result.medianNanos), peakHeap / 1024);
+    }
+
+    /**
+     * Write a catalog of the given number of lines. Even lines name existing products, odd
+     * lines new ones.
+     */
+    private static void writeCatalog(File file, int rows) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.write("name,price,quantity,supplier,phone\n");
+            for (int i = 0; i < rows; i++) {
+                String name = InventoryDatabase.productName(i);
+                writer.write(i % 2 == 0 ? name : "\"New, " + name + "\"");
+                writer.write("," + (1 + i % 100) + "," + (i % 500) + "," + i % 3 + ",360-220-"
+                        + (1000 + i % 9000) + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Read every field of the catalog. Returns the peak heap used.
+     */
+    private static long parse(File file) throws IOException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        long peakHeap = 0;
+        try {
+            CsvReader reader = new CsvReader(channel, BUFFER_SIZE, MAX_ROW_LENGTH);
+            long records = 0;
+            while (reader.readRecord()) {
+                for (int i = 0; i < reader.getFieldCount(); i++) {
+                    sLengths += reader.getField(i).length();
+                }
+                if (++records % BATCH_SIZE == 0) {
+                    peakHeap = Math.max(peakHeap, usedHeap());
+                }
+            }
+        } finally {
+            channel.close();
+        }
+        return peakHeap;
+    }
+
+    /**
+     * Upsert every row of the catalog, one transaction per batch. Returns the peak heap used.
+     */
+    private static long upsert(File file, Connection connection) throws IOException, SQLException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        PreparedStatement find = connection.prepareStatement(InventoryDatabase.SQL_FIND_PRODUCT);
+        PreparedStatement update = connection.prepareStatement(InventoryDatabase.SQL_UPSERT_PRODUCT);
+        PreparedStatement insert = connection.prepareStatement(InventoryDatabase.SQL_INSERT_PRODUCT);
+        PreparedStatement supplierPhone = connection.prepareStatement(InventoryDatabase.SQL_SUPPLIER_PHONE);
+        long peakHeap = 0;
+        connection.setAutoCommit(false);
+        try {
+            CsvReader reader = new CsvReader(channel, BUFFER_SIZE, MAX_ROW_LENGTH);
+            reader.readRecord();
+            int batchCount = 0;
+            while (reader.readRecord()) {
+                String name = reader.getField(0);
+                int price = Integer.parseInt(reader.getField(1)) * 100;
+                int quantity = Integer.parseInt(reader.getField(2));
+                int supplier = Integer.parseInt(reader.getField(3));
+                String phone = reader.getField(4);
+
+                supplierPhone.setString(1, phone);
+                supplierPhone.setInt(2, supplier);
+                supplierPhone.executeUpdate();
+                find.setString(1, name);
+                find.setInt(2, supplier);
+                ResultSet found = find.executeQuery();
+                long id = found.next() ? found.getLong(1) : -1;
+                found.close();
+                if (id == -1) {
+                    insert.setString(1, name);
+                    insert.setInt(2, price);
+                    insert.setInt(3, quantity);
+                    insert.setInt(4, supplier);
+                    insert.executeUpdate();
+                } else {
+                    update.setInt(1, price);
+                    update.setInt(2, quantity);
+                    update.setString(3, name);
+                    update.setInt(4, supplier);
+                    update.executeUpdate();
+                }
+                if (++batchCount == BATCH_SIZE) {
+                    connection.commit();
+                    batchCount = 0;
+                    peakHeap = Math.max(peakHeap, usedHeap());
+                }
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+            find.close();
+            update.close();
+            insert.close();
+            supplierPhone.close();
+            channel.close();
+        }
+        return peakHeap;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}